@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+
+import org.apache.commons.io.IOUtils;
+
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+
+/**
+ * The documents that the benchmarks run over.  These are read from
+ * the parser modules' test-jars; the shaded benchmark jar only keeps
+ * these files from them so that it is self-contained.
+ * <p>
+ * Benchmarks take the format as a JMH {@code @Param} so that the
+ * results are reported per format.
+ */
+public enum BenchmarkCorpus {
+
+    PDF("testPDF.pdf"),
+    DOCX("testWORD.docx"),
+    XLSX("testEXCEL.xlsx"),
+    HTML("testHTML.html"),
+    MAIL("testRFC822"),
+    JPEG("testJPEG_EXIF.jpg"),
+    ZIP("test-documents.zip");
+
+    private static final String RESOURCE_PREFIX = "/test-documents/";
+
+    private final String fileName;
+
+    BenchmarkCorpus(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Reads the document fully into memory so that disk i/o is not
+     * part of the measurement.
+     */
+    public byte[] load() throws IOException {
+        try (InputStream is = BenchmarkCorpus.class.getResourceAsStream(
+                RESOURCE_PREFIX + fileName)) {
+            if (is == null) {
+                throw new IOException("Couldn't find " + RESOURCE_PREFIX + fileName);
+            }
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            IOUtils.copy(is, bos);
+            return bos.toByteArray();
+        }
+    }
+
+    public TikaInputStream open(byte[] bytes) {
+        return TikaInputStream.get(bytes);
+    }
+
+    public Metadata newMetadata() {
+        Metadata metadata = new Metadata();
+        metadata.set(TikaCoreProperties.RESOURCE_NAME_KEY, fileName);
+        return metadata;
+    }
+
+    public static BenchmarkCorpus parse(String name) {
+        return valueOf(name.toUpperCase(Locale.ROOT));
+    }
+}
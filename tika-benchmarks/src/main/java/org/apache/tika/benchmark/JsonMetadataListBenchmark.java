@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.benchmark;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.serialization.JsonMetadataList;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.RecursiveParserWrapper;
+
+/**
+ * Measures serialization and deserialization of the metadata list
+ * that the {@link RecursiveParserWrapper} produces for each format.
+ * The parse itself happens once during setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonMetadataListBenchmark {
+
+    @Param({"pdf", "docx", "xlsx", "html", "mail", "zip"})
+    private String format;
+
+    private List<Metadata> metadataList;
+    private String json;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkCorpus doc = BenchmarkCorpus.parse(format);
+        metadataList = RecursiveParserWrapperBenchmark.parse(doc, doc.load(),
+                new RecursiveParserWrapper(new AutoDetectParser()));
+        json = toJson();
+    }
+
+    @Benchmark
+    public String toJson() throws Exception {
+        StringWriter writer = new StringWriter();
+        JsonMetadataList.toJson(metadataList, writer);
+        return writer.toString();
+    }
+
+    @Benchmark
+    public List<Metadata> fromJson() throws Exception {
+        return JsonMetadataList.fromJson(new StringReader(json));
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.benchmark;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.RecursiveParserWrapper;
+
+/**
+ * Measures the {@link Metadata} container itself: replaying the metadata
+ * that the {@link RecursiveParserWrapper} extracted from a metadata-heavy
+ * document into fresh {@link Metadata} objects and reading it back, adding
+ * many values to a single multi-valued field, and parsing dates.
+ * The parse itself happens once during setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetadataBenchmark {
+
+    private static final int NUM_WARNINGS = 1000;
+
+    @Param({"jpeg", "mail"})
+    private String format;
+
+    private List<Metadata> metadataList;
+    private Metadata dated;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkCorpus doc = BenchmarkCorpus.parse(format);
+        metadataList = RecursiveParserWrapperBenchmark.parse(doc, doc.load(),
+                new RecursiveParserWrapper(new AutoDetectParser()));
+        dated = new Metadata();
+        dated.set(TikaCoreProperties.CREATED, "2022-12-03T10:15:30+01:00");
+    }
+
+    @Benchmark
+    public int replay() {
+        int values = 0;
+        for (Metadata source : metadataList) {
+            Metadata copy = new Metadata();
+            for (String name : source.names()) {
+                for (String value : source.getValues(name)) {
+                    copy.add(name, value);
+                }
+            }
+            for (String name : copy.names()) {
+                values += copy.getValues(name).length;
+            }
+        }
+        return values;
+    }
+
+    @Benchmark
+    public Metadata multiValued() {
+        Metadata metadata = new Metadata();
+        for (int i = 0; i < NUM_WARNINGS; i++) {
+            metadata.add(TikaCoreProperties.TIKA_META_EXCEPTION_WARNING, "warning");
+        }
+        return metadata;
+    }
+
+    @Benchmark
+    public Date parseDate() {
+        return dated.getDate(TikaCoreProperties.CREATED);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Date parseDateThreads4() {
+        return dated.getDate(TikaCoreProperties.CREATED);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.mime.MimeTypes;
+
+/**
+ * Measures {@link MimeTypes#detect(InputStream, Metadata)} with one shared
+ * registry and an increasing number of threads.  Throughput should scale
+ * with the number of threads, up to the number of cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MimeTypesConcurrencyBenchmark {
+
+    @Param({"pdf", "html", "mail", "zip"})
+    private String format;
+
+    private byte[] header;
+    private MimeTypes mimeTypes;
+
+    @Setup
+    public void setUp() throws Exception {
+        mimeTypes = MimeTypes.getDefaultMimeTypes();
+        byte[] bytes = BenchmarkCorpus.parse(format).load();
+        header = new byte[Math.min(bytes.length, mimeTypes.getMinLength())];
+        System.arraycopy(bytes, 0, header, 0, header.length);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public MediaType threads1() throws Exception {
+        return detect();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public MediaType threads2() throws Exception {
+        return detect();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public MediaType threads4() throws Exception {
+        return detect();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public MediaType threads8() throws Exception {
+        return detect();
+    }
+
+    private MediaType detect() throws Exception {
+        //magic only; no name hint
+        return mimeTypes.detect(new ByteArrayInputStream(header), new Metadata());
+    }
+}
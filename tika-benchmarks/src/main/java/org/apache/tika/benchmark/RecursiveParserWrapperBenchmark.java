@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.RecursiveParserWrapper;
+import org.apache.tika.sax.BasicContentHandlerFactory;
+import org.apache.tika.sax.RecursiveParserWrapperHandler;
+
+/**
+ * Measures the {@link RecursiveParserWrapper} (the /rmeta and pipes code path),
+ * including embedded documents, per format.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RecursiveParserWrapperBenchmark {
+
+    @Param({"pdf", "docx", "xlsx", "html", "mail", "zip"})
+    private String format;
+
+    private BenchmarkCorpus doc;
+    private byte[] bytes;
+    private RecursiveParserWrapper wrapper;
+
+    @Setup
+    public void setUp() throws Exception {
+        doc = BenchmarkCorpus.parse(format);
+        bytes = doc.load();
+        wrapper = new RecursiveParserWrapper(new AutoDetectParser());
+    }
+
+    @Benchmark
+    public List<Metadata> parse() throws Exception {
+        return parse(doc, bytes, wrapper);
+    }
+
+    static List<Metadata> parse(BenchmarkCorpus doc, byte[] bytes,
+                                RecursiveParserWrapper wrapper) throws Exception {
+        RecursiveParserWrapperHandler handler = new RecursiveParserWrapperHandler(
+                new BasicContentHandlerFactory(BasicContentHandlerFactory.HANDLER_TYPE.TEXT,
+                        -1));
+        try (TikaInputStream tis = doc.open(bytes)) {
+            wrapper.parse(tis, handler, doc.newMetadata(), new ParseContext());
+        }
+        return handler.getMetadataList();
+    }
+}
@@ -0,0 +1,355 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.detect;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.IOUtils;
+
+import org.apache.tika.config.Field;
+import org.apache.tika.io.FilenameUtils;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.mime.MediaTypeRegistry;
+import org.apache.tika.utils.StringUtils;
+
+/**
+ * Composite detector that remembers the results of its child detectors.
+ * <p>
+ * Results are keyed on a cheap fingerprint of the input: its length, a
+ * digest of the first {@link #setHeaderLength(int) headerLength} and last
+ * {@link #setTailLength(int) tailLength} bytes, the extension of the
+ * resource name and the content type hint, if any. A fingerprint can only
+ * be taken when the full length of the input is known without consuming it,
+ * i.e. for inputs shorter than the header or for {@link TikaInputStream}s
+ * that are backed by a file. All other inputs, and inputs that carry a
+ * content type override, are passed straight to the child detectors.
+ * <p>
+ * The fingerprint does not look at the middle of the input, so two inputs
+ * that only differ there will share a cached type. This is a good trade-off
+ * for large batches of similar documents, but it should not be used where
+ * detection has to look at every byte. Side effects of detection, such as an
+ * open container set on the {@link TikaInputStream}, are also not replayed on
+ * a cache hit.
+ * <p>
+ * The cache holds at most {@link #setMaxEntries(int) maxEntries} types and
+ * evicts the least recently used one when it is full. To use it from
+ * tika-config.xml, wrap the detectors to cache:
+ * <pre>
+ * &lt;detectors&gt;
+ *   &lt;detector class="org.apache.tika.detect.CachingDetector"&gt;
+ *     &lt;params&gt;
+ *       &lt;param name="maxEntries" type="int"&gt;10000&lt;/param&gt;
+ *     &lt;/params&gt;
+ *     &lt;detector class="org.apache.tika.detect.DefaultDetector"/&gt;
+ *   &lt;/detector&gt;
+ * &lt;/detectors&gt;
+ * </pre>
+ *
+ * @since Apache Tika 2.6.1
+ */
+public class CachingDetector extends CompositeDetector {
+
+    private static final long serialVersionUID = -2357245710374830521L;
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private final LruCache cache = new LruCache();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong bypasses = new AtomicLong();
+
+    private int headerLength = 8192;
+
+    private int tailLength = 8192;
+
+    public CachingDetector(MediaTypeRegistry registry, List<Detector> detectors,
+                           Collection<Class<? extends Detector>> excludeDetectors) {
+        super(registry, detectors, excludeDetectors);
+    }
+
+    public CachingDetector(MediaTypeRegistry registry, List<Detector> detectors) {
+        super(registry, detectors);
+    }
+
+    public CachingDetector(Detector... detectors) {
+        super(detectors);
+    }
+
+    @Override
+    public MediaType detect(InputStream input, Metadata metadata) throws IOException {
+        Fingerprint fingerprint = fingerprint(input, metadata);
+        if (fingerprint == null) {
+            bypasses.incrementAndGet();
+            return super.detect(input, metadata);
+        }
+        MediaType type;
+        synchronized (cache) {
+            type = cache.get(fingerprint);
+        }
+        if (type != null) {
+            hits.incrementAndGet();
+            return type;
+        }
+        misses.incrementAndGet();
+        type = super.detect(input, metadata);
+        synchronized (cache) {
+            cache.put(fingerprint, type);
+        }
+        return type;
+    }
+
+    private Fingerprint fingerprint(InputStream input, Metadata metadata) throws IOException {
+        if (input == null || !input.markSupported() ||
+                !StringUtils.isBlank(
+                        metadata.get(TikaCoreProperties.CONTENT_TYPE_USER_OVERRIDE)) ||
+                !StringUtils.isBlank(
+                        metadata.get(TikaCoreProperties.CONTENT_TYPE_PARSER_OVERRIDE))) {
+            return null;
+        }
+        MessageDigest digest = newDigest();
+        byte[] header = new byte[headerLength];
+        int read;
+        input.mark(headerLength);
+        try {
+            read = IOUtils.read(input, header);
+        } finally {
+            input.reset();
+        }
+        digest.update(header, 0, read);
+
+        long length;
+        if (read < headerLength) {
+            // the header is the whole input
+            length = read;
+        } else {
+            TikaInputStream tis = TikaInputStream.cast(input);
+            if (tis == null || !tis.hasFile()) {
+                return null;
+            }
+            try (SeekableByteChannel channel = Files.newByteChannel(tis.getPath())) {
+                length = channel.size();
+                long tailStart = Math.max(headerLength, length - tailLength);
+                ByteBuffer tail = ByteBuffer.allocate((int) Math.max(0, length - tailStart));
+                channel.position(tailStart);
+                while (tail.hasRemaining() && channel.read(tail) >= 0) {
+                    //keep reading
+                }
+                digest.update(tail.array(), 0, tail.position());
+            }
+        }
+        return new Fingerprint(length, digest.digest(), getNameKey(metadata),
+                metadata.get(Metadata.CONTENT_TYPE));
+    }
+
+    /**
+     * The extension of the resource name, or the whole name if it has no
+     * extension. Names without an extension are kept whole, as name patterns
+     * like <code>Makefile</code> may match them. The case is kept, as name
+     * patterns are case sensitive, e.g. <code>*.C</code> is C++ and
+     * <code>*.c</code> is C.
+     */
+    private static String getNameKey(Metadata metadata) {
+        String name = FilenameUtils.getName(metadata.get(TikaCoreProperties.RESOURCE_NAME_KEY));
+        int dot = name.lastIndexOf('.');
+        if (dot > -1) {
+            name = name.substring(dot);
+        }
+        return name;
+    }
+
+    private static MessageDigest newDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * @return number of detections that were answered from the cache
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of detections that were fingerprinted but not yet cached
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return number of detections that could not be fingerprinted and went
+     * straight to the child detectors
+     */
+    public long getBypassCount() {
+        return bypasses.get();
+    }
+
+    /**
+     * @return number of types currently cached
+     */
+    public int getSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Removes all cached types. The hit and miss counts are kept.
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    public int getMaxEntries() {
+        return cache.maxEntries;
+    }
+
+    /**
+     * Maximum number of types to cache. Default: 10000
+     *
+     * @param maxEntries
+     */
+    @Field
+    public void setMaxEntries(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be > 0");
+        }
+        synchronized (cache) {
+            cache.maxEntries = maxEntries;
+            while (cache.size() > maxEntries) {
+                cache.remove(cache.keySet().iterator().next());
+            }
+        }
+    }
+
+    public int getHeaderLength() {
+        return headerLength;
+    }
+
+    /**
+     * Number of leading bytes that go into the fingerprint. Default: 8192
+     *
+     * @param headerLength
+     */
+    @Field
+    public void setHeaderLength(int headerLength) {
+        if (headerLength < 1) {
+            throw new IllegalArgumentException("headerLength must be > 0");
+        }
+        this.headerLength = headerLength;
+    }
+
+    public int getTailLength() {
+        return tailLength;
+    }
+
+    /**
+     * Number of trailing bytes that go into the fingerprint of file backed
+     * inputs. Default: 8192
+     *
+     * @param tailLength
+     */
+    @Field
+    public void setTailLength(int tailLength) {
+        if (tailLength < 0) {
+            throw new IllegalArgumentException("tailLength must be >= 0");
+        }
+        this.tailLength = tailLength;
+    }
+
+    private static class LruCache extends LinkedHashMap<Fingerprint, MediaType> {
+
+        private static final long serialVersionUID = 4216503254620472398L;
+
+        private int maxEntries = 10000;
+
+        LruCache() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Fingerprint, MediaType> eldest) {
+            return size() > maxEntries;
+        }
+    }
+
+    private static class Fingerprint implements Serializable {
+
+        private static final long serialVersionUID = -5104931785617410925L;
+
+        private final long length;
+
+        private final byte[] digest;
+
+        private final String name;
+
+        private final String contentType;
+
+        private final int hash;
+
+        Fingerprint(long length, byte[] digest, String name, String contentType) {
+            this.length = length;
+            this.digest = digest;
+            this.name = name;
+            this.contentType = contentType;
+            this.hash = Objects.hash(length, Arrays.hashCode(digest), name, contentType);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Fingerprint)) {
+                return false;
+            }
+            Fingerprint that = (Fingerprint) o;
+            return length == that.length && Arrays.equals(digest, that.digest) &&
+                    name.equals(that.name) && Objects.equals(contentType, that.contentType);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
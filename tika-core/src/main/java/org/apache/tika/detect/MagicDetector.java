@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.util.Arrays;
 import java.util.Locale;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -90,6 +91,10 @@ public class MagicDetector implements Detector {
      * starts at this offset.
      */
     private final int offsetRangeEnd;
+    /**
+     * The compiled pattern if this is a regular expression, otherwise <code>null</code>.
+     */
+    private final Pattern regex;
 
     /**
      * Creates a detector for input documents that have the exact given byte
@@ -181,6 +186,9 @@ public class MagicDetector implements Detector {
 
         this.offsetRangeBegin = offsetRangeBegin;
         this.offsetRangeEnd = offsetRangeEnd;
+        //compile once; Patterns are immutable and safe for concurrent use
+        this.regex = isRegex ? Pattern.compile(new String(this.pattern, UTF_8),
+                isStringIgnoreCase ? Pattern.CASE_INSENSITIVE : 0) : null;
     }
 
     public static MagicDetector parse(MediaType mediaType, String type, String offset, String value,
@@ -373,16 +381,9 @@ public class MagicDetector implements Detector {
             }
 
             if (this.isRegex) {
-                int flags = 0;
-                if (this.isStringIgnoreCase) {
-                    flags = Pattern.CASE_INSENSITIVE;
-                }
-
-                Pattern p = Pattern.compile(new String(this.pattern, UTF_8), flags);
-
                 ByteBuffer bb = ByteBuffer.wrap(buffer);
                 CharBuffer result = ISO_8859_1.decode(bb);
-                Matcher m = p.matcher(result);
+                Matcher m = regex.matcher(result);
 
                 boolean match = false;
                 // Loop until we've covered the entire offset range
@@ -420,10 +421,84 @@ public class MagicDetector implements Detector {
         }
     }
 
+    /**
+     * Returns whether the given document prefix matches.  This is equivalent to
+     * {@link #detect(InputStream, Metadata)} on a stream over <code>data</code>
+     * returning the matching type, but it doesn't copy the data.
+     *
+     * @param data first bytes of the document
+     * @return whether the data matches
+     */
+    public boolean matches(byte[] data) {
+        if (data.length < offsetRangeBegin) {
+            return false;
+        }
+        //the comparison window, starting at offsetRangeBegin and zero-padded
+        //beyond the end of the data, as in detect()
+        int windowLength = length + (offsetRangeEnd - offsetRangeBegin);
+        int available = Math.min(data.length - offsetRangeBegin, windowLength);
+        if (isRegex) {
+            Matcher m = regex.matcher(new Latin1Window(data, offsetRangeBegin, available,
+                    windowLength));
+            for (int i = 0; i <= offsetRangeEnd - offsetRangeBegin; i++) {
+                m.region(i, length + i);
+                if (m.lookingAt()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (available < length) {
+            return false;
+        }
+        for (int i = 0; i <= offsetRangeEnd - offsetRangeBegin; i++) {
+            boolean match = true;
+            int masked;
+            for (int j = 0; match && j < length; j++) {
+                int k = i + j;
+                masked = ((k < available ? data[offsetRangeBegin + k] : 0) & mask[j]);
+                if (this.isStringIgnoreCase) {
+                    masked = Character.toLowerCase(masked);
+                }
+                match = (masked == pattern[j]);
+            }
+            if (match) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public int getLength() {
         return this.patternLength;
     }
 
+    public int getOffsetRangeBegin() {
+        return offsetRangeBegin;
+    }
+
+    public int getOffsetRangeEnd() {
+        return offsetRangeEnd;
+    }
+
+    /**
+     * Returns the leading bytes of the pattern that a match must have byte
+     * for byte, i.e. up to the first masked byte.  This is empty for regular
+     * expressions and case-insensitive strings.
+     *
+     * @return a copy of the exact prefix of the pattern; may be empty
+     */
+    public byte[] getExactPrefix() {
+        if (isRegex || isStringIgnoreCase) {
+            return new byte[0];
+        }
+        int prefixLength = 0;
+        while (prefixLength < patternLength && mask[prefixLength] == (byte) 0xFF) {
+            prefixLength++;
+        }
+        return Arrays.copyOf(pattern, prefixLength);
+    }
+
     /**
      * Returns a string representation of the Detection Rule.
      * Should sort nicely by type and details, as we sometimes
@@ -434,4 +509,45 @@ public class MagicDetector implements Detector {
         return "Magic Detection for " + type + " looking for " + pattern.length + " bytes = " +
                 this.pattern + " mask = " + this.mask;
     }
+
+    /**
+     * ISO-8859-1 view of a zero-padded window of bytes
+     */
+    private static class Latin1Window implements CharSequence {
+        private final byte[] data;
+        private final int start;
+        private final int available;
+        private final int length;
+
+        Latin1Window(byte[] data, int start, int available, int length) {
+            this.data = data;
+            this.start = start;
+            this.available = available;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return index < available ? (char) (data[start + index] & 0xFF) : 0;
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return toString().subSequence(from, to);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(length);
+            for (int i = 0; i < length; i++) {
+                sb.append(charAt(i));
+            }
+            return sb.toString();
+        }
+    }
 }
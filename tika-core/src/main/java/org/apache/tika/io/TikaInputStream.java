@@ -29,7 +29,9 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -98,6 +100,11 @@ public class TikaInputStream extends TaggedInputStream {
      * then the value is <code>null</code>.
      */
     private Path path;
+    /**
+     * Random access channel over the contents of this stream, or
+     * <code>null</code> if the stream wasn't created from a channel.
+     */
+    private SeekableByteChannel channel;
     /**
      * Total length of the stream, or -1 if unknown.
      */
@@ -603,6 +610,33 @@ public class TikaInputStream extends TaggedInputStream {
                 new TemporaryResources(), length, getExtension(metadata));
     }
 
+    /**
+     * Creates a TikaInputStream from a channel over the full contents of a
+     * resource, e.g. a {@link org.apache.tika.pipes.fetcher.RangeFetcherChannel}
+     * over a remote object. The stream reads the channel from its start,
+     * and parsers that need random access can use
+     * {@link #getSeekableByteChannel()} instead of spooling the whole
+     * resource to a temporary file with {@link #getPath()}.
+     * <p>
+     * The channel is closed when the returned stream is closed.
+     *
+     * @param channel  channel to read from
+     * @param metadata metadata, used for the suffix of temporary files
+     * @return a TikaInputStream instance
+     * @throws IOException if the size of the channel can not be read
+     * @since Apache Tika 2.6.1
+     */
+    public static TikaInputStream get(SeekableByteChannel channel, Metadata metadata)
+            throws IOException {
+        TemporaryResources tmp = new TemporaryResources();
+        tmp.addResource(channel);
+        TikaInputStream stream = new TikaInputStream(
+                new BufferedInputStream(new ChannelInputStream(channel)), tmp, channel.size(),
+                getExtension(metadata));
+        stream.channel = channel;
+        return stream;
+    }
+
     /**
      * Fills the given buffer with upcoming bytes from this stream without
      * advancing the current stream position. The buffer is filled up unless
@@ -681,6 +715,26 @@ public class TikaInputStream extends TaggedInputStream {
         return path != null;
     }
 
+    /**
+     * @return whether this stream was created from a {@link SeekableByteChannel}
+     * @see #get(SeekableByteChannel, Metadata)
+     */
+    public boolean hasSeekableByteChannel() {
+        return channel != null;
+    }
+
+    /**
+     * Returns the channel that this stream was created from, or <code>null</code>.
+     * The channel is shared with this stream, which restores its own
+     * position before every read, and closing the returned channel
+     * has no effect; it is closed along with this stream.
+     *
+     * @return random access channel over the contents of this stream
+     */
+    public SeekableByteChannel getSeekableByteChannel() {
+        return channel == null ? null : new CloseShieldChannel(channel);
+    }
+
 
     /**
      * If the user created this TikaInputStream with a file,
@@ -877,4 +931,106 @@ public class TikaInputStream extends TaggedInputStream {
         }
         return str;
     }
+
+    /**
+     * Reads a channel from its start, setting the channel's position
+     * before every read so that the channel can be used for random
+     * access in between.
+     */
+    private static class ChannelInputStream extends InputStream {
+
+        private final SeekableByteChannel channel;
+
+        private long position = 0;
+
+        ChannelInputStream(SeekableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int n = read(b, 0, 1);
+            return n == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            int n;
+            synchronized (channel) {
+                channel.position(position);
+                n = channel.read(ByteBuffer.wrap(b, off, len));
+            }
+            if (n > 0) {
+                position += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = Math.max(0, Math.min(n, channel.size() - position));
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private static class CloseShieldChannel implements SeekableByteChannel {
+
+        private final SeekableByteChannel channel;
+
+        CloseShieldChannel(SeekableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return channel.read(dst);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return channel.write(src);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return channel.position();
+        }
+
+        @Override
+        public SeekableByteChannel position(long newPosition) throws IOException {
+            channel.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) throws IOException {
+            channel.truncate(size);
+            return this;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() {
+            //the channel is closed along with the TikaInputStream
+        }
+    }
 }
@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.metadata;
+
+import java.util.Date;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.tika.utils.DateUtils;
+
+/**
+ * Thread safe wrapper around {@link DateUtils#tryToParse(String)}, which is
+ * not thread safe. Each call borrows a {@link DateUtils} from a lock-free
+ * pool, so dates are parsed by the same SimpleDateFormats with the same
+ * results, without a lock or per-thread state. The pool holds at most as
+ * many instances as there have been concurrent calls.
+ */
+class IsoDateParser {
+
+    private static final Queue<DateUtils> POOL = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @return the parsed date or <code>null</code> if no format matches
+     */
+    static Date parse(String date) {
+        DateUtils dateUtils = POOL.poll();
+        if (dateUtils == null) {
+            dateUtils = new DateUtils();
+        }
+        try {
+            return dateUtils.tryToParse(date);
+        } catch (IndexOutOfBoundsException e) {
+            //tryToParse's check for a colon in the offset fails on some short strings
+            return null;
+        } finally {
+            POOL.offer(dateUtils);
+        }
+    }
+}
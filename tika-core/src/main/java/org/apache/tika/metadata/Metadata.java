@@ -26,7 +26,6 @@ import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -36,7 +35,6 @@ import java.util.TimeZone;
 
 import org.apache.tika.metadata.Property.PropertyType;
 import org.apache.tika.metadata.writefilter.MetadataWriteFilter;
-import org.apache.tika.utils.DateUtils;
 
 /**
  * A multi-valued metadata container.
@@ -54,6 +52,13 @@ public class Metadata
 
         @Override
         public void add(String field, String value, Map<String, String[]> data) {
+            if (data instanceof MetadataMap) {
+                //grows the values in place rather than copying them on every add
+                if (value != null) {
+                    ((MetadataMap) data).append(field, value);
+                }
+                return;
+            }
             String[] values = data.get(field);
             if (values == null) {
                 set(field, value, data);
@@ -87,11 +92,6 @@ public class Metadata
      * Serial version UID
      */
     private static final long serialVersionUID = 5623926545693153182L;
-    /**
-     * Some parsers will have the date as a ISO-8601 string
-     * already, and will set that into the Metadata object.
-     */
-    private static final DateUtils DATE_UTILS = new DateUtils();
     /**
      * A map of all metadata attributes.
      */
@@ -103,7 +103,7 @@ public class Metadata
      * Constructs a new, empty metadata.
      */
     public Metadata() {
-        metadata = new HashMap<>();
+        metadata = new MetadataMap();
     }
 
     private static DateFormat createDateFormat(String format, TimeZone timezone) {
@@ -115,15 +115,16 @@ public class Metadata
     }
 
     /**
-     * Parses the given date string. This method is synchronized to prevent
-     * concurrent access to the thread-unsafe date formats.
+     * Parses the given date string. Some parsers will have the date as a
+     * ISO-8601 string already, and will set that into the Metadata object.
+     * This is thread safe and doesn't lock.
      *
      * @param date date string
      * @return parsed date, or <code>null</code> if the date can't be parsed
      * @see <a href="https://issues.apache.org/jira/browse/TIKA-495">TIKA-495</a>
      */
-    private static synchronized Date parseDate(String date) {
-        return DATE_UTILS.tryToParse(date);
+    private static Date parseDate(String date) {
+        return IsoDateParser.parse(date);
     }
 
     /**
@@ -298,8 +299,7 @@ public class Metadata
      * @param newValues the metadata values
      */
     protected void add(final String name, final String[] newValues) {
-        String[] values = metadata.get(name);
-        if (values == null) {
+        if (!metadata.containsKey(name)) {
             set(name, newValues);
         } else {
             for (String val : newValues) {
@@ -328,9 +328,7 @@ public class Metadata
                 }
             }
         } else {
-            String[] values = metadata.get(property.getName());
-
-            if (values == null) {
+            if (!metadata.containsKey(property.getName())) {
                 set(property, value);
             } else {
                 if (property.isMultiValuePermitted()) {
@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.metadata;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * Backing store of {@link Metadata}.
+ * <p>
+ * This is a <code>Map&lt;String, String[]&gt;</code>, so that it can be handed to a
+ * {@link org.apache.tika.metadata.writefilter.MetadataWriteFilter}, but the
+ * values are kept in arrays with spare capacity so that {@link #append(String, String)}
+ * takes amortized constant time instead of copying all earlier values. An
+ * array is trimmed to size at most once, on the first read after a write, and
+ * an array that has been handed out is never written to again, so it does not
+ * change. The first append after a read copies the values to an array of the
+ * exact size, so alternating appends and reads copy once per append, as a
+ * plain map of arrays would.
+ */
+class MetadataMap extends AbstractMap<String, String[]> implements Serializable {
+
+    private static final long serialVersionUID = -2722862468519416245L;
+
+    private final HashMap<String, Values> map = new HashMap<>();
+
+    private transient Set<Entry<String, String[]>> entrySet;
+
+    /**
+     * Adds a value to the end of the values of the given name.
+     *
+     * @param name  metadata name
+     * @param value value to add, must not be null
+     */
+    void append(String name, String value) {
+        Values values = map.get(name);
+        if (values == null) {
+            map.put(name, new Values(new String[]{value}));
+        } else {
+            values.append(value);
+        }
+    }
+
+    @Override
+    public String[] get(Object key) {
+        Values values = map.get(key);
+        return values == null ? null : values.toArray();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return map.containsKey(key);
+    }
+
+    @Override
+    public String[] put(String key, String[] value) {
+        Values old = map.put(key, new Values(value));
+        return old == null ? null : old.toArray();
+    }
+
+    @Override
+    public String[] remove(Object key) {
+        Values old = map.remove(key);
+        return old == null ? null : old.toArray();
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return map.keySet();
+    }
+
+    @Override
+    public Set<Entry<String, String[]>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    private class EntrySet extends AbstractSet<Entry<String, String[]>> {
+
+        @Override
+        public Iterator<Entry<String, String[]>> iterator() {
+            Iterator<Entry<String, Values>> it = map.entrySet().iterator();
+            return new Iterator<Entry<String, String[]>>() {
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public Entry<String, String[]> next() {
+                    Entry<String, Values> e = it.next();
+                    return new Entry<String, String[]>() {
+                        @Override
+                        public String getKey() {
+                            return e.getKey();
+                        }
+
+                        @Override
+                        public String[] getValue() {
+                            return e.getValue().toArray();
+                        }
+
+                        @Override
+                        public String[] setValue(String[] value) {
+                            return e.setValue(new Values(value)).toArray();
+                        }
+
+                        @Override
+                        public boolean equals(Object o) {
+                            if (!(o instanceof Entry)) {
+                                return false;
+                            }
+                            Entry<?, ?> other = (Entry<?, ?>) o;
+                            return getKey().equals(other.getKey()) &&
+                                    other.getValue() instanceof String[] &&
+                                    Arrays.equals(getValue(), (String[]) other.getValue());
+                        }
+
+                        @Override
+                        public int hashCode() {
+                            return getKey().hashCode() ^ Arrays.hashCode(getValue());
+                        }
+                    };
+                }
+
+                @Override
+                public void remove() {
+                    it.remove();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public void clear() {
+            map.clear();
+        }
+    }
+
+    private static class Values implements Serializable {
+
+        private static final long serialVersionUID = 6310466113357286601L;
+
+        private String[] values;
+
+        private int size;
+
+        //whether values has been handed out (or came from outside) and so
+        //must not be written to
+        private boolean shared;
+
+        Values(String[] values) {
+            this.values = values;
+            this.size = values == null ? 0 : values.length;
+            this.shared = true;
+        }
+
+        void append(String value) {
+            if (values == null) {
+                values = new String[4];
+                shared = false;
+            } else if (shared) {
+                //a reader has the current array; copy it once, to the exact
+                //size, so that the next read doesn't need to trim it
+                values = Arrays.copyOf(values, size + 1);
+                shared = false;
+            } else if (size == values.length) {
+                values = Arrays.copyOf(values, Math.max(4, size + (size >> 1)));
+            }
+            values[size++] = value;
+        }
+
+        String[] toArray() {
+            if (values != null && size < values.length) {
+                values = Arrays.copyOf(values, size);
+            }
+            shared = true;
+            return values;
+        }
+    }
+}
@@ -75,6 +75,34 @@ public interface TikaCoreProperties {
             Property.internalInteger(TIKA_META_PREFIX + "embedded_id");
 
     Property PARSE_TIME_MILLIS = Property.internalText(TIKA_META_PREFIX + "parse_time_millis");
+
+    /**
+     * Wall time of the parser of this document, not counting its embedded
+     * documents. This and the other parser stats are only recorded if there's
+     * a {@link org.apache.tika.parser.ParserStatsListener} in the ParseContext.
+     */
+    Property PARSER_WALL_TIME_MILLIS =
+            Property.internalText(TIKA_META_PREFIX + "parser_wall_time_millis");
+
+    /**
+     * CPU time of the parser of this document on the parsing thread, not
+     * counting its embedded documents.
+     */
+    Property PARSER_CPU_TIME_MILLIS =
+            Property.internalText(TIKA_META_PREFIX + "parser_cpu_time_millis");
+
+    /**
+     * Bytes allocated by the parser of this document on the parsing thread,
+     * not counting its embedded documents.
+     */
+    Property PARSER_ALLOCATED_BYTES =
+            Property.internalText(TIKA_META_PREFIX + "parser_allocated_bytes");
+
+    /**
+     * Bytes of this document that the parser read.
+     */
+    Property PARSER_BYTES_READ = Property.internalText(TIKA_META_PREFIX + "parser_bytes_read");
+
     /**
      * Simple class name of the content handler
      */
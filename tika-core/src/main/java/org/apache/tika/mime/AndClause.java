@@ -17,6 +17,7 @@
 package org.apache.tika.mime;
 
 import java.util.Arrays;
+import java.util.List;
 
 class AndClause implements Clause {
 
@@ -43,6 +44,10 @@ class AndClause implements Clause {
         return size;
     }
 
+    public List<MagicIndex.Anchor> getAnchors() {
+        return MagicIndex.all(Arrays.asList(clauses));
+    }
+
     public String toString() {
         return "and" + Arrays.toString(clauses);
     }
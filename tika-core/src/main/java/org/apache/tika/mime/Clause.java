@@ -17,6 +17,7 @@
 package org.apache.tika.mime;
 
 import java.io.Serializable;
+import java.util.List;
 
 /**
  * Defines a clause to be evaluated.
@@ -34,4 +35,11 @@ interface Clause extends Serializable {
      */
     int size();
 
+    /**
+     * Returns byte sequences at fixed offsets, at least one of which must be
+     * present for this clause to match, or <code>null</code> if there are no
+     * such sequences.  These are used to build the {@link MagicIndex}.
+     */
+    List<MagicIndex.Anchor> getAnchors();
+
 }
@@ -16,6 +16,8 @@
  */
 package org.apache.tika.mime;
 
+import java.util.List;
+
 /**
  * Defines a magic for a MimeType. A magic is made of one or several
  * MagicClause.
@@ -53,6 +55,10 @@ class Magic implements Clause, Comparable<Magic> {
         return clause.size();
     }
 
+    public List<MagicIndex.Anchor> getAnchors() {
+        return clause.getAnchors();
+    }
+
     public String toString() {
         return string;
     }
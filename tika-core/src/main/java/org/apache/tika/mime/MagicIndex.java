@@ -0,0 +1,250 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.mime;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An index over a sorted list of {@link Magic}s that finds, in a single pass
+ * over the header of a document, the magics that could possibly match it.
+ * <p>
+ * Most magics require an exact sequence of bytes at a fixed offset.  These
+ * sequences are compiled into one byte trie per offset.  A magic is a candidate
+ * if one of its sequences is found in the header, or if no such sequence could
+ * be derived from it, e.g. for regular expressions.  Only candidates need to be
+ * evaluated, and because a magic can't match unless it is a candidate, the
+ * results are identical to evaluating every magic.
+ * <p>
+ * Instances are immutable and safe to share across threads.
+ */
+class MagicIndex {
+
+    /**
+     * Offset ranges wider than this aren't indexed; their magics are always candidates.
+     */
+    static final int MAX_INDEXED_RANGE = 256;
+
+    private final Magic[] magics;
+    //bitset of the magics without anchors
+    private final long[] alwaysCandidates;
+    //non-null roots, and the offset of each root
+    private final Node[] roots;
+    private final int[] rootOffsets;
+
+    MagicIndex(List<Magic> magics) {
+        this.magics = magics.toArray(new Magic[0]);
+        this.alwaysCandidates = new long[(this.magics.length + 63) / 64];
+        Map<Integer, NodeBuilder> builders = new TreeMap<>();
+        for (int i = 0; i < this.magics.length; i++) {
+            List<Anchor> anchors = this.magics[i].getAnchors();
+            if (anchors == null || anchors.isEmpty()) {
+                set(alwaysCandidates, i);
+                continue;
+            }
+            for (Anchor anchor : anchors) {
+                NodeBuilder node = builders.computeIfAbsent(anchor.offset, k -> new NodeBuilder());
+                for (byte b : anchor.bytes) {
+                    node = node.children.computeIfAbsent(b, k -> new NodeBuilder());
+                }
+                node.magicIds.add(i);
+            }
+        }
+        this.roots = new Node[builders.size()];
+        this.rootOffsets = new int[builders.size()];
+        int i = 0;
+        for (Map.Entry<Integer, NodeBuilder> e : builders.entrySet()) {
+            rootOffsets[i] = e.getKey();
+            roots[i] = e.getValue().build();
+            i++;
+        }
+    }
+
+    int size() {
+        return magics.length;
+    }
+
+    Magic getMagic(int i) {
+        return magics[i];
+    }
+
+    /**
+     * @param data the header of a document
+     * @return bitset of the indices of the magics that could match <code>data</code>
+     * @see #nextCandidate(long[], int)
+     */
+    long[] getCandidates(byte[] data) {
+        long[] candidates = alwaysCandidates.clone();
+        for (int r = 0; r < roots.length; r++) {
+            Node node = roots[r];
+            //MagicDetector compares bytes beyond the end of the data as zeros
+            //in some cases, so pad with zeros; extra candidates are harmless
+            for (int p = rootOffsets[r]; node != null; p++) {
+                node = node.child(p < data.length ? data[p] : 0);
+                if (node != null) {
+                    for (int id : node.magicIds) {
+                        set(candidates, id);
+                    }
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * @return the index of the next candidate at or after <code>from</code>,
+     * or <code>-1</code> if there are no more candidates
+     */
+    static int nextCandidate(long[] candidates, int from) {
+        int w = from >> 6;
+        if (w >= candidates.length) {
+            return -1;
+        }
+        long word = candidates[w] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++w == candidates.length) {
+                return -1;
+            }
+            word = candidates[w];
+        }
+    }
+
+    private static void set(long[] bits, int i) {
+        bits[i >> 6] |= 1L << i;
+    }
+
+    /**
+     * A sequence of bytes that must be present at an offset.
+     */
+    static final class Anchor {
+        private final int offset;
+        private final byte[] bytes;
+
+        Anchor(int offset, byte[] bytes) {
+            this.offset = offset;
+            this.bytes = bytes;
+        }
+
+        int getOffset() {
+            return offset;
+        }
+
+        byte[] getBytes() {
+            return bytes;
+        }
+
+        int length() {
+            return bytes.length;
+        }
+    }
+
+    /**
+     * Picks the anchors of one of the clauses that all have to match: the clause
+     * with the fewest anchors, and then the one with the longest shortest anchor.
+     *
+     * @return <code>null</code> if none of the clauses have anchors
+     */
+    static List<Anchor> all(Iterable<Clause> clauses) {
+        List<Anchor> best = null;
+        for (Clause clause : clauses) {
+            List<Anchor> anchors = clause.getAnchors();
+            if (anchors == null || anchors.isEmpty()) {
+                continue;
+            }
+            if (best == null || anchors.size() < best.size() ||
+                    (anchors.size() == best.size() && minLength(anchors) > minLength(best))) {
+                best = anchors;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Combines the anchors of clauses of which any may match.
+     *
+     * @return <code>null</code> if any of the clauses has no anchors
+     */
+    static List<Anchor> any(Iterable<Clause> clauses) {
+        List<Anchor> union = new ArrayList<>();
+        for (Clause clause : clauses) {
+            List<Anchor> anchors = clause.getAnchors();
+            if (anchors == null || anchors.isEmpty()) {
+                return null;
+            }
+            union.addAll(anchors);
+        }
+        return union;
+    }
+
+    private static int minLength(List<Anchor> anchors) {
+        int min = Integer.MAX_VALUE;
+        for (Anchor anchor : anchors) {
+            min = Math.min(min, anchor.length());
+        }
+        return min;
+    }
+
+    private static final class Node {
+        private static final int[] NO_MAGICS = new int[0];
+
+        //sorted
+        private final byte[] keys;
+        private final Node[] children;
+        private final int[] magicIds;
+
+        private Node(byte[] keys, Node[] children, int[] magicIds) {
+            this.keys = keys;
+            this.children = children;
+            this.magicIds = magicIds;
+        }
+
+        private Node child(byte b) {
+            int i = Arrays.binarySearch(keys, b);
+            return i < 0 ? null : children[i];
+        }
+    }
+
+    private static final class NodeBuilder {
+        private final TreeMap<Byte, NodeBuilder> children = new TreeMap<>();
+        private final List<Integer> magicIds = new ArrayList<>();
+
+        private Node build() {
+            byte[] keys = new byte[children.size()];
+            Node[] nodes = new Node[children.size()];
+            int i = 0;
+            for (Map.Entry<Byte, NodeBuilder> e : children.entrySet()) {
+                keys[i] = e.getKey();
+                nodes[i] = e.getValue().build();
+                i++;
+            }
+            int[] ids = Node.NO_MAGICS;
+            if (!magicIds.isEmpty()) {
+                ids = new int[magicIds.size()];
+                for (int j = 0; j < ids.length; j++) {
+                    ids[j] = magicIds.get(j);
+                }
+            }
+            return new Node(keys, nodes, ids);
+        }
+    }
+}
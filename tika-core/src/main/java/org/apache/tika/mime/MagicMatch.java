@@ -16,15 +16,17 @@
  */
 package org.apache.tika.mime;
 
-import java.io.IOException;
-
-import org.apache.commons.io.input.UnsynchronizedByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.tika.detect.MagicDetector;
-import org.apache.tika.metadata.Metadata;
 
 /**
  * Defines a magic match.
+ * <p>
+ * The detector is built when the match is created, i.e. when the
+ * {@link MimeTypesReader} loads the registry, so that evaluation doesn't
+ * need any locking.
  */
 class MagicMatch implements Clause {
 
@@ -38,7 +40,7 @@ class MagicMatch implements Clause {
 
     private final String mask;
 
-    private MagicDetector detector = null;
+    private final transient MagicDetector detector;
 
     MagicMatch(MediaType mediaType, String type, String offset, String value, String mask) {
         this.mediaType = mediaType;
@@ -46,27 +48,36 @@ class MagicMatch implements Clause {
         this.offset = offset;
         this.value = value;
         this.mask = mask;
+        this.detector = MagicDetector.parse(mediaType, type, offset, value, mask);
     }
 
-    private synchronized MagicDetector getDetector() {
-        if (detector == null) {
-            detector = MagicDetector.parse(mediaType, type, offset, value, mask);
-        }
-        return detector;
+    /**
+     * The detector isn't serializable, so rebuild it after deserialization
+     */
+    private Object readResolve() {
+        return new MagicMatch(mediaType, type, offset, value, mask);
     }
 
     public boolean eval(byte[] data) {
-        try {
-            return getDetector().detect(new UnsynchronizedByteArrayInputStream(data), new Metadata()) !=
-                    MediaType.OCTET_STREAM;
-        } catch (IOException e) {
-            // Should never happen with a ByteArrayInputStream
-            return false;
-        }
+        return detector.matches(data);
     }
 
     public int size() {
-        return getDetector().getLength();
+        return detector.getLength();
+    }
+
+    public List<MagicIndex.Anchor> getAnchors() {
+        byte[] prefix = detector.getExactPrefix();
+        int begin = detector.getOffsetRangeBegin();
+        int end = detector.getOffsetRangeEnd();
+        if (prefix.length == 0 || end - begin >= MagicIndex.MAX_INDEXED_RANGE) {
+            return null;
+        }
+        List<MagicIndex.Anchor> anchors = new ArrayList<>(end - begin + 1);
+        for (int offset = begin; offset <= end; offset++) {
+            anchors.add(new MagicIndex.Anchor(offset, prefix));
+        }
+        return anchors;
     }
 
     public String toString() {
@@ -109,6 +109,10 @@ public final class MimeTypes implements Detector, Serializable {
      * Sorted list of all registered magics
      */
     private final List<Magic> magics = new ArrayList<>();
+    /**
+     * Index over the sorted magics, built by {@link #init()}
+     */
+    private transient volatile MagicIndex magicIndex;
     /**
      * Sorted list of all registered rootXML
      */
@@ -228,9 +232,14 @@ public final class MimeTypes implements Detector, Serializable {
         }
 
         // Then, check for magic bytes
+        // Only the magics that the index can't rule out need to be evaluated
+        MagicIndex index = getMagicIndex();
+        long[] candidates = index.getCandidates(data);
         List<MimeType> result = new ArrayList<>(1);
         int currentPriority = -1;
-        for (Magic magic : magics) {
+        for (int m = MagicIndex.nextCandidate(candidates, 0); m >= 0;
+                m = MagicIndex.nextCandidate(candidates, m + 1)) {
+            Magic magic = index.getMagic(m);
             if (currentPriority > 0 && currentPriority > magic.getPriority()) {
                 break;
             }
@@ -477,6 +486,7 @@ public final class MimeTypes implements Detector, Serializable {
         // Update the magics index...
         if (type.hasMagic()) {
             magics.addAll(type.getMagics());
+            magicIndex = null;
         }
 
         // Update the xml (xmlRoot) index...
@@ -498,6 +508,17 @@ public final class MimeTypes implements Detector, Serializable {
         }
         Collections.sort(magics);
         Collections.sort(xmls);
+        magicIndex = new MagicIndex(magics);
+    }
+
+    private MagicIndex getMagicIndex() {
+        MagicIndex index = magicIndex;
+        if (index == null) {
+            //not initialized yet or deserialized; building it twice is harmless
+            index = new MagicIndex(magics);
+            magicIndex = index;
+        }
+        return index;
     }
 
     /**
@@ -534,19 +555,24 @@ public final class MimeTypes implements Detector, Serializable {
             boolean isHttp = false;
 
             // Deal with a URI or a path name in as the resource  name
-            try {
-                URI uri = new URI(resourceName);
-                String scheme = uri.getScheme();
-                isHttp = scheme != null && scheme.startsWith("http"); // http or https
-                String path = uri.getPath();
-                if (path != null) {
-                    int slash = path.lastIndexOf('/');
-                    if (slash + 1 < path.length()) {
-                        name = path.substring(slash + 1);
+            if (isPlainName(resourceName)) {
+                // the common case; parsing it as a URI would return it as is
+                name = resourceName;
+            } else {
+                try {
+                    URI uri = new URI(resourceName);
+                    String scheme = uri.getScheme();
+                    isHttp = scheme != null && scheme.startsWith("http"); // http or https
+                    String path = uri.getPath();
+                    if (path != null) {
+                        int slash = path.lastIndexOf('/');
+                        if (slash + 1 < path.length()) {
+                            name = path.substring(slash + 1);
+                        }
                     }
+                } catch (URISyntaxException e) {
+                    name = resourceName;
                 }
-            } catch (URISyntaxException e) {
-                name = resourceName;
             }
 
             if (name != null) {
@@ -582,6 +608,29 @@ public final class MimeTypes implements Detector, Serializable {
         }
     }
 
+    /**
+     * Whether the resource name has no scheme, path, query, fragment or escapes,
+     * in which case it is the file name whether or not it is a valid URI.
+     */
+    private static boolean isPlainName(String resourceName) {
+        if (resourceName.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < resourceName.length(); i++) {
+            switch (resourceName.charAt(i)) {
+                case ':':
+                case '/':
+                case '?':
+                case '#':
+                case '%':
+                    return false;
+                default:
+                    break;
+            }
+        }
+        return true;
+    }
+
     /**
      * Use the MimeType hint to try to clarify or specialise the current
      * possible types list.
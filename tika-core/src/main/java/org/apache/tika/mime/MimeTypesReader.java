@@ -398,6 +398,11 @@ public class MimeTypesReader extends DefaultHandler implements MimeTypesReaderMe
         public int size() {
             return 0;
         }
+
+        @Override
+        public List<MagicIndex.Anchor> getAnchors() {
+            return null;
+        }
     }
 
     private class ClauseRecord {
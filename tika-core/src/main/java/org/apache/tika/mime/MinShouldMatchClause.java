@@ -69,6 +69,11 @@ class MinShouldMatchClause implements Clause {
         return size;
     }
 
+    public List<MagicIndex.Anchor> getAnchors() {
+        //whichever clauses match, at least one of them has to
+        return MagicIndex.any(clauses);
+    }
+
     public String toString() {
         return "minShouldMatch (min: " + min + ") " + clauses;
     }
@@ -43,6 +43,10 @@ class OrClause implements Clause {
         return size;
     }
 
+    public List<MagicIndex.Anchor> getAnchors() {
+        return MagicIndex.any(clauses);
+    }
+
     public String toString() {
         return "or" + clauses;
     }
@@ -17,11 +17,15 @@
 package org.apache.tika.mime;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.regex.Pattern;
 
 /**
  * Defines a MimeType pattern.
@@ -49,8 +53,15 @@ class Patterns implements Serializable {
      */
     private final SortedMap<String, MimeType> globs =
             new TreeMap<>(new LengthComparator());
-    private int minExtensionLength = Integer.MAX_VALUE;
-    private int maxExtensionLength = 0;
+    /**
+     * Literal prefixes of the generic glob patterns, keyed by the compiled pattern.
+     */
+    private final Map<String, String> globPrefixes = new HashMap<>();
+    /**
+     * Compiled form of the extension and glob patterns; built on demand
+     * and discarded whenever a pattern is added.
+     */
+    private transient volatile Index index;
 
     public Patterns(MediaTypeRegistry registry) {
         this.registry = registry;
@@ -68,7 +79,7 @@ class Patterns implements Serializable {
         if (isJavaRegex) {
             // in this case, we don't need to build a regex pattern
             // it's already there for us, so just add the pattern as is
-            addGlob(pattern, type);
+            addGlob(pattern, "", type);
         } else {
 
             if (pattern.indexOf('*') == -1 && pattern.indexOf('?') == -1 &&
@@ -80,7 +91,7 @@ class Patterns implements Serializable {
                 addExtension(extension, type);
                 type.addExtension(extension);
             } else {
-                addGlob(compile(pattern), type);
+                addGlob(compile(pattern), literalPrefix(pattern), type);
             }
         }
     }
@@ -101,9 +112,7 @@ class Patterns implements Serializable {
         MimeType previous = extensions.get(extension);
         if (previous == null || registry.isSpecializationOf(previous.getType(), type.getType())) {
             extensions.put(extension, type);
-            int length = extension.length();
-            minExtensionLength = Math.min(minExtensionLength, length);
-            maxExtensionLength = Math.max(maxExtensionLength, length);
+            index = null;
         } else if (previous == type ||
                 registry.isSpecializationOf(type.getType(), previous.getType())) {
             // do nothing
@@ -112,10 +121,13 @@ class Patterns implements Serializable {
         }
     }
 
-    private void addGlob(String glob, MimeType type) throws MimeTypeException {
+    private void addGlob(String glob, String literalPrefix, MimeType type)
+            throws MimeTypeException {
         MimeType previous = globs.get(glob);
         if (previous == null || registry.isSpecializationOf(previous.getType(), type.getType())) {
             globs.put(glob, type);
+            globPrefixes.put(glob, literalPrefix);
+            index = null;
         } else if (previous == type ||
                 registry.isSpecializationOf(type.getType(), previous.getType())) {
             // do nothing
@@ -144,27 +156,44 @@ class Patterns implements Serializable {
         }
 
         // First, try exact match of the provided resource name
-        if (names.containsKey(name)) {
-            return names.get(name);
+        MimeType type = names.get(name);
+        if (type != null) {
+            return type;
         }
 
+        Index index = getIndex();
+
         // Then try "extension" (*.xxx) matching
-        int maxLength = Math.min(maxExtensionLength, name.length());
-        for (int n = maxLength; n >= minExtensionLength; n--) {
-            String extension = name.substring(name.length() - n);
-            if (extensions.containsKey(extension)) {
-                return extensions.get(extension);
-            }
+        type = index.matchExtension(name);
+        if (type != null) {
+            return type;
         }
 
         // And finally, try complex regexp matching
-        for (Map.Entry<String, MimeType> entry : globs.entrySet()) {
-            if (name.matches(entry.getKey())) {
-                return entry.getValue();
-            }
+        return index.matchGlob(name);
+    }
+
+    private Index getIndex() {
+        Index current = index;
+        if (current == null) {
+            //building it twice in a race is harmless
+            current = new Index(extensions, globs, globPrefixes);
+            index = current;
         }
+        return current;
+    }
 
-        return null;
+    /**
+     * @return the characters before the first wildcard in the glob
+     */
+    private static String literalPrefix(String glob) {
+        for (int i = 0; i < glob.length(); i++) {
+            char ch = glob.charAt(i);
+            if (ch == '*' || ch == '?' || ch == '[') {
+                return glob.substring(0, i);
+            }
+        }
+        return glob;
     }
 
     private String compile(String glob) {
@@ -204,4 +233,148 @@ class Patterns implements Serializable {
 
     }
 
+    /**
+     * Immutable index over the extension and glob patterns.  Extensions
+     * are looked up in a trie over their reversed characters; globs are
+     * compiled once and bucketed by the first character of their literal prefix.
+     */
+    private static final class Index {
+
+        private static final int[] NO_GLOBS = new int[0];
+
+        private final CharNode extensionRoot;
+        //in the order of the sorted globs
+        private final Pattern[] globPatterns;
+        private final String[] globPrefixes;
+        private final MimeType[] globTypes;
+        private final Map<Character, int[]> globBuckets = new HashMap<>();
+        //globs without a literal prefix, which are candidates for every name
+        private final int[] unbucketedGlobs;
+
+        private Index(Map<String, MimeType> extensions, SortedMap<String, MimeType> globs,
+                      Map<String, String> prefixes) {
+            CharNodeBuilder root = new CharNodeBuilder();
+            for (Map.Entry<String, MimeType> e : extensions.entrySet()) {
+                String extension = e.getKey();
+                CharNodeBuilder node = root;
+                for (int i = extension.length() - 1; i >= 0; i--) {
+                    node = node.children.computeIfAbsent(extension.charAt(i),
+                            k -> new CharNodeBuilder());
+                }
+                node.type = e.getValue();
+            }
+            extensionRoot = root.build();
+
+            int size = globs.size();
+            globPatterns = new Pattern[size];
+            globPrefixes = new String[size];
+            globTypes = new MimeType[size];
+            Map<Character, List<Integer>> buckets = new HashMap<>();
+            List<Integer> unbucketed = new ArrayList<>();
+            int i = 0;
+            for (Map.Entry<String, MimeType> e : globs.entrySet()) {
+                globPatterns[i] = Pattern.compile(e.getKey());
+                String prefix = prefixes.get(e.getKey());
+                globPrefixes[i] = prefix == null ? "" : prefix;
+                globTypes[i] = e.getValue();
+                if (globPrefixes[i].isEmpty()) {
+                    unbucketed.add(i);
+                } else {
+                    buckets.computeIfAbsent(globPrefixes[i].charAt(0), k -> new ArrayList<>())
+                            .add(i);
+                }
+                i++;
+            }
+            for (Map.Entry<Character, List<Integer>> e : buckets.entrySet()) {
+                globBuckets.put(e.getKey(), toArray(e.getValue()));
+            }
+            unbucketedGlobs = toArray(unbucketed);
+        }
+
+        /**
+         * @return the type of the longest extension that the name ends with
+         */
+        private MimeType matchExtension(String name) {
+            //a "*" pattern is an empty extension
+            MimeType longest = extensionRoot.type;
+            CharNode node = extensionRoot;
+            for (int i = name.length() - 1; i >= 0; i--) {
+                node = node.child(name.charAt(i));
+                if (node == null) {
+                    break;
+                }
+                if (node.type != null) {
+                    longest = node.type;
+                }
+            }
+            return longest;
+        }
+
+        /**
+         * @return the type of the first glob, in sorted order, that matches the name
+         */
+        private MimeType matchGlob(String name) {
+            int[] bucket = name.isEmpty() ? NO_GLOBS :
+                    globBuckets.getOrDefault(name.charAt(0), NO_GLOBS);
+            //merge the bucket with the unbucketed globs to keep the sort order
+            int b = 0;
+            int u = 0;
+            while (b < bucket.length || u < unbucketedGlobs.length) {
+                int g;
+                if (u >= unbucketedGlobs.length ||
+                        (b < bucket.length && bucket[b] < unbucketedGlobs[u])) {
+                    g = bucket[b++];
+                } else {
+                    g = unbucketedGlobs[u++];
+                }
+                if (name.startsWith(globPrefixes[g]) && globPatterns[g].matcher(name).matches()) {
+                    return globTypes[g];
+                }
+            }
+            return null;
+        }
+
+        private static int[] toArray(List<Integer> list) {
+            int[] array = new int[list.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = list.get(i);
+            }
+            return array;
+        }
+    }
+
+    private static final class CharNode {
+        //sorted
+        private final char[] keys;
+        private final CharNode[] children;
+        private final MimeType type;
+
+        private CharNode(char[] keys, CharNode[] children, MimeType type) {
+            this.keys = keys;
+            this.children = children;
+            this.type = type;
+        }
+
+        private CharNode child(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            return i < 0 ? null : children[i];
+        }
+    }
+
+    private static final class CharNodeBuilder {
+        private final TreeMap<Character, CharNodeBuilder> children = new TreeMap<>();
+        private MimeType type;
+
+        private CharNode build() {
+            char[] keys = new char[children.size()];
+            CharNode[] nodes = new CharNode[children.size()];
+            int i = 0;
+            for (Map.Entry<Character, CharNodeBuilder> e : children.entrySet()) {
+                keys[i] = e.getKey();
+                nodes[i] = e.getValue().build();
+                i++;
+            }
+            return new CharNode(keys, nodes, type);
+        }
+    }
 }
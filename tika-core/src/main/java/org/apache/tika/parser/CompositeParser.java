@@ -294,8 +294,16 @@ public class CompositeParser extends AbstractParser {
             parserRecord.addParserClass(parserClassname);
             ParserUtils.recordParserDetails(parserClassname, metadata);
             parserRecord.beforeParse();
+            //only the parser that does the work is measured, not the composites on the way
+            ParserStatsTracker tracker =
+                    isComposite(parser) ? null : ParserStatsTracker.get(context);
+            boolean exception = true;
+            if (tracker != null) {
+                tracker.start();
+            }
             try {
                 parser.parse(taggedStream, taggedHandler, metadata, context);
+                exception = false;
             } catch (SecurityException e) {
                 //rethrow security exceptions
                 throw e;
@@ -310,6 +318,10 @@ public class CompositeParser extends AbstractParser {
                 throw new TikaException("TIKA-237: Illegal SAXException from " + parser, e);
             } catch (RuntimeException e) {
                 throw new TikaException("Unexpected RuntimeException from " + parser, e);
+            } finally {
+                if (tracker != null) {
+                    tracker.end(parserClassname, taggedStream, metadata, exception);
+                }
             }
         } finally {
             tmp.dispose();
@@ -321,6 +333,13 @@ public class CompositeParser extends AbstractParser {
         }
     }
 
+    private static boolean isComposite(Parser parser) {
+        while (parser instanceof ParserDecorator) {
+            parser = ((ParserDecorator) parser).getWrappedParser();
+        }
+        return parser instanceof CompositeParser;
+    }
+
     private void recordEmbeddedMetadata(Metadata metadata, ParseContext context) {
         ParseRecord record = context.get(ParseRecord.class);
         if (record == null) {
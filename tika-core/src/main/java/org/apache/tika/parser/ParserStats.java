@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.parser;
+
+/**
+ * Measurements of one call to a parser by the {@link CompositeParser}.
+ * <p>
+ * Times and allocations are "self" values: those of the embedded documents
+ * that the parser handed off are subtracted. CPU time and allocations are
+ * those of the calling thread, so work that a parser does on other threads
+ * isn't counted; they are -1 if the jvm can't measure them.
+ */
+public class ParserStats {
+
+    private final String parserClass;
+    private final int embeddedDepth;
+    private final long wallNanos;
+    private final long cpuNanos;
+    private final long allocatedBytes;
+    private final long bytesRead;
+    private final long length;
+    private final boolean exception;
+
+    public ParserStats(String parserClass, int embeddedDepth, long wallNanos, long cpuNanos,
+                       long allocatedBytes, long bytesRead, long length,
+                       boolean exception) {
+        this.parserClass = parserClass;
+        this.embeddedDepth = embeddedDepth;
+        this.wallNanos = wallNanos;
+        this.cpuNanos = cpuNanos;
+        this.allocatedBytes = allocatedBytes;
+        this.bytesRead = bytesRead;
+        this.length = length;
+        this.exception = exception;
+    }
+
+    public String getParserClass() {
+        return parserClass;
+    }
+
+    /**
+     * @return 0 for the container document, 1 for its attachments and so on
+     */
+    public int getEmbeddedDepth() {
+        return embeddedDepth;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * @return bytes of the document that the parser read from the stream. A
+     * parser that works on the file that the stream was spooled to doesn't
+     * read from the stream, see {@link #getLength()}.
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return length of the document, or -1 if it isn't known
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * @return whether the parser threw an exception
+     */
+    public boolean isException() {
+        return exception;
+    }
+
+    @Override
+    public String toString() {
+        return "ParserStats{" + "parserClass='" + parserClass + '\'' + ", embeddedDepth=" +
+                embeddedDepth + ", wallNanos=" + wallNanos + ", cpuNanos=" + cpuNanos +
+                ", allocatedBytes=" + allocatedBytes + ", bytesRead=" + bytesRead +
+                ", length=" + length + ", exception=" + exception + '}';
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.parser;
+
+/**
+ * Set this in the {@link ParseContext} to have the {@link CompositeParser}
+ * measure every parser that it calls, e.g. to find out which parser in the
+ * tree is slow, including for embedded documents. Without a listener, nothing
+ * is measured.
+ * <p>
+ * The listener is called once per document, with the stats of the parser that
+ * did the work, i.e. not for the composite parsers that delegated to it. The
+ * stats are also added to the document's metadata, see
+ * {@link org.apache.tika.metadata.TikaCoreProperties#PARSER_WALL_TIME_MILLIS}.
+ * <p>
+ * Listeners must be thread safe if they are shared between parses.
+ *
+ * @since Apache Tika 2.6.1
+ */
+public interface ParserStatsListener {
+
+    void onParse(ParserStats stats);
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.parser;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+
+/**
+ * Keeps the stack of parser calls for the {@link ParserStatsListener} during
+ * one parse, so that the time of an embedded document can be subtracted
+ * from its container's.
+ */
+class ParserStatsTracker {
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    //com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long), if available
+    private static final Method GET_ALLOCATED_BYTES = getAllocatedBytesMethod();
+
+    private final ParserStatsListener listener;
+    private final Deque<Frame> frames = new ArrayDeque<>();
+
+    ParserStatsTracker(ParserStatsListener listener) {
+        this.listener = listener;
+    }
+
+    static ParserStatsTracker get(ParseContext context) {
+        ParserStatsListener listener = context.get(ParserStatsListener.class);
+        if (listener == null) {
+            return null;
+        }
+        ParserStatsTracker tracker = context.get(ParserStatsTracker.class);
+        if (tracker == null || tracker.listener != listener) {
+            tracker = new ParserStatsTracker(listener);
+            context.set(ParserStatsTracker.class, tracker);
+        }
+        return tracker;
+    }
+
+    void start() {
+        frames.push(new Frame(System.nanoTime(), getCpuNanos(), getAllocatedBytes()));
+    }
+
+    void end(String parserClass, TikaInputStream tis, Metadata metadata, boolean exception) {
+        Frame frame = frames.pop();
+        long wall = System.nanoTime() - frame.wall;
+        long cpu = frame.cpu < 0 ? -1 : getCpuNanos() - frame.cpu;
+        long allocated = frame.allocated < 0 ? -1 : getAllocatedBytes() - frame.allocated;
+        Frame parent = frames.peek();
+        if (parent != null) {
+            parent.childWall += wall;
+            parent.childCpu += Math.max(0, cpu);
+            parent.childAllocated += Math.max(0, allocated);
+        }
+        long bytesRead = tis.getPosition();
+        long length = -1;
+        if (tis.hasLength()) {
+            try {
+                length = tis.getLength();
+            } catch (IOException e) {
+                //can't happen if it has a length
+            }
+        }
+        ParserStats stats = new ParserStats(parserClass, frames.size(), wall - frame.childWall,
+                cpu < 0 ? -1 : cpu - frame.childCpu,
+                allocated < 0 ? -1 : allocated - frame.childAllocated, bytesRead, length,
+                exception);
+
+        metadata.set(TikaCoreProperties.PARSER_WALL_TIME_MILLIS,
+                Long.toString(stats.getWallNanos() / 1_000_000));
+        if (stats.getCpuNanos() >= 0) {
+            metadata.set(TikaCoreProperties.PARSER_CPU_TIME_MILLIS,
+                    Long.toString(stats.getCpuNanos() / 1_000_000));
+        }
+        if (stats.getAllocatedBytes() >= 0) {
+            metadata.set(TikaCoreProperties.PARSER_ALLOCATED_BYTES,
+                    Long.toString(stats.getAllocatedBytes()));
+        }
+        metadata.set(TikaCoreProperties.PARSER_BYTES_READ, Long.toString(bytesRead));
+        listener.onParse(stats);
+    }
+
+    private static long getCpuNanos() {
+        if (!THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported()) {
+            return -1;
+        }
+        return THREAD_MX_BEAN.getCurrentThreadCpuTime();
+    }
+
+    private static long getAllocatedBytes() {
+        if (GET_ALLOCATED_BYTES == null) {
+            return -1;
+        }
+        try {
+            return (Long) GET_ALLOCATED_BYTES.invoke(THREAD_MX_BEAN,
+                    Thread.currentThread().getId());
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private static Method getAllocatedBytesMethod() {
+        try {
+            Class<?> clazz = Class.forName("com.sun.management.ThreadMXBean");
+            if (!clazz.isInstance(THREAD_MX_BEAN)) {
+                return null;
+            }
+            Method method = clazz.getMethod("getThreadAllocatedBytes", long.class);
+            //-1 if allocated memory measurement isn't supported or is disabled
+            if ((Long) method.invoke(THREAD_MX_BEAN, Thread.currentThread().getId()) < 0) {
+                return null;
+            }
+            return method;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static class Frame {
+        private final long wall;
+        private final long cpu;
+        private final long allocated;
+        private long childWall = 0;
+        private long childCpu = 0;
+        private long childAllocated = 0;
+
+        private Frame(long wall, long cpu, long allocated) {
+            this.wall = wall;
+            this.cpu = cpu;
+            this.allocated = allocated;
+        }
+    }
+}
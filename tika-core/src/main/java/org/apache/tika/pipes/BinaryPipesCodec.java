@@ -0,0 +1,396 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.pipes;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.commons.io.output.UnsynchronizedByteArrayOutputStream;
+
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.pipes.emitter.EmitData;
+import org.apache.tika.pipes.emitter.EmitKey;
+import org.apache.tika.pipes.fetcher.FetchKey;
+import org.apache.tika.sax.BasicContentHandlerFactory;
+
+/**
+ * Compact binary codec for the pipes protocol.
+ * <p>
+ * Strings are written as a varint length followed by UTF-8 bytes, counts and
+ * numbers are written as (zig-zag) varints and enums are written by ordinal.
+ * Both processes run off the same classpath, so the layout is fixed and
+ * there is no field tagging.
+ * <p>
+ * If <code>compressContent</code> is true, values of
+ * {@link TikaCoreProperties#TIKA_CONTENT} longer than {@link #MIN_BYTES_TO_COMPRESS}
+ * are deflated.  The JDK's deflater is used so that tika-core doesn't pick up
+ * a dependency on a native compression library.
+ */
+public class BinaryPipesCodec implements PipesCodec {
+
+    public static final int MIN_BYTES_TO_COMPRESS = 8192;
+
+    private static final byte VERSION = 2;
+
+    private static final String CONTENT_KEY = TikaCoreProperties.TIKA_CONTENT.getName();
+
+    private static final byte RAW = 0;
+
+    private static final byte DEFLATED = 1;
+
+    private final boolean compressContent;
+
+    public BinaryPipesCodec() {
+        this(false);
+    }
+
+    public BinaryPipesCodec(boolean compressContent) {
+        this.compressContent = compressContent;
+    }
+
+    @Override
+    public String getName() {
+        return compressContent ? BINARY_DEFLATE : BINARY;
+    }
+
+    @Override
+    public byte[] serialize(FetchEmitTuple t) throws IOException {
+        UnsynchronizedByteArrayOutputStream bos = new UnsynchronizedByteArrayOutputStream();
+        bos.write(VERSION);
+        writeString(t.getId(), bos);
+        FetchKey fetchKey = t.getFetchKey();
+        writeString(fetchKey.getFetcherName(), bos);
+        writeString(fetchKey.getFetchKey(), bos);
+        writeVarLong(zigZag(fetchKey.getRangeStart()), bos);
+        writeVarLong(zigZag(fetchKey.getRangeEnd()), bos);
+        writeEmitKey(t.getEmitKey(), bos);
+        writeMetadata(t.getMetadata(), bos);
+        writeMetadata(t.getFetchMetadata(), bos);
+        HandlerConfig handlerConfig = t.getHandlerConfig();
+        bos.write(handlerConfig.getType().ordinal());
+        bos.write(handlerConfig.getParseMode().ordinal());
+        writeVarLong(zigZag(handlerConfig.getWriteLimit()), bos);
+        writeVarLong(zigZag(handlerConfig.getMaxEmbeddedResources()), bos);
+        bos.write(handlerConfig.isThrowOnWriteLimitReached() ? 1 : 0);
+        bos.write(t.getOnParseException().ordinal());
+        return bos.toByteArray();
+    }
+
+    @Override
+    public FetchEmitTuple deserializeFetchEmitTuple(byte[] bytes) throws IOException {
+        Reader reader = new Reader(ByteBuffer.wrap(bytes));
+        reader.checkVersion();
+        String id = reader.readString();
+        String fetcherName = reader.readString();
+        String fetchKey = reader.readString();
+        long rangeStart = unZigZag(reader.readVarLong());
+        long rangeEnd = unZigZag(reader.readVarLong());
+        EmitKey emitKey = reader.readEmitKey();
+        Metadata metadata = reader.readMetadata();
+        Metadata fetchMetadata = reader.readMetadata();
+        BasicContentHandlerFactory.HANDLER_TYPE type =
+                reader.readEnum(BasicContentHandlerFactory.HANDLER_TYPE.values());
+        HandlerConfig.PARSE_MODE parseMode = reader.readEnum(HandlerConfig.PARSE_MODE.values());
+        int writeLimit = (int) unZigZag(reader.readVarLong());
+        int maxEmbedded = (int) unZigZag(reader.readVarLong());
+        boolean throwOnWriteLimit = reader.readByte() == 1;
+        FetchEmitTuple.ON_PARSE_EXCEPTION onParseException =
+                reader.readEnum(FetchEmitTuple.ON_PARSE_EXCEPTION.values());
+        return new FetchEmitTuple(id, new FetchKey(fetcherName, fetchKey, rangeStart, rangeEnd),
+                emitKey, metadata,
+                new HandlerConfig(type, parseMode, writeLimit, maxEmbedded, throwOnWriteLimit),
+                onParseException, fetchMetadata);
+    }
+
+    @Override
+    public byte[] serialize(EmitData emitData) throws IOException {
+        UnsynchronizedByteArrayOutputStream bos = new UnsynchronizedByteArrayOutputStream();
+        bos.write(VERSION);
+        writeEmitKey(emitData.getEmitKey(), bos);
+        List<Metadata> metadataList = emitData.getMetadataList();
+        writeVarLong(metadataList.size(), bos);
+        for (Metadata m : metadataList) {
+            writeMetadata(m, bos);
+        }
+        writeString(emitData.getContainerStackTrace(), bos);
+        return bos.toByteArray();
+    }
+
+    @Override
+    public EmitData deserializeEmitData(byte[] bytes) throws IOException {
+        return deserializeEmitData(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Reads directly from the buffer (e.g. a memory mapped file) without
+     * first copying the full buffer to the heap.
+     */
+    @Override
+    public EmitData deserializeEmitData(ByteBuffer buffer) throws IOException {
+        Reader reader = new Reader(buffer);
+        reader.checkVersion();
+        EmitKey emitKey = reader.readEmitKey();
+        int size = reader.readCount();
+        List<Metadata> metadataList = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            metadataList.add(reader.readMetadata());
+        }
+        String stack = reader.readString();
+        return new EmitData(emitKey, metadataList, stack);
+    }
+
+    private void writeEmitKey(EmitKey emitKey, UnsynchronizedByteArrayOutputStream bos) {
+        if (emitKey == null) {
+            bos.write(0);
+            return;
+        }
+        bos.write(1);
+        writeString(emitKey.getEmitterName(), bos);
+        writeString(emitKey.getEmitKey(), bos);
+    }
+
+    private void writeMetadata(Metadata metadata, UnsynchronizedByteArrayOutputStream bos) {
+        String[] names = metadata.names();
+        writeVarLong(names.length, bos);
+        for (String n : names) {
+            writeString(n, bos);
+            String[] values = metadata.getValues(n);
+            writeVarLong(values.length, bos);
+            boolean isContent = CONTENT_KEY.equals(n);
+            for (String v : values) {
+                if (isContent) {
+                    writeContent(v, bos);
+                } else {
+                    writeString(v, bos);
+                }
+            }
+        }
+    }
+
+    private void writeContent(String content, UnsynchronizedByteArrayOutputStream bos) {
+        if (!compressContent || content == null) {
+            bos.write(RAW);
+            writeString(content, bos);
+            return;
+        }
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length < MIN_BYTES_TO_COMPRESS) {
+            bos.write(RAW);
+            writeBytes(bytes, bos);
+            return;
+        }
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            UnsynchronizedByteArrayOutputStream compressed =
+                    new UnsynchronizedByteArrayOutputStream(bytes.length / 4);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int len = deflater.deflate(buffer);
+                compressed.write(buffer, 0, len);
+            }
+            bos.write(DEFLATED);
+            writeVarLong(bytes.length, bos);
+            writeVarLong(compressed.size(), bos);
+            compressed.writeTo(bos);
+        } catch (IOException e) {
+            //can't happen with a byte array output stream
+            throw new IllegalStateException(e);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void writeString(String s, UnsynchronizedByteArrayOutputStream bos) {
+        if (s == null) {
+            bos.write(0);
+            return;
+        }
+        writeBytes(s.getBytes(StandardCharsets.UTF_8), bos);
+    }
+
+    //length + 1 so that 0 can mark null
+    private static void writeBytes(byte[] bytes, UnsynchronizedByteArrayOutputStream bos) {
+        writeVarLong(bytes.length + 1L, bos);
+        bos.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeVarLong(long v, UnsynchronizedByteArrayOutputStream bos) {
+        while ((v & ~0x7FL) != 0) {
+            bos.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        bos.write((int) v);
+    }
+
+    private static long zigZag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unZigZag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static class Reader {
+        private final ByteBuffer buffer;
+
+        Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        void checkVersion() throws IOException {
+            int version = readByte();
+            if (version != VERSION) {
+                throw new IOException("unsupported binary pipes codec version: " + version);
+            }
+        }
+
+        int readByte() throws IOException {
+            if (!buffer.hasRemaining()) {
+                throw new EOFException();
+            }
+            return buffer.get() & 0xFF;
+        }
+
+        <E extends Enum<E>> E readEnum(E[] values) throws IOException {
+            int ordinal = readByte();
+            if (ordinal >= values.length) {
+                throw new IOException("bad ordinal for " +
+                        values.getClass().getComponentType().getSimpleName() + ": " + ordinal);
+            }
+            return values[ordinal];
+        }
+
+        long readVarLong() throws IOException {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return v;
+                }
+            }
+            throw new IOException("malformed varint");
+        }
+
+        int readCount() throws IOException {
+            long count = readVarLong();
+            if (count < 0 || count > buffer.remaining()) {
+                throw new IOException("bad count: " + count);
+            }
+            return (int) count;
+        }
+
+        String readString() throws IOException {
+            long len = readVarLong();
+            if (len == 0) {
+                return null;
+            }
+            int byteLength = checkLength(len - 1);
+            String s;
+            if (buffer.hasArray()) {
+                s = new String(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                        byteLength, StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + byteLength);
+            } else {
+                byte[] bytes = new byte[byteLength];
+                buffer.get(bytes);
+                s = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return s;
+        }
+
+        String readContent() throws IOException {
+            int flag = readByte();
+            if (flag == RAW) {
+                return readString();
+            } else if (flag != DEFLATED) {
+                throw new IOException("unexpected content flag: " + flag);
+            }
+            long uncompressedLength = readVarLong();
+            if (uncompressedLength < 0 || uncompressedLength > Integer.MAX_VALUE) {
+                throw new IOException("bad uncompressed length: " + uncompressedLength);
+            }
+            int compressedLength = checkLength(readVarLong());
+            byte[] uncompressed = new byte[(int) uncompressedLength];
+            Inflater inflater = new Inflater();
+            try {
+                if (buffer.hasArray()) {
+                    inflater.setInput(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                            compressedLength);
+                    buffer.position(buffer.position() + compressedLength);
+                } else {
+                    byte[] compressed = new byte[compressedLength];
+                    buffer.get(compressed);
+                    inflater.setInput(compressed);
+                }
+                int off = 0;
+                while (off < uncompressed.length && !inflater.finished()) {
+                    int len = inflater.inflate(uncompressed, off, uncompressed.length - off);
+                    if (len == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new IOException("truncated content");
+                    }
+                    off += len;
+                }
+            } catch (DataFormatException e) {
+                throw new IOException(e);
+            } finally {
+                inflater.end();
+            }
+            return new String(uncompressed, StandardCharsets.UTF_8);
+        }
+
+        EmitKey readEmitKey() throws IOException {
+            if (readByte() == 0) {
+                return null;
+            }
+            String emitterName = readString();
+            String emitKey = readString();
+            return new EmitKey(emitterName, emitKey);
+        }
+
+        Metadata readMetadata() throws IOException {
+            Metadata metadata = new Metadata();
+            int names = readCount();
+            for (int i = 0; i < names; i++) {
+                String n = readString();
+                int values = readCount();
+                boolean isContent = CONTENT_KEY.equals(n);
+                for (int j = 0; j < values; j++) {
+                    metadata.add(n, isContent ? readContent() : readString());
+                }
+            }
+            return metadata;
+        }
+
+        private int checkLength(long len) throws IOException {
+            if (len < 0 || len > buffer.remaining()) {
+                throw new IOException("bad length: " + len);
+            }
+            return (int) len;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.pipes;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.apache.tika.pipes.fetcher.FetchKey;
+
+/**
+ * The keys of the tuples that were completed in earlier runs, read from the
+ * append-only log that is written by {@link CheckpointPipesReporter}.
+ * <p>
+ * The log has one key per line, see {@link #getKey(FetchEmitTuple)}. The keys
+ * are held as a sorted array of 64 bit hashes, so that tens of millions of keys
+ * fit in a few hundred megabytes and a lookup is a binary search. Two keys may
+ * share a hash, but the chance that any two of 100 million keys do is
+ * about 1 in 3700.
+ */
+public class CheckpointLog {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final long[] hashes;
+
+    private CheckpointLog(long[] hashes) {
+        this.hashes = hashes;
+    }
+
+    /**
+     * @param path checkpoint log. If it doesn't exist, nothing has been completed.
+     * @return the completed keys
+     * @throws IOException
+     */
+    public static CheckpointLog load(Path path) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return new CheckpointLog(new long[0]);
+        }
+        long[] hashes = new long[1024];
+        int size = 0;
+        char[] buffer = new char[8192];
+        StringBuilder line = new StringBuilder();
+        try (Reader reader = new InputStreamReader(Files.newInputStream(path),
+                StandardCharsets.UTF_8)) {
+            int read = reader.read(buffer);
+            while (read != -1) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] != '\n') {
+                        line.append(buffer[i]);
+                        continue;
+                    }
+                    if (line.length() > 0) {
+                        if (size == hashes.length) {
+                            hashes = Arrays.copyOf(hashes, size * 2);
+                        }
+                        hashes[size++] = hash(line);
+                        line.setLength(0);
+                    }
+                }
+                read = reader.read(buffer);
+            }
+        }
+        //a last line without a newline was cut off by a crash, it is ignored
+        Arrays.sort(hashes, 0, size);
+        int unique = 0;
+        for (int i = 0; i < size; i++) {
+            if (unique == 0 || hashes[i] != hashes[unique - 1]) {
+                hashes[unique++] = hashes[i];
+            }
+        }
+        return new CheckpointLog(Arrays.copyOf(hashes, unique));
+    }
+
+    /**
+     * @return whether the tuple was completed in an earlier run
+     */
+    public boolean contains(FetchEmitTuple t) {
+        return Arrays.binarySearch(hashes, hash(getKey(t))) >= 0;
+    }
+
+    /**
+     * @return number of distinct keys
+     */
+    public int size() {
+        return hashes.length;
+    }
+
+    /**
+     * The key of a tuple in the checkpoint log: the fetcher name, the fetch key
+     * and the range if there is one, separated by colons. Backslashes and line
+     * breaks are escaped.
+     */
+    public static String getKey(FetchEmitTuple t) {
+        FetchKey fetchKey = t.getFetchKey();
+        StringBuilder sb = new StringBuilder();
+        escape(fetchKey.getFetcherName(), sb);
+        sb.append(':');
+        escape(fetchKey.getFetchKey(), sb);
+        if (fetchKey.hasRange()) {
+            sb.append(':').append(fetchKey.getRangeStart()).append('-')
+                    .append(fetchKey.getRangeEnd());
+        }
+        return sb.toString();
+    }
+
+    private static void escape(String s, StringBuilder sb) {
+        if (s == null) {
+            return;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\') {
+                sb.append("\\\\");
+            } else if (c == '\n') {
+                sb.append("\\n");
+            } else if (c == '\r') {
+                sb.append("\\r");
+            } else {
+                sb.append(c);
+            }
+        }
+    }
+
+    //FNV-1a over the chars, followed by murmur3's finalizer to spread the bits
+    static long hash(CharSequence s) {
+        long h = FNV_OFFSET;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            h = (h ^ (c & 0xff)) * FNV_PRIME;
+            h = (h ^ (c >>> 8)) * FNV_PRIME;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.pipes;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.tika.config.Field;
+import org.apache.tika.config.Param;
+import org.apache.tika.exception.TikaConfigException;
+
+/**
+ * Appends the key of every reported tuple to a checkpoint log, so that a
+ * restarted run can skip the tuples that were completed. Set the same
+ * path as the <code>checkpointLog</code> of the
+ * {@link org.apache.tika.pipes.pipesiterator.PipesIterator}.
+ * <p>
+ * By default, every reported tuple is recorded, including the ones that
+ * timed out or crashed the parser. Use the includes, e.g.
+ * <code>EMIT_SUCCESS</code> and <code>EMIT_SUCCESS_PARSE_EXCEPTION</code>,
+ * to try the rest again on the next run. Tuples that are emitted by the
+ * async emitters are reported as <code>PARSE_SUCCESS</code> before they are
+ * emitted, unless {@link org.apache.tika.pipes.async.AsyncConfig#setReportEmits(boolean)}
+ * is set.
+ * <p>
+ * The log is flushed every {@link #setFlushMillis(long) flushMillis}, on close
+ * and on a crash. Keys that were not flushed are processed again.
+ */
+public class CheckpointPipesReporter extends PipesReporterBase {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CheckpointPipesReporter.class);
+
+    private Path checkpointLog;
+    private long flushMillis = 1000;
+
+    private Writer writer;
+    private long lastFlush;
+
+    @Field
+    public void setCheckpointLog(String checkpointLog) {
+        this.checkpointLog = Paths.get(checkpointLog);
+    }
+
+    /**
+     * How often to flush the log. Default: 1000
+     *
+     * @param flushMillis
+     */
+    @Field
+    public void setFlushMillis(long flushMillis) {
+        this.flushMillis = flushMillis;
+    }
+
+    @Override
+    public void initialize(Map<String, Param> params) throws TikaConfigException {
+        super.initialize(params);
+        if (checkpointLog == null) {
+            throw new TikaConfigException("must specify a checkpointLog");
+        }
+        try {
+            if (checkpointLog.toAbsolutePath().getParent() != null) {
+                Files.createDirectories(checkpointLog.toAbsolutePath().getParent());
+            }
+            writer = new BufferedWriter(new OutputStreamWriter(
+                    Files.newOutputStream(checkpointLog, StandardOpenOption.CREATE,
+                            StandardOpenOption.APPEND), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new TikaConfigException("couldn't open checkpoint log " + checkpointLog, e);
+        }
+        lastFlush = System.currentTimeMillis();
+    }
+
+    @Override
+    public void report(FetchEmitTuple t, PipesResult result, long elapsed) {
+        if (!accept(result.getStatus())) {
+            return;
+        }
+        String key = CheckpointLog.getKey(t);
+        synchronized (this) {
+            try {
+                writer.write(key);
+                writer.write('\n');
+                long now = System.currentTimeMillis();
+                if (now - lastFlush >= flushMillis) {
+                    writer.flush();
+                    lastFlush = now;
+                }
+            } catch (IOException e) {
+                LOG.warn("couldn't write {} to the checkpoint log", key, e);
+            }
+        }
+    }
+
+    @Override
+    public void error(Throwable t) {
+        flushQuietly();
+    }
+
+    @Override
+    public void error(String msg) {
+        flushQuietly();
+    }
+
+    private synchronized void flushQuietly() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            LOG.warn("couldn't flush the checkpoint log", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
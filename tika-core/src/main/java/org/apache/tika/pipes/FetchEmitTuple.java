@@ -35,6 +35,7 @@ public class FetchEmitTuple implements Serializable {
     private final FetchKey fetchKey;
     private EmitKey emitKey;
     private final Metadata metadata;
+    private final Metadata fetchMetadata;
     private final ON_PARSE_EXCEPTION onParseException;
     private HandlerConfig handlerConfig;
 
@@ -55,12 +56,25 @@ public class FetchEmitTuple implements Serializable {
 
     public FetchEmitTuple(String id, FetchKey fetchKey, EmitKey emitKey, Metadata metadata,
                           HandlerConfig handlerConfig, ON_PARSE_EXCEPTION onParseException) {
+        this(id, fetchKey, emitKey, metadata, handlerConfig, onParseException, new Metadata());
+    }
+
+    /**
+     * @param fetchMetadata metadata that an earlier fetch of the bytes, e.g. by
+     *                      a prefetcher, returned. This seeds the parse metadata
+     *                      like the metadata of the fetcher, while the user
+     *                      <code>metadata</code> overwrites the parse results.
+     */
+    public FetchEmitTuple(String id, FetchKey fetchKey, EmitKey emitKey, Metadata metadata,
+                          HandlerConfig handlerConfig, ON_PARSE_EXCEPTION onParseException,
+                          Metadata fetchMetadata) {
         this.id = id;
         this.fetchKey = fetchKey;
         this.emitKey = emitKey;
         this.metadata = metadata;
         this.handlerConfig = handlerConfig;
         this.onParseException = onParseException;
+        this.fetchMetadata = fetchMetadata;
     }
 
     public String getId() {
@@ -78,6 +92,10 @@ public class FetchEmitTuple implements Serializable {
         return metadata;
     }
 
+    public Metadata getFetchMetadata() {
+        return fetchMetadata;
+    }
+
     public ON_PARSE_EXCEPTION getOnParseException() {
         return onParseException;
     }
@@ -107,6 +125,8 @@ public class FetchEmitTuple implements Serializable {
         if (!Objects.equals(emitKey, that.emitKey)) return false;
         if (!Objects.equals(metadata, that.metadata))
             return false;
+        if (!Objects.equals(fetchMetadata, that.fetchMetadata))
+            return false;
         if (onParseException != that.onParseException) return false;
         return Objects.equals(handlerConfig, that.handlerConfig);
     }
@@ -117,6 +137,7 @@ public class FetchEmitTuple implements Serializable {
         result = 31 * result + (fetchKey != null ? fetchKey.hashCode() : 0);
         result = 31 * result + (emitKey != null ? emitKey.hashCode() : 0);
         result = 31 * result + (metadata != null ? metadata.hashCode() : 0);
+        result = 31 * result + (fetchMetadata != null ? fetchMetadata.hashCode() : 0);
         result = 31 * result + (onParseException != null ? onParseException.hashCode() : 0);
         result = 31 * result + (handlerConfig != null ? handlerConfig.hashCode() : 0);
         return result;
@@ -125,7 +146,8 @@ public class FetchEmitTuple implements Serializable {
     @Override
     public String toString() {
         return "FetchEmitTuple{" + "id='" + id + '\'' + ", fetchKey=" + fetchKey + ", emitKey=" +
-            emitKey + ", metadata=" + metadata + ", onParseException=" + onParseException +
+            emitKey + ", metadata=" + metadata + ", fetchMetadata=" + fetchMetadata +
+            ", onParseException=" + onParseException +
             ", handlerConfig=" + handlerConfig + '}';
     }
 }
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.pipes;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.apache.commons.io.input.UnsynchronizedByteArrayInputStream;
+import org.apache.commons.io.output.UnsynchronizedByteArrayOutputStream;
+
+import org.apache.tika.pipes.emitter.EmitData;
+
+/**
+ * Legacy codec that relies on java serialization.  This is the default
+ * and the fallback if a server can't load the codec requested by the client.
+ */
+public class JavaPipesCodec implements PipesCodec {
+
+    @Override
+    public String getName() {
+        return JAVA;
+    }
+
+    @Override
+    public byte[] serialize(FetchEmitTuple fetchEmitTuple) throws IOException {
+        return serializeObject(fetchEmitTuple);
+    }
+
+    @Override
+    public FetchEmitTuple deserializeFetchEmitTuple(byte[] bytes) throws IOException {
+        return (FetchEmitTuple) deserializeObject(bytes);
+    }
+
+    @Override
+    public byte[] serialize(EmitData emitData) throws IOException {
+        return serializeObject(emitData);
+    }
+
+    @Override
+    public EmitData deserializeEmitData(byte[] bytes) throws IOException {
+        return (EmitData) deserializeObject(bytes);
+    }
+
+    private static byte[] serializeObject(Object object) throws IOException {
+        UnsynchronizedByteArrayOutputStream bos = new UnsynchronizedByteArrayOutputStream();
+        try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(bos)) {
+            objectOutputStream.writeObject(object);
+        }
+        return bos.toByteArray();
+    }
+
+    private static Object deserializeObject(byte[] bytes) throws IOException {
+        try (ObjectInputStream objectInputStream = new ObjectInputStream(
+                new UnsynchronizedByteArrayInputStream(bytes))) {
+            return objectInputStream.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("can't find class?!", e);
+        }
+    }
+}
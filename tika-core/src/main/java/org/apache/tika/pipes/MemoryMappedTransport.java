@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.pipes;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Optional side channel for large results from the forked {@link PipesServer}.
+ * The server writes the serialized {@link org.apache.tika.pipes.emitter.EmitData}
+ * into a memory mapped file that the {@link PipesClient} created, and then only
+ * the offset and length are written over stdout.  The client deserializes directly
+ * from its own mapping of the file.
+ * <p>
+ * There is only ever one result in flight per client, so results are always
+ * written at offset 0.  Mappings are cached and only remapped when a larger
+ * result comes through because mapped buffers can't be explicitly unmapped.
+ */
+class MemoryMappedTransport implements Closeable {
+
+    private final FileChannel channel;
+    private final FileChannel.MapMode mapMode;
+    private MappedByteBuffer mapped;
+
+    private MemoryMappedTransport(Path path, FileChannel.MapMode mapMode) throws IOException {
+        this.mapMode = mapMode;
+        if (mapMode == FileChannel.MapMode.READ_WRITE) {
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } else {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        }
+    }
+
+    static MemoryMappedTransport openForWriting(Path path) throws IOException {
+        return new MemoryMappedTransport(path, FileChannel.MapMode.READ_WRITE);
+    }
+
+    static MemoryMappedTransport openForReading(Path path) throws IOException {
+        return new MemoryMappedTransport(path, FileChannel.MapMode.READ_ONLY);
+    }
+
+    /**
+     * @return the offset at which the bytes were written
+     */
+    long write(byte[] bytes) throws IOException {
+        ByteBuffer buffer = map(bytes.length);
+        buffer.put(bytes);
+        return 0;
+    }
+
+    /**
+     * @return a read-only view of the result, positioned at its start
+     */
+    ByteBuffer read(long offset, int length) throws IOException {
+        if (offset != 0) {
+            throw new IOException("unexpected offset: " + offset);
+        }
+        ByteBuffer buffer = map(length);
+        buffer.limit(length);
+        return buffer;
+    }
+
+    private ByteBuffer map(int length) throws IOException {
+        //the client has to remap if the server grew the file
+        if (mapped == null || mapped.capacity() < length) {
+            long size = mapMode == FileChannel.MapMode.READ_WRITE ?
+                    Math.max(length, 2L * (mapped == null ? 0 : mapped.capacity())) : length;
+            size = Math.min(Integer.MAX_VALUE, size);
+            mapped = channel.map(mapMode, 0, size);
+        }
+        ByteBuffer buffer = mapped.duplicate();
+        buffer.clear();
+        return buffer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mapped = null;
+        channel.close();
+    }
+}
@@ -17,8 +17,6 @@
 package org.apache.tika.pipes;
 
 import static org.apache.tika.pipes.PipesServer.STATUS.CALL;
-import static org.apache.tika.pipes.PipesServer.STATUS.PING;
-import static org.apache.tika.pipes.PipesServer.STATUS.READY;
 import static org.apache.tika.pipes.PipesServer.STATUS.lookup;
 import static org.apache.tika.pipes.PipesServer.TIMEOUT_EXIT_CODE;
 
@@ -26,11 +24,6 @@ import java.io.Closeable;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -39,43 +32,55 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import org.apache.commons.io.input.UnsynchronizedByteArrayInputStream;
-import org.apache.commons.io.output.UnsynchronizedByteArrayOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import org.apache.tika.pipes.emitter.EmitData;
-import org.apache.tika.utils.ProcessUtils;
-import org.apache.tika.utils.StringUtils;
 
 /**
  * The PipesClient is designed to be single-threaded. It only allots
  * a single thread for {@link #process(FetchEmitTuple)} processing.
  * See {@link org.apache.tika.pipes.async.AsyncProcessor} for handling
  * multiple PipesClients.
+ * <p>
+ * The exception is if {@link PipesConfigBase#getNumThreadsPerServer()} is greater
+ * than 1.  Then, up to that many threads may call {@link #process(FetchEmitTuple)}
+ * concurrently, and their documents are parsed concurrently in a single forked server.
  */
 public class PipesClient implements Closeable {
 
     private static final Logger LOG = LoggerFactory.getLogger(PipesClient.class);
-    private static final int MAX_BYTES_BEFORE_READY = 20000;
     private static AtomicInteger CLIENT_COUNTER = new AtomicInteger(0);
-    private static final long WAIT_ON_DESTROY_MS = 10000;
     //this synchronizes the creation and/or closing of the executorService
     //there are a number of assumptions throughout that PipesClient is run
     //single threaded
     private final Object[] executorServiceLock = new Object[0];
     private final PipesConfigBase pipesConfig;
+    private final PipesServerStandbyPool standbyPool;
     private final int pipesClientId;
     private volatile boolean closed = false;
     private ExecutorService executorService = Executors.newFixedThreadPool(1);
+    private PipesServerProcess server;
     private Process process;
     private DataOutputStream output;
     private DataInputStream input;
     private int filesProcessed = 0;
+    private final PipesClientMultiplexer multiplexer;
 
     public PipesClient(PipesConfigBase pipesConfig) {
+        this(pipesConfig, null);
+    }
+
+    /**
+     * @param standbyPool if not <code>null</code>, replacement servers are taken from
+     *                    this pool instead of being started on demand
+     */
+    public PipesClient(PipesConfigBase pipesConfig, PipesServerStandbyPool standbyPool) {
         this.pipesConfig = pipesConfig;
+        this.standbyPool = standbyPool;
         this.pipesClientId = CLIENT_COUNTER.getAndIncrement();
+        this.multiplexer = pipesConfig.getNumThreadsPerServer() > 1 ?
+                new PipesClientMultiplexer(pipesConfig, standbyPool,
+                        Integer.toString(pipesClientId)) : null;
     }
 
     public int getFilesProcessed() {
@@ -83,25 +88,18 @@ public class PipesClient implements Closeable {
     }
 
     private boolean ping() {
-        if (process == null || !process.isAlive()) {
+        if (server == null) {
             return false;
         }
-        try {
-            output.write(PING.getByte());
-            output.flush();
-            int ping = input.read();
-            if (ping == PING.getByte()) {
-                return true;
-            }
-        } catch (IOException e) {
-            return false;
-        }
-        return false;
+        return server.ping();
     }
 
     @Override
     public void close() throws IOException {
-        if (process != null) {
+        if (multiplexer != null) {
+            multiplexer.close();
+        }
+        if (server != null) {
             try {
                 destroyForcibly();
             } catch (InterruptedException e) {
@@ -117,6 +115,9 @@ public class PipesClient implements Closeable {
     }
 
     public PipesResult process(FetchEmitTuple t) throws IOException, InterruptedException {
+        if (multiplexer != null) {
+            return multiplexer.process(t);
+        }
         boolean restart = false;
         if (!ping()) {
             restart = true;
@@ -146,12 +147,7 @@ public class PipesClient implements Closeable {
         long start = System.currentTimeMillis();
         FutureTask<PipesResult> futureTask = new FutureTask<>(() -> {
 
-            UnsynchronizedByteArrayOutputStream bos = new UnsynchronizedByteArrayOutputStream();
-            try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(bos)) {
-                objectOutputStream.writeObject(t);
-            }
-
-            byte[] bytes = bos.toByteArray();
+            byte[] bytes = server.getCodec().serialize(t);
             output.write(CALL.getByte());
             output.writeInt(bytes.length);
             output.write(bytes);
@@ -229,25 +225,7 @@ public class PipesClient implements Closeable {
     }
 
     private void destroyForcibly() throws InterruptedException {
-        process.destroyForcibly();
-        process.waitFor(WAIT_ON_DESTROY_MS, TimeUnit.MILLISECONDS);
-        //important to close streams so that threads running in this
-        //process receive notice that they really ought to stop.
-        //TIKA-3588 showed that we can't trust that forcibly destroying
-        //the process caused the actuallyProcess thread in this process to stop.
-        try {
-            input.close();
-        } catch (IOException closeException) {
-            //swallow
-        }
-        try {
-            output.close();
-        } catch (IOException closeException) {
-            //swallow
-        }
-        if (process.isAlive()) {
-            LOG.error("Process still alive after {}ms", WAIT_ON_DESTROY_MS);
-        }
+        server.destroyForcibly();
     }
 
     private PipesResult readResults(FetchEmitTuple t, long start) throws IOException {
@@ -261,93 +239,11 @@ public class PipesClient implements Closeable {
             throw new IOException("problem reading response from server " + status);
         }
 
-        switch (status) {
-            case OOM:
-                LOG.warn("pipesClientId={} oom: {} in {} ms", pipesClientId, t.getId(), millis);
-                return PipesResult.OOM;
-            case TIMEOUT:
-                LOG.warn("pipesClientId={} server response timeout: {} in {} ms", pipesClientId,
-                        t.getId(), millis);
-                return PipesResult.TIMEOUT;
-            case EMIT_EXCEPTION:
-                LOG.warn("pipesClientId={} emit exception: {} in {} ms", pipesClientId, t.getId(),
-                        millis);
-                return readMessage(PipesResult.STATUS.EMIT_EXCEPTION);
-            case EMITTER_NOT_FOUND:
-                LOG.warn("pipesClientId={} emitter not found: {} in {} ms", pipesClientId,
-                        t.getId(), millis);
-                return readMessage(PipesResult.STATUS.NO_EMITTER_FOUND);
-            case FETCHER_NOT_FOUND:
-                LOG.warn("pipesClientId={} fetcher not found: {} in {} ms", pipesClientId,
-                        t.getId(), millis);
-                return readMessage(PipesResult.STATUS.NO_FETCHER_FOUND);
-            case FETCHER_INITIALIZATION_EXCEPTION:
-                LOG.warn("pipesClientId={} fetcher initialization exception: {} in {} ms",
-                        pipesClientId, t.getId(), millis);
-                return readMessage(PipesResult.STATUS.FETCHER_INITIALIZATION_EXCEPTION);
-            case FETCH_EXCEPTION:
-                LOG.warn("pipesClientId={} fetch exception: {} in {} ms", pipesClientId, t.getId(),
-                        millis);
-                return readMessage(PipesResult.STATUS.FETCH_EXCEPTION);
-            case PARSE_SUCCESS:
-                //there may have been a parse exception, but the parse didn't crash
-                LOG.debug("pipesClientId={} parse success: {} in {} ms", pipesClientId, t.getId(),
-                        millis);
-                return deserializeEmitData();
-            case PARSE_EXCEPTION_NO_EMIT:
-                return readMessage(PipesResult.STATUS.PARSE_EXCEPTION_NO_EMIT);
-            case EMIT_SUCCESS:
-                LOG.debug("pipesClientId={} emit success: {} in {} ms", pipesClientId, t.getId(),
-                        millis);
-                return PipesResult.EMIT_SUCCESS;
-            case EMIT_SUCCESS_PARSE_EXCEPTION:
-                return readMessage(PipesResult.STATUS.EMIT_SUCCESS_PARSE_EXCEPTION);
-            case EMPTY_OUTPUT:
-                return PipesResult.EMPTY_OUTPUT;
-            //fall through
-            case READY:
-            case CALL:
-            case PING:
-            case FAILED_TO_START:
-                throw new IOException("Not expecting this status: " + status);
-            default:
-                throw new IOException("Need to handle procesing for: " + status);
-        }
-
-    }
-
-    private PipesResult readMessage(PipesResult.STATUS status) throws IOException {
-        //readInt checks for EOF
-        int length = input.readInt();
-        byte[] bytes = new byte[length];
-        input.readFully(bytes);
-        String msg = new String(bytes, StandardCharsets.UTF_8);
-        return new PipesResult(status, msg);
-    }
-
-    private PipesResult deserializeEmitData() throws IOException {
-        int length = input.readInt();
-        byte[] bytes = new byte[length];
-        input.readFully(bytes);
-        try (ObjectInputStream objectInputStream = new ObjectInputStream(
-                new UnsynchronizedByteArrayInputStream(bytes))) {
-            EmitData emitData = (EmitData) objectInputStream.readObject();
-
-            String stack = emitData.getContainerStackTrace();
-            if (StringUtils.isBlank(stack)) {
-                return new PipesResult(emitData);
-            } else {
-                return new PipesResult(emitData, stack);
-            }
-        } catch (ClassNotFoundException e) {
-            LOG.error("class not found exception deserializing data", e);
-            //this should be catastrophic
-            throw new RuntimeException(e);
-        }
+        return server.readResult(Integer.toString(pipesClientId), status, t.getId(), millis);
     }
 
     private void restart() throws IOException, InterruptedException, TimeoutException {
-        if (process != null) {
+        if (server != null) {
             LOG.debug("process still alive; trying to destroy it");
             destroyForcibly();
             boolean processEnded = process.waitFor(30, TimeUnit.SECONDS);
@@ -370,143 +266,21 @@ public class PipesClient implements Closeable {
         } else {
             LOG.info("pipesClientId={}: starting process", pipesClientId);
         }
-        ProcessBuilder pb = new ProcessBuilder(getCommandline());
-        pb.redirectError(ProcessBuilder.Redirect.INHERIT);
-
-        try {
-            process = pb.start();
-        } catch (Exception e) {
-            //Do we ever want this to be not fatal?!
-            LOG.error("failed to start client", e);
-            throw new FailedToStartClientException(e);
-        }
-        input = new DataInputStream(process.getInputStream());
-        output = new DataOutputStream(process.getOutputStream());
-
-        //wait for ready signal
-        final UnsynchronizedByteArrayOutputStream bos = new UnsynchronizedByteArrayOutputStream();
-        FutureTask<Integer> futureTask = new FutureTask<>(() -> {
-            int b = input.read();
-            int read = 1;
-            while (read < MAX_BYTES_BEFORE_READY && b != READY.getByte()) {
-
-                if (b == -1) {
-                    throw new RuntimeException(getMsg("pipesClientId=" + pipesClientId + ": " +
-                            "Couldn't start server -- read EOF before 'ready' byte.\n" +
-                            " process isAlive=" + process.isAlive(), bos));
-                }
-                bos.write(b);
-                b = input.read();
-                read++;
-            }
-            if (read >= MAX_BYTES_BEFORE_READY) {
-                throw new RuntimeException(getMsg("pipesClientId=" + pipesClientId + ": " +
-                        "Couldn't start server: read too many bytes before 'ready' byte.\n" +
-                        " Make absolutely certain that your logger is not writing to " +
-                        "stdout.\n", bos));
-            }
-            if (bos.size() > 0) {
-                LOG.warn("pipesClientId={}: From forked process before start byte: {}",
-                        pipesClientId, bos.toString(StandardCharsets.UTF_8));
-            }
-            return 1;
-        });
-        long start = System.currentTimeMillis();
-        executorService.submit(futureTask);
-        try {
-            futureTask.get(pipesConfig.getStartupTimeoutMillis(), TimeUnit.MILLISECONDS);
-        } catch (InterruptedException e) {
-            destroyForcibly();
-            throw e;
-        } catch (ExecutionException e) {
-            LOG.error("pipesClientId=" + pipesClientId + ": couldn't start server", e);
-            destroyForcibly();
-            throw new RuntimeException(e);
-        } catch (TimeoutException e) {
-            long elapsed = System.currentTimeMillis() - start;
-            LOG.error("pipesClientId={} didn't receive ready byte from server within " +
-                            "StartupTimeoutMillis {}; ms elapsed {}; did read >{}<",
-                    pipesClientId, pipesConfig.getStartupTimeoutMillis(),
-                    elapsed, bos.toString(StandardCharsets.UTF_8));
-            destroyForcibly();
-            throw e;
-        } finally {
-            futureTask.cancel(true);
-        }
-    }
-
-    private static String getMsg(String msg, UnsynchronizedByteArrayOutputStream bos) {
-        String readSoFar = bos.toString(StandardCharsets.UTF_8);
-        if (StringUtils.isBlank(readSoFar)) {
-            return msg;
-        } else {
-            return msg + "So far, I've read: >" + readSoFar + "<";
-        }
-    }
-
-    private String[] getCommandline() {
-        List<String> configArgs = pipesConfig.getForkedJvmArgs();
-        boolean hasClassPath = false;
-        boolean hasHeadless = false;
-        boolean hasExitOnOOM = false;
-        boolean hasLog4j = false;
-        String origGCString = null;
-        String newGCLogString = null;
-        for (String arg : configArgs) {
-            if (arg.startsWith("-Djava.awt.headless")) {
-                hasHeadless = true;
-            }
-            if (arg.equals("-cp") || arg.equals("--classpath")) {
-                hasClassPath = true;
-            }
-            if (arg.equals("-XX:+ExitOnOutOfMemoryError") ||
-                    arg.equals("-XX:+CrashOnOutOfMemoryError")) {
-                hasExitOnOOM = true;
-            }
-            if (arg.startsWith("-Dlog4j.configuration")) {
-                hasLog4j = true;
+        PipesServerProcess newServer = null;
+        if (standbyPool != null) {
+            newServer = standbyPool.poll();
+            if (newServer != null) {
+                LOG.info("pipesClientId={}: using standby server {}", pipesClientId,
+                        newServer.getServerId());
             }
-            if (arg.startsWith("-Xloggc:")) {
-                origGCString = arg;
-                newGCLogString = arg.replace("${pipesClientId}", "id-" + pipesClientId);
-            }
-        }
-
-        if (origGCString != null && newGCLogString != null) {
-            configArgs.remove(origGCString);
-            configArgs.add(newGCLogString);
-        }
-
-        List<String> commandLine = new ArrayList<>();
-        String javaPath = pipesConfig.getJavaPath();
-        commandLine.add(ProcessUtils.escapeCommandLine(javaPath));
-        if (!hasClassPath) {
-            commandLine.add("-cp");
-            commandLine.add(System.getProperty("java.class.path"));
-        }
-        if (!hasHeadless) {
-            commandLine.add("-Djava.awt.headless=true");
         }
-        if (hasExitOnOOM) {
-            LOG.warn(
-                    "I notice that you have an exit/crash on OOM. If you run heavy external processes " +
-                            "like tesseract, this setting may result in orphaned processes which could be disastrous" +
-                            " for performance.");
+        if (newServer == null) {
+            newServer = PipesServerProcess.start(pipesConfig, Integer.toString(pipesClientId),
+                    false, executorService);
         }
-        if (!hasLog4j) {
-            commandLine.add(
-                    "-Dlog4j.configurationFile=classpath:pipes-fork-server-default-log4j2.xml");
-        }
-        commandLine.add("-DpipesClientId=" + pipesClientId);
-        commandLine.addAll(configArgs);
-        commandLine.add("org.apache.tika.pipes.PipesServer");
-        commandLine.add(ProcessUtils.escapeCommandLine(
-                pipesConfig.getTikaConfig().toAbsolutePath().toString()));
-
-        commandLine.add(Long.toString(pipesConfig.getMaxForEmitBatchBytes()));
-        commandLine.add(Long.toString(pipesConfig.getTimeoutMillis()));
-        commandLine.add(Long.toString(pipesConfig.getShutdownClientAfterMillis()));
-        LOG.debug("pipesClientId={}: commandline: {}", pipesClientId, commandLine);
-        return commandLine.toArray(new String[0]);
+        server = newServer;
+        process = server.getProcess();
+        input = server.getInput();
+        output = server.getOutput();
     }
 }
@@ -0,0 +1,308 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.pipes;
+
+import static org.apache.tika.pipes.PipesServer.STATUS.CALL;
+import static org.apache.tika.pipes.PipesServer.STATUS.PING;
+import static org.apache.tika.pipes.PipesServer.STATUS.lookup;
+import static org.apache.tika.pipes.PipesServer.TIMEOUT_EXIT_CODE;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends concurrent {@link PipesClient#process(FetchEmitTuple)} calls to a single
+ * forked {@link PipesServer} that parses up to
+ * {@link PipesConfigBase#getNumThreadsPerServer()} documents at a time.
+ * Every request is tagged with a request id, and a reader thread hands
+ * the server's responses back to the waiting callers.
+ * <p>
+ * The server times out individual documents, so the process is only
+ * restarted after it exits, e.g. on an OOM or if all of its threads are stuck,
+ * or once it is retired. A server is retired if it doesn't report a timeout
+ * in time or after {@link PipesConfigBase#getMaxFilesProcessedPerProcess()}
+ * files. A retired server gets no new requests and is only replaced once the
+ * requests in flight on it have finished.
+ */
+class PipesClientMultiplexer implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PipesClientMultiplexer.class);
+
+    //how long to wait beyond the parse timeout for the server to report the timeout
+    private static final long CLIENT_TIMEOUT_GRACE_MS = 10000;
+
+    private final PipesConfigBase pipesConfig;
+    private final PipesServerStandbyPool standbyPool;
+    private final String pipesClientId;
+    private final Semaphore permits;
+    private final AtomicInteger requestCounter = new AtomicInteger(0);
+    //used for the startup handshake and for the reader threads
+    private final ExecutorService executorService = Executors.newCachedThreadPool();
+    private Connection connection;
+    private volatile boolean closed = false;
+
+    PipesClientMultiplexer(PipesConfigBase pipesConfig, PipesServerStandbyPool standbyPool,
+                           String pipesClientId) {
+        this.pipesConfig = pipesConfig;
+        this.standbyPool = standbyPool;
+        this.pipesClientId = pipesClientId;
+        this.permits = new Semaphore(pipesConfig.getNumThreadsPerServer());
+    }
+
+    PipesResult process(FetchEmitTuple t) throws IOException, InterruptedException {
+        permits.acquire();
+        try {
+            return actuallyProcess(t);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private PipesResult actuallyProcess(FetchEmitTuple t) throws InterruptedException {
+        int requestId = requestCounter.incrementAndGet();
+        PendingRequest request = new PendingRequest(t.getId());
+        Connection current;
+        synchronized (this) {
+            current = getConnection();
+            current.pending.put(requestId, request);
+            current.filesProcessed++;
+        }
+        try {
+            byte[] bytes = current.server.getCodec().serialize(t);
+            DataOutputStream output = current.server.getOutput();
+            synchronized (output) {
+                output.write(CALL.getByte());
+                output.writeInt(requestId);
+                output.writeInt(bytes.length);
+                output.write(bytes);
+                output.flush();
+            }
+            return request.result.get(pipesConfig.getTimeoutMillis() + CLIENT_TIMEOUT_GRACE_MS,
+                    TimeUnit.MILLISECONDS);
+        } catch (IOException e) {
+            LOG.warn("pipesClientId={}: couldn't send {} to the server", pipesClientId, t.getId(),
+                    e);
+            current.server.destroyForcibly();
+            //the reader thread may already have reported the crash
+            request.result.complete(PipesResult.UNSPECIFIED_CRASH);
+            return getNow(request);
+        } catch (ExecutionException e) {
+            LOG.error("pipesClientId=" + pipesClientId + ": execution exception", e);
+            return PipesResult.UNSPECIFIED_CRASH;
+        } catch (TimeoutException e) {
+            //the server should have reported a timeout by now; it is unresponsive.
+            //don't kill it under the other requests in flight on it
+            LOG.warn("pipesClientId={} client timeout: {} in {} ms; retiring the server",
+                    pipesClientId, t.getId(), System.currentTimeMillis() - request.start);
+            synchronized (this) {
+                current.retired = true;
+            }
+            request.result.complete(PipesResult.TIMEOUT);
+            return getNow(request);
+        } finally {
+            synchronized (this) {
+                current.pending.remove(requestId);
+                //a retired server may now be drained
+                notifyAll();
+            }
+        }
+    }
+
+    private static PipesResult getNow(PendingRequest request) {
+        try {
+            return request.result.get();
+        } catch (InterruptedException | ExecutionException e) {
+            return PipesResult.UNSPECIFIED_CRASH;
+        }
+    }
+
+    private Connection getConnection() throws InterruptedException {
+        if (closed) {
+            throw new IllegalArgumentException("pipesClientId=" + pipesClientId +
+                    ": PipesClient closed");
+        }
+        if (connection != null && !connection.dead && !connection.retired) {
+            int maxFiles = pipesConfig.getMaxFilesProcessedPerProcess();
+            if (maxFiles > 0 && connection.filesProcessed >= maxFiles) {
+                LOG.info("pipesClientId={}: restarting server after hitting max files: {}",
+                        pipesClientId, connection.filesProcessed);
+                connection.retired = true;
+            } else if (connection.server.isAlive()) {
+                return connection;
+            }
+        }
+        //let the requests in flight on the old server finish first
+        while (connection != null && !connection.dead && !connection.pending.isEmpty()) {
+            wait();
+            if (closed) {
+                throw new IllegalArgumentException("pipesClientId=" + pipesClientId +
+                        ": PipesClient closed");
+            }
+        }
+        if (connection != null) {
+            LOG.info("pipesClientId={}: restarting process", pipesClientId);
+            connection.server.destroyForcibly();
+        } else {
+            LOG.info("pipesClientId={}: starting process", pipesClientId);
+        }
+        PipesServerProcess server = null;
+        if (standbyPool != null) {
+            server = standbyPool.poll();
+            if (server != null) {
+                LOG.info("pipesClientId={}: using standby server {}", pipesClientId,
+                        server.getServerId());
+            }
+        }
+        while (server == null) {
+            try {
+                server = PipesServerProcess.start(pipesConfig, pipesClientId, false,
+                        executorService);
+            } catch (IOException e) {
+                throw new FailedToStartClientException(e);
+            } catch (TimeoutException e) {
+                LOG.warn("pipesClientId={}: couldn't restart within {} ms (startupTimeoutMillis)",
+                        pipesClientId, pipesConfig.getStartupTimeoutMillis());
+                Thread.sleep(pipesConfig.getSleepOnStartupTimeoutMillis());
+            }
+        }
+        connection = new Connection(server);
+        executorService.execute(connection);
+        return connection;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        synchronized (this) {
+            notifyAll();
+            if (connection != null) {
+                try {
+                    connection.server.destroyForcibly();
+                } catch (InterruptedException e) {
+                    //swallow
+                }
+            }
+        }
+        executorService.shutdownNow();
+    }
+
+    private static class PendingRequest {
+        private final String tupleId;
+        private final long start = System.currentTimeMillis();
+        private final CompletableFuture<PipesResult> result = new CompletableFuture<>();
+
+        private PendingRequest(String tupleId) {
+            this.tupleId = tupleId;
+        }
+    }
+
+    /**
+     * A server and the requests that are in flight on it.  Its run method
+     * reads the server's responses until the server exits.
+     */
+    private class Connection implements Runnable {
+        private final PipesServerProcess server;
+        private final Map<Integer, PendingRequest> pending = new ConcurrentHashMap<>();
+        //guarded by the PipesClientMultiplexer
+        private boolean dead = false;
+        //no new requests are sent to a retired server
+        private boolean retired = false;
+        private int filesProcessed = 0;
+
+        private Connection(PipesServerProcess server) {
+            this.server = server;
+        }
+
+        @Override
+        public void run() {
+            DataInputStream input = server.getInput();
+            try {
+                while (true) {
+                    int statusByte = input.read();
+                    if (statusByte == -1) {
+                        break;
+                    }
+                    PipesServer.STATUS status = lookup(statusByte);
+                    if (status == PING) {
+                        continue;
+                    }
+                    int requestId = input.readInt();
+                    PendingRequest request = pending.get(requestId);
+                    String tupleId = request == null ? "request-" + requestId : request.tupleId;
+                    long millis = request == null ? -1 :
+                            System.currentTimeMillis() - request.start;
+                    //always read the payload to stay in sync with the stream
+                    PipesResult result = server.readResult(pipesClientId, status, tupleId, millis);
+                    if (request != null) {
+                        request.result.complete(result);
+                    }
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                if (!closed) {
+                    LOG.warn("pipesClientId={}: problem reading from server", pipesClientId, e);
+                }
+            } finally {
+                serverExited();
+            }
+        }
+
+        private void serverExited() {
+            synchronized (PipesClientMultiplexer.this) {
+                dead = true;
+                PipesClientMultiplexer.this.notifyAll();
+            }
+            Process process = server.getProcess();
+            PipesResult result = PipesResult.UNSPECIFIED_CRASH;
+            try {
+                //wait just a little bit to get the exit value
+                process.waitFor(200, TimeUnit.MILLISECONDS);
+                if (!process.isAlive() && process.exitValue() == TIMEOUT_EXIT_CODE) {
+                    result = PipesResult.TIMEOUT;
+                }
+                server.destroyForcibly();
+            } catch (InterruptedException e) {
+                //swallow
+            }
+            List<Integer> requestIds = new ArrayList<>(pending.keySet());
+            for (Integer requestId : requestIds) {
+                PendingRequest request = pending.remove(requestId);
+                if (request != null && request.result.complete(result)) {
+                    LOG.warn("pipesClientId={} {}: {} in {} ms", pipesClientId,
+                            result.getStatus(), request.tupleId,
+                            System.currentTimeMillis() - request.start);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.pipes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+import org.apache.tika.pipes.emitter.EmitData;
+
+/**
+ * Serializes the {@link FetchEmitTuple}s that the {@link PipesClient} sends
+ * to the forked {@link PipesServer} and the {@link EmitData} that the server
+ * sends back.
+ * <p>
+ * The client requests a codec by name on the server's commandline.  The server
+ * replies with the name of the codec it will actually use immediately after the
+ * <code>READY</code> byte, and it falls back to {@link JavaPipesCodec} if it can't
+ * load the requested codec.
+ * <p>
+ * Implementations must be thread safe and must have a no-arg constructor if they
+ * are to be loaded by class name.
+ */
+public interface PipesCodec {
+
+    String JAVA = "java";
+
+    String BINARY = "binary";
+
+    String BINARY_DEFLATE = "binary-deflate";
+
+    /**
+     * @return name that {@link #load(String)} can use to build this codec
+     * in the other process
+     */
+    String getName();
+
+    byte[] serialize(FetchEmitTuple fetchEmitTuple) throws IOException;
+
+    FetchEmitTuple deserializeFetchEmitTuple(byte[] bytes) throws IOException;
+
+    byte[] serialize(EmitData emitData) throws IOException;
+
+    EmitData deserializeEmitData(byte[] bytes) throws IOException;
+
+    /**
+     * Deserializes from the buffer's position to its limit.  The default
+     * copies the bytes to the heap; codecs that can read directly from the
+     * buffer should override this.
+     */
+    default EmitData deserializeEmitData(ByteBuffer buffer) throws IOException {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return deserializeEmitData(bytes);
+    }
+
+    /**
+     * @param name one of {@link #JAVA}, {@link #BINARY}, {@link #BINARY_DEFLATE}
+     *             or the fully qualified class name of a custom codec
+     * @return the codec
+     * @throws IllegalArgumentException if the codec can't be loaded
+     */
+    static PipesCodec load(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("codec name must not be null");
+        }
+        switch (name.toLowerCase(Locale.US)) {
+            case JAVA:
+                return new JavaPipesCodec();
+            case BINARY:
+                return new BinaryPipesCodec(false);
+            case BINARY_DEFLATE:
+                return new BinaryPipesCodec(true);
+            default:
+                //fall through to class loading
+        }
+        try {
+            Class<?> clazz = Class.forName(name);
+            if (!PipesCodec.class.isAssignableFrom(clazz)) {
+                throw new IllegalArgumentException(name + " must implement " +
+                        PipesCodec.class.getName());
+            }
+            return (PipesCodec) clazz.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("couldn't load codec: " + name, e);
+        }
+    }
+}
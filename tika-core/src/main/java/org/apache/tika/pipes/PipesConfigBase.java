@@ -58,6 +58,45 @@ public class PipesConfigBase extends ConfigBase {
     private List<String> forkedJvmArgs = new ArrayList<>();
     private Path tikaConfig;
     private String javaPath = "java";
+    private String codec = PipesCodec.JAVA;
+    private long memoryMappedThresholdBytes = -1;
+    private int numStandbyServers = 0;
+    private Path warmUpDirectory;
+    private int numThreadsPerServer = 1;
+    private String dedupAlgorithm;
+    private String dedupMode = PipesDeduplicator.MODE.REFERENCE.name();
+    private Path dedupDirectory;
+    private int dedupMaxEntries = 10000;
+    private boolean parserStats = false;
+
+    /**
+     * @return a copy of the settings for the forked servers, e.g. for a pool of
+     * forked servers that overrides some of them
+     */
+    public PipesConfigBase copyPipesConfig() {
+        PipesConfigBase copy = new PipesConfigBase();
+        copy.maxForEmitBatchBytes = maxForEmitBatchBytes;
+        copy.timeoutMillis = timeoutMillis;
+        copy.startupTimeoutMillis = startupTimeoutMillis;
+        copy.sleepOnStartupTimeoutMillis = sleepOnStartupTimeoutMillis;
+        copy.shutdownClientAfterMillis = shutdownClientAfterMillis;
+        copy.numClients = numClients;
+        copy.maxFilesProcessedPerProcess = maxFilesProcessedPerProcess;
+        copy.forkedJvmArgs = forkedJvmArgs;
+        copy.tikaConfig = tikaConfig;
+        copy.javaPath = javaPath;
+        copy.codec = codec;
+        copy.memoryMappedThresholdBytes = memoryMappedThresholdBytes;
+        copy.numStandbyServers = numStandbyServers;
+        copy.warmUpDirectory = warmUpDirectory;
+        copy.numThreadsPerServer = numThreadsPerServer;
+        copy.dedupAlgorithm = dedupAlgorithm;
+        copy.dedupMode = dedupMode;
+        copy.dedupDirectory = dedupDirectory;
+        copy.dedupMaxEntries = dedupMaxEntries;
+        copy.parserStats = parserStats;
+        return copy;
+    }
 
     public long getTimeoutMillis() {
         return timeoutMillis;
@@ -171,4 +210,162 @@ public class PipesConfigBase extends ConfigBase {
     public void setSleepOnStartupTimeoutMillis(long sleepOnStartupTimeoutMillis) {
         this.sleepOnStartupTimeoutMillis = sleepOnStartupTimeoutMillis;
     }
+
+    public String getCodec() {
+        return codec;
+    }
+
+    /**
+     * Codec used to send tuples to and results back from the forked
+     * PipesServer: <code>java</code> (default), <code>binary</code>,
+     * <code>binary-deflate</code> (deflates large content fields) or the
+     * fully qualified class name of a {@link PipesCodec}.
+     *
+     * @param codec
+     */
+    public void setCodec(String codec) {
+        this.codec = codec;
+    }
+
+    public long getMemoryMappedThresholdBytes() {
+        return memoryMappedThresholdBytes;
+    }
+
+    /**
+     * If a serialized extract that is sent back to the PipesClient is at least this
+     * many bytes, the forked PipesServer writes it to a memory mapped temp file
+     * and only sends its offset and length over stdout.
+     * If set to <code>-1</code> (the default), this is disabled and all extracts
+     * are sent over stdout.
+     *
+     * @param memoryMappedThresholdBytes
+     */
+    public void setMemoryMappedThresholdBytes(long memoryMappedThresholdBytes) {
+        this.memoryMappedThresholdBytes = memoryMappedThresholdBytes;
+    }
+
+    public int getNumStandbyServers() {
+        return numStandbyServers;
+    }
+
+    /**
+     * Number of forked PipesServers to keep started and initialized so that
+     * a PipesClient can swap one in immediately after a crash, timeout or
+     * after hitting {@link #getMaxFilesProcessedPerProcess()}.
+     * The default, <code>0</code>, means that servers are started on demand.
+     *
+     * @param numStandbyServers
+     */
+    public void setNumStandbyServers(int numStandbyServers) {
+        this.numStandbyServers = numStandbyServers;
+    }
+
+    public Path getWarmUpDirectory() {
+        return warmUpDirectory;
+    }
+
+    /**
+     * Optional directory of files that standby servers parse before they
+     * report that they're ready so that their parsers are loaded and JIT-warmed.
+     *
+     * @param warmUpDirectory
+     */
+    public void setWarmUpDirectory(String warmUpDirectory) {
+        this.warmUpDirectory = Paths.get(warmUpDirectory);
+    }
+
+    public int getNumThreadsPerServer() {
+        return numThreadsPerServer;
+    }
+
+    /**
+     * Number of documents that a single forked PipesServer parses concurrently.
+     * With the default, <code>1</code>, each PipesClient has its own server.
+     * With a value greater than <code>1</code>, up to this many callers share
+     * a PipesClient and its server; the server parses with its own thread pool,
+     * times out individual documents and is only restarted if it exits, e.g.
+     * on an OOM.  The memory mapped transport is not used in this mode.
+     *
+     * @param numThreadsPerServer
+     */
+    public void setNumThreadsPerServer(int numThreadsPerServer) {
+        this.numThreadsPerServer = numThreadsPerServer;
+    }
+
+    public String getDedupAlgorithm() {
+        return dedupAlgorithm;
+    }
+
+    /**
+     * If set, the forked servers digest every file with this algorithm,
+     * e.g. <code>SHA-256</code>, and don't parse files that have already
+     * been parsed, see {@link PipesDeduplicator}. Default: not set, every file
+     * is parsed.
+     *
+     * @param dedupAlgorithm
+     */
+    public void setDedupAlgorithm(String dedupAlgorithm) {
+        this.dedupAlgorithm = dedupAlgorithm;
+    }
+
+    public String getDedupMode() {
+        return dedupMode;
+    }
+
+    /**
+     * What to emit for a duplicate: <code>reference</code>, the emit key of
+     * the first copy, or <code>extract</code>, the extract of the first copy.
+     * Default: <code>reference</code>
+     *
+     * @param dedupMode
+     */
+    public void setDedupMode(String dedupMode) {
+        this.dedupMode = PipesDeduplicator.MODE.parse(dedupMode).name();
+    }
+
+    public Path getDedupDirectory() {
+        return dedupDirectory;
+    }
+
+    /**
+     * Optional directory to store the digests of parsed files in, so that
+     * they are shared by all forked servers and by later runs. Without it,
+     * each forked server only remembers the files that it has parsed.
+     *
+     * @param dedupDirectory
+     */
+    public void setDedupDirectory(String dedupDirectory) {
+        this.dedupDirectory = Paths.get(dedupDirectory);
+    }
+
+    public int getDedupMaxEntries() {
+        return dedupMaxEntries;
+    }
+
+    /**
+     * Maximum number of digests that each forked server keeps in memory.
+     * Default: 10000
+     *
+     * @param dedupMaxEntries
+     */
+    public void setDedupMaxEntries(int dedupMaxEntries) {
+        this.dedupMaxEntries = dedupMaxEntries;
+    }
+
+    public boolean isParserStats() {
+        return parserStats;
+    }
+
+    /**
+     * If true, the forked servers measure the wall time, cpu time, allocated
+     * bytes and bytes read of every parser that they call, and add them to
+     * the emitted metadata, see
+     * {@link org.apache.tika.metadata.TikaCoreProperties#PARSER_WALL_TIME_MILLIS}.
+     * Default: false
+     *
+     * @param parserStats
+     */
+    public void setParserStats(boolean parserStats) {
+        this.parserStats = parserStats;
+    }
 }
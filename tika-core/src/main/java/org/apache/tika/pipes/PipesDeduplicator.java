@@ -0,0 +1,263 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.pipes;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.digest.InputStreamDigester;
+import org.apache.tika.pipes.emitter.EmitData;
+import org.apache.tika.pipes.emitter.EmitKey;
+import org.apache.tika.utils.StringUtils;
+
+/**
+ * Skips parsing of files whose bytes have already been parsed.
+ * <p>
+ * The {@link PipesServer} digests each fetched stream with an
+ * {@link InputStreamDigester} before it parses it. If the digest has been
+ * seen, it emits either a reference to the emit key of the first copy
+ * ({@link MODE#REFERENCE}) or the cached extract of the first copy
+ * ({@link MODE#EXTRACT}) instead of parsing the file again. Either way, the
+ * container metadata of a duplicate has {@link #DUPLICATE_OF}, and its
+ * {@link PipesResult#isDuplicate()} is true, so that reporters can count
+ * duplicates. The {@link org.apache.tika.pipes.async.AsyncStatus} of the
+ * file system status reporter has the count.
+ * <p>
+ * The same bytes parsed with another {@link HandlerConfig} (handler type,
+ * parse mode, write limit or maximum number of embedded resources) give
+ * another extract, so the entries are keyed by the digest and the handler
+ * config.
+ * <p>
+ * The seen digests are kept in an in-memory LRU cache per forked server and,
+ * if a directory is configured, in one file per digest in that directory, so
+ * that they are shared by all forked servers and by later runs.
+ */
+public class PipesDeduplicator {
+
+    public enum MODE {
+        REFERENCE, EXTRACT;
+
+        public static MODE parse(String mode) {
+            return MODE.valueOf(mode.toUpperCase(Locale.US));
+        }
+    }
+
+    /**
+     * Emit key of the first copy of a duplicate
+     */
+    public static final String DUPLICATE_OF = TikaCoreProperties.TIKA_META_PREFIX + "duplicate_of";
+
+    private static final Logger LOG = LoggerFactory.getLogger(PipesDeduplicator.class);
+
+    private static final int MARK_LIMIT = 1_000_000;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final InputStreamDigester digester;
+    private final String digestKey;
+    private final MODE mode;
+    private final Path directory;
+    private final PipesCodec codec;
+    private final Map<String, byte[]> cache;
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+
+    /**
+     * @param algorithm  digest algorithm, e.g. SHA-256
+     * @param mode       what to emit for a duplicate
+     * @param directory  directory for the digests that are shared across processes and
+     *                   runs, may be <code>null</code>
+     * @param maxEntries maximum number of digests to keep in memory
+     * @param codec      codec to serialize the cached entries with
+     */
+    public PipesDeduplicator(String algorithm, MODE mode, Path directory, int maxEntries,
+                             PipesCodec codec) {
+        this.digester = new InputStreamDigester(MARK_LIMIT, algorithm, PipesDeduplicator::hex);
+        this.digestKey = TikaCoreProperties.TIKA_META_PREFIX + "digest" +
+                TikaCoreProperties.NAMESPACE_PREFIX_DELIMITER + algorithm;
+        this.mode = mode;
+        this.directory = directory;
+        this.codec = codec;
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<String, byte[]>(16, 0.75f,
+                true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    /**
+     * Digests the stream and resets it. The digest is also added to the metadata.
+     *
+     * @return the digest
+     */
+    public String digest(TikaInputStream tis, Metadata metadata) throws IOException {
+        digester.digest(tis, metadata, new ParseContext());
+        return metadata.get(digestKey);
+    }
+
+    /**
+     * @param digest        digest of the file
+     * @param handlerConfig handler config the duplicate is to be parsed with
+     * @param fetchMetadata metadata from the fetcher for the duplicate
+     * @return what to emit for the duplicate or <code>null</code> if the digest hasn't
+     * been seen with this handler config
+     */
+    public List<Metadata> lookup(String digest, HandlerConfig handlerConfig,
+                                 Metadata fetchMetadata) {
+        lookups.incrementAndGet();
+        String key = getKey(digest, handlerConfig);
+        byte[] bytes = cache.get(key);
+        if (bytes == null && directory != null) {
+            try {
+                bytes = Files.readAllBytes(getPath(key));
+                cache.put(key, bytes);
+            } catch (NoSuchFileException e) {
+                //not seen
+            } catch (IOException e) {
+                LOG.warn("couldn't read dedup entry {}", digest, e);
+            }
+        }
+        if (bytes == null) {
+            return null;
+        }
+        EmitData emitData;
+        try {
+            emitData = codec.deserializeEmitData(bytes);
+        } catch (IOException e) {
+            LOG.warn("couldn't deserialize dedup entry {}", digest, e);
+            return null;
+        }
+        hits.incrementAndGet();
+        List<Metadata> metadataList = new ArrayList<>(emitData.getMetadataList());
+        if (metadataList.isEmpty()) {
+            metadataList.add(fetchMetadata);
+        } else {
+            Metadata container = metadataList.get(0);
+            for (String n : fetchMetadata.names()) {
+                container.set(n, null);
+                for (String v : fetchMetadata.getValues(n)) {
+                    container.add(n, v);
+                }
+            }
+        }
+        metadataList.get(0).set(DUPLICATE_OF, emitData.getEmitKey().getEmitKey());
+        return metadataList;
+    }
+
+    /**
+     * Remembers the result of a parse. This has to be called before the metadata
+     * is filtered.
+     */
+    public void store(String digest, FetchEmitTuple t, List<Metadata> metadataList) {
+        String key = getKey(digest, t.getHandlerConfig());
+        String emitKey = t.getEmitKey().getEmitKey();
+        if (StringUtils.isBlank(emitKey)) {
+            emitKey = t.getFetchKey().getFetchKey();
+        }
+        List<Metadata> cached = mode == MODE.EXTRACT ? metadataList : Collections.emptyList();
+        byte[] bytes;
+        try {
+            bytes = codec.serialize(new EmitData(new EmitKey(t.getEmitKey().getEmitterName(),
+                    emitKey), cached));
+        } catch (IOException e) {
+            LOG.warn("couldn't serialize dedup entry {}", digest, e);
+            return;
+        }
+        cache.put(key, bytes);
+        if (directory == null) {
+            return;
+        }
+        Path path = getPath(key);
+        try {
+            if (Files.exists(path)) {
+                return;
+            }
+            Files.createDirectories(path.getParent());
+            Path tmp = Files.createTempFile(path.getParent(), digest, ".tmp");
+            Files.write(tmp, bytes);
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warn("couldn't write dedup entry {}", digest, e);
+        }
+    }
+
+    public long getLookupCount() {
+        return lookups.get();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public double getHitRate() {
+        long l = lookups.get();
+        return l == 0 ? 0 : (double) hits.get() / l;
+    }
+
+    /**
+     * @return whether the metadata list is what {@link #lookup} returned for a duplicate
+     */
+    public static boolean isDuplicate(List<Metadata> metadataList) {
+        return metadataList != null && metadataList.size() > 0 &&
+                metadataList.get(0).get(DUPLICATE_OF) != null;
+    }
+
+    //the digest and the settings of the handler config that change the extract
+    static String getKey(String digest, HandlerConfig handlerConfig) {
+        if (handlerConfig == null) {
+            handlerConfig = HandlerConfig.DEFAULT_HANDLER_CONFIG;
+        }
+        return digest + "-" + handlerConfig.getType().name().toLowerCase(Locale.US) + "-" +
+                handlerConfig.getParseMode().name().toLowerCase(Locale.US) + "-" +
+                handlerConfig.getWriteLimit() + "-" + handlerConfig.getMaxEmbeddedResources() +
+                (handlerConfig.isThrowOnWriteLimitReached() ? "-throw" : "");
+    }
+
+    //subdirectories by the first two characters, so that no directory gets too many files
+    private Path getPath(String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key);
+    }
+
+    private static String hex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+}
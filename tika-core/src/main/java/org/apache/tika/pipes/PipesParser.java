@@ -29,15 +29,23 @@ public class PipesParser implements Closeable {
     private final PipesConfig pipesConfig;
     private final List<PipesClient> clients = new ArrayList<>();
     private final ArrayBlockingQueue<PipesClient> clientQueue ;
+    private final PipesServerStandbyPool standbyPool;
 
 
     public PipesParser(PipesConfig pipesConfig) {
         this.pipesConfig = pipesConfig;
         this.clientQueue = new ArrayBlockingQueue<>(pipesConfig.getNumClients());
+        this.standbyPool = pipesConfig.getNumStandbyServers() > 0 ?
+                new PipesServerStandbyPool(pipesConfig) : null;
+        //a client with several threads per server is shared by that many callers
+        int threadsPerServer = Math.max(1, pipesConfig.getNumThreadsPerServer());
+        PipesClient client = null;
         for (int i = 0; i < pipesConfig.getNumClients(); i++) {
-            PipesClient client = new PipesClient(pipesConfig);
+            if (i % threadsPerServer == 0) {
+                client = new PipesClient(pipesConfig, standbyPool);
+                clients.add(client);
+            }
             clientQueue.offer(client);
-            clients.add(client);
         }
     }
 
@@ -68,6 +76,9 @@ public class PipesParser implements Closeable {
                 exceptions.add(e);
             }
         }
+        if (standbyPool != null) {
+            standbyPool.close();
+        }
         if (exceptions.size() > 0) {
             throw exceptions.get(0);
         }
@@ -41,25 +41,32 @@ public class PipesResult {
     public static final PipesResult OOM = new PipesResult(STATUS.OOM);
     public static final PipesResult UNSPECIFIED_CRASH = new PipesResult(STATUS.UNSPECIFIED_CRASH);
     public static final PipesResult EMIT_SUCCESS = new PipesResult(STATUS.EMIT_SUCCESS);
+    /**
+     * A duplicate that the {@link PipesDeduplicator} didn't parse again was emitted
+     */
+    public static final PipesResult EMIT_SUCCESS_DUPLICATE =
+            new PipesResult(STATUS.EMIT_SUCCESS, null, null, true);
     public static final PipesResult INTERRUPTED_EXCEPTION = new PipesResult(STATUS.INTERRUPTED_EXCEPTION);
     public static final PipesResult EMPTY_OUTPUT =
             new PipesResult(STATUS.EMPTY_OUTPUT);
     private final STATUS status;
     private final EmitData emitData;
     private final String message;
+    private final boolean duplicate;
 
-    private PipesResult(STATUS status, EmitData emitData, String message) {
+    private PipesResult(STATUS status, EmitData emitData, String message, boolean duplicate) {
         this.status = status;
         this.emitData = emitData;
         this.message = message;
+        this.duplicate = duplicate;
     }
 
     public PipesResult(STATUS status) {
-        this(status, null, null);
+        this(status, null, null, false);
     }
 
     public PipesResult(STATUS status, String message) {
-        this(status, null, message);
+        this(status, null, message, false);
     }
 
     /**
@@ -68,7 +75,8 @@ public class PipesResult {
      * @param emitData
      */
     public PipesResult(EmitData emitData) {
-        this(STATUS.PARSE_SUCCESS, emitData, null);
+        this(STATUS.PARSE_SUCCESS, emitData, null,
+                PipesDeduplicator.isDuplicate(emitData.getMetadataList()));
     }
 
     /**
@@ -79,7 +87,8 @@ public class PipesResult {
      * @param message
      */
     public PipesResult(EmitData emitData, String message) {
-        this(STATUS.PARSE_SUCCESS_WITH_EXCEPTION, emitData, message);
+        this(STATUS.PARSE_SUCCESS_WITH_EXCEPTION, emitData, message,
+                PipesDeduplicator.isDuplicate(emitData.getMetadataList()));
     }
 
     public STATUS getStatus() {
@@ -94,9 +103,18 @@ public class PipesResult {
         return message;
     }
 
+    /**
+     * @return whether the {@link PipesDeduplicator} found that the bytes had
+     * already been parsed, so that this wasn't parsed again. Reporters can
+     * count these to get the dedup hit rate.
+     */
+    public boolean isDuplicate() {
+        return duplicate;
+    }
+
     @Override
     public String toString() {
         return "PipesResult{" + "status=" + status + ", emitData=" + emitData + ", message='" +
-                message + '\'' + '}';
+                message + '\'' + ", duplicate=" + duplicate + '}';
     }
 }
@@ -20,17 +20,22 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.PrintStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.io.input.UnsynchronizedByteArrayInputStream;
-import org.apache.commons.io.output.UnsynchronizedByteArrayOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.ContentHandler;
@@ -40,11 +45,14 @@ import org.apache.tika.config.TikaConfig;
 import org.apache.tika.exception.EncryptedDocumentException;
 import org.apache.tika.exception.TikaException;
 import org.apache.tika.extractor.DocumentSelector;
+import org.apache.tika.io.TemporaryResources;
+import org.apache.tika.io.TikaInputStream;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.metadata.TikaCoreProperties;
 import org.apache.tika.parser.AutoDetectParser;
 import org.apache.tika.parser.ParseContext;
 import org.apache.tika.parser.Parser;
+import org.apache.tika.parser.ParserStatsListener;
 import org.apache.tika.parser.RecursiveParserWrapper;
 import org.apache.tika.pipes.emitter.EmitData;
 import org.apache.tika.pipes.emitter.EmitKey;
@@ -77,6 +85,36 @@ public class PipesServer implements Runnable {
     //it looks like the server crashes with exit value 3 on OOM, for example
     public static final int TIMEOUT_EXIT_CODE = 17;
 
+    /**
+     * System property for a directory of files to parse after initialization
+     * and before reporting ready, so that a standby server is JIT-warmed
+     * before it gets real work.
+     */
+    public static final String WARM_UP_DIRECTORY_PROPERTY = "pipesWarmUpDirectory";
+
+    /**
+     * System property for the number of documents to parse concurrently.  If this
+     * is greater than 1, every request and response frame carries an int request id
+     * after the status byte so that responses can be sent in any order.
+     */
+    public static final String NUM_THREADS_PROPERTY = "pipesServerThreads";
+
+    /**
+     * System properties that configure the {@link PipesDeduplicator}. Files are only
+     * deduplicated if the algorithm is set.
+     */
+    public static final String DEDUP_ALGORITHM_PROPERTY = "pipesDedupAlgorithm";
+    public static final String DEDUP_MODE_PROPERTY = "pipesDedupMode";
+    public static final String DEDUP_DIRECTORY_PROPERTY = "pipesDedupDirectory";
+    public static final String DEDUP_MAX_ENTRIES_PROPERTY = "pipesDedupMaxEntries";
+
+    /**
+     * System property that turns on the per-parser stats, see
+     * {@link ParserStatsListener}. The stats are added to the emitted metadata
+     * and logged at debug level.
+     */
+    public static final String PARSER_STATS_PROPERTY = "pipesParserStats";
+
     public enum STATUS {
         READY,
         CALL,
@@ -93,7 +131,11 @@ public class PipesServer implements Runnable {
         EMIT_EXCEPTION,
         OOM,
         TIMEOUT,
-        EMPTY_OUTPUT;
+        EMPTY_OUTPUT,
+        PARSE_SUCCESS_MEMORY_MAPPED,
+        EMIT_SUCCESS_DUPLICATE,
+        //a parse thread of a server with several threads failed with an unexpected throwable
+        UNSPECIFIED_CRASH;
 
         byte getByte() {
             return (byte) (ordinal() + 1);
@@ -125,6 +167,10 @@ public class PipesServer implements Runnable {
     private final long maxForEmitBatchBytes;
     private final long serverParseTimeoutMillis;
     private final long serverWaitTimeoutMillis;
+    private final PipesCodec codec;
+    //serialized results at least this long are written to the memory mapped file
+    private long memoryMappedThresholdBytes = -1;
+    private MemoryMappedTransport memoryMappedTransport;
     private Parser autoDetectParser;
     private Parser rMetaParser;
     private TikaConfig tikaConfig;
@@ -132,18 +178,36 @@ public class PipesServer implements Runnable {
     private EmitterManager emitterManager;
     private volatile boolean parsing;
     private volatile long since;
+    //concurrent parsing
+    private int numThreads = 1;
+    private ExecutorService parseExecutor;
+    private final Map<Integer, ParseTask> tasks = new ConcurrentHashMap<>();
+    private final ThreadLocal<ParseTask> currentTask = new ThreadLocal<>();
+
+    private PipesDeduplicator deduplicator;
+    private ParserStatsListener parserStatsListener;
 
 
     public PipesServer(Path tikaConfigPath, InputStream in, PrintStream out,
                        long maxForEmitBatchBytes,
                        long serverParseTimeoutMillis, long serverWaitTimeoutMillis)
             throws IOException, TikaException, SAXException {
+        this(tikaConfigPath, in, out, maxForEmitBatchBytes, serverParseTimeoutMillis,
+                serverWaitTimeoutMillis, new JavaPipesCodec());
+    }
+
+    public PipesServer(Path tikaConfigPath, InputStream in, PrintStream out,
+                       long maxForEmitBatchBytes,
+                       long serverParseTimeoutMillis, long serverWaitTimeoutMillis,
+                       PipesCodec codec)
+            throws IOException, TikaException, SAXException {
         this.tikaConfigPath = tikaConfigPath;
         this.input = new DataInputStream(in);
         this.output = new DataOutputStream(out);
         this.maxForEmitBatchBytes = maxForEmitBatchBytes;
         this.serverParseTimeoutMillis = serverParseTimeoutMillis;
         this.serverWaitTimeoutMillis = serverWaitTimeoutMillis;
+        this.codec = codec;
         this.parsing = false;
         this.since = System.currentTimeMillis();
     }
@@ -155,10 +219,27 @@ public class PipesServer implements Runnable {
             long maxForEmitBatchBytes = Long.parseLong(args[1]);
             long serverParseTimeoutMillis = Long.parseLong(args[2]);
             long serverWaitTimeoutMillis = Long.parseLong(args[3]);
+            PipesCodec codec = loadCodec(args.length > 4 ? args[4] : PipesCodec.JAVA);
 
             PipesServer server =
                     new PipesServer(tikaConfig, System.in, System.out, maxForEmitBatchBytes,
-                            serverParseTimeoutMillis, serverWaitTimeoutMillis);
+                            serverParseTimeoutMillis, serverWaitTimeoutMillis, codec);
+            if (args.length > 6) {
+                server.setMemoryMappedTransport(Paths.get(args[5]), Long.parseLong(args[6]));
+            }
+            server.setNumThreads(Integer.getInteger(NUM_THREADS_PROPERTY, 1));
+            String dedupAlgorithm = System.getProperty(DEDUP_ALGORITHM_PROPERTY);
+            if (dedupAlgorithm != null) {
+                String dedupDirectory = System.getProperty(DEDUP_DIRECTORY_PROPERTY);
+                server.setDeduplicator(new PipesDeduplicator(dedupAlgorithm,
+                        PipesDeduplicator.MODE.parse(System.getProperty(DEDUP_MODE_PROPERTY,
+                                PipesDeduplicator.MODE.REFERENCE.name())),
+                        dedupDirectory == null ? null : Paths.get(dedupDirectory),
+                        Integer.getInteger(DEDUP_MAX_ENTRIES_PROPERTY, 10000), codec));
+            }
+            if (Boolean.getBoolean(PARSER_STATS_PROPERTY)) {
+                server.setParserStatsListener(stats -> LOG.debug("parser stats: {}", stats));
+            }
             System.setIn(new UnsynchronizedByteArrayInputStream(new byte[0]));
             System.setOut(System.err);
             Thread watchdog = new Thread(server, "Tika Watchdog");
@@ -171,10 +252,72 @@ public class PipesServer implements Runnable {
         }
     }
 
+    /**
+     * Send serialized results that are at least <code>thresholdBytes</code> long
+     * back to the client via the memory mapped file that the client created
+     * instead of through stdout.
+     */
+    public void setMemoryMappedTransport(Path path, long thresholdBytes) throws IOException {
+        this.memoryMappedTransport = MemoryMappedTransport.openForWriting(path);
+        this.memoryMappedThresholdBytes = thresholdBytes;
+    }
+
+    /**
+     * If <code>numThreads</code> is greater than 1, parse up to that many documents
+     * concurrently.  Each document is timed out individually, and the server only exits
+     * on an OOM or if all of its threads are stuck in documents that have timed out.
+     * This disables the memory mapped transport.
+     */
+    public void setNumThreads(int numThreads) {
+        this.numThreads = numThreads;
+        if (numThreads > 1) {
+            AtomicInteger threadCount = new AtomicInteger(0);
+            //the client never has more than numThreads requests in flight, so
+            //this only grows beyond numThreads while timed out threads are stuck
+            this.parseExecutor = Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "Tika Parser " + threadCount.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+            if (memoryMappedTransport != null) {
+                LOG.warn("memory mapped transport is not supported with multiple threads");
+                memoryMappedTransport = null;
+            }
+        }
+    }
+
+    /**
+     * If set, files whose bytes have already been parsed are not parsed again.
+     */
+    public void setDeduplicator(PipesDeduplicator deduplicator) {
+        this.deduplicator = deduplicator;
+    }
+
+    /**
+     * If set, every parse is measured by parser, see {@link ParserStatsListener}.
+     */
+    public void setParserStatsListener(ParserStatsListener parserStatsListener) {
+        this.parserStatsListener = parserStatsListener;
+    }
+
+    private static PipesCodec loadCodec(String name) {
+        try {
+            return PipesCodec.load(name);
+        } catch (IllegalArgumentException e) {
+            LOG.warn("couldn't load codec '{}'; falling back to java serialization", name, e);
+            return new JavaPipesCodec();
+        }
+    }
+
     @Override
     public void run() {
         try {
             while (true) {
+                if (numThreads > 1) {
+                    checkTasks();
+                    Thread.sleep(checkForTimeoutMs);
+                    continue;
+                }
                 synchronized (lock) {
                     long elapsed = System.currentTimeMillis() - since;
                     if (parsing && elapsed > serverParseTimeoutMillis) {
@@ -193,6 +336,35 @@ public class PipesServer implements Runnable {
         }
     }
 
+    private void checkTasks() {
+        long now = System.currentTimeMillis();
+        int stuck = 0;
+        for (ParseTask task : tasks.values()) {
+            long started = task.started;
+            if (started < 0 || now - started <= serverParseTimeoutMillis) {
+                continue;
+            }
+            if (task.timedOutAt < 0) {
+                task.timedOutAt = now;
+                LOG.warn("timeout task {}; elapsed {} with {}", task.tupleId, now - started,
+                        serverParseTimeoutMillis);
+                write(task, STATUS.TIMEOUT, null);
+                task.thread.interrupt();
+            } else if (now - task.timedOutAt > serverParseTimeoutMillis) {
+                //the parse has ignored the interrupt for as long again as the timeout
+                stuck++;
+            }
+        }
+        if (stuck >= numThreads) {
+            LOG.warn("all {} threads are stuck in timed out parses", stuck);
+            exit(TIMEOUT_EXIT_CODE);
+        } else if (tasks.isEmpty() && serverWaitTimeoutMillis > 0 &&
+                now - since > serverWaitTimeoutMillis) {
+            LOG.info("closing down from inactivity");
+            exit(0);
+        }
+    }
+
     public void processRequests() {
         LOG.debug("processing requests {}");
         //initialize
@@ -203,6 +375,7 @@ public class PipesServer implements Runnable {
                 LOG.trace("timer -- initialize parser: {} ms", System.currentTimeMillis() - start);
             }
             LOG.debug("pipes server initialized");
+            warmUp();
         } catch (Throwable t) {
             LOG.error("couldn't initialize parser", t);
             try {
@@ -216,6 +389,9 @@ public class PipesServer implements Runnable {
         //main loop
         try {
             write(STATUS.READY);
+            //tell the client which codec we're actually using
+            output.writeUTF(codec.getName());
+            output.flush();
             long start = System.currentTimeMillis();
             while (true) {
                 int request = input.read();
@@ -227,7 +403,13 @@ public class PipesServer implements Runnable {
                         LOG.trace("timer -- ping: {} ms", System.currentTimeMillis() - start);
                     }
                     write(STATUS.PING);
+                    //a ping counts as activity so that idle standby servers can be kept alive
+                    synchronized (lock) {
+                        since = System.currentTimeMillis();
+                    }
                     start = System.currentTimeMillis();
+                } else if (request == STATUS.CALL.getByte() && numThreads > 1) {
+                    submitOne();
                 } else if (request == STATUS.CALL.getByte()) {
                     parseOne();
                     if (LOG.isTraceEnabled()) {
@@ -237,7 +419,9 @@ public class PipesServer implements Runnable {
                 } else {
                     throw new IllegalStateException("Unexpected request");
                 }
-                output.flush();
+                synchronized (output) {
+                    output.flush();
+                }
             }
         } catch (Throwable t) {
             LOG.error("main loop error (did the forking process shut down?)", t);
@@ -266,7 +450,8 @@ public class PipesServer implements Runnable {
     }
 
 
-    private void emit(String taskId, EmitData emitData, String parseExceptionStack) {
+    private void emit(String taskId, EmitData emitData, String parseExceptionStack,
+                      boolean duplicate) {
         Emitter emitter = null;
 
         try {
@@ -288,7 +473,7 @@ public class PipesServer implements Runnable {
             return;
         }
         if (StringUtils.isBlank(parseExceptionStack)) {
-            write(STATUS.EMIT_SUCCESS);
+            write(duplicate ? STATUS.EMIT_SUCCESS_DUPLICATE : STATUS.EMIT_SUCCESS);
         } else {
             write(STATUS.EMIT_SUCCESS_PARSE_EXCEPTION,
                     parseExceptionStack.getBytes(StandardCharsets.UTF_8));
@@ -322,6 +507,31 @@ public class PipesServer implements Runnable {
         }
     }
 
+    private void submitOne() throws IOException {
+        int requestId = input.readInt();
+        FetchEmitTuple t = readFetchEmitTuple();
+        ParseTask task = new ParseTask(requestId, t.getId());
+        tasks.put(requestId, task);
+        parseExecutor.execute(() -> {
+            task.thread = Thread.currentThread();
+            task.started = System.currentTimeMillis();
+            currentTask.set(task);
+            try {
+                actuallyParse(t);
+            } catch (OutOfMemoryError e) {
+                handleOOM(t.getId(), e);
+            } catch (Throwable e) {
+                //only fail this document; the other documents in flight are unaffected
+                LOG.error("problem parsing " + t.getId(), e);
+                write(STATUS.UNSPECIFIED_CRASH, ExceptionUtils.getStackTrace(e));
+            } finally {
+                currentTask.remove();
+                tasks.remove(requestId);
+                since = System.currentTimeMillis();
+            }
+        });
+    }
+
     private void actuallyParse(FetchEmitTuple t) {
 
         long start = System.currentTimeMillis();
@@ -354,6 +564,8 @@ public class PipesServer implements Runnable {
     private void emitIt(FetchEmitTuple t, List<Metadata> metadataList) {
         long start = System.currentTimeMillis();
         String stack = getContainerStacktrace(t, metadataList);
+        //the filter may remove the duplicate_of field
+        boolean duplicate = PipesDeduplicator.isDuplicate(metadataList);
         //we need to apply this after we pull out the stacktrace
         filterMetadata(metadataList);
         if (StringUtils.isBlank(stack) || t.getOnParseException() == FetchEmitTuple.ON_PARSE_EXCEPTION.EMIT) {
@@ -365,7 +577,7 @@ public class PipesServer implements Runnable {
             }
             EmitData emitData = new EmitData(t.getEmitKey(), metadataList, stack);
             if (maxForEmitBatchBytes >= 0 && emitData.getEstimatedSizeBytes() >= maxForEmitBatchBytes) {
-                emit(t.getId(), emitData, stack);
+                emit(t.getId(), emitData, stack, duplicate);
                 if (LOG.isTraceEnabled()) {
                     LOG.trace("timer -- emitted: {} ms", System.currentTimeMillis() - start);
                 }
@@ -417,6 +629,7 @@ public class PipesServer implements Runnable {
             Metadata metadata = new Metadata();
             try (InputStream stream = ((RangeFetcher)fetcher).fetch(fetchKey.getFetchKey(),
                     fetchKey.getRangeStart(), fetchKey.getRangeEnd(), metadata)) {
+                addFetchMetadata(t, metadata);
                 return parse(t, stream, metadata);
             } catch (SecurityException e) {
                 LOG.error("security exception " + t.getId(), e);
@@ -428,6 +641,7 @@ public class PipesServer implements Runnable {
         } else {
             Metadata metadata = new Metadata();
             try (InputStream stream = fetcher.fetch(t.getFetchKey().getFetchKey(), metadata)) {
+                addFetchMetadata(t, metadata);
                 return parse(t, stream, metadata);
             } catch (SecurityException e) {
                 LOG.error("security exception " + t.getId(), e);
@@ -440,6 +654,23 @@ public class PipesServer implements Runnable {
         return null;
     }
 
+    /**
+     * Adds the metadata of an earlier fetch, e.g. by a prefetcher that staged
+     * the bytes. It wins over what the fetcher of the staged copy reported.
+     */
+    private static void addFetchMetadata(FetchEmitTuple t, Metadata metadata) {
+        Metadata fetchMetadata = t.getFetchMetadata();
+        if (fetchMetadata == null) {
+            return;
+        }
+        for (String n : fetchMetadata.names()) {
+            metadata.remove(n);
+            for (String val : fetchMetadata.getValues(n)) {
+                metadata.add(n, val);
+            }
+        }
+    }
+
     private String getNoFetcherMsg(String fetcherName) {
         StringBuilder sb = new StringBuilder();
         sb.append("Fetcher '").append(fetcherName).append("'");
@@ -478,7 +709,30 @@ public class PipesServer implements Runnable {
     }
 
     private List<Metadata> parse(FetchEmitTuple fetchEmitTuple, InputStream stream,
-                                 Metadata metadata) {
+                                 Metadata metadata) throws IOException {
+        if (deduplicator == null) {
+            return parseStream(fetchEmitTuple, stream, metadata);
+        }
+        try (TemporaryResources tmp = new TemporaryResources()) {
+            TikaInputStream tis = TikaInputStream.get(stream, tmp, metadata);
+            String digest = deduplicator.digest(tis, metadata);
+            List<Metadata> duplicate =
+                    deduplicator.lookup(digest, fetchEmitTuple.getHandlerConfig(), metadata);
+            if (duplicate != null) {
+                LOG.debug("{} is a duplicate of {}", fetchEmitTuple.getId(),
+                        duplicate.get(0).get(PipesDeduplicator.DUPLICATE_OF));
+                return duplicate;
+            }
+            List<Metadata> metadataList = parseStream(fetchEmitTuple, tis, metadata);
+            if (!metadataIsEmpty(metadataList)) {
+                deduplicator.store(digest, fetchEmitTuple, metadataList);
+            }
+            return metadataList;
+        }
+    }
+
+    private List<Metadata> parseStream(FetchEmitTuple fetchEmitTuple, InputStream stream,
+                                       Metadata metadata) {
         HandlerConfig handlerConfig = fetchEmitTuple.getHandlerConfig();
         if (handlerConfig.getParseMode() == HandlerConfig.PARSE_MODE.RMETA) {
             return parseRecursive(fetchEmitTuple, handlerConfig, stream, metadata);
@@ -505,6 +759,9 @@ public class PipesServer implements Runnable {
                 return embedded++ < maxEmbedded;
             }
         });
+        if (parserStatsListener != null) {
+            parseContext.set(ParserStatsListener.class, parserStatsListener);
+        }
 
         String containerException = null;
         long start = System.currentTimeMillis();
@@ -543,6 +800,9 @@ public class PipesServer implements Runnable {
                 new BasicContentHandlerFactory(handlerConfig.getType(), handlerConfig.getWriteLimit()),
                 handlerConfig.getMaxEmbeddedResources());
         ParseContext parseContext = new ParseContext();
+        if (parserStatsListener != null) {
+            parseContext.set(ParserStatsListener.class, parserStatsListener);
+        }
         long start = System.currentTimeMillis();
         try {
             rMetaParser.parse(stream, handler, metadata, parseContext);
@@ -588,16 +848,10 @@ public class PipesServer implements Runnable {
             int length = input.readInt();
             byte[] bytes = new byte[length];
             input.readFully(bytes);
-            try (ObjectInputStream objectInputStream = new ObjectInputStream(
-                    new UnsynchronizedByteArrayInputStream(bytes))) {
-                return (FetchEmitTuple) objectInputStream.readObject();
-            }
+            return codec.deserializeFetchEmitTuple(bytes);
         } catch (IOException e) {
             LOG.error("problem reading tuple", e);
             exit(1);
-        } catch (ClassNotFoundException e) {
-            LOG.error("can't find class?!", e);
-            exit(1);
         }
         //unreachable, no?!
         return null;
@@ -613,13 +867,53 @@ public class PipesServer implements Runnable {
     }
 
 
+    private void warmUp() throws IOException {
+        String warmUpDirectory = System.getProperty(WARM_UP_DIRECTORY_PROPERTY);
+        if (StringUtils.isBlank(warmUpDirectory)) {
+            return;
+        }
+        Path dir = Paths.get(warmUpDirectory);
+        if (!Files.isDirectory(dir)) {
+            LOG.warn("warm up directory {} does not exist", dir);
+            return;
+        }
+        long start = System.currentTimeMillis();
+        int files = 0;
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(dir)) {
+            for (Path p : paths) {
+                if (!Files.isRegularFile(p)) {
+                    continue;
+                }
+                RecursiveParserWrapperHandler handler = new RecursiveParserWrapperHandler(
+                        new BasicContentHandlerFactory(
+                                BasicContentHandlerFactory.HANDLER_TYPE.TEXT, -1));
+                Metadata metadata = new Metadata();
+                metadata.set(TikaCoreProperties.RESOURCE_NAME_KEY, p.getFileName().toString());
+                try (InputStream is = TikaInputStream.get(p, metadata)) {
+                    rMetaParser.parse(is, handler, metadata, new ParseContext());
+                } catch (Exception e) {
+                    LOG.debug("exception during warm up on {}", p, e);
+                }
+                files++;
+            }
+        }
+        LOG.info("warmed up on {} files in {} ms", files, System.currentTimeMillis() - start);
+    }
+
     private void write(EmitData emitData) {
         try {
-            UnsynchronizedByteArrayOutputStream bos = new UnsynchronizedByteArrayOutputStream();
-            try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(bos)) {
-                objectOutputStream.writeObject(emitData);
+            byte[] bytes = codec.serialize(emitData);
+            if (memoryMappedTransport != null && memoryMappedThresholdBytes >= 0 &&
+                    currentTask.get() == null &&
+                    bytes.length >= memoryMappedThresholdBytes) {
+                long offset = memoryMappedTransport.write(bytes);
+                output.write(STATUS.PARSE_SUCCESS_MEMORY_MAPPED.getByte());
+                output.writeLong(offset);
+                output.writeInt(bytes.length);
+                output.flush();
+                return;
             }
-            write(STATUS.PARSE_SUCCESS, bos.toByteArray());
+            write(STATUS.PARSE_SUCCESS, bytes);
         } catch (IOException e) {
             LOG.error("problem writing emit data (forking process shutdown?)", e);
             exit(1);
@@ -632,6 +926,11 @@ public class PipesServer implements Runnable {
     }
 
     private void write(STATUS status, byte[] bytes) {
+        ParseTask task = currentTask.get();
+        if (task != null) {
+            write(task, status, bytes);
+            return;
+        }
         try {
             int len = bytes.length;
             output.write(status.getByte());
@@ -645,12 +944,55 @@ public class PipesServer implements Runnable {
     }
 
     private void write(STATUS status) {
+        ParseTask task = currentTask.get();
+        if (task != null) {
+            write(task, status, null);
+            return;
+        }
         try {
-            output.write(status.getByte());
-            output.flush();
+            synchronized (output) {
+                output.write(status.getByte());
+                output.flush();
+            }
+        } catch (IOException e) {
+            LOG.error("problem writing data (forking process shutdown?)", e);
+            exit(1);
+        }
+    }
+
+    private void write(ParseTask task, STATUS status, byte[] bytes) {
+        //only the first response is sent, e.g. a result that shows up after
+        //the watchdog has reported a timeout is dropped
+        if (!task.responded.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            synchronized (output) {
+                output.write(status.getByte());
+                output.writeInt(task.requestId);
+                if (bytes != null) {
+                    output.writeInt(bytes.length);
+                    output.write(bytes);
+                }
+                output.flush();
+            }
         } catch (IOException e) {
             LOG.error("problem writing data (forking process shutdown?)", e);
             exit(1);
         }
     }
+
+    private static class ParseTask {
+        private final int requestId;
+        private final String tupleId;
+        private final AtomicBoolean responded = new AtomicBoolean(false);
+        private volatile Thread thread;
+        private volatile long started = -1;
+        private volatile long timedOutAt = -1;
+
+        private ParseTask(int requestId, String tupleId) {
+            this.requestId = requestId;
+            this.tupleId = tupleId;
+        }
+    }
 }
@@ -0,0 +1,474 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.pipes;
+
+import static org.apache.tika.pipes.PipesServer.STATUS.PING;
+import static org.apache.tika.pipes.PipesServer.STATUS.READY;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.commons.io.output.UnsynchronizedByteArrayOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.tika.pipes.emitter.EmitData;
+import org.apache.tika.utils.ProcessUtils;
+import org.apache.tika.utils.StringUtils;
+
+/**
+ * A forked {@link PipesServer} that has completed its startup handshake: it has
+ * initialized its parsers and sent the <code>READY</code> byte and the name
+ * of its codec.
+ * <p>
+ * These are started either by a {@link PipesClient} on demand or ahead of time by
+ * a {@link PipesServerStandbyPool}.
+ */
+class PipesServerProcess {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PipesServerProcess.class);
+    private static final int MAX_BYTES_BEFORE_READY = 20000;
+    private static final long WAIT_ON_DESTROY_MS = 10000;
+
+    private final String serverId;
+    private final Process process;
+    private final DataInputStream input;
+    private final DataOutputStream output;
+    private final Path memoryMappedFile;
+    private PipesCodec codec;
+    private MemoryMappedTransport memoryMappedTransport;
+
+    private PipesServerProcess(String serverId, Process process, Path memoryMappedFile) {
+        this.serverId = serverId;
+        this.process = process;
+        this.input = new DataInputStream(process.getInputStream());
+        this.output = new DataOutputStream(process.getOutputStream());
+        this.memoryMappedFile = memoryMappedFile;
+    }
+
+    /**
+     * Forks a new server and waits for it to be ready.
+     *
+     * @param serverId used for logging and passed to the forked process as
+     *                 <code>-DpipesClientId</code>
+     * @param warmUp whether the server should parse the
+     *               {@link PipesConfigBase#getWarmUpDirectory()} before it reports ready
+     * @param executorService used to time out the startup handshake
+     */
+    static PipesServerProcess start(PipesConfigBase pipesConfig, String serverId, boolean warmUp,
+                                    ExecutorService executorService)
+            throws IOException, InterruptedException, TimeoutException {
+        Path memoryMappedFile = null;
+        if (pipesConfig.getMemoryMappedThresholdBytes() >= 0 &&
+                pipesConfig.getNumThreadsPerServer() <= 1) {
+            memoryMappedFile = Files.createTempFile("tika-pipes-" + serverId + "-", ".mmap");
+            memoryMappedFile.toFile().deleteOnExit();
+        }
+        ProcessBuilder pb = new ProcessBuilder(
+                getCommandline(pipesConfig, serverId, warmUp, memoryMappedFile));
+        pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+
+        Process process;
+        try {
+            process = pb.start();
+        } catch (Exception e) {
+            //Do we ever want this to be not fatal?!
+            LOG.error("failed to start client", e);
+            if (memoryMappedFile != null) {
+                Files.deleteIfExists(memoryMappedFile);
+            }
+            throw new FailedToStartClientException(e);
+        }
+        PipesServerProcess server = new PipesServerProcess(serverId, process, memoryMappedFile);
+        server.waitForReady(pipesConfig, executorService);
+        return server;
+    }
+
+    private void waitForReady(PipesConfigBase pipesConfig, ExecutorService executorService)
+            throws InterruptedException, TimeoutException {
+        //wait for ready signal
+        final UnsynchronizedByteArrayOutputStream bos = new UnsynchronizedByteArrayOutputStream();
+        FutureTask<Integer> futureTask = new FutureTask<>(() -> {
+            int b = input.read();
+            int read = 1;
+            while (read < MAX_BYTES_BEFORE_READY && b != READY.getByte()) {
+
+                if (b == -1) {
+                    throw new RuntimeException(getMsg("pipesClientId=" + serverId + ": " +
+                            "Couldn't start server -- read EOF before 'ready' byte.\n" +
+                            " process isAlive=" + process.isAlive(), bos));
+                }
+                bos.write(b);
+                b = input.read();
+                read++;
+            }
+            if (read >= MAX_BYTES_BEFORE_READY) {
+                throw new RuntimeException(getMsg("pipesClientId=" + serverId + ": " +
+                        "Couldn't start server: read too many bytes before 'ready' byte.\n" +
+                        " Make absolutely certain that your logger is not writing to " +
+                        "stdout.\n", bos));
+            }
+            if (bos.size() > 0) {
+                LOG.warn("pipesClientId={}: From forked process before start byte: {}",
+                        serverId, bos.toString(StandardCharsets.UTF_8));
+            }
+            //the server replies with the codec it is actually using
+            String codecName = input.readUTF();
+            codec = PipesCodec.load(codecName);
+            if (!codecName.equals(pipesConfig.getCodec())) {
+                LOG.warn("pipesClientId={}: requested codec '{}', but server is using '{}'",
+                        serverId, pipesConfig.getCodec(), codecName);
+            }
+            return 1;
+        });
+        long start = System.currentTimeMillis();
+        executorService.submit(futureTask);
+        try {
+            futureTask.get(pipesConfig.getStartupTimeoutMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            destroyForcibly();
+            throw e;
+        } catch (ExecutionException e) {
+            LOG.error("pipesClientId=" + serverId + ": couldn't start server", e);
+            destroyForcibly();
+            throw new RuntimeException(e);
+        } catch (TimeoutException e) {
+            long elapsed = System.currentTimeMillis() - start;
+            LOG.error("pipesClientId={} didn't receive ready byte from server within " +
+                            "StartupTimeoutMillis {}; ms elapsed {}; did read >{}<",
+                    serverId, pipesConfig.getStartupTimeoutMillis(),
+                    elapsed, bos.toString(StandardCharsets.UTF_8));
+            destroyForcibly();
+            throw e;
+        } finally {
+            futureTask.cancel(true);
+        }
+    }
+
+    String getServerId() {
+        return serverId;
+    }
+
+    Process getProcess() {
+        return process;
+    }
+
+    DataInputStream getInput() {
+        return input;
+    }
+
+    DataOutputStream getOutput() {
+        return output;
+    }
+
+    PipesCodec getCodec() {
+        return codec;
+    }
+
+    boolean isAlive() {
+        return process.isAlive();
+    }
+
+    boolean ping() {
+        if (!process.isAlive()) {
+            return false;
+        }
+        try {
+            output.write(PING.getByte());
+            output.flush();
+            int ping = input.read();
+            if (ping == PING.getByte()) {
+                return true;
+            }
+        } catch (IOException e) {
+            return false;
+        }
+        return false;
+    }
+
+    /**
+     * Reads the rest of a response after its status byte (and request id, if any).
+     *
+     * @param pipesClientId for logging
+     * @param tupleId for logging
+     * @param millis elapsed time, for logging
+     */
+    PipesResult readResult(String pipesClientId, PipesServer.STATUS status, String tupleId,
+                           long millis) throws IOException {
+        switch (status) {
+            case OOM:
+                LOG.warn("pipesClientId={} oom: {} in {} ms", pipesClientId, tupleId, millis);
+                return PipesResult.OOM;
+            case TIMEOUT:
+                LOG.warn("pipesClientId={} server response timeout: {} in {} ms", pipesClientId,
+                        tupleId, millis);
+                return PipesResult.TIMEOUT;
+            case EMIT_EXCEPTION:
+                LOG.warn("pipesClientId={} emit exception: {} in {} ms", pipesClientId, tupleId,
+                        millis);
+                return readMessage(PipesResult.STATUS.EMIT_EXCEPTION);
+            case EMITTER_NOT_FOUND:
+                LOG.warn("pipesClientId={} emitter not found: {} in {} ms", pipesClientId,
+                        tupleId, millis);
+                return readMessage(PipesResult.STATUS.NO_EMITTER_FOUND);
+            case FETCHER_NOT_FOUND:
+                LOG.warn("pipesClientId={} fetcher not found: {} in {} ms", pipesClientId,
+                        tupleId, millis);
+                return readMessage(PipesResult.STATUS.NO_FETCHER_FOUND);
+            case FETCHER_INITIALIZATION_EXCEPTION:
+                LOG.warn("pipesClientId={} fetcher initialization exception: {} in {} ms",
+                        pipesClientId, tupleId, millis);
+                return readMessage(PipesResult.STATUS.FETCHER_INITIALIZATION_EXCEPTION);
+            case FETCH_EXCEPTION:
+                LOG.warn("pipesClientId={} fetch exception: {} in {} ms", pipesClientId, tupleId,
+                        millis);
+                return readMessage(PipesResult.STATUS.FETCH_EXCEPTION);
+            case PARSE_SUCCESS:
+                //there may have been a parse exception, but the parse didn't crash
+                LOG.debug("pipesClientId={} parse success: {} in {} ms", pipesClientId, tupleId,
+                        millis);
+                return deserializeEmitData();
+            case PARSE_SUCCESS_MEMORY_MAPPED:
+                LOG.debug("pipesClientId={} parse success (memory mapped): {} in {} ms",
+                        pipesClientId, tupleId, millis);
+                return readMemoryMappedEmitData();
+            case PARSE_EXCEPTION_NO_EMIT:
+                return readMessage(PipesResult.STATUS.PARSE_EXCEPTION_NO_EMIT);
+            case EMIT_SUCCESS:
+                LOG.debug("pipesClientId={} emit success: {} in {} ms", pipesClientId, tupleId,
+                        millis);
+                return PipesResult.EMIT_SUCCESS;
+            case EMIT_SUCCESS_DUPLICATE:
+                LOG.debug("pipesClientId={} emit success (duplicate): {} in {} ms",
+                        pipesClientId, tupleId, millis);
+                return PipesResult.EMIT_SUCCESS_DUPLICATE;
+            case EMIT_SUCCESS_PARSE_EXCEPTION:
+                return readMessage(PipesResult.STATUS.EMIT_SUCCESS_PARSE_EXCEPTION);
+            case EMPTY_OUTPUT:
+                return PipesResult.EMPTY_OUTPUT;
+            case UNSPECIFIED_CRASH:
+                LOG.warn("pipesClientId={} crash in parse thread: {} in {} ms", pipesClientId,
+                        tupleId, millis);
+                return readMessage(PipesResult.STATUS.UNSPECIFIED_CRASH);
+            //fall through
+            case READY:
+            case CALL:
+            case PING:
+            case FAILED_TO_START:
+                throw new IOException("Not expecting this status: " + status);
+            default:
+                throw new IOException("Need to handle procesing for: " + status);
+        }
+    }
+
+    private PipesResult readMessage(PipesResult.STATUS status) throws IOException {
+        //readInt checks for EOF
+        int length = input.readInt();
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        String msg = new String(bytes, StandardCharsets.UTF_8);
+        return new PipesResult(status, msg);
+    }
+
+    private PipesResult deserializeEmitData() throws IOException {
+        int length = input.readInt();
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return toPipesResult(codec.deserializeEmitData(bytes));
+    }
+
+    private PipesResult readMemoryMappedEmitData() throws IOException {
+        long offset = input.readLong();
+        int length = input.readInt();
+        return toPipesResult(codec.deserializeEmitData(readMemoryMapped(offset, length)));
+    }
+
+    private PipesResult toPipesResult(EmitData emitData) {
+        String stack = emitData.getContainerStackTrace();
+        if (StringUtils.isBlank(stack)) {
+            return new PipesResult(emitData);
+        } else {
+            return new PipesResult(emitData, stack);
+        }
+    }
+
+    private ByteBuffer readMemoryMapped(long offset, int length) throws IOException {
+        if (memoryMappedFile == null) {
+            throw new IOException("server wrote to a memory mapped file, but none was configured");
+        }
+        if (memoryMappedTransport == null) {
+            memoryMappedTransport = MemoryMappedTransport.openForReading(memoryMappedFile);
+        }
+        return memoryMappedTransport.read(offset, length);
+    }
+
+    void destroyForcibly() throws InterruptedException {
+        process.destroyForcibly();
+        process.waitFor(WAIT_ON_DESTROY_MS, TimeUnit.MILLISECONDS);
+        //important to close streams so that threads running in this
+        //process receive notice that they really ought to stop.
+        //TIKA-3588 showed that we can't trust that forcibly destroying
+        //the process caused the actuallyProcess thread in this process to stop.
+        try {
+            input.close();
+        } catch (IOException closeException) {
+            //swallow
+        }
+        try {
+            output.close();
+        } catch (IOException closeException) {
+            //swallow
+        }
+        if (process.isAlive()) {
+            LOG.error("Process still alive after {}ms", WAIT_ON_DESTROY_MS);
+        }
+        if (memoryMappedTransport != null) {
+            try {
+                memoryMappedTransport.close();
+            } catch (IOException e) {
+                //swallow
+            }
+            memoryMappedTransport = null;
+        }
+        if (memoryMappedFile != null) {
+            try {
+                Files.deleteIfExists(memoryMappedFile);
+            } catch (IOException e) {
+                LOG.debug("couldn't delete {}", memoryMappedFile, e);
+            }
+        }
+    }
+
+    private static String getMsg(String msg, UnsynchronizedByteArrayOutputStream bos) {
+        String readSoFar = bos.toString(StandardCharsets.UTF_8);
+        if (StringUtils.isBlank(readSoFar)) {
+            return msg;
+        } else {
+            return msg + "So far, I've read: >" + readSoFar + "<";
+        }
+    }
+
+    private static String[] getCommandline(PipesConfigBase pipesConfig, String serverId,
+                                           boolean warmUp, Path memoryMappedFile) {
+        List<String> configArgs = pipesConfig.getForkedJvmArgs();
+        boolean hasClassPath = false;
+        boolean hasHeadless = false;
+        boolean hasExitOnOOM = false;
+        boolean hasLog4j = false;
+        String origGCString = null;
+        String newGCLogString = null;
+        for (String arg : configArgs) {
+            if (arg.startsWith("-Djava.awt.headless")) {
+                hasHeadless = true;
+            }
+            if (arg.equals("-cp") || arg.equals("--classpath")) {
+                hasClassPath = true;
+            }
+            if (arg.equals("-XX:+ExitOnOutOfMemoryError") ||
+                    arg.equals("-XX:+CrashOnOutOfMemoryError")) {
+                hasExitOnOOM = true;
+            }
+            if (arg.startsWith("-Dlog4j.configuration")) {
+                hasLog4j = true;
+            }
+            if (arg.startsWith("-Xloggc:")) {
+                origGCString = arg;
+                newGCLogString = arg.replace("${pipesClientId}", "id-" + serverId);
+            }
+        }
+
+        if (origGCString != null && newGCLogString != null) {
+            configArgs.remove(origGCString);
+            configArgs.add(newGCLogString);
+        }
+
+        List<String> commandLine = new ArrayList<>();
+        String javaPath = pipesConfig.getJavaPath();
+        commandLine.add(ProcessUtils.escapeCommandLine(javaPath));
+        if (!hasClassPath) {
+            commandLine.add("-cp");
+            commandLine.add(System.getProperty("java.class.path"));
+        }
+        if (!hasHeadless) {
+            commandLine.add("-Djava.awt.headless=true");
+        }
+        if (hasExitOnOOM) {
+            LOG.warn(
+                    "I notice that you have an exit/crash on OOM. If you run heavy external processes " +
+                            "like tesseract, this setting may result in orphaned processes which could be disastrous" +
+                            " for performance.");
+        }
+        if (!hasLog4j) {
+            commandLine.add(
+                    "-Dlog4j.configurationFile=classpath:pipes-fork-server-default-log4j2.xml");
+        }
+        commandLine.add("-DpipesClientId=" + serverId);
+        if (warmUp && pipesConfig.getWarmUpDirectory() != null) {
+            commandLine.add("-D" + PipesServer.WARM_UP_DIRECTORY_PROPERTY + "=" +
+                    ProcessUtils.escapeCommandLine(
+                            pipesConfig.getWarmUpDirectory().toAbsolutePath().toString()));
+        }
+        if (pipesConfig.getNumThreadsPerServer() > 1) {
+            commandLine.add("-D" + PipesServer.NUM_THREADS_PROPERTY + "=" +
+                    pipesConfig.getNumThreadsPerServer());
+        }
+        if (pipesConfig.getDedupAlgorithm() != null) {
+            commandLine.add("-D" + PipesServer.DEDUP_ALGORITHM_PROPERTY + "=" +
+                    pipesConfig.getDedupAlgorithm());
+            commandLine.add("-D" + PipesServer.DEDUP_MODE_PROPERTY + "=" +
+                    pipesConfig.getDedupMode());
+            commandLine.add("-D" + PipesServer.DEDUP_MAX_ENTRIES_PROPERTY + "=" +
+                    pipesConfig.getDedupMaxEntries());
+            if (pipesConfig.getDedupDirectory() != null) {
+                commandLine.add("-D" + PipesServer.DEDUP_DIRECTORY_PROPERTY + "=" +
+                        ProcessUtils.escapeCommandLine(
+                                pipesConfig.getDedupDirectory().toAbsolutePath().toString()));
+            }
+        }
+        if (pipesConfig.isParserStats()) {
+            commandLine.add("-D" + PipesServer.PARSER_STATS_PROPERTY + "=true");
+        }
+        commandLine.addAll(configArgs);
+        commandLine.add("org.apache.tika.pipes.PipesServer");
+        commandLine.add(ProcessUtils.escapeCommandLine(
+                pipesConfig.getTikaConfig().toAbsolutePath().toString()));
+
+        commandLine.add(Long.toString(pipesConfig.getMaxForEmitBatchBytes()));
+        commandLine.add(Long.toString(pipesConfig.getTimeoutMillis()));
+        commandLine.add(Long.toString(pipesConfig.getShutdownClientAfterMillis()));
+        commandLine.add(pipesConfig.getCodec());
+        if (memoryMappedFile != null) {
+            commandLine.add(ProcessUtils.escapeCommandLine(
+                    memoryMappedFile.toAbsolutePath().toString()));
+            commandLine.add(Long.toString(pipesConfig.getMemoryMappedThresholdBytes()));
+        }
+        LOG.debug("pipesClientId={}: commandline: {}", serverId, commandLine);
+        return commandLine.toArray(new String[0]);
+    }
+}
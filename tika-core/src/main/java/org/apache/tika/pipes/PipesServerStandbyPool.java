@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.pipes;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps {@link PipesConfigBase#getNumStandbyServers()} forked {@link PipesServer}s
+ * started, initialized and (optionally) warmed up on the
+ * {@link PipesConfigBase#getWarmUpDirectory()} so that a {@link PipesClient} can
+ * replace a crashed or timed out server immediately instead of waiting for a
+ * new JVM to start.
+ * <p>
+ * A single background thread refills the pool and pings idle standby servers
+ * so that they do not shut themselves down after
+ * {@link PipesConfigBase#getShutdownClientAfterMillis()}.
+ * <p>
+ * Note that warming up counts against {@link PipesConfigBase#getStartupTimeoutMillis()}.
+ */
+public class PipesServerStandbyPool implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PipesServerStandbyPool.class);
+    private static final AtomicInteger STANDBY_COUNTER = new AtomicInteger(0);
+    private static final long MAX_KEEP_ALIVE_MILLIS = 10000;
+
+    private final PipesConfigBase pipesConfig;
+    private final LinkedBlockingQueue<PipesServerProcess> standby = new LinkedBlockingQueue<>();
+    private final AtomicLong numPromoted = new AtomicLong(0);
+    private final Object[] signal = new Object[0];
+    //used to time out the startup handshake
+    private final ExecutorService executorService = Executors.newCachedThreadPool();
+    private final Thread maintainer;
+    private final long keepAliveMillis;
+    private volatile boolean closed = false;
+
+    public PipesServerStandbyPool(PipesConfigBase pipesConfig) {
+        this.pipesConfig = pipesConfig;
+        long shutdownAfter = pipesConfig.getShutdownClientAfterMillis();
+        this.keepAliveMillis = shutdownAfter > 0 ?
+                Math.max(1, Math.min(MAX_KEEP_ALIVE_MILLIS, shutdownAfter / 2)) :
+                MAX_KEEP_ALIVE_MILLIS;
+        this.maintainer = new Thread(this::maintain, "Tika Pipes Standby Pool");
+        this.maintainer.setDaemon(true);
+        this.maintainer.start();
+    }
+
+    /**
+     * @return the number of standby servers that are currently ready
+     */
+    public int getNumReady() {
+        return standby.size();
+    }
+
+    /**
+     * @return the number of standby servers that have been handed to clients
+     */
+    public long getNumPromoted() {
+        return numPromoted.get();
+    }
+
+    /**
+     * @return a ready server or <code>null</code> if none is available
+     */
+    PipesServerProcess poll() {
+        PipesServerProcess server = standby.poll();
+        while (server != null && !server.isAlive()) {
+            destroyQuietly(server);
+            server = standby.poll();
+        }
+        if (server != null) {
+            numPromoted.incrementAndGet();
+        }
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+        return server;
+    }
+
+    private void maintain() {
+        long lastKeepAlive = System.currentTimeMillis();
+        while (!closed) {
+            try {
+                while (!closed && standby.size() < pipesConfig.getNumStandbyServers()) {
+                    startOne();
+                }
+                if (System.currentTimeMillis() - lastKeepAlive >= keepAliveMillis) {
+                    keepAlive();
+                    lastKeepAlive = System.currentTimeMillis();
+                }
+                synchronized (signal) {
+                    signal.wait(keepAliveMillis);
+                }
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                LOG.warn("couldn't start standby server", e);
+                try {
+                    Thread.sleep(pipesConfig.getSleepOnStartupTimeoutMillis());
+                } catch (InterruptedException interruptedException) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private void startOne() throws Exception {
+        String serverId = "standby-" + STANDBY_COUNTER.getAndIncrement();
+        long start = System.currentTimeMillis();
+        PipesServerProcess server = PipesServerProcess.start(pipesConfig, serverId, true,
+                executorService);
+        if (closed) {
+            destroyQuietly(server);
+            return;
+        }
+        standby.offer(server);
+        LOG.debug("started standby server {} in {} ms", serverId,
+                System.currentTimeMillis() - start);
+    }
+
+    private void keepAlive() {
+        //take the servers out of the queue while pinging them so that
+        //a client can't grab one mid-ping
+        List<PipesServerProcess> servers = new ArrayList<>();
+        standby.drainTo(servers);
+        for (PipesServerProcess server : servers) {
+            if (server.ping()) {
+                standby.offer(server);
+            } else {
+                LOG.warn("standby server {} didn't respond to ping", server.getServerId());
+                destroyQuietly(server);
+            }
+        }
+    }
+
+    private static void destroyQuietly(PipesServerProcess server) {
+        try {
+            server.destroyForcibly();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        maintainer.interrupt();
+        try {
+            maintainer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<PipesServerProcess> servers = new ArrayList<>();
+        standby.drainTo(servers);
+        for (PipesServerProcess server : servers) {
+            destroyQuietly(server);
+        }
+        executorService.shutdownNow();
+    }
+}
@@ -20,6 +20,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.tika.exception.TikaConfigException;
 import org.apache.tika.pipes.PipesConfigBase;
@@ -29,9 +34,21 @@ public class AsyncConfig extends PipesConfigBase {
 
     private long emitWithinMillis = 10000;
     private long emitMaxEstimatedBytes = 100000;
+    private long emitMinEstimatedBytes = 10000;
+    private long emitTargetMillis = -1;
+    private int emitQueueSize = 100;
+    private int emitMaxInFlight = 1;
+    private boolean reportEmits = false;
 
     private int queueSize = 10000;
+    private String queueClassKey;
+    private Map<String, Double> queueWeights = Collections.emptyMap();
+    private Map<String, Integer> queuePriorities = Collections.emptyMap();
+    private double queueMaxClassShare = 1.0;
     private int numEmitters = 1;
+    private int numPrefetchers = 0;
+    private String prefetchFetcherName;
+    private List<AsyncPool> pools = Collections.emptyList();
 
     private PipesReporter pipesReporter = PipesReporter.NO_OP_REPORTER;
 
@@ -74,6 +91,51 @@ public class AsyncConfig extends PipesConfigBase {
         this.emitMaxEstimatedBytes = emitMaxEstimatedBytes;
     }
 
+    public long getEmitMinEstimatedBytes() {
+        return emitMinEstimatedBytes;
+    }
+
+    /**
+     * Lower bound of the batch size if {@link #setEmitTargetMillis(long)} is set.
+     *
+     * @param emitMinEstimatedBytes
+     */
+    public void setEmitMinEstimatedBytes(long emitMinEstimatedBytes) {
+        this.emitMinEstimatedBytes = emitMinEstimatedBytes;
+    }
+
+    public long getEmitTargetMillis() {
+        return emitTargetMillis;
+    }
+
+    /**
+     * If this is greater than 0, the batch size of each emitter is tuned from
+     * the observed throughput so that a flush takes about this long. The batch
+     * size stays between {@link #getEmitMinEstimatedBytes()} and
+     * {@link #getEmitMaxEstimatedBytes()}, see {@link EmitterStats}.
+     * Default: -1, every batch is flushed at {@link #getEmitMaxEstimatedBytes()}.
+     *
+     * @param emitTargetMillis
+     */
+    public void setEmitTargetMillis(long emitTargetMillis) {
+        this.emitTargetMillis = emitTargetMillis;
+    }
+
+    public int getEmitQueueSize() {
+        return emitQueueSize;
+    }
+
+    /**
+     * Number of parse results that may wait for the emitters. When this is
+     * full, the parsing workers block until the emitters catch up.
+     * Default: 100
+     *
+     * @param emitQueueSize
+     */
+    public void setEmitQueueSize(int emitQueueSize) {
+        this.emitQueueSize = emitQueueSize;
+    }
+
 
     public void setNumEmitters(int numEmitters) {
         this.numEmitters = numEmitters;
@@ -91,6 +153,77 @@ public class AsyncConfig extends PipesConfigBase {
         this.queueSize = queueSize;
     }
 
+    public String getQueueClassKey() {
+        return queueClassKey;
+    }
+
+    /**
+     * Metadata key whose value in a tuple's metadata is the tuple's class
+     * in the {@link FetchEmitTupleQueue}, e.g. a tenant id. Tuples without it
+     * are classed by the name of their fetcher. Default: <code>null</code>,
+     * tuples are classed by fetcher.
+     *
+     * @param queueClassKey
+     */
+    public void setQueueClassKey(String queueClassKey) {
+        this.queueClassKey = queueClassKey;
+    }
+
+    public Map<String, Double> getQueueWeights() {
+        return queueWeights;
+    }
+
+    /**
+     * Weights of the classes in the {@link FetchEmitTupleQueue}. Classes of the
+     * same priority are taken in proportion to their weights. Default: 1.0
+     *
+     * @param queueWeights class name to weight
+     */
+    public void setQueueWeights(Map<String, String> queueWeights) {
+        Map<String, Double> weights = new HashMap<>();
+        for (Map.Entry<String, String> e : queueWeights.entrySet()) {
+            double weight = Double.parseDouble(e.getValue());
+            if (weight <= 0) {
+                throw new IllegalArgumentException("weight must be > 0: " + e.getKey());
+            }
+            weights.put(e.getKey(), weight);
+        }
+        this.queueWeights = weights;
+    }
+
+    public Map<String, Integer> getQueuePriorities() {
+        return queuePriorities;
+    }
+
+    /**
+     * Priorities of the classes in the {@link FetchEmitTupleQueue}. Queued
+     * tuples of a higher priority are always taken before those of a lower
+     * priority. Default: 0
+     *
+     * @param queuePriorities class name to priority
+     */
+    public void setQueuePriorities(Map<String, String> queuePriorities) {
+        Map<String, Integer> priorities = new HashMap<>();
+        for (Map.Entry<String, String> e : queuePriorities.entrySet()) {
+            priorities.put(e.getKey(), Integer.parseInt(e.getValue()));
+        }
+        this.queuePriorities = priorities;
+    }
+
+    public double getQueueMaxClassShare() {
+        return queueMaxClassShare;
+    }
+
+    /**
+     * Maximum share of the queue that one class may fill, so that a bulk
+     * load leaves room for other classes. Default: 1.0, no limit
+     *
+     * @param queueMaxClassShare
+     */
+    public void setQueueMaxClassShare(double queueMaxClassShare) {
+        this.queueMaxClassShare = queueMaxClassShare;
+    }
+
     /**
      * Number of emitters
      *
@@ -100,6 +233,81 @@ public class AsyncConfig extends PipesConfigBase {
         return numEmitters;
     }
 
+    public int getNumPrefetchers() {
+        return numPrefetchers;
+    }
+
+    /**
+     * Number of threads that copy the bytes of upcoming tuples to a local
+     * staging directory while the forked servers parse. This requires
+     * {@link #setPrefetchFetcherName(String)}. Default: 0, the forked
+     * servers fetch for themselves.
+     *
+     * @param numPrefetchers
+     */
+    public void setNumPrefetchers(int numPrefetchers) {
+        this.numPrefetchers = numPrefetchers;
+    }
+
+    public String getPrefetchFetcherName() {
+        return prefetchFetcherName;
+    }
+
+    /**
+     * Name of the {@link org.apache.tika.pipes.fetcher.fs.FileSystemFetcher}
+     * whose basePath is the staging directory for prefetched files.
+     *
+     * @param prefetchFetcherName
+     */
+    public void setPrefetchFetcherName(String prefetchFetcherName) {
+        this.prefetchFetcherName = prefetchFetcherName;
+    }
+
+    public List<AsyncPool> getPools() {
+        return pools;
+    }
+
+    /**
+     * Pools of forked servers with their own settings for the tuples that
+     * match their rules, e.g. large files. See {@link AsyncPool}.
+     *
+     * @param pools
+     */
+    public void setPools(List<AsyncPool> pools) {
+        this.pools = Collections.unmodifiableList(new ArrayList<>(pools));
+    }
+
+    public int getEmitMaxInFlight() {
+        return emitMaxInFlight;
+    }
+
+    /**
+     * Number of batches that each emitter thread may have in flight at
+     * the same time. Default: 1, each emitter thread waits for a batch to be
+     * emitted before it takes more data off the queue.
+     *
+     * @param emitMaxInFlight
+     */
+    public void setEmitMaxInFlight(int emitMaxInFlight) {
+        this.emitMaxInFlight = emitMaxInFlight;
+    }
+
+    public boolean isReportEmits() {
+        return reportEmits;
+    }
+
+    /**
+     * If <code>true</code>, tuples whose parse results are handed to the
+     * emitters are reported once they have been emitted (with an
+     * EMIT_SUCCESS, EMIT_SUCCESS_PARSE_EXCEPTION or EMIT_EXCEPTION status)
+     * instead of once they have been parsed. Default: <code>false</code>
+     *
+     * @param reportEmits
+     */
+    public void setReportEmits(boolean reportEmits) {
+        this.reportEmits = reportEmits;
+    }
+
     public PipesReporter getPipesReporter() {
         return pipesReporter;
     }
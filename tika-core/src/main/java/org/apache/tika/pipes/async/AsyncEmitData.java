@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.pipes.async;
+
+import org.apache.tika.pipes.FetchEmitTuple;
+import org.apache.tika.pipes.emitter.EmitData;
+
+/**
+ * EmitData that remembers the tuple it was parsed from so that the
+ * {@link AsyncEmitter} can report the result of the emit.
+ */
+class AsyncEmitData extends EmitData {
+
+    private static final long serialVersionUID = 5375306338213421245L;
+
+    private final FetchEmitTuple fetchEmitTuple;
+    private final long start;
+
+    AsyncEmitData(FetchEmitTuple fetchEmitTuple, EmitData emitData, long start) {
+        super(emitData.getEmitKey(), emitData.getMetadataList(),
+                emitData.getContainerStackTrace());
+        this.fetchEmitTuple = fetchEmitTuple;
+        this.start = start;
+    }
+
+    FetchEmitTuple getFetchEmitTuple() {
+        return fetchEmitTuple;
+    }
+
+    /**
+     * @return when the tuple was handed to the parser, in milliseconds
+     */
+    long getStart() {
+        return start;
+    }
+}
@@ -19,26 +19,46 @@ package org.apache.tika.pipes.async;
 import java.io.IOException;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.tika.pipes.PipesDeduplicator;
+import org.apache.tika.pipes.PipesResult;
 import org.apache.tika.pipes.emitter.EmitData;
 import org.apache.tika.pipes.emitter.Emitter;
 import org.apache.tika.pipes.emitter.EmitterManager;
+import org.apache.tika.pipes.emitter.PartialEmitException;
 import org.apache.tika.pipes.emitter.TikaEmitterException;
 import org.apache.tika.utils.ExceptionUtils;
+import org.apache.tika.utils.StringUtils;
 
 /**
- * Worker thread that takes EmitData off the queue, batches it
- * and tries to emit it as a batch
+ * Worker thread that takes EmitData off the queue, batches it per emitter
+ * and tries to emit it as a batch. See {@link EmitterStats} for how
+ * the batch sizes are chosen.
+ * <p>
+ * If {@link AsyncConfig#getEmitMaxInFlight()} is greater than 1, batches are
+ * emitted on background threads so that this thread can fill the next batch
+ * while earlier ones are in flight. Completed batches are acknowledged (counted
+ * in the {@link EmitterStats} and, if {@link AsyncConfig#isReportEmits()},
+ * reported to the {@link org.apache.tika.pipes.PipesReporter}) in the order
+ * in which they were started.
  */
 public class AsyncEmitter implements Callable<Integer> {
 
@@ -50,95 +70,243 @@ public class AsyncEmitter implements Callable<Integer> {
     private final AsyncConfig asyncConfig;
     private final EmitterManager emitterManager;
     private final ArrayBlockingQueue<EmitData> emitDataQueue;
+    private final ConcurrentMap<String, EmitterStats> emitterStats;
 
     Instant lastEmitted = Instant.now();
 
     public AsyncEmitter(AsyncConfig asyncConfig, ArrayBlockingQueue<EmitData> emitData,
                         EmitterManager emitterManager) {
+        this(asyncConfig, emitData, emitterManager, new ConcurrentHashMap<>());
+    }
+
+    /**
+     * @param emitterStats batch sizes and metrics per emitter name, this may be
+     *                     shared by several AsyncEmitters
+     */
+    public AsyncEmitter(AsyncConfig asyncConfig, ArrayBlockingQueue<EmitData> emitData,
+                        EmitterManager emitterManager,
+                        ConcurrentMap<String, EmitterStats> emitterStats) {
         this.asyncConfig = asyncConfig;
         this.emitDataQueue = emitData;
         this.emitterManager = emitterManager;
+        this.emitterStats = emitterStats;
     }
 
     @Override
     public Integer call() throws Exception {
-        EmitDataCache cache = new EmitDataCache(asyncConfig.getEmitMaxEstimatedBytes());
-
-        while (true) {
-            EmitData emitData = emitDataQueue.poll(500, TimeUnit.MILLISECONDS);
-            if (emitData == EMIT_DATA_STOP_SEMAPHORE) {
-                cache.emitAll();
-                return EMITTER_FUTURE_CODE;
-            }
-            if (emitData != null) {
-                //this can block on emitAll
-                cache.add(emitData);
-            } else {
-                LOG.trace("Nothing on the async queue");
+        int maxInFlight = asyncConfig.getEmitMaxInFlight();
+        ExecutorService flushExecutor = maxInFlight > 1 ?
+                Executors.newFixedThreadPool(maxInFlight) : null;
+        EmitDataCache cache = new EmitDataCache(flushExecutor, maxInFlight);
+        try {
+            while (true) {
+                EmitData emitData = emitDataQueue.poll(500, TimeUnit.MILLISECONDS);
+                if (emitData == EMIT_DATA_STOP_SEMAPHORE) {
+                    cache.emitAll();
+                    cache.acknowledgeAll();
+                    return EMITTER_FUTURE_CODE;
+                }
+                if (emitData != null) {
+                    //this can block on emit
+                    cache.add(emitData);
+                } else {
+                    LOG.trace("Nothing on the async queue");
+                }
+                cache.acknowledgeCompleted();
+                LOG.debug("cache size: ({}) bytes and extract count: {}", cache.estimatedSize,
+                        cache.size);
+                long elapsed = ChronoUnit.MILLIS.between(lastEmitted, Instant.now());
+                if (elapsed > asyncConfig.getEmitWithinMillis()) {
+                    LOG.debug("{} elapsed > {}, going to emitAll", elapsed, asyncConfig.getEmitWithinMillis());
+                    //this can block
+                    cache.emitAll();
+                }
             }
-            LOG.debug("cache size: ({}) bytes and extract count: {}", cache.estimatedSize,
-                    cache.size);
-            long elapsed = ChronoUnit.MILLIS.between(lastEmitted, Instant.now());
-            if (elapsed > asyncConfig.getEmitWithinMillis()) {
-                LOG.debug("{} elapsed > {}, going to emitAll", elapsed, asyncConfig.getEmitWithinMillis());
-                //this can block
-                cache.emitAll();
+        } finally {
+            if (flushExecutor != null) {
+                flushExecutor.shutdownNow();
             }
         }
     }
 
     private class EmitDataCache {
-        private final long maxBytes;
+
+        //if not null, batches are flushed on these threads
+        private final ExecutorService flushExecutor;
+        private final int maxInFlight;
+        //flushes in the order they were started
+        private final ArrayDeque<Flush> inFlight = new ArrayDeque<>();
 
         long estimatedSize = 0;
         int size = 0;
-        Map<String, List<EmitData>> map = new HashMap<>();
-
-        public EmitDataCache(long maxBytes) {
-            this.maxBytes = maxBytes;
-        }
+        Map<String, Batch> map = new HashMap<>();
 
-        void updateEstimatedSize(long newBytes) {
-            estimatedSize += newBytes;
+        EmitDataCache(ExecutorService flushExecutor, int maxInFlight) {
+            this.flushExecutor = flushExecutor;
+            this.maxInFlight = maxInFlight;
         }
 
-        void add(EmitData data) {
-            size++;
+        void add(EmitData data) throws InterruptedException {
+            String emitterName = data.getEmitKey().getEmitterName();
+            Batch batch = map.computeIfAbsent(emitterName, Batch::new);
             long sz = data.getEstimatedSizeBytes();
-            if (estimatedSize + sz > maxBytes) {
-                LOG.debug("estimated size ({}) > maxBytes({}), going to emitAll",
-                        (estimatedSize + sz), maxBytes);
-                emitAll();
+            long maxBytes = batch.stats.getBatchBytes();
+            if (batch.estimatedSize + sz > maxBytes) {
+                LOG.debug("estimated size ({}) > maxBytes({}), going to emit {}",
+                        (batch.estimatedSize + sz), maxBytes, emitterName);
+                emit(batch);
             }
-            List<EmitData> cached = map.computeIfAbsent(data.getEmitKey().getEmitterName(), k -> new ArrayList<>());
-            updateEstimatedSize(sz);
-            cached.add(data);
+            batch.data.add(data);
+            batch.estimatedSize += sz;
+            batch.stats.added();
+            estimatedSize += sz;
+            size++;
         }
 
-        private void emitAll() {
-            int emitted = 0;
+        private void emitAll() throws InterruptedException {
             LOG.debug("about to emit {} files, {} estimated bytes", size, estimatedSize);
-            for (Map.Entry<String, List<EmitData>> e : map.entrySet()) {
-                Emitter emitter = emitterManager.getEmitter(e.getKey());
-                tryToEmit(emitter, e.getValue());
-                emitted += e.getValue().size();
+            for (Batch batch : map.values()) {
+                emit(batch);
             }
-
-            LOG.debug("emitted: {} files", emitted);
-            estimatedSize = 0;
-            size = 0;
-            map.clear();
             lastEmitted = Instant.now();
         }
 
-        private void tryToEmit(Emitter emitter, List<EmitData> cachedEmitData) {
+        private void emit(Batch batch) throws InterruptedException {
+            if (batch.data.isEmpty()) {
+                return;
+            }
+            Flush flush = new Flush(batch);
+            estimatedSize -= batch.estimatedSize;
+            size -= batch.data.size();
+            batch.data = new ArrayList<>();
+            batch.estimatedSize = 0;
+            if (flushExecutor == null) {
+                flush.run();
+                acknowledge(flush);
+                return;
+            }
+            //wait for the oldest flushes if too many are in flight
+            while (inFlight.size() >= maxInFlight) {
+                acknowledge(inFlight.poll());
+            }
+            flush.future = flushExecutor.submit(flush::run);
+            inFlight.add(flush);
+        }
+
+        /**
+         * Acknowledges the flushes that have completed, in the order that they
+         * were started. This stops at the first flush that is still in flight.
+         */
+        private void acknowledgeCompleted() throws InterruptedException {
+            while (!inFlight.isEmpty() && inFlight.peek().future.isDone()) {
+                acknowledge(inFlight.poll());
+            }
+        }
+
+        private void acknowledgeAll() throws InterruptedException {
+            while (!inFlight.isEmpty()) {
+                acknowledge(inFlight.poll());
+            }
+        }
+
+        private void acknowledge(Flush flush) throws InterruptedException {
+            if (flush.future != null) {
+                try {
+                    flush.future.get();
+                } catch (ExecutionException e) {
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+            Exception e = flush.exception;
+            if (e != null) {
+                LOG.warn("emitter class ({}): {}", flush.emitter.getClass(),
+                        ExceptionUtils.getStackTrace(e));
+            }
+            boolean failed = e != null && !(e instanceof PartialEmitException);
+            int failedSize = 0;
+            if (e instanceof PartialEmitException) {
+                failedSize = ((PartialEmitException) e).getFailedEmitKeys().size();
+            }
+            flush.stats.flushed(flush.data.size(), failedSize, flush.estimatedSize,
+                    flush.elapsed, failed);
+            LOG.debug("emitted: {} files to {} in {} ms", flush.data.size() - failedSize,
+                    flush.emitterName, flush.elapsed);
+            report(flush);
+        }
+
+        private void report(Flush flush) {
+            Set<String> failedKeys = null;
+            if (flush.exception instanceof PartialEmitException) {
+                failedKeys = ((PartialEmitException) flush.exception).getFailedEmitKeys();
+            }
+            long now = System.currentTimeMillis();
+            for (EmitData d : flush.data) {
+                if (!(d instanceof AsyncEmitData)) {
+                    continue;
+                }
+                PipesResult result;
+                if (flush.exception != null && (failedKeys == null ||
+                        failedKeys.contains(d.getEmitKey().getEmitKey()))) {
+                    result = new PipesResult(PipesResult.STATUS.EMIT_EXCEPTION,
+                            ExceptionUtils.getStackTrace(flush.exception));
+                } else if (!StringUtils.isBlank(d.getContainerStackTrace())) {
+                    result = new PipesResult(PipesResult.STATUS.EMIT_SUCCESS_PARSE_EXCEPTION,
+                            d.getContainerStackTrace());
+                } else if (PipesDeduplicator.isDuplicate(d.getMetadataList())) {
+                    result = PipesResult.EMIT_SUCCESS_DUPLICATE;
+                } else {
+                    result = PipesResult.EMIT_SUCCESS;
+                }
+                AsyncEmitData asyncEmitData = (AsyncEmitData) d;
+                asyncConfig.getPipesReporter().report(asyncEmitData.getFetchEmitTuple(), result,
+                        now - asyncEmitData.getStart());
+            }
+        }
+    }
+
+    private class Batch {
+        private final String emitterName;
+        private final EmitterStats stats;
+        private List<EmitData> data = new ArrayList<>();
+        private long estimatedSize = 0;
+
+        Batch(String emitterName) {
+            this.emitterName = emitterName;
+            this.stats = emitterStats.computeIfAbsent(emitterName,
+                    n -> new EmitterStats(n, asyncConfig));
+        }
+    }
+
+    private class Flush {
+        private final String emitterName;
+        private final EmitterStats stats;
+        private final Emitter emitter;
+        private final List<EmitData> data;
+        private final long estimatedSize;
+        private Future<?> future;
+        private Exception exception;
+        private long elapsed;
 
+        Flush(Batch batch) {
+            this.emitterName = batch.emitterName;
+            this.stats = batch.stats;
+            this.emitter = emitterManager.getEmitter(batch.emitterName);
+            this.data = batch.data;
+            this.estimatedSize = batch.estimatedSize;
+        }
+
+        void run() {
+            long start = System.currentTimeMillis();
             try {
-                emitter.emit(cachedEmitData);
+                emitter.emit(data);
             } catch (IOException | TikaEmitterException e) {
-                LOG.warn("emitter class ({}): {}", emitter.getClass(),
-                        ExceptionUtils.getStackTrace(e));
+                exception = e;
+            } catch (RuntimeException e) {
+                //a bug in the emitter fails this batch, not the emitter thread
+                //and the batches that are still in flight
+                exception = e;
             }
+            elapsed = System.currentTimeMillis() - start;
         }
     }
 }
@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.pipes.async;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.tika.pipes.PipesConfigBase;
+
+/**
+ * A pool of forked servers for the tuples that match its rules, e.g. large
+ * files or files that need OCR, with its own jvm args, timeout and number of
+ * clients. The settings that a pool doesn't override are those of the
+ * {@link AsyncConfig}.
+ * <p>
+ * A tuple matches a pool if its size is at least {@link #getMinBytes()}, its
+ * extension is one of {@link #getExtensions()} or its media type is one of
+ * {@link #getMimeTypes()}. Pools are tried in the order in which they are
+ * configured. Tuples that don't match any pool go to the
+ * {@link AsyncConfig#getNumClients()} default clients.
+ * <p>
+ * The size of a tuple is the size of the prefetched file if there are
+ * prefetchers, otherwise its declared Content-Length or the length of its fetch
+ * range. The media type is the declared Content-Type or else is detected from
+ * the name and, if prefetched, the bytes of the file.
+ */
+public class AsyncPool {
+
+    private String name;
+    private int numClients = 1;
+    private int queueSize = 100;
+    private long timeoutMillis = -1;
+    private int maxFilesProcessedPerProcess = -1;
+    private List<String> forkedJvmArgs = Collections.emptyList();
+
+    private long minBytes = -1;
+    private Set<String> extensions = Collections.emptySet();
+    private List<String> mimeTypes = Collections.emptyList();
+
+    /**
+     * @param extension lower case extension of the tuple or <code>null</code>
+     * @param size      size of the tuple or -1 if it isn't known
+     * @param mediaType base media type of the tuple or <code>null</code>
+     * @return whether the tuple should be parsed in this pool
+     */
+    public boolean matches(String extension, long size, String mediaType) {
+        if (minBytes >= 0 && size >= minBytes) {
+            return true;
+        }
+        if (extension != null && extensions.contains(extension)) {
+            return true;
+        }
+        if (mediaType != null) {
+            for (String mimeType : mimeTypes) {
+                if (mimeType.endsWith("/") ? mediaType.startsWith(mimeType) :
+                        mediaType.equals(mimeType)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the settings for this pool's clients
+     */
+    public PipesConfigBase getPipesConfig(PipesConfigBase base) {
+        PipesConfigBase pipesConfig = base.copyPipesConfig();
+        pipesConfig.setNumClients(numClients);
+        //the standby servers are started with the default jvm args
+        pipesConfig.setNumStandbyServers(0);
+        if (timeoutMillis > 0) {
+            pipesConfig.setTimeoutMillis(timeoutMillis);
+        }
+        if (maxFilesProcessedPerProcess > 0) {
+            pipesConfig.setMaxFilesProcessedPerProcess(maxFilesProcessedPerProcess);
+        }
+        if (!forkedJvmArgs.isEmpty()) {
+            pipesConfig.setForkedJvmArgs(forkedJvmArgs);
+        }
+        return pipesConfig;
+    }
+
+    boolean needsMediaType() {
+        return !mimeTypes.isEmpty();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getNumClients() {
+        return numClients;
+    }
+
+    /**
+     * Number of clients, and forked servers, in this pool. Default: 1
+     *
+     * @param numClients
+     */
+    public void setNumClients(int numClients) {
+        this.numClients = numClients;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /**
+     * Number of routed tuples that may wait for this pool. If it's full, the
+     * routing of all tuples waits. Default: 100
+     *
+     * @param queueSize
+     */
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * Parse timeout for this pool. Default: -1, the timeout of the
+     * {@link AsyncConfig}
+     *
+     * @param timeoutMillis
+     */
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public int getMaxFilesProcessedPerProcess() {
+        return maxFilesProcessedPerProcess;
+    }
+
+    public void setMaxFilesProcessedPerProcess(int maxFilesProcessedPerProcess) {
+        this.maxFilesProcessedPerProcess = maxFilesProcessedPerProcess;
+    }
+
+    public List<String> getForkedJvmArgs() {
+        return forkedJvmArgs;
+    }
+
+    /**
+     * Jvm args for this pool's forked servers, e.g. a larger -Xmx. Default:
+     * the jvm args of the {@link AsyncConfig}
+     *
+     * @param forkedJvmArgs
+     */
+    public void setForkedJvmArgs(List<String> forkedJvmArgs) {
+        this.forkedJvmArgs = Collections.unmodifiableList(new ArrayList<>(forkedJvmArgs));
+    }
+
+    public long getMinBytes() {
+        return minBytes;
+    }
+
+    public void setMinBytes(long minBytes) {
+        this.minBytes = minBytes;
+    }
+
+    public Set<String> getExtensions() {
+        return extensions;
+    }
+
+    /**
+     * @param extensions file extensions, e.g. <code>pst</code>, case-insensitive
+     */
+    public void setExtensions(List<String> extensions) {
+        Set<String> set = new HashSet<>();
+        for (String extension : extensions) {
+            String e = extension.trim().toLowerCase(Locale.US);
+            set.add(e.startsWith(".") ? e.substring(1) : e);
+        }
+        this.extensions = set;
+    }
+
+    public List<String> getMimeTypes() {
+        return mimeTypes;
+    }
+
+    /**
+     * @param mimeTypes media types, e.g. <code>application/pdf</code>, or
+     *                  prefixes that end in a slash, e.g. <code>image/</code>
+     */
+    public void setMimeTypes(List<String> mimeTypes) {
+        this.mimeTypes = Collections.unmodifiableList(new ArrayList<>(mimeTypes));
+    }
+
+    @Override
+    public String toString() {
+        return "AsyncPool{" + "name='" + name + '\'' + ", numClients=" + numClients +
+                ", timeoutMillis=" + timeoutMillis + ", forkedJvmArgs=" + forkedJvmArgs +
+                ", minBytes=" + minBytes + ", extensions=" + extensions + ", mimeTypes=" +
+                mimeTypes + '}';
+    }
+}
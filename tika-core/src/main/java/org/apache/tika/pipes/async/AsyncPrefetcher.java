@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.pipes.async;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.io.FilenameUtils;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.pipes.FetchEmitTuple;
+import org.apache.tika.pipes.PipesReporter;
+import org.apache.tika.pipes.PipesResult;
+import org.apache.tika.pipes.emitter.EmitKey;
+import org.apache.tika.pipes.fetcher.FetchKey;
+import org.apache.tika.pipes.fetcher.Fetcher;
+import org.apache.tika.pipes.fetcher.FetcherManager;
+import org.apache.tika.pipes.pipesiterator.PipesIterator;
+import org.apache.tika.utils.ExceptionUtils;
+import org.apache.tika.utils.StringUtils;
+
+/**
+ * Worker thread that takes tuples off the fetch queue, copies the bytes
+ * to a local staging directory and hands the parsers a tuple that points
+ * to the local copy. This keeps slow fetchers (s3, http, ...) off the
+ * critical path of the forked parsers.
+ * <p>
+ * The staging directory is the basePath of a
+ * {@link org.apache.tika.pipes.fetcher.fs.FileSystemFetcher} that has to be
+ * configured in the tika-config so that the forked servers can read the
+ * staged files, see {@link AsyncConfig#setPrefetchFetcherName(String)}.
+ * Tuples with a range and tuples that can't be fetched are passed through
+ * unchanged, so that the forked servers handle and report them as usual.
+ * A fetcher that fails with a runtime exception is reported here as a
+ * {@link PipesResult.STATUS#FETCH_EXCEPTION}, and the tuple isn't parsed.
+ */
+public class AsyncPrefetcher implements Callable<Integer> {
+
+    static final int PREFETCHER_FUTURE_CODE = 4;
+
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncPrefetcher.class);
+
+    private static final String DEFAULT_FILE_NAME = "prefetched";
+
+    private final BlockingQueue<FetchEmitTuple> fetchEmitTuples;
+    private final BlockingQueue<FetchEmitTuple> prefetched;
+    private final Map<FetchEmitTuple, Staged> staged;
+    private final FetcherManager fetcherManager;
+    private final String stagingFetcherName;
+    private final Path stagingDirectory;
+    private final PipesReporter pipesReporter;
+    private final AtomicLong totalProcessed;
+
+    /**
+     * @param fetchEmitTuples    queue to take tuples from
+     * @param prefetched         queue to put the staged tuples on
+     * @param staged             map of staged tuples to their original tuples. This has to
+     *                           be an identity map that is safe to use from several threads
+     * @param fetcherManager     fetchers for the original tuples
+     * @param stagingFetcherName name of the fetcher that reads from the staging directory
+     * @param stagingDirectory   base path of that fetcher
+     * @param pipesReporter      reporter for tuples that fail in the fetcher
+     * @param totalProcessed     counter of processed tuples, incremented for those failures
+     */
+    public AsyncPrefetcher(BlockingQueue<FetchEmitTuple> fetchEmitTuples,
+                           BlockingQueue<FetchEmitTuple> prefetched,
+                           Map<FetchEmitTuple, Staged> staged, FetcherManager fetcherManager,
+                           String stagingFetcherName, Path stagingDirectory,
+                           PipesReporter pipesReporter, AtomicLong totalProcessed) {
+        this.fetchEmitTuples = fetchEmitTuples;
+        this.prefetched = prefetched;
+        this.staged = staged;
+        this.fetcherManager = fetcherManager;
+        this.stagingFetcherName = stagingFetcherName;
+        this.stagingDirectory = stagingDirectory;
+        this.pipesReporter = pipesReporter;
+        this.totalProcessed = totalProcessed;
+    }
+
+    @Override
+    public Integer call() throws Exception {
+        while (true) {
+            FetchEmitTuple t = fetchEmitTuples.poll(1, TimeUnit.SECONDS);
+            if (t == null) {
+                LOG.trace("nothing on the fetch queue");
+            } else if (t == PipesIterator.COMPLETED_SEMAPHORE) {
+                return PREFETCHER_FUTURE_CODE;
+            } else {
+                FetchEmitTuple stagedTuple = stage(t);
+                if (stagedTuple != null) {
+                    //this blocks until a parser is free, which bounds the number of staged files
+                    prefetched.put(stagedTuple);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the staged tuple, the original tuple if the forked server should
+     * fetch it, or <code>null</code> if the fetcher failed and the tuple has
+     * been reported
+     */
+    private FetchEmitTuple stage(FetchEmitTuple t) {
+        if (t.getFetchKey().hasRange()) {
+            return t;
+        }
+        long start = System.currentTimeMillis();
+        Path dir = stagingDirectory.resolve(UUID.randomUUID().toString());
+        String name = getFileName(t.getFetchKey().getFetchKey());
+        Metadata fetchMetadata = new Metadata();
+        try {
+            Fetcher fetcher = fetcherManager.getFetcher(t.getFetchKey().getFetcherName());
+            Files.createDirectories(dir);
+            try (InputStream is = fetcher.fetch(t.getFetchKey().getFetchKey(), fetchMetadata)) {
+                Files.copy(is, dir.resolve(name), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | TikaException | IllegalArgumentException e) {
+            LOG.warn("couldn't prefetch {}, the parser will fetch it", t.getId(), e);
+            deleteQuietly(dir);
+            return t;
+        } catch (RuntimeException e) {
+            //a bug in a fetcher mustn't kill this thread
+            LOG.warn("fetcher failed on {}", t.getId(), e);
+            deleteQuietly(dir);
+            pipesReporter.report(t, new PipesResult(PipesResult.STATUS.FETCH_EXCEPTION,
+                    ExceptionUtils.getStackTrace(e)), System.currentTimeMillis() - start);
+            totalProcessed.incrementAndGet();
+            return null;
+        }
+        EmitKey emitKey = t.getEmitKey();
+        if (StringUtils.isBlank(emitKey.getEmitKey())) {
+            emitKey = new EmitKey(emitKey.getEmitterName(), t.getFetchKey().getFetchKey());
+        }
+        String stagedKey = stagingDirectory.relativize(dir.resolve(name)).toString();
+        //the fetch metadata only seeds the parse, as it does without a prefetcher
+        FetchEmitTuple stagedTuple = new FetchEmitTuple(t.getId(),
+                new FetchKey(stagingFetcherName, stagedKey), emitKey, t.getMetadata(),
+                t.getHandlerConfig(), t.getOnParseException(), fetchMetadata);
+        staged.put(stagedTuple, new Staged(t, dir));
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("timer -- prefetched {}: {} ms", t.getId(),
+                    System.currentTimeMillis() - start);
+        }
+        return stagedTuple;
+    }
+
+    private static String getFileName(String fetchKey) {
+        String name = FilenameUtils.getName(fetchKey);
+        if (StringUtils.isBlank(name) || name.equals(".") || name.equals("..")) {
+            return DEFAULT_FILE_NAME;
+        }
+        return name;
+    }
+
+    static void deleteQuietly(Path dir) {
+        try {
+            FileUtils.deleteDirectory(dir.toFile());
+        } catch (IOException e) {
+            LOG.warn("couldn't delete staging directory {}", dir, e);
+        }
+    }
+
+    /**
+     * The original tuple of a staged tuple and the directory that holds
+     * its bytes.
+     */
+    public static class Staged {
+
+        private final FetchEmitTuple original;
+        private final Path directory;
+
+        Staged(FetchEmitTuple original, Path directory) {
+            this.original = original;
+            this.directory = directory;
+        }
+
+        public FetchEmitTuple getOriginal() {
+            return original;
+        }
+
+        public Path getDirectory() {
+            return directory;
+        }
+
+        void delete() {
+            deleteQuietly(directory);
+        }
+    }
+}
@@ -19,9 +19,16 @@ package org.apache.tika.pipes.async;
 import java.io.Closeable;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
@@ -33,14 +40,20 @@ import java.util.concurrent.atomic.AtomicLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.tika.exception.TikaConfigException;
 import org.apache.tika.exception.TikaException;
 import org.apache.tika.pipes.FetchEmitTuple;
 import org.apache.tika.pipes.PipesClient;
+import org.apache.tika.pipes.PipesConfigBase;
 import org.apache.tika.pipes.PipesException;
 import org.apache.tika.pipes.PipesReporter;
 import org.apache.tika.pipes.PipesResult;
+import org.apache.tika.pipes.PipesServerStandbyPool;
 import org.apache.tika.pipes.emitter.EmitData;
 import org.apache.tika.pipes.emitter.EmitterManager;
+import org.apache.tika.pipes.fetcher.Fetcher;
+import org.apache.tika.pipes.fetcher.FetcherManager;
+import org.apache.tika.pipes.fetcher.fs.FileSystemFetcher;
 import org.apache.tika.pipes.pipesiterator.PipesIterator;
 import org.apache.tika.pipes.pipesiterator.TotalCountResult;
 import org.apache.tika.pipes.pipesiterator.TotalCounter;
@@ -57,16 +70,30 @@ public class AsyncProcessor implements Closeable {
 
     private static final Logger LOG = LoggerFactory.getLogger(AsyncProcessor.class);
 
-    private final ArrayBlockingQueue<FetchEmitTuple> fetchEmitTuples;
+    private final FetchEmitTupleQueue fetchEmitTuples;
+    //the queue that the parsers take from; this is fetchEmitTuples if there are no prefetchers
+    private final BlockingQueue<FetchEmitTuple> parseTuples;
+    //the queue of the default parsers; this is parseTuples if there are no pools
+    private final BlockingQueue<FetchEmitTuple> defaultTuples;
+    private final Map<FetchEmitTuple, AsyncPrefetcher.Staged> staged =
+            Collections.synchronizedMap(new IdentityHashMap<>());
     private final ArrayBlockingQueue<EmitData> emitData;
     private final ExecutorCompletionService<Integer> executorCompletionService;
     private final ExecutorService executorService;
     private final AsyncConfig asyncConfig;
+    private final PipesServerStandbyPool standbyPool;
+    private final List<PipesClient> sharedClients = new ArrayList<>();
+    private final ConcurrentMap<String, EmitterStats> emitterStats = new ConcurrentHashMap<>();
     private final AtomicLong totalProcessed = new AtomicLong(0);
+    private final int numParsers;
     private static long MAX_OFFER_WAIT_MS = 120000;
+    //tuples that have been routed and wait for the default parsers
+    private static final int ROUTED_QUEUE_SIZE = 100;
     private volatile int numParserThreadsFinished = 0;
     private volatile int numEmitterThreadsFinished = 0;
+    private volatile int numPrefetcherThreadsFinished = 0;
     private boolean addedEmitterSemaphores = false;
+    private boolean addedParserSemaphores = false;
     boolean isShuttingDown = false;
 
     public AsyncProcessor(Path tikaConfigPath) throws TikaException, IOException {
@@ -75,13 +102,30 @@ public class AsyncProcessor implements Closeable {
 
     public AsyncProcessor(Path tikaConfigPath, PipesIterator pipesIterator) throws TikaException, IOException {
         this.asyncConfig = AsyncConfig.load(tikaConfigPath);
-        this.fetchEmitTuples = new ArrayBlockingQueue<>(asyncConfig.getQueueSize());
-        this.emitData = new ArrayBlockingQueue<>(100);
-        //+1 is the watcher thread
+        this.fetchEmitTuples = new FetchEmitTupleQueue(asyncConfig);
+        //keep about one staged file per parser
+        this.parseTuples = asyncConfig.getNumPrefetchers() > 0 ?
+                new ArrayBlockingQueue<>(Math.max(1, asyncConfig.getNumClients())) :
+                fetchEmitTuples;
+        this.defaultTuples = asyncConfig.getPools().isEmpty() ? parseTuples :
+                new ArrayBlockingQueue<>(ROUTED_QUEUE_SIZE);
+        this.emitData = new ArrayBlockingQueue<>(asyncConfig.getEmitQueueSize());
+        int numParsers = asyncConfig.getNumClients();
+        for (AsyncPool pool : asyncConfig.getPools()) {
+            if (pool.getNumClients() < 1) {
+                throw new TikaConfigException("numClients must be > 0 in pool " + pool.getName());
+            }
+            numParsers += pool.getNumClients();
+        }
+        this.numParsers = numParsers;
+        //+1 is the watcher thread, and there's a router if there are pools
         this.executorService = Executors.newFixedThreadPool(
-                asyncConfig.getNumClients() + asyncConfig.getNumEmitters() + 1);
+                numParsers + asyncConfig.getNumEmitters() + asyncConfig.getNumPrefetchers() +
+                        (asyncConfig.getPools().isEmpty() ? 0 : 1) + 1);
         this.executorCompletionService =
                 new ExecutorCompletionService<>(executorService);
+        this.standbyPool = asyncConfig.getNumStandbyServers() > 0 ?
+                new PipesServerStandbyPool(asyncConfig) : null;
         try {
             if (!tikaConfigPath.toAbsolutePath().equals(asyncConfig.getTikaConfig().toAbsolutePath())) {
                 LOG.warn("TikaConfig for AsyncProcessor ({}) is different " +
@@ -105,24 +149,85 @@ public class AsyncProcessor implements Closeable {
                 startCounter((TotalCounter) pipesIterator);
             }
 
-            for (int i = 0; i < asyncConfig.getNumClients(); i++) {
-                executorCompletionService.submit(
-                        new FetchEmitWorker(asyncConfig, fetchEmitTuples, emitData));
+            if (asyncConfig.getNumPrefetchers() > 0) {
+                startPrefetchers();
+            }
+
+            startWorkers(asyncConfig, defaultTuples, standbyPool);
+            if (!asyncConfig.getPools().isEmpty()) {
+                startPools();
             }
 
             EmitterManager emitterManager = EmitterManager.load(asyncConfig.getTikaConfig());
             for (int i = 0; i < asyncConfig.getNumEmitters(); i++) {
                 executorCompletionService.submit(
-                        new AsyncEmitter(asyncConfig, emitData, emitterManager));
+                        new AsyncEmitter(asyncConfig, emitData, emitterManager, emitterStats));
             }
         } catch (Exception e) {
             LOG.error("problem initializing AsyncProcessor", e);
             executorService.shutdownNow();
+            closeSharedClients();
+            if (standbyPool != null) {
+                standbyPool.close();
+            }
             asyncConfig.getPipesReporter().error(e);
             throw e;
         }
     }
 
+    private void startPrefetchers() throws IOException, TikaException {
+        String fetcherName = asyncConfig.getPrefetchFetcherName();
+        if (fetcherName == null) {
+            throw new TikaConfigException("'prefetchFetcherName' must be set if " +
+                    "'numPrefetchers' > 0");
+        }
+        FetcherManager fetcherManager = FetcherManager.load(asyncConfig.getTikaConfig());
+        Fetcher stagingFetcher;
+        try {
+            stagingFetcher = fetcherManager.getFetcher(fetcherName);
+        } catch (IllegalArgumentException e) {
+            throw new TikaConfigException("Couldn't find the prefetch fetcher: " + fetcherName);
+        }
+        if (!(stagingFetcher instanceof FileSystemFetcher) ||
+                ((FileSystemFetcher) stagingFetcher).getBasePath() == null) {
+            throw new TikaConfigException("The prefetch fetcher (" + fetcherName +
+                    ") must be a FileSystemFetcher with a basePath");
+        }
+        Path stagingDirectory = ((FileSystemFetcher) stagingFetcher).getBasePath();
+        for (int i = 0; i < asyncConfig.getNumPrefetchers(); i++) {
+            executorCompletionService.submit(
+                    new AsyncPrefetcher(fetchEmitTuples, parseTuples, staged, fetcherManager,
+                            fetcherName, stagingDirectory, asyncConfig.getPipesReporter(),
+                            totalProcessed));
+        }
+    }
+
+    private void startWorkers(PipesConfigBase pipesConfig, BlockingQueue<FetchEmitTuple> queue,
+                              PipesServerStandbyPool standby) {
+        //workers share a client if there are several threads per server
+        int threadsPerServer = pipesConfig.getNumThreadsPerServer();
+        PipesClient sharedClient = null;
+        for (int i = 0; i < pipesConfig.getNumClients(); i++) {
+            if (threadsPerServer > 1 && i % threadsPerServer == 0) {
+                sharedClient = new PipesClient(pipesConfig, standby);
+                sharedClients.add(sharedClient);
+            }
+            executorCompletionService.submit(
+                    new FetchEmitWorker(pipesConfig, standby, queue, emitData, sharedClient));
+        }
+    }
+
+    private void startPools() {
+        List<BlockingQueue<FetchEmitTuple>> poolTuples = new ArrayList<>();
+        for (AsyncPool pool : asyncConfig.getPools()) {
+            BlockingQueue<FetchEmitTuple> queue = new ArrayBlockingQueue<>(pool.getQueueSize());
+            poolTuples.add(queue);
+            startWorkers(pool.getPipesConfig(asyncConfig), queue, null);
+        }
+        executorCompletionService.submit(new AsyncRouter(parseTuples, defaultTuples,
+                asyncConfig.getNumClients(), asyncConfig.getPools(), poolTuples, staged));
+    }
+
     private void startCounter(TotalCounter totalCounter) {
         Thread counterThread = new Thread(() -> {
             totalCounter.startTotalCount();
@@ -158,15 +263,8 @@ public class AsyncProcessor implements Closeable {
         long start = System.currentTimeMillis();
         long elapsed = System.currentTimeMillis() - start;
         while (elapsed < offerMs) {
-            if (fetchEmitTuples.remainingCapacity() > newFetchEmitTuples.size()) {
-                try {
-                    fetchEmitTuples.addAll(newFetchEmitTuples);
-                    return true;
-                } catch (IllegalStateException e) {
-                    //this means that the add all failed because the queue couldn't
-                    //take the full list
-                    LOG.debug("couldn't add full list", e);
-                }
+            if (fetchEmitTuples.offerAll(newFetchEmitTuples)) {
+                return true;
             }
             Thread.sleep(100);
             elapsed = System.currentTimeMillis() - start;
@@ -191,7 +289,9 @@ public class AsyncProcessor implements Closeable {
     }
 
     public void finished() throws InterruptedException {
-        for (int i = 0; i < asyncConfig.getNumClients(); i++) {
+        int numConsumers = asyncConfig.getNumPrefetchers() > 0 ?
+                asyncConfig.getNumPrefetchers() : getNumParseTupleConsumers();
+        for (int i = 0; i < numConsumers; i++) {
             boolean offered = fetchEmitTuples.offer(PipesIterator.COMPLETED_SEMAPHORE,
                     MAX_OFFER_WAIT_MS, TimeUnit.MILLISECONDS);
             if (! offered) {
@@ -216,6 +316,13 @@ public class AsyncProcessor implements Closeable {
                         numEmitterThreadsFinished++;
                         LOG.debug("emitter thread finished, total {}", numEmitterThreadsFinished);
                         break;
+                    case AsyncPrefetcher.PREFETCHER_FUTURE_CODE :
+                        numPrefetcherThreadsFinished++;
+                        LOG.debug("prefetcher finished, total {}", numPrefetcherThreadsFinished);
+                        break;
+                    case AsyncRouter.ROUTER_FUTURE_CODE :
+                        LOG.debug("router finished");
+                        break;
                     case WATCHER_FUTURE_CODE :
                         LOG.debug("watcher thread finished");
                         break;
@@ -228,7 +335,20 @@ public class AsyncProcessor implements Closeable {
                 throw new RuntimeException(e);
             }
         }
-        if (numParserThreadsFinished == asyncConfig.getNumClients() && ! addedEmitterSemaphores) {
+        if (asyncConfig.getNumPrefetchers() > 0 &&
+                numPrefetcherThreadsFinished == asyncConfig.getNumPrefetchers() &&
+                ! addedParserSemaphores) {
+            for (int i = 0; i < getNumParseTupleConsumers(); i++) {
+                boolean offered = parseTuples.offer(PipesIterator.COMPLETED_SEMAPHORE,
+                        MAX_OFFER_WAIT_MS, TimeUnit.MILLISECONDS);
+                if (! offered) {
+                    throw new RuntimeException("Couldn't offer completed semaphore " +
+                            "within " + MAX_OFFER_WAIT_MS + " ms");
+                }
+            }
+            addedParserSemaphores = true;
+        }
+        if (numParserThreadsFinished == numParsers && ! addedEmitterSemaphores) {
             for (int i = 0; i < asyncConfig.getNumEmitters(); i++) {
                 try {
                     boolean offered = emitData.offer(AsyncEmitter.EMIT_DATA_STOP_SEMAPHORE,
@@ -244,82 +364,164 @@ public class AsyncProcessor implements Closeable {
             }
             addedEmitterSemaphores = true;
         }
-        return !(numParserThreadsFinished == asyncConfig.getNumClients() &&
+        return !(numParserThreadsFinished == numParsers &&
                 numEmitterThreadsFinished == asyncConfig.getNumEmitters());
     }
 
+    //the router takes from parseTuples if there are pools
+    private int getNumParseTupleConsumers() {
+        return asyncConfig.getPools().isEmpty() ? asyncConfig.getNumClients() : 1;
+    }
+
     @Override
     public void close() throws IOException {
         executorService.shutdownNow();
+        closeSharedClients();
+        if (standbyPool != null) {
+            standbyPool.close();
+        }
+        synchronized (staged) {
+            for (AsyncPrefetcher.Staged s : staged.values()) {
+                s.delete();
+            }
+            staged.clear();
+        }
         asyncConfig.getPipesReporter().close();
     }
 
+    private void closeSharedClients() {
+        for (PipesClient pipesClient : sharedClients) {
+            try {
+                pipesClient.close();
+            } catch (IOException e) {
+                LOG.warn("problem closing pipes client", e);
+            }
+        }
+    }
+
     public long getTotalProcessed() {
         return totalProcessed.get();
     }
 
+    /**
+     * @return batch sizes and metrics by emitter name
+     */
+    public Map<String, EmitterStats> getEmitterStats() {
+        return Collections.unmodifiableMap(emitterStats);
+    }
+
+    /**
+     * @return queue depth and wait times by class of the tuples that are
+     * waiting to be parsed
+     */
+    public Map<String, QueueClassStats> getQueueStats() {
+        return fetchEmitTuples.getStats();
+    }
+
+    /**
+     * @return number of standby servers that have replaced a client's server,
+     * or 0 if there are no standby servers
+     */
+    public long getNumStandbyServersPromoted() {
+        return standbyPool == null ? 0 : standbyPool.getNumPromoted();
+    }
+
+    /**
+     * @return number of parse results waiting for the emitters
+     */
+    public int getEmitQueueDepth() {
+        return emitData.size();
+    }
+
     private class FetchEmitWorker implements Callable<Integer> {
 
-        private final AsyncConfig asyncConfig;
-        private final ArrayBlockingQueue<FetchEmitTuple> fetchEmitTuples;
+        private final PipesConfigBase pipesConfig;
+        private final PipesServerStandbyPool standby;
+        private final BlockingQueue<FetchEmitTuple> fetchEmitTuples;
         private final ArrayBlockingQueue<EmitData> emitDataQueue;
+        //if not null, this is owned by the AsyncProcessor
+        private final PipesClient sharedClient;
 
-        private FetchEmitWorker(AsyncConfig asyncConfig,
-                                ArrayBlockingQueue<FetchEmitTuple> fetchEmitTuples,
-                                ArrayBlockingQueue<EmitData> emitDataQueue) {
-            this.asyncConfig = asyncConfig;
+        private FetchEmitWorker(PipesConfigBase pipesConfig, PipesServerStandbyPool standby,
+                                BlockingQueue<FetchEmitTuple> fetchEmitTuples,
+                                ArrayBlockingQueue<EmitData> emitDataQueue,
+                                PipesClient sharedClient) {
+            this.pipesConfig = pipesConfig;
+            this.standby = standby;
             this.fetchEmitTuples = fetchEmitTuples;
             this.emitDataQueue = emitDataQueue;
+            this.sharedClient = sharedClient;
         }
 
         @Override
         public Integer call() throws Exception {
+            if (sharedClient != null) {
+                return processTuples(sharedClient);
+            }
+            try (PipesClient pipesClient = new PipesClient(pipesConfig, standby)) {
+                return processTuples(pipesClient);
+            }
+        }
 
-            try (PipesClient pipesClient = new PipesClient(asyncConfig)) {
-                while (true) {
-                    FetchEmitTuple t = fetchEmitTuples.poll(1, TimeUnit.SECONDS);
-                    if (t == null) {
-                        //skip
-                        if (LOG.isTraceEnabled()) {
-                            LOG.trace("null fetch emit tuple");
-                        }
-                    } else if (t == PipesIterator.COMPLETED_SEMAPHORE) {
-                        if (LOG.isTraceEnabled()) {
-                            LOG.trace("hit completed semaphore");
-                        }
-                        return PARSER_FUTURE_CODE;
-                    } else {
-                        PipesResult result = null;
-                        long start = System.currentTimeMillis();
-                        try {
-                            result = pipesClient.process(t);
-                        } catch (IOException e) {
-                            LOG.warn("pipesClient crash", e);
-                            result = PipesResult.UNSPECIFIED_CRASH;
-                        }
-                        if (LOG.isTraceEnabled()) {
-                            LOG.trace("timer -- pipes client process: {} ms",
-                                    System.currentTimeMillis() - start);
-                        }
-                        long offerStart = System.currentTimeMillis();
-                        if (result.getStatus() == PipesResult.STATUS.PARSE_SUCCESS ||
-                                result.getStatus() == PipesResult.STATUS.PARSE_SUCCESS_WITH_EXCEPTION) {
-                            boolean offered = emitDataQueue.offer(result.getEmitData(),
-                                    MAX_OFFER_WAIT_MS,
-                                    TimeUnit.MILLISECONDS);
-                            if (! offered) {
-                                throw new RuntimeException("Couldn't offer emit data to queue " +
-                                        "within " + MAX_OFFER_WAIT_MS + " ms");
-                            }
+        private Integer processTuples(PipesClient pipesClient) throws InterruptedException {
+            while (true) {
+                FetchEmitTuple t = fetchEmitTuples.poll(1, TimeUnit.SECONDS);
+                if (t == null) {
+                    //skip
+                    if (LOG.isTraceEnabled()) {
+                        LOG.trace("null fetch emit tuple");
+                    }
+                } else if (t == PipesIterator.COMPLETED_SEMAPHORE) {
+                    if (LOG.isTraceEnabled()) {
+                        LOG.trace("hit completed semaphore");
+                    }
+                    return PARSER_FUTURE_CODE;
+                } else {
+                    //report against the tuple that was offered, not the staged copy
+                    AsyncPrefetcher.Staged prefetched = staged.remove(t);
+                    FetchEmitTuple reported = prefetched == null ? t : prefetched.getOriginal();
+                    PipesResult result = null;
+                    long start = System.currentTimeMillis();
+                    try {
+                        result = pipesClient.process(t);
+                    } catch (IOException e) {
+                        LOG.warn("pipesClient crash", e);
+                        result = PipesResult.UNSPECIFIED_CRASH;
+                    } finally {
+                        if (prefetched != null) {
+                            prefetched.delete();
                         }
-                        if (LOG.isTraceEnabled()) {
-                            LOG.trace("timer -- offered: {} ms",
-                                    System.currentTimeMillis() - offerStart);
+                    }
+                    if (LOG.isTraceEnabled()) {
+                        LOG.trace("timer -- pipes client process: {} ms",
+                                System.currentTimeMillis() - start);
+                    }
+                    long offerStart = System.currentTimeMillis();
+                    boolean toEmitter = false;
+                    if (result.getStatus() == PipesResult.STATUS.PARSE_SUCCESS ||
+                            result.getStatus() == PipesResult.STATUS.PARSE_SUCCESS_WITH_EXCEPTION) {
+                        //the emitter reports these after the emit
+                        toEmitter = asyncConfig.isReportEmits();
+                        EmitData emitData = toEmitter ?
+                                new AsyncEmitData(reported, result.getEmitData(), start) :
+                                result.getEmitData();
+                        boolean offered = emitDataQueue.offer(emitData,
+                                MAX_OFFER_WAIT_MS,
+                                TimeUnit.MILLISECONDS);
+                        if (! offered) {
+                            throw new RuntimeException("Couldn't offer emit data to queue " +
+                                    "within " + MAX_OFFER_WAIT_MS + " ms");
                         }
+                    }
+                    if (LOG.isTraceEnabled()) {
+                        LOG.trace("timer -- offered: {} ms",
+                                System.currentTimeMillis() - offerStart);
+                    }
+                    if (! toEmitter) {
                         long elapsed = System.currentTimeMillis() - start;
-                        asyncConfig.getPipesReporter().report(t, result, elapsed);
-                        totalProcessed.incrementAndGet();
+                        asyncConfig.getPipesReporter().report(reported, result, elapsed);
                     }
+                    totalProcessed.incrementAndGet();
                 }
             }
         }
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.pipes.async;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FilenameUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.mime.MimeTypes;
+import org.apache.tika.pipes.FetchEmitTuple;
+import org.apache.tika.pipes.fetcher.FetchKey;
+import org.apache.tika.pipes.pipesiterator.PipesIterator;
+import org.apache.tika.utils.StringUtils;
+
+/**
+ * Sends each tuple to the queue of the first {@link AsyncPool} that it
+ * matches or else to the queue of the default clients.
+ */
+public class AsyncRouter implements Callable<Integer> {
+
+    static final int ROUTER_FUTURE_CODE = 5;
+
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncRouter.class);
+
+    private final BlockingQueue<FetchEmitTuple> parseTuples;
+    private final BlockingQueue<FetchEmitTuple> defaultTuples;
+    private final int numDefaultClients;
+    private final List<AsyncPool> pools;
+    private final List<BlockingQueue<FetchEmitTuple>> poolTuples;
+    private final Map<FetchEmitTuple, AsyncPrefetcher.Staged> staged;
+    private final boolean needsMediaType;
+    private final MimeTypes mimeTypes = MimeTypes.getDefaultMimeTypes();
+
+    public AsyncRouter(BlockingQueue<FetchEmitTuple> parseTuples,
+                       BlockingQueue<FetchEmitTuple> defaultTuples, int numDefaultClients,
+                       List<AsyncPool> pools, List<BlockingQueue<FetchEmitTuple>> poolTuples,
+                       Map<FetchEmitTuple, AsyncPrefetcher.Staged> staged) {
+        this.parseTuples = parseTuples;
+        this.defaultTuples = defaultTuples;
+        this.numDefaultClients = numDefaultClients;
+        this.pools = pools;
+        this.poolTuples = poolTuples;
+        this.staged = staged;
+        boolean needsMediaType = false;
+        for (AsyncPool pool : pools) {
+            needsMediaType |= pool.needsMediaType();
+        }
+        this.needsMediaType = needsMediaType;
+    }
+
+    @Override
+    public Integer call() throws Exception {
+        while (true) {
+            FetchEmitTuple t = parseTuples.poll(1, TimeUnit.SECONDS);
+            if (t == null) {
+                LOG.trace("nothing to route");
+            } else if (t == PipesIterator.COMPLETED_SEMAPHORE) {
+                for (int i = 0; i < numDefaultClients; i++) {
+                    defaultTuples.put(t);
+                }
+                for (int i = 0; i < pools.size(); i++) {
+                    for (int j = 0; j < pools.get(i).getNumClients(); j++) {
+                        poolTuples.get(i).put(t);
+                    }
+                }
+                return ROUTER_FUTURE_CODE;
+            } else {
+                int pool = route(t);
+                if (pool < 0) {
+                    defaultTuples.put(t);
+                } else {
+                    LOG.debug("routing {} to pool {}", t.getId(), pools.get(pool).getName());
+                    poolTuples.get(pool).put(t);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return index of the pool for the tuple or -1 for the default clients
+     */
+    int route(FetchEmitTuple t) {
+        String name = FilenameUtils.getName(t.getFetchKey().getFetchKey());
+        //a staged file has the name of the original in its own directory
+        AsyncPrefetcher.Staged s = staged.get(t);
+        Path path = s == null ? null : s.getDirectory().resolve(name);
+        String extension = FilenameUtils.getExtension(name).toLowerCase(Locale.US);
+        long size = getSize(t, path);
+        String mediaType = needsMediaType ? getMediaType(t, name, path) : null;
+        for (int i = 0; i < pools.size(); i++) {
+            if (pools.get(i).matches(extension, size, mediaType)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static long getSize(FetchEmitTuple t, Path path) {
+        if (path != null) {
+            try {
+                return Files.size(path);
+            } catch (IOException e) {
+                LOG.debug("couldn't get the size of {}", path, e);
+            }
+        }
+        String length = t.getMetadata().get(Metadata.CONTENT_LENGTH);
+        if (!StringUtils.isBlank(length)) {
+            try {
+                return Long.parseLong(length.trim());
+            } catch (NumberFormatException e) {
+                LOG.debug("bad content length {}", length);
+            }
+        }
+        FetchKey fetchKey = t.getFetchKey();
+        if (fetchKey.hasRange()) {
+            return fetchKey.getRangeEnd() - fetchKey.getRangeStart() + 1;
+        }
+        return -1;
+    }
+
+    private String getMediaType(FetchEmitTuple t, String name, Path path) {
+        String contentType = t.getMetadata().get(Metadata.CONTENT_TYPE);
+        if (contentType == null && t.getFetchMetadata() != null) {
+            //e.g. the Content-Type that the prefetcher's fetch returned
+            contentType = t.getFetchMetadata().get(Metadata.CONTENT_TYPE);
+        }
+        MediaType declared = MediaType.parse(contentType);
+        if (declared != null) {
+            return declared.getBaseType().toString();
+        }
+        Metadata metadata = new Metadata();
+        metadata.set(TikaCoreProperties.RESOURCE_NAME_KEY, name);
+        try (InputStream is = path == null ? null : TikaInputStream.get(path)) {
+            return mimeTypes.detect(is, metadata).getBaseType().toString();
+        } catch (IOException e) {
+            LOG.debug("couldn't detect the type of {}", t.getId(), e);
+            return null;
+        }
+    }
+}
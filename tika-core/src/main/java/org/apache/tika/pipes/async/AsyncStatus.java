@@ -36,6 +36,7 @@ public class AsyncStatus {
     private Instant lastUpdate;
     private TotalCountResult totalCountResult = new TotalCountResult(0, TotalCountResult.STATUS.NOT_COMPLETED);
     private Map<PipesResult.STATUS, Long> statusCounts = new HashMap<>();
+    private long duplicateCount = 0;
     private ASYNC_STATUS asyncStatus = ASYNC_STATUS.STARTED;
 
     private String crashMessage = StringUtils.EMPTY;
@@ -53,6 +54,17 @@ public class AsyncStatus {
         this.asyncStatus = status;
     }
 
+    /**
+     * @param duplicateCount number of results that were duplicates, see
+     *                       {@link PipesResult#isDuplicate()}
+     */
+    public synchronized void update(Map<PipesResult.STATUS, Long> statusCounts,
+                                    long duplicateCount, TotalCountResult totalCountResult,
+                                    ASYNC_STATUS status) {
+        update(statusCounts, totalCountResult, status);
+        this.duplicateCount = duplicateCount;
+    }
+
     public void updateCrash(String msg) {
         this.crashMessage = msg;
     }
@@ -73,6 +85,14 @@ public class AsyncStatus {
         return statusCounts;
     }
 
+    /**
+     * @return number of results that the deduplicator didn't parse again; with the
+     * counts of the statuses, this gives the dedup hit rate
+     */
+    public long getDuplicateCount() {
+        return duplicateCount;
+    }
+
     public ASYNC_STATUS getAsyncStatus() {
         return asyncStatus;
     }
@@ -85,6 +105,7 @@ public class AsyncStatus {
     public String toString() {
         return "AsyncStatus{" + "started=" + started + ", lastUpdate=" + lastUpdate +
                 ", totalCountResult=" + totalCountResult + ", statusCounts=" + statusCounts +
+                ", duplicateCount=" + duplicateCount +
                 ", asyncStatus=" + asyncStatus + ", crashMessage='" + crashMessage + '\'' + '}';
     }
 }
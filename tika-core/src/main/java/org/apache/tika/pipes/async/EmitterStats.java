@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.pipes.async;
+
+/**
+ * Batch size and metrics of one emitter, shared by all {@link AsyncEmitter}s.
+ * <p>
+ * If {@link AsyncConfig#getEmitTargetMillis()} is set, the estimated bytes
+ * at which a batch is flushed are tuned after every flush so that a flush
+ * takes about that long: the next batch size is the observed throughput
+ * (a moving average of bytes per millisecond) times the target. It changes by
+ * at most a factor of two per flush and stays between
+ * {@link AsyncConfig#getEmitMinEstimatedBytes()} and
+ * {@link AsyncConfig#getEmitMaxEstimatedBytes()}. A failed flush, or one where
+ * the emitter rejected some of the batch, halves the batch size. Otherwise,
+ * every batch is flushed at {@link AsyncConfig#getEmitMaxEstimatedBytes()}.
+ */
+public class EmitterStats {
+
+    //weight of the latest flush in the throughput average
+    private static final double ALPHA = 0.3;
+
+    private final String emitterName;
+    private final long minBytes;
+    private final long maxBytes;
+    private final long targetMillis;
+
+    private long batchBytes;
+    private double bytesPerMilli = -1;
+
+    private long batches = 0;
+    private long failedBatches = 0;
+    private long partialBatches = 0;
+    private long emitted = 0;
+    private long emittedBytes = 0;
+    private long flushMillis = 0;
+    private long lastFlushMillis = 0;
+    private long pending = 0;
+
+    public EmitterStats(String emitterName, AsyncConfig asyncConfig) {
+        this(emitterName, asyncConfig.getEmitMinEstimatedBytes(),
+                asyncConfig.getEmitMaxEstimatedBytes(), asyncConfig.getEmitTargetMillis());
+    }
+
+    EmitterStats(String emitterName, long minBytes, long maxBytes, long targetMillis) {
+        this.emitterName = emitterName;
+        this.minBytes = Math.max(1, Math.min(minBytes, maxBytes));
+        this.maxBytes = maxBytes;
+        this.targetMillis = targetMillis;
+        this.batchBytes = maxBytes;
+    }
+
+    synchronized void added() {
+        pending++;
+    }
+
+    /**
+     * Records a flush and, if adaptive batching is on, updates the batch size.
+     *
+     * @param size       number of emit data in the batch
+     * @param failedSize number of emit data that the emitter rejected in a batch
+     *                   that was otherwise emitted
+     * @param bytes      estimated bytes of the batch
+     * @param millis     time it took to emit the batch
+     * @param failed     whether the emitter failed the whole batch
+     */
+    synchronized void flushed(int size, int failedSize, long bytes, long millis,
+                              boolean failed) {
+        batches++;
+        pending -= size;
+        flushMillis += millis;
+        lastFlushMillis = millis;
+        if (failed) {
+            failedBatches++;
+            shrink();
+            return;
+        }
+        if (failedSize > 0) {
+            partialBatches++;
+            int ok = Math.max(0, size - failedSize);
+            emitted += ok;
+            emittedBytes += size == 0 ? 0 : bytes * ok / size;
+            shrink();
+            return;
+        }
+        emitted += size;
+        emittedBytes += bytes;
+        if (targetMillis <= 0 || bytes <= 0) {
+            return;
+        }
+        double throughput = (double) bytes / Math.max(1, millis);
+        bytesPerMilli = bytesPerMilli < 0 ? throughput :
+                ALPHA * throughput + (1 - ALPHA) * bytesPerMilli;
+        long next = (long) (bytesPerMilli * targetMillis);
+        next = Math.max(batchBytes / 2, Math.min(next, batchBytes * 2));
+        batchBytes = Math.max(minBytes, Math.min(next, maxBytes));
+    }
+
+    private void shrink() {
+        if (targetMillis > 0) {
+            batchBytes = Math.max(minBytes, batchBytes / 2);
+        }
+    }
+
+    public String getEmitterName() {
+        return emitterName;
+    }
+
+    /**
+     * @return estimated bytes at which the next batch will be flushed
+     */
+    public synchronized long getBatchBytes() {
+        return batchBytes;
+    }
+
+    /**
+     * @return number of batches flushed so far, including failed ones
+     */
+    public synchronized long getBatchCount() {
+        return batches;
+    }
+
+    public synchronized long getFailedBatchCount() {
+        return failedBatches;
+    }
+
+    /**
+     * @return number of batches where the emitter rejected some, but not all,
+     * of the emit data
+     */
+    public synchronized long getPartialBatchCount() {
+        return partialBatches;
+    }
+
+    /**
+     * @return number of emit data that were emitted
+     */
+    public synchronized long getEmitCount() {
+        return emitted;
+    }
+
+    /**
+     * @return estimated bytes of the emit data that were emitted
+     */
+    public synchronized long getEmitBytes() {
+        return emittedBytes;
+    }
+
+    /**
+     * @return total milliseconds spent flushing
+     */
+    public synchronized long getFlushMillis() {
+        return flushMillis;
+    }
+
+    public synchronized long getLastFlushMillis() {
+        return lastFlushMillis;
+    }
+
+    public synchronized double getAverageFlushMillis() {
+        return batches == 0 ? 0 : (double) flushMillis / batches;
+    }
+
+    /**
+     * @return average number of emit data per successful batch
+     */
+    public synchronized double getAverageBatchSize() {
+        long successful = batches - failedBatches;
+        return successful == 0 ? 0 : (double) emitted / successful;
+    }
+
+    /**
+     * @return number of emit data waiting in the emitters' batches
+     */
+    public synchronized long getPendingCount() {
+        return pending;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "EmitterStats{" + "emitterName='" + emitterName + '\'' + ", batchBytes=" +
+                batchBytes + ", batches=" + batches + ", failedBatches=" + failedBatches +
+                ", partialBatches=" + partialBatches + ", emitted=" + emitted +
+                ", emittedBytes=" + emittedBytes + ", flushMillis=" + flushMillis +
+                ", lastFlushMillis=" + lastFlushMillis + ", pending=" + pending + '}';
+    }
+}
@@ -0,0 +1,455 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.pipes.async;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.tika.pipes.FetchEmitTuple;
+import org.apache.tika.pipes.pipesiterator.PipesIterator;
+import org.apache.tika.utils.StringUtils;
+
+/**
+ * Bounded queue of tuples for the {@link AsyncProcessor} that schedules
+ * classes of tuples instead of taking them in FIFO order.
+ * <p>
+ * The class of a tuple is the value of
+ * {@link AsyncConfig#getQueueClassKey()} in the tuple's metadata, e.g. a
+ * tenant id that the clients of <code>/async</code> send, or else the name of
+ * the tuple's fetcher. Tuples of a higher priority class are always taken
+ * first. Classes of the same priority share the consumers in proportion to
+ * their weights (stride scheduling): every time a tuple of a class is taken,
+ * the class's pass grows by 1/weight and the class with the lowest pass goes
+ * next. A class's lane is dropped when it empties, and a class that comes back
+ * starts from the current pass, so it can't save up a share while it has
+ * nothing queued. Within a class, tuples are FIFO.
+ * <p>
+ * Each class may fill at most {@link AsyncConfig#getQueueMaxClassShare()}
+ * of the queue, so that a bulk load leaves room for the others to be
+ * admitted at all. The {@link PipesIterator#COMPLETED_SEMAPHORE}s are taken
+ * only once there's nothing else left.
+ * <p>
+ * Stats are kept for at most {@link #MAX_CLASS_STATS} classes besides the
+ * ones with queued tuples. The least recently queued are dropped first, so
+ * that a stream of one-off classes, e.g. one per request id, doesn't grow
+ * the queue without bounds.
+ */
+public class FetchEmitTupleQueue extends AbstractQueue<FetchEmitTuple>
+        implements BlockingQueue<FetchEmitTuple> {
+
+    static final int MAX_CLASS_STATS = 1000;
+
+    private static final String DEFAULT_CLASS_NAME = "default";
+
+    private final int capacity;
+    private final int maxPerClass;
+    private final String classKey;
+    private final Map<String, Double> weights;
+    private final Map<String, Integer> priorities;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    //lanes with queued tuples, insertion order breaks ties
+    private final Map<String, Lane> lanes = new LinkedHashMap<>();
+    //least recently queued first
+    private final Map<String, QueueClassStats> classStats =
+            new LinkedHashMap<>(16, 0.75f, true);
+    //pass of the last class taken, by priority
+    private final Map<Integer, Double> virtualTimes = new HashMap<>();
+    private final ArrayDeque<FetchEmitTuple> semaphores = new ArrayDeque<>();
+    private int count = 0;
+
+    public FetchEmitTupleQueue(AsyncConfig asyncConfig) {
+        this(asyncConfig.getQueueSize(), asyncConfig.getQueueClassKey(),
+                asyncConfig.getQueueWeights(), asyncConfig.getQueuePriorities(),
+                asyncConfig.getQueueMaxClassShare());
+    }
+
+    FetchEmitTupleQueue(int capacity, String classKey, Map<String, Double> weights,
+                        Map<String, Integer> priorities, double maxClassShare) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be > 0");
+        }
+        this.capacity = capacity;
+        this.maxPerClass = maxClassShare >= 1.0 ? capacity :
+                Math.max(1, (int) (capacity * maxClassShare));
+        this.classKey = classKey;
+        this.weights = weights;
+        this.priorities = priorities;
+    }
+
+    /**
+     * @return the class that the tuple is scheduled by
+     */
+    public String getClassName(FetchEmitTuple t) {
+        if (classKey != null && t.getMetadata() != null) {
+            String className = t.getMetadata().get(classKey);
+            if (!StringUtils.isBlank(className)) {
+                return className;
+            }
+        }
+        String fetcherName = t.getFetchKey() == null ? null : t.getFetchKey().getFetcherName();
+        return StringUtils.isBlank(fetcherName) ? DEFAULT_CLASS_NAME : fetcherName;
+    }
+
+    /**
+     * Adds all the tuples or none of them.
+     *
+     * @return whether the tuples were added
+     */
+    public boolean offerAll(Collection<FetchEmitTuple> tuples) {
+        lock.lock();
+        try {
+            if (count + tuples.size() > capacity) {
+                return false;
+            }
+            Map<String, Integer> added = new HashMap<>();
+            for (FetchEmitTuple t : tuples) {
+                if (t == PipesIterator.COMPLETED_SEMAPHORE) {
+                    continue;
+                }
+                String className = getClassName(t);
+                int n = added.merge(className, 1, Integer::sum);
+                Lane lane = lanes.get(className);
+                if ((lane == null ? 0 : lane.entries.size()) + n > maxPerClass) {
+                    return false;
+                }
+            }
+            for (FetchEmitTuple t : tuples) {
+                enqueue(t);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(FetchEmitTuple t) {
+        checkNotNull(t);
+        lock.lock();
+        try {
+            if (!hasRoom(t)) {
+                return false;
+            }
+            enqueue(t);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(FetchEmitTuple t, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        checkNotNull(t);
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (!hasRoom(t)) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            enqueue(t);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(FetchEmitTuple t) throws InterruptedException {
+        checkNotNull(t);
+        lock.lockInterruptibly();
+        try {
+            while (!hasRoom(t)) {
+                notFull.await();
+            }
+            enqueue(t);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public FetchEmitTuple poll() {
+        lock.lock();
+        try {
+            return count == 0 ? null : dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public FetchEmitTuple poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public FetchEmitTuple take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                notEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public FetchEmitTuple peek() {
+        lock.lock();
+        try {
+            Lane lane = nextLane();
+            return lane == null ? semaphores.peek() : lane.entries.peek().tuple;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        lock.lock();
+        try {
+            return capacity - count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super FetchEmitTuple> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super FetchEmitTuple> c, int maxElements) {
+        checkNotNull(c);
+        if (c == this) {
+            throw new IllegalArgumentException("can't drain to itself");
+        }
+        lock.lock();
+        try {
+            int n = Math.min(maxElements, count);
+            for (int i = 0; i < n; i++) {
+                c.add(dequeue());
+            }
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return a snapshot of the queued tuples by class, in no particular order.
+     * The iterator doesn't support removal.
+     */
+    @Override
+    public Iterator<FetchEmitTuple> iterator() {
+        lock.lock();
+        try {
+            List<FetchEmitTuple> tuples = new ArrayList<>(count);
+            for (Lane lane : lanes.values()) {
+                for (Entry e : lane.entries) {
+                    tuples.add(e.tuple);
+                }
+            }
+            tuples.addAll(semaphores);
+            return Collections.unmodifiableList(tuples).iterator();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return queue depth and wait times by class, for up to
+     * {@link #MAX_CLASS_STATS} of the most recently queued classes, least
+     * recently queued first
+     */
+    public Map<String, QueueClassStats> getStats() {
+        lock.lock();
+        try {
+            return Collections.unmodifiableMap(new LinkedHashMap<>(classStats));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //visible for tests
+    int getLaneCount() {
+        lock.lock();
+        try {
+            return lanes.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean hasRoom(FetchEmitTuple t) {
+        if (count >= capacity) {
+            return false;
+        }
+        if (t == PipesIterator.COMPLETED_SEMAPHORE) {
+            return true;
+        }
+        Lane lane = lanes.get(getClassName(t));
+        return lane == null || lane.entries.size() < maxPerClass;
+    }
+
+    private void enqueue(FetchEmitTuple t) {
+        if (t == PipesIterator.COMPLETED_SEMAPHORE) {
+            semaphores.add(t);
+        } else {
+            String className = getClassName(t);
+            Lane lane = lanes.get(className);
+            if (lane == null) {
+                QueueClassStats stats = classStats.get(className);
+                if (stats == null) {
+                    stats = new QueueClassStats(className,
+                            priorities.getOrDefault(className, 0),
+                            weights.getOrDefault(className, 1.0));
+                    classStats.put(className, stats);
+                    trimStats();
+                }
+                lane = new Lane(stats);
+                //a class that comes back starts from the current pass
+                lane.pass = virtualTimes.getOrDefault(stats.getPriority(), 0.0);
+                lanes.put(className, lane);
+            } else {
+                //marks the class as recently queued
+                classStats.get(className);
+            }
+            lane.entries.add(new Entry(t, System.currentTimeMillis()));
+            lane.stats.enqueued();
+        }
+        count++;
+        notEmpty.signal();
+    }
+
+    //drops the stats of the least recently queued classes without queued tuples
+    private void trimStats() {
+        Iterator<String> it = classStats.keySet().iterator();
+        while (classStats.size() > MAX_CLASS_STATS && it.hasNext()) {
+            if (!lanes.containsKey(it.next())) {
+                it.remove();
+            }
+        }
+    }
+
+    private FetchEmitTuple dequeue() {
+        Lane lane = nextLane();
+        FetchEmitTuple t;
+        if (lane == null) {
+            t = semaphores.poll();
+        } else {
+            Entry e = lane.entries.poll();
+            virtualTimes.put(lane.stats.getPriority(), lane.pass);
+            lane.pass += 1.0 / lane.stats.getWeight();
+            lane.stats.dequeued(System.currentTimeMillis() - e.enqueued);
+            if (lane.entries.isEmpty()) {
+                lanes.remove(lane.stats.getClassName());
+            }
+            t = e.tuple;
+        }
+        count--;
+        //a producer that waits for another class may be the one that can add now
+        notFull.signalAll();
+        return t;
+    }
+
+    private Lane nextLane() {
+        Lane next = null;
+        for (Lane lane : lanes.values()) {
+            if (lane.entries.isEmpty()) {
+                continue;
+            }
+            if (next == null || lane.stats.getPriority() > next.stats.getPriority() ||
+                    (lane.stats.getPriority() == next.stats.getPriority() &&
+                            lane.pass < next.pass)) {
+                next = lane;
+            }
+        }
+        return next;
+    }
+
+    private static void checkNotNull(Object o) {
+        if (o == null) {
+            throw new NullPointerException();
+        }
+    }
+
+    private static class Lane {
+        private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+        private final QueueClassStats stats;
+        private double pass = 0;
+
+        private Lane(QueueClassStats stats) {
+            this.stats = stats;
+        }
+    }
+
+    private static class Entry {
+        private final FetchEmitTuple tuple;
+        private final long enqueued;
+
+        private Entry(FetchEmitTuple tuple, long enqueued) {
+            this.tuple = tuple;
+            this.enqueued = enqueued;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.pipes.async;
+
+/**
+ * Queue depth and wait times of one class of tuples in the
+ * {@link FetchEmitTupleQueue}.
+ */
+public class QueueClassStats {
+
+    private final String className;
+    private final int priority;
+    private final double weight;
+
+    private int depth = 0;
+    private long enqueued = 0;
+    private long dequeued = 0;
+    private long waitMillis = 0;
+    private long maxWaitMillis = 0;
+    private long lastWaitMillis = 0;
+
+    QueueClassStats(String className, int priority, double weight) {
+        this.className = className;
+        this.priority = priority;
+        this.weight = weight;
+    }
+
+    synchronized void enqueued() {
+        enqueued++;
+        depth++;
+    }
+
+    synchronized void dequeued(long millis) {
+        dequeued++;
+        depth--;
+        waitMillis += millis;
+        lastWaitMillis = millis;
+        maxWaitMillis = Math.max(maxWaitMillis, millis);
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public double getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return number of tuples of this class in the queue
+     */
+    public synchronized int getDepth() {
+        return depth;
+    }
+
+    public synchronized long getEnqueuedCount() {
+        return enqueued;
+    }
+
+    public synchronized long getDequeuedCount() {
+        return dequeued;
+    }
+
+    /**
+     * @return total milliseconds that the dequeued tuples waited in the queue
+     */
+    public synchronized long getWaitMillis() {
+        return waitMillis;
+    }
+
+    public synchronized long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    public synchronized long getLastWaitMillis() {
+        return lastWaitMillis;
+    }
+
+    public synchronized double getAverageWaitMillis() {
+        return dequeued == 0 ? 0 : (double) waitMillis / dequeued;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "QueueClassStats{" + "className='" + className + '\'' + ", priority=" + priority +
+                ", weight=" + weight + ", depth=" + depth + ", enqueued=" + enqueued +
+                ", dequeued=" + dequeued + ", waitMillis=" + waitMillis + ", maxWaitMillis=" +
+                maxWaitMillis + ", lastWaitMillis=" + lastWaitMillis + '}';
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.pipes.emitter;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Thrown by {@link Emitter#emit(java.util.List)} if some, but not all, of the
+ * emit data in a batch could not be emitted. The rest of the batch has been
+ * emitted.
+ */
+public class PartialEmitException extends TikaEmitterException {
+
+    private static final long serialVersionUID = -2398750318765640113L;
+
+    private final Set<String> failedEmitKeys;
+
+    /**
+     * @param msg            message
+     * @param failedEmitKeys emit keys ({@link EmitKey#getEmitKey()}) of the emit data
+     *                       that could not be emitted
+     */
+    public PartialEmitException(String msg, Set<String> failedEmitKeys) {
+        super(msg);
+        this.failedEmitKeys = Collections.unmodifiableSet(new HashSet<>(failedEmitKeys));
+    }
+
+    public Set<String> getFailedEmitKeys() {
+        return failedEmitKeys;
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.pipes.fetcher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.metadata.Metadata;
+
+/**
+ * Read-only {@link SeekableByteChannel} over a remote object that is
+ * downloaded lazily, in fixed size blocks, with
+ * {@link RangeFetcher#fetch(String, long, long, Metadata)}.
+ * <p>
+ * Only the blocks that are actually read are fetched, so that container
+ * formats that keep their index at the end of the file (zip central
+ * directory, pdf xref) can be opened without downloading the whole object.
+ * Once blocks are read in order, the next few blocks are fetched with the
+ * same range request. Fetched blocks are kept in a bounded
+ * least-recently-used cache.
+ * <p>
+ * Use {@link org.apache.tika.io.TikaInputStream#get(SeekableByteChannel, Metadata)}
+ * to parse from this channel.
+ */
+public class RangeFetcherChannel implements SeekableByteChannel {
+
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    public static final int DEFAULT_MAX_BLOCKS = 32;
+
+    public static final int DEFAULT_READ_AHEAD_BLOCKS = 3;
+
+    private final RangeFetcher fetcher;
+    private final String fetchKey;
+    private final long size;
+    private final int blockSize;
+    private final int maxBlocks;
+    private final int readAheadBlocks;
+    private final Map<Long, byte[]> blocks;
+
+    private long position = 0;
+    private long lastBlock = -2;
+    private boolean open = true;
+    private long bytesFetched = 0;
+    private int rangeRequests = 0;
+
+    public RangeFetcherChannel(RangeFetcher fetcher, String fetchKey, long size) {
+        this(fetcher, fetchKey, size, DEFAULT_BLOCK_SIZE, DEFAULT_MAX_BLOCKS,
+                DEFAULT_READ_AHEAD_BLOCKS);
+    }
+
+    /**
+     * @param fetcher         fetcher to read the blocks with
+     * @param fetchKey        fetch key of the object
+     * @param size            length of the object in bytes
+     * @param blockSize       number of bytes to fetch at a time
+     * @param maxBlocks       maximum number of blocks to keep in memory
+     * @param readAheadBlocks number of extra blocks to fetch when reading sequentially
+     */
+    public RangeFetcherChannel(RangeFetcher fetcher, String fetchKey, long size, int blockSize,
+                               int maxBlocks, int readAheadBlocks) {
+        if (size < 0) {
+            throw new IllegalArgumentException("size must be >= 0");
+        }
+        if (blockSize < 1 || maxBlocks < 1 || readAheadBlocks < 0) {
+            throw new IllegalArgumentException("blockSize and maxBlocks must be > 0 and " +
+                    "readAheadBlocks must be >= 0");
+        }
+        this.fetcher = fetcher;
+        this.fetchKey = fetchKey;
+        this.size = size;
+        this.blockSize = blockSize;
+        this.maxBlocks = maxBlocks;
+        this.readAheadBlocks = Math.min(readAheadBlocks, maxBlocks - 1);
+        this.blocks = new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+                return size() > RangeFetcherChannel.this.maxBlocks;
+            }
+        };
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer dst) throws IOException {
+        ensureOpen();
+        if (position >= size) {
+            return -1;
+        }
+        int read = 0;
+        while (dst.hasRemaining() && position < size) {
+            long index = position / blockSize;
+            byte[] block = getBlock(index);
+            int offset = (int) (position - index * blockSize);
+            int len = Math.min(dst.remaining(), block.length - offset);
+            dst.put(block, offset, len);
+            position += len;
+            read += len;
+        }
+        return read;
+    }
+
+    private byte[] getBlock(long index) throws IOException {
+        byte[] block = blocks.get(index);
+        if (block == null) {
+            long numBlocks = (size + blockSize - 1) / blockSize;
+            long last = index;
+            if (index == lastBlock + 1) {
+                //sequential read, fetch ahead up to the next cached block
+                while (last - index < readAheadBlocks && last + 1 < numBlocks &&
+                        !blocks.containsKey(last + 1)) {
+                    last++;
+                }
+            }
+            fetchBlocks(index, last);
+            block = blocks.get(index);
+        }
+        lastBlock = index;
+        return block;
+    }
+
+    private void fetchBlocks(long first, long last) throws IOException {
+        long start = first * blockSize;
+        long end = Math.min(size, (last + 1) * blockSize) - 1;
+        rangeRequests++;
+        try (InputStream is = fetcher.fetch(fetchKey, start, end, new Metadata())) {
+            for (long i = first; i <= last; i++) {
+                long blockStart = i * blockSize;
+                byte[] block = new byte[(int) Math.min(blockSize, size - blockStart)];
+                IOUtils.readFully(is, block);
+                bytesFetched += block.length;
+                blocks.put(i, block);
+            }
+        } catch (TikaException e) {
+            throw new IOException("Couldn't fetch bytes " + start + "-" + end + " of " + fetchKey,
+                    e);
+        }
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public synchronized long position() throws IOException {
+        ensureOpen();
+        return position;
+    }
+
+    @Override
+    public synchronized SeekableByteChannel position(long newPosition) throws IOException {
+        ensureOpen();
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("position must be >= 0");
+        }
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public synchronized long size() throws IOException {
+        ensureOpen();
+        return size;
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public synchronized void close() {
+        open = false;
+        blocks.clear();
+    }
+
+    /**
+     * @return number of bytes that have been fetched so far
+     */
+    public synchronized long getBytesFetched() {
+        return bytesFetched;
+    }
+
+    /**
+     * @return number of range requests that have been made so far
+     */
+    public synchronized int getRangeRequests() {
+        return rangeRequests;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+}
@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
@@ -39,6 +40,7 @@ import org.apache.tika.config.InitializableProblemHandler;
 import org.apache.tika.config.Param;
 import org.apache.tika.exception.TikaConfigException;
 import org.apache.tika.exception.TikaTimeoutException;
+import org.apache.tika.pipes.CheckpointLog;
 import org.apache.tika.pipes.FetchEmitTuple;
 import org.apache.tika.pipes.HandlerConfig;
 import org.apache.tika.sax.BasicContentHandlerFactory;
@@ -49,6 +51,10 @@ import org.apache.tika.sax.BasicContentHandlerFactory;
  * If there's an exception in the enqueuing thread, this will throw
  * a RuntimeException.  It will throw an IllegalStateException if
  * next() is called after hasNext() has returned false.
+ * <p>
+ * If a <code>checkpointLog</code> is set, the tuples that it lists, see
+ * {@link org.apache.tika.pipes.CheckpointPipesReporter}, are skipped. The log
+ * is read before the first tuple is enqueued.
  */
 public abstract class PipesIterator extends ConfigBase
         implements Callable<Integer>, Iterable<FetchEmitTuple>, Initializable  {
@@ -76,7 +82,11 @@ public abstract class PipesIterator extends ConfigBase
     private int writeLimit = -1;
     private int maxEmbeddedResources = -1;
 
+    private Path checkpointLog;
+    private CheckpointLog completed;
+
     private int added = 0;
+    private int skipped = 0;
     private FutureTask<Integer> futureTask;
 
     public static PipesIterator build(Path tikaConfigFile) throws IOException,
@@ -160,9 +170,35 @@ public abstract class PipesIterator extends ConfigBase
         this.parseMode = parsePARSEMode;
     }
 
+    /**
+     * Tuples listed in this checkpoint log are skipped.
+     *
+     * @param checkpointLog
+     */
+    @Field
+    public void setCheckpointLog(String checkpointLog) {
+        this.checkpointLog = Paths.get(checkpointLog);
+    }
+
+    /**
+     * @return number of tuples that were skipped because they are in the checkpoint log
+     */
+    public int getSkipped() {
+        return skipped;
+    }
+
     public Integer call() throws Exception {
+        if (checkpointLog != null) {
+            long start = System.currentTimeMillis();
+            completed = CheckpointLog.load(checkpointLog);
+            LOGGER.info("read {} completed keys from {} in {} ms", completed.size(),
+                    checkpointLog, System.currentTimeMillis() - start);
+        }
         enqueue();
         tryToAdd(COMPLETED_SEMAPHORE);
+        if (skipped > 0) {
+            LOGGER.info("skipped {} tuples that were in the checkpoint log", skipped);
+        }
         return added;
     }
 
@@ -174,6 +210,10 @@ public abstract class PipesIterator extends ConfigBase
     protected abstract void enqueue() throws IOException, TimeoutException, InterruptedException;
 
     protected void tryToAdd(FetchEmitTuple p) throws InterruptedException, TimeoutException {
+        if (completed != null && p != COMPLETED_SEMAPHORE && completed.contains(p)) {
+            skipped++;
+            return;
+        }
         added++;
         boolean offered = queue.offer(p, maxWaitMs, TimeUnit.MILLISECONDS);
         if (!offered) {
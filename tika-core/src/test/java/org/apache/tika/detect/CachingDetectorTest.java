@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.detect;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.apache.tika.config.TikaConfig;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.mime.MimeTypes;
+
+public class CachingDetectorTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private CachingDetector detector;
+
+    @TempDir
+    Path tmp;
+
+    @BeforeEach
+    public void setUp() {
+        //returns text/plain for inputs that end with a newline
+        detector = new CachingDetector((input, metadata) -> {
+            calls.incrementAndGet();
+            byte[] bytes = IOUtils.toByteArray(input);
+            if (bytes.length > 0 && bytes[bytes.length - 1] == '\n') {
+                return MediaType.TEXT_PLAIN;
+            }
+            return MediaType.OCTET_STREAM;
+        });
+        detector.setHeaderLength(4);
+        detector.setTailLength(4);
+    }
+
+    @Test
+    public void testShortInputs() throws Exception {
+        assertEquals(MediaType.TEXT_PLAIN, detect("ab\n", "a.txt"));
+        assertEquals(MediaType.TEXT_PLAIN, detect("ab\n", "b.txt"));
+        assertEquals(1, calls.get());
+        assertEquals(1, detector.getHitCount());
+        assertEquals(1, detector.getMissCount());
+
+        //different content, different extension, no name
+        assertEquals(MediaType.OCTET_STREAM, detect("abc", "a.txt"));
+        assertEquals(MediaType.TEXT_PLAIN, detect("ab\n", "a.csv"));
+        assertEquals(MediaType.TEXT_PLAIN, detect("ab\n", null));
+        assertEquals(4, calls.get());
+        assertEquals(0, detector.getBypassCount());
+    }
+
+    @Test
+    public void testLongInputs() throws Exception {
+        //too long to fingerprint without a file
+        assertEquals(MediaType.TEXT_PLAIN, detect("abcdef\n", "a.txt"));
+        assertEquals(MediaType.TEXT_PLAIN, detect("abcdef\n", "a.txt"));
+        assertEquals(2, calls.get());
+        assertEquals(2, detector.getBypassCount());
+        assertEquals(0, detector.getSize());
+
+        //file backed inputs are fingerprinted by length, header and tail
+        assertEquals(MediaType.TEXT_PLAIN, detectFile("abcdef\n", "a.txt"));
+        assertEquals(MediaType.TEXT_PLAIN, detectFile("abcdef\n", "b.txt"));
+        assertEquals(MediaType.OCTET_STREAM, detectFile("abcdefg", "a.txt"));
+        assertEquals(MediaType.OCTET_STREAM, detectFile("abcd\n\nabc", "a.txt"));
+        assertEquals(5, calls.get());
+        assertEquals(1, detector.getHitCount());
+
+        //only the middle differs, so the second one is answered from the cache
+        assertEquals(MediaType.OCTET_STREAM, detectFile("abcd\n\nxabc", "a.txt"));
+        assertEquals(MediaType.OCTET_STREAM, detectFile("abcd\nyxabc", "a.txt"));
+        assertEquals(6, calls.get());
+        assertEquals(2, detector.getHitCount());
+    }
+
+    @Test
+    public void testNameCase() throws Exception {
+        //name patterns are case sensitive: *.C is C++, *.c is C
+        detector = new CachingDetector(MimeTypes.getDefaultMimeTypes());
+        assertEquals(MediaType.text("x-c++src"), detect("int main() {}\n", "a.C"));
+        assertEquals(MediaType.text("x-csrc"), detect("int main() {}\n", "b.c"));
+        assertEquals(0, detector.getHitCount());
+        assertEquals(MediaType.text("x-csrc"), detect("int main() {}\n", "c.c"));
+        assertEquals(1, detector.getHitCount());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        detector.setMaxEntries(2);
+        detect("a\n", null);
+        detect("b\n", null);
+        detect("a\n", null);
+        detect("c\n", null);
+        assertEquals(2, detector.getSize());
+        assertEquals(3, calls.get());
+
+        //b was the least recently used
+        detect("a\n", null);
+        assertEquals(3, calls.get());
+        detect("b\n", null);
+        assertEquals(4, calls.get());
+
+        detector.setMaxEntries(1);
+        assertEquals(1, detector.getSize());
+        detector.clear();
+        assertEquals(0, detector.getSize());
+    }
+
+    @Test
+    public void testOverride() throws Exception {
+        Metadata metadata = new Metadata();
+        metadata.set(TikaCoreProperties.CONTENT_TYPE_USER_OVERRIDE, "application/pdf");
+        try (InputStream is = new ByteArrayInputStream("ab\n".getBytes(UTF_8))) {
+            assertEquals(MediaType.application("pdf"), detector.detect(is, metadata));
+        }
+        assertEquals(1, detector.getBypassCount());
+        assertEquals(0, detector.getSize());
+    }
+
+    @Test
+    public void testConfig() throws Exception {
+        Detector configured;
+        try (InputStream is = TikaConfig.class.getResourceAsStream("CachingDetector.xml")) {
+            configured = new TikaConfig(is).getDetector();
+        }
+        assertTrue(configured instanceof CachingDetector);
+        CachingDetector cachingDetector = (CachingDetector) configured;
+        assertEquals(2, cachingDetector.getMaxEntries());
+        assertEquals(16, cachingDetector.getHeaderLength());
+        assertTrue(cachingDetector.getDetectors().get(0) instanceof DefaultDetector);
+
+        Metadata metadata = new Metadata();
+        metadata.set(TikaCoreProperties.RESOURCE_NAME_KEY, "test.html");
+        for (int i = 0; i < 2; i++) {
+            try (InputStream is = new ByteArrayInputStream("<html></html>".getBytes(UTF_8))) {
+                assertEquals(MediaType.text("html"), configured.detect(is, metadata));
+            }
+        }
+        assertEquals(1, cachingDetector.getHitCount());
+    }
+
+    private MediaType detect(String content, String name) throws IOException {
+        Metadata metadata = new Metadata();
+        if (name != null) {
+            metadata.set(TikaCoreProperties.RESOURCE_NAME_KEY, name);
+        }
+        try (InputStream is = new ByteArrayInputStream(content.getBytes(UTF_8))) {
+            return detector.detect(is, metadata);
+        }
+    }
+
+    private MediaType detectFile(String content, String name) throws IOException {
+        Path path = Files.createTempFile(tmp, "caching", "");
+        Files.write(path, content.getBytes(UTF_8));
+        Metadata metadata = new Metadata();
+        metadata.set(TikaCoreProperties.RESOURCE_NAME_KEY, name);
+        try (TikaInputStream tis = TikaInputStream.get(path)) {
+            return detector.detect(tis, metadata);
+        }
+    }
+}
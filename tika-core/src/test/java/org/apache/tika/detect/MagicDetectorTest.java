@@ -220,6 +220,12 @@ public class MagicDetectorTest {
                 assertEquals(aByte, (byte) stream.read());
             }
             assertEquals(-1, stream.read());
+
+            // Test that matching the bytes directly agrees
+            if (detector instanceof MagicDetector) {
+                assertEquals(!MediaType.OCTET_STREAM.equals(type),
+                        ((MagicDetector) detector).matches(bytes));
+            }
         } catch (IOException e) {
             fail("Unexpected exception from MagicDetector");
         }
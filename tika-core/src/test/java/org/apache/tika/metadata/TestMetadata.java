@@ -23,6 +23,10 @@ import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -488,6 +492,76 @@ public class TestMetadata {
         assertEquals("key=value1", m.toString());
     }
 
+    @Test
+    public void testDatesLikeDateUtils() throws Exception {
+        String[] dates = new String[]{"2012-02-17T10:11:12Z", "2012-02-17T10:11:12+01:00",
+                "2012-02-17T10:11:12-0530", "2012-02-17T10:11:12", "2012-02-17T10:11:12.345Z",
+                "2012-02-17 10:11:12Z", "2012-02-17 10:11:12+0100", "2012-02-17 10:11:12",
+                "2012-02-17", "2012:02:17", "2012:02:17 10:11:12", "2012-2-7T1:2:3Z",
+                "2012-02-30", "2012-13-01T10:11:12Z", "2012-02-17T24:00:00Z", "0099-01-01",
+                "2012-02-17Tjunk", "2012", "not a date", "2012-01-01T12:00:00PST",
+                "2012-01-01T12:00:00 +0100", "  2012-01-01", "-2012-01-01",
+                "123456789-01-01", "1-1-1"};
+        DateUtils dateUtils = new DateUtils();
+        for (String date : dates) {
+            Metadata m = new Metadata();
+            m.set(TikaCoreProperties.CREATED.getName(), date);
+            assertEquals(dateUtils.tryToParse(date), m.getDate(TikaCoreProperties.CREATED),
+                    date);
+        }
+        //DateUtils throws on these
+        Metadata m = new Metadata();
+        m.set(TikaCoreProperties.CREATED.getName(), "+1:00");
+        assertNull(m.getDate(TikaCoreProperties.CREATED));
+    }
+
+    @Test
+    public void testAddThenGet() throws Exception {
+        Metadata m = new Metadata();
+        for (int i = 0; i < 10; i++) {
+            m.add(TikaCoreProperties.TIKA_META_EXCEPTION_WARNING, "w" + i);
+            String[] values = m.getValues(TikaCoreProperties.TIKA_META_EXCEPTION_WARNING);
+            assertEquals(i + 1, values.length);
+            //a read after a read doesn't trim again
+            assertTrue(values == m.getValues(TikaCoreProperties.TIKA_META_EXCEPTION_WARNING));
+        }
+    }
+
+    @Test
+    public void testManyValues() throws Exception {
+        Metadata m = new Metadata();
+        m.add(TikaCoreProperties.TIKA_META_EXCEPTION_WARNING, "w0");
+        String[] first = m.getValues(TikaCoreProperties.TIKA_META_EXCEPTION_WARNING);
+        for (int i = 1; i < 1000; i++) {
+            m.add(TikaCoreProperties.TIKA_META_EXCEPTION_WARNING, "w" + i);
+        }
+        m.add(TikaCoreProperties.TIKA_META_EXCEPTION_WARNING, (String) null);
+        String[] values = m.getValues(TikaCoreProperties.TIKA_META_EXCEPTION_WARNING);
+        assertEquals(1000, values.length);
+        for (int i = 0; i < values.length; i++) {
+            assertEquals("w" + i, values[i]);
+        }
+        //arrays that were handed out don't change
+        assertEquals(1, first.length);
+        m.add(TikaCoreProperties.TIKA_META_EXCEPTION_WARNING, "w1000");
+        assertEquals(1000, values.length);
+        assertEquals("w999", values[999]);
+        assertEquals("w0", m.get(TikaCoreProperties.TIKA_META_EXCEPTION_WARNING));
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+            oos.writeObject(m);
+        }
+        try (ObjectInputStream ois =
+                     new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+            Metadata deserialized = (Metadata) ois.readObject();
+            assertEquals(m, deserialized);
+            deserialized.add(TikaCoreProperties.TIKA_META_EXCEPTION_WARNING, "w1001");
+            assertEquals(1002,
+                    deserialized.getValues(TikaCoreProperties.TIKA_META_EXCEPTION_WARNING).length);
+        }
+    }
+
     private static class MetadataDateAdder implements Callable<Integer> {
         private final Random random = new Random();
 
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.mime;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class MagicIndexTest {
+
+    private static MimeTypes MIME_TYPES;
+    private static MagicIndex INDEX;
+
+    @BeforeAll
+    public static void setUp() throws MimeTypeException {
+        MIME_TYPES = MimeTypes.getDefaultMimeTypes();
+        List<Magic> magics = new ArrayList<>();
+        for (MediaType mediaType : MIME_TYPES.getMediaTypeRegistry().getTypes()) {
+            MimeType type = MIME_TYPES.getRegisteredMimeType(mediaType.toString());
+            if (type != null) {
+                magics.addAll(type.getMagics());
+            }
+        }
+        Collections.sort(magics);
+        INDEX = new MagicIndex(magics);
+    }
+
+    @Test
+    public void testTestFiles() throws Exception {
+        int matches = 0;
+        for (String dir : new String[]{"/org/apache/tika/mime", "/test-documents"}) {
+            try (DirectoryStream<Path> paths = Files.newDirectoryStream(getPath(dir))) {
+                for (Path p : paths) {
+                    if (Files.isRegularFile(p)) {
+                        matches += assertCandidates(readHeader(p));
+                    }
+                }
+            }
+        }
+        assertTrue(matches > 10, "only " + matches + " matches");
+    }
+
+    @Test
+    public void testSyntheticHeaders() {
+        //put each indexed byte sequence at its offset on a blank and on a noisy header
+        Random random = new Random(42);
+        int matches = 0;
+        for (int i = 0; i < INDEX.size(); i++) {
+            List<MagicIndex.Anchor> anchors = INDEX.getMagic(i).getAnchors();
+            if (anchors == null) {
+                continue;
+            }
+            for (MagicIndex.Anchor anchor : anchors) {
+                byte[] blank = new byte[anchor.getOffset() + anchor.length() + 64];
+                byte[] noisy = new byte[blank.length];
+                random.nextBytes(noisy);
+                for (byte[] data : new byte[][]{blank, noisy}) {
+                    System.arraycopy(anchor.getBytes(), 0, data, anchor.getOffset(),
+                            anchor.length());
+                    matches += assertCandidates(data);
+                    //and truncated right after it
+                    matches += assertCandidates(
+                            Arrays.copyOf(data, anchor.getOffset() + anchor.length()));
+                }
+            }
+        }
+        assertTrue(matches > 1000, "only " + matches + " matches");
+    }
+
+    @Test
+    public void testRandomHeaders() {
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            byte[] data = new byte[random.nextInt(100)];
+            random.nextBytes(data);
+            assertCandidates(data);
+        }
+    }
+
+    /**
+     * @return the number of magics that matched
+     */
+    private static int assertCandidates(byte[] data) {
+        long[] candidates = INDEX.getCandidates(data);
+        int matches = 0;
+        for (int i = 0; i < INDEX.size(); i++) {
+            if (INDEX.getMagic(i).eval(data)) {
+                assertTrue(MagicIndex.nextCandidate(candidates, i) == i,
+                        INDEX.getMagic(i) + " matched, but it isn't a candidate");
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    private static byte[] readHeader(Path p) throws IOException {
+        try (InputStream is = Files.newInputStream(p)) {
+            return MIME_TYPES.readMagicHeader(is);
+        }
+    }
+
+    private static Path getPath(String dir) throws URISyntaxException {
+        return Paths.get(MagicIndexTest.class.getResource(dir).toURI());
+    }
+}
@@ -97,4 +97,31 @@ public class PatternsTest {
         assertTrue(extensions.contains(".jpeg"));
     }
 
+    @Test
+    public void testPrecedence() throws Exception {
+        MimeType gz = types.forName("application/gzip");
+        MimeType tgz = types.forName("application/x-gtar");
+        MimeType makefile = types.forName("text/x-makefile");
+        MimeType prefixed = types.forName("text/x-prefixed");
+        MimeType anything = types.forName("application/x-anything");
+        patterns.add("*.gz", gz);
+        patterns.add("*.tar.gz", tgz);
+        patterns.add("Makefile", makefile);
+        patterns.add("pre_*.txt", prefixed);
+        patterns.add("*-any", anything);
+
+        assertEquals(tgz, patterns.matches("data.tar.gz"));
+        assertEquals(gz, patterns.matches("data.gz"));
+        assertEquals(gz, patterns.matches(".gz"));
+        assertEquals(makefile, patterns.matches("Makefile"));
+        assertEquals(prefixed, patterns.matches("pre_abc.txt"));
+        assertEquals(anything, patterns.matches("pre_abc.txt-any"));
+        assertEquals(null, patterns.matches("abc.txt"));
+        assertEquals(null, patterns.matches(""));
+
+        //adding a pattern after matching must be picked up
+        MimeType txt = types.forName("text/x-txt");
+        patterns.add("*.txt", txt);
+        assertEquals(txt, patterns.matches("pre_abc.txt"));
+    }
 }
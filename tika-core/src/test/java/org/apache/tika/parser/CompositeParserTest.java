@@ -17,21 +17,33 @@
 package org.apache.tika.parser;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.commons.io.IOUtils;
 import org.junit.jupiter.api.Test;
 import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
 
 import org.apache.tika.config.TikaConfig;
+import org.apache.tika.exception.TikaException;
 import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
 import org.apache.tika.mime.MediaType;
 import org.apache.tika.mime.MediaTypeRegistry;
 import org.apache.tika.sax.BodyContentHandler;
@@ -150,4 +162,81 @@ public class CompositeParserTest {
         assertEquals("True", metadata.get("BMP"));
         assertEquals("True", metadata.get("Alias"));
     }
+
+    @Test
+    public void testParserStats() throws Exception {
+        MediaType zip = MediaType.application("zip");
+        MediaType text = MediaType.text("plain");
+        Parser container = new AbstractParser() {
+            @Override
+            public Set<MediaType> getSupportedTypes(ParseContext context) {
+                return Collections.singleton(zip);
+            }
+
+            @Override
+            public void parse(InputStream stream, ContentHandler handler, Metadata metadata,
+                              ParseContext context) throws IOException, SAXException,
+                    TikaException {
+                IOUtils.toByteArray(stream);
+                Metadata embedded = new Metadata();
+                embedded.set(Metadata.CONTENT_TYPE, text.toString());
+                context.get(Parser.class).parse(new ByteArrayInputStream(new byte[3]),
+                        new DefaultHandler(), embedded, context);
+            }
+        };
+        Parser slow = new AbstractParser() {
+            @Override
+            public Set<MediaType> getSupportedTypes(ParseContext context) {
+                return Collections.singleton(text);
+            }
+
+            @Override
+            public void parse(InputStream stream, ContentHandler handler, Metadata metadata,
+                              ParseContext context) throws TikaException {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    throw new TikaException("interrupted", e);
+                }
+            }
+        };
+        CompositeParser composite =
+                new CompositeParser(MediaTypeRegistry.getDefaultRegistry(), container, slow);
+        List<ParserStats> statsList = new ArrayList<>();
+        ParseContext context = new ParseContext();
+        context.set(Parser.class, composite);
+        context.set(ParserStatsListener.class, statsList::add);
+
+        Metadata metadata = new Metadata();
+        metadata.set(Metadata.CONTENT_TYPE, zip.toString());
+        composite.parse(new ByteArrayInputStream(new byte[10]), new DefaultHandler(), metadata,
+                context);
+
+        assertEquals(2, statsList.size());
+        ParserStats embedded = statsList.get(0);
+        assertEquals(slow.getClass().getName(), embedded.getParserClass());
+        assertEquals(1, embedded.getEmbeddedDepth());
+        assertTrue(embedded.getWallNanos() >= TimeUnit.MILLISECONDS.toNanos(100));
+        ParserStats main = statsList.get(1);
+        assertEquals(container.getClass().getName(), main.getParserClass());
+        assertEquals(0, main.getEmbeddedDepth());
+        //the embedded document's time isn't counted
+        assertTrue(main.getWallNanos() < TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(10, main.getBytesRead());
+        //the stream wasn't spooled to a file
+        assertEquals(-1, main.getLength());
+        //the embedded parser doesn't read its document
+        assertEquals(0, embedded.getBytesRead());
+        assertFalse(main.isException());
+        assertEquals("10", metadata.get(TikaCoreProperties.PARSER_BYTES_READ));
+        assertNotNull(metadata.get(TikaCoreProperties.PARSER_WALL_TIME_MILLIS));
+
+        //nothing is recorded without a listener
+        metadata = new Metadata();
+        metadata.set(Metadata.CONTENT_TYPE, zip.toString());
+        context.set(ParserStatsListener.class, null);
+        composite.parse(new ByteArrayInputStream(new byte[10]), new DefaultHandler(), metadata,
+                context);
+        assertNull(metadata.get(TikaCoreProperties.PARSER_WALL_TIME_MILLIS));
+    }
 }
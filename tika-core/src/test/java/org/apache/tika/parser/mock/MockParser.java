@@ -84,6 +84,8 @@ public class MockParser extends AbstractParser {
     private static final PrintStream ORIG_STDERR;
     private static final PrintStream ORIG_STDOUT;
     private static final AtomicInteger TIMES_INITIATED = new AtomicInteger(0);
+    //parses that are waiting in await_parses in this jvm, across all instances
+    private static final AtomicInteger AWAITING_PARSES = new AtomicInteger(0);
 
     static {
         ORIG_STDERR = System.err;
@@ -169,6 +171,10 @@ public class MockParser extends AbstractParser {
             System.exit(1);
         } else if ("thread_interrupt".equals(name)) {
             Thread.currentThread().interrupt();
+        } else if ("system_property".equals(name)) {
+            systemProperty(action, metadata);
+        } else if ("await_parses".equals(name)) {
+            awaitParses(action, metadata);
         } else {
             throw new IllegalArgumentException("Didn't recognize mock action: " + name);
         }
@@ -391,6 +397,40 @@ public class MockParser extends AbstractParser {
         }
     }
 
+    private void systemProperty(Node action, Metadata metadata) {
+        //throws npe unless there is a name
+        String name = action.getAttributes().getNamedItem("name").getNodeValue();
+        String value = System.getProperty(name);
+        if (value != null) {
+            metadata.set(name, value);
+        }
+    }
+
+    private void awaitParses(Node action, Metadata metadata) {
+        NamedNodeMap attrs = action.getAttributes();
+        //throws npe unless there is a count and millis
+        int count = Integer.parseInt(attrs.getNamedItem("count").getNodeValue());
+        long millis = Long.parseLong(attrs.getNamedItem("millis").getNodeValue());
+        //only count the parses that are waiting here, not those that are stuck
+        //in another action, e.g. the fakeload of a parse that has timed out
+        AWAITING_PARSES.incrementAndGet();
+        try {
+            long start = System.currentTimeMillis();
+            while (AWAITING_PARSES.get() < count &&
+                    System.currentTimeMillis() - start < millis) {
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            metadata.set("mock:awaitingParses", Integer.toString(AWAITING_PARSES.get()));
+        } finally {
+            AWAITING_PARSES.decrementAndGet();
+        }
+    }
+
     protected void write(Node action, XHTMLContentHandler xhtml) throws SAXException {
         NamedNodeMap attrs = action.getAttributes();
         Node eNode = attrs.getNamedItem("element");
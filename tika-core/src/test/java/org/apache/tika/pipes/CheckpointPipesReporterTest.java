@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.pipes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.apache.tika.pipes.emitter.EmitKey;
+import org.apache.tika.pipes.fetcher.FetchKey;
+import org.apache.tika.pipes.pipesiterator.PipesIterator;
+import org.apache.tika.pipes.pipesiterator.fs.FileSystemPipesIterator;
+
+public class CheckpointPipesReporterTest {
+
+    @Test
+    public void testResume(@TempDir Path tmpDir) throws Exception {
+        Path input = tmpDir.resolve("input");
+        Files.createDirectories(input);
+        for (int i = 0; i < 10; i++) {
+            Files.write(input.resolve("file" + i + ".txt"), new byte[]{1});
+        }
+        Path log = tmpDir.resolve("checkpoints/log.txt");
+
+        CheckpointPipesReporter reporter = new CheckpointPipesReporter();
+        reporter.setCheckpointLog(log.toString());
+        reporter.setIncludes(Collections.singletonList("EMIT_SUCCESS"));
+        reporter.initialize(Collections.emptyMap());
+        for (int i = 0; i < 10; i++) {
+            PipesResult result = i % 2 == 0 ? PipesResult.EMIT_SUCCESS : PipesResult.TIMEOUT;
+            reporter.report(tuple("fs", "file" + i + ".txt"), result, 10);
+        }
+        //reported twice, listed once
+        reporter.report(tuple("fs", "file0.txt"), PipesResult.EMIT_SUCCESS, 10);
+        reporter.close();
+        //a line that was cut off by a crash
+        Files.write(log, "fs:file1".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        CheckpointLog checkpointLog = CheckpointLog.load(log);
+        assertEquals(5, checkpointLog.size());
+        assertTrue(checkpointLog.contains(tuple("fs", "file0.txt")));
+        assertFalse(checkpointLog.contains(tuple("fs", "file1.txt")));
+        assertFalse(checkpointLog.contains(tuple("other", "file0.txt")));
+
+        PipesIterator it = new FileSystemPipesIterator(input);
+        it.setFetcherName("fs");
+        it.setCheckpointLog(log.toString());
+        Set<String> keys = new HashSet<>();
+        for (FetchEmitTuple t : it) {
+            keys.add(t.getFetchKey().getFetchKey());
+        }
+        assertEquals(5, keys.size());
+        for (int i = 1; i < 10; i += 2) {
+            assertTrue(keys.contains("file" + i + ".txt"));
+        }
+        assertEquals(5, it.getSkipped());
+    }
+
+    @Test
+    public void testKeys(@TempDir Path tmpDir) throws Exception {
+        assertEquals("fs:a\\\\b\\nc", CheckpointLog.getKey(tuple("fs", "a\\b\nc")));
+        assertEquals("fs:a:0-99", CheckpointLog.getKey(new FetchEmitTuple("id",
+                new FetchKey("fs", "a", 0, 99), new EmitKey())));
+        assertEquals(0, CheckpointLog.load(tmpDir.resolve("missing")).size());
+    }
+
+    private static FetchEmitTuple tuple(String fetcherName, String fetchKey) {
+        return new FetchEmitTuple(fetchKey, new FetchKey(fetcherName, fetchKey), new EmitKey());
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.pipes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.pipes.emitter.EmitData;
+import org.apache.tika.pipes.emitter.EmitKey;
+
+public class MemoryMappedTransportTest {
+
+    @TempDir
+    private Path tmp;
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Path path = Files.createTempFile(tmp, "tika-pipes-", ".mmap");
+        try (MemoryMappedTransport writer = MemoryMappedTransport.openForWriting(path);
+                MemoryMappedTransport reader = MemoryMappedTransport.openForReading(path)) {
+            //grow, shrink and grow again to check remapping on both sides
+            for (int len : new int[]{10, 100000, 50, 1000000}) {
+                for (String codecName : new String[]{PipesCodec.JAVA, PipesCodec.BINARY,
+                        PipesCodec.BINARY_DEFLATE}) {
+                    PipesCodec codec = PipesCodec.load(codecName);
+                    EmitData emitData = emitData(len);
+                    byte[] bytes = codec.serialize(emitData);
+                    long offset = writer.write(bytes);
+                    ByteBuffer buffer = reader.read(offset, bytes.length);
+                    assertEquals(bytes.length, buffer.remaining());
+                    EmitData deserialized = codec.deserializeEmitData(buffer);
+                    assertEquals(emitData.getMetadataList(), deserialized.getMetadataList());
+                }
+            }
+        }
+    }
+
+    private static EmitData emitData(int contentLength) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < contentLength; i++) {
+            sb.append((char) ('a' + (i % 26)));
+        }
+        Metadata m = new Metadata();
+        m.set(TikaCoreProperties.TIKA_CONTENT, sb.toString());
+        List<Metadata> metadataList = new ArrayList<>();
+        metadataList.add(m);
+        return new EmitData(new EmitKey("emitter", "key"), metadataList);
+    }
+}
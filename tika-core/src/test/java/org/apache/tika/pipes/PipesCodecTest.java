@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.pipes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.pipes.emitter.EmitData;
+import org.apache.tika.pipes.emitter.EmitKey;
+import org.apache.tika.pipes.fetcher.FetchKey;
+import org.apache.tika.sax.BasicContentHandlerFactory;
+
+public class PipesCodecTest {
+
+    @Test
+    public void testTupleRoundTrip() throws Exception {
+        Metadata userMetadata = new Metadata();
+        userMetadata.add("k1", "v1");
+        userMetadata.add("k1", "v2 é中");
+        userMetadata.set("k2", "");
+        Metadata fetchMetadata = new Metadata();
+        fetchMetadata.set(Metadata.CONTENT_LENGTH, "1990");
+        FetchEmitTuple t = new FetchEmitTuple("id-1",
+                new FetchKey("fetcher", "path/to/file.pdf", 10, 2000),
+                new EmitKey("emitter", "emit-key"), userMetadata,
+                new HandlerConfig(BasicContentHandlerFactory.HANDLER_TYPE.XML,
+                        HandlerConfig.PARSE_MODE.CONCATENATE, 10000, 7, false),
+                FetchEmitTuple.ON_PARSE_EXCEPTION.SKIP, fetchMetadata);
+        for (String name : new String[]{PipesCodec.JAVA, PipesCodec.BINARY,
+                PipesCodec.BINARY_DEFLATE}) {
+            PipesCodec codec = PipesCodec.load(name);
+            assertEquals(name, codec.getName());
+            assertEquals(t, codec.deserializeFetchEmitTuple(codec.serialize(t)));
+        }
+        //defaults, including no range
+        t = new FetchEmitTuple("id-2", new FetchKey("fetcher", "key"),
+                new EmitKey("emitter", ""));
+        PipesCodec codec = PipesCodec.load(PipesCodec.BINARY);
+        assertEquals(t, codec.deserializeFetchEmitTuple(codec.serialize(t)));
+    }
+
+    @Test
+    public void testEmitDataRoundTrip() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            sb.append("the quick brown fox — ");
+        }
+        List<Metadata> metadataList = new ArrayList<>();
+        Metadata container = new Metadata();
+        container.set(TikaCoreProperties.TIKA_CONTENT, sb.toString());
+        container.add("dc:creator", "a");
+        container.add("dc:creator", "b");
+        metadataList.add(container);
+        Metadata embedded = new Metadata();
+        embedded.set(TikaCoreProperties.TIKA_CONTENT, "short");
+        embedded.set(TikaCoreProperties.EMBEDDED_RESOURCE_PATH, "/embedded.txt");
+        metadataList.add(embedded);
+        EmitData emitData = new EmitData(new EmitKey("emitter", "key"), metadataList,
+                "some stack");
+
+        byte[] binary = null;
+        for (String name : new String[]{PipesCodec.JAVA, PipesCodec.BINARY,
+                PipesCodec.BINARY_DEFLATE}) {
+            PipesCodec codec = PipesCodec.load(name);
+            byte[] bytes = codec.serialize(emitData);
+            if (name.equals(PipesCodec.BINARY)) {
+                binary = bytes;
+            } else if (name.equals(PipesCodec.BINARY_DEFLATE)) {
+                assertTrue(bytes.length < binary.length / 10);
+            }
+            EmitData deserialized = codec.deserializeEmitData(bytes);
+            assertEquals(emitData.getEmitKey(), deserialized.getEmitKey());
+            assertEquals(emitData.getMetadataList(), deserialized.getMetadataList());
+            assertEquals("some stack", deserialized.getContainerStackTrace());
+        }
+    }
+
+    @Test
+    public void testNullEmitKey() throws Exception {
+        PipesCodec codec = PipesCodec.load(PipesCodec.BINARY);
+        EmitData emitData = new EmitData(null, new ArrayList<>(), null);
+        EmitData deserialized = codec.deserializeEmitData(codec.serialize(emitData));
+        assertNull(deserialized.getEmitKey());
+        assertEquals(0, deserialized.getMetadataList().size());
+    }
+
+    @Test
+    public void testBadOrdinal() throws Exception {
+        FetchEmitTuple t = new FetchEmitTuple("id", new FetchKey("fetcher", "key"),
+                new EmitKey("emitter", ""));
+        PipesCodec codec = PipesCodec.load(PipesCodec.BINARY);
+        byte[] bytes = codec.serialize(t);
+        //the last byte is the ON_PARSE_EXCEPTION ordinal
+        for (byte b : new byte[]{(byte) -1, 100}) {
+            bytes[bytes.length - 1] = b;
+            IOException e = assertThrows(IOException.class,
+                    () -> codec.deserializeFetchEmitTuple(bytes));
+            assertTrue(e.getMessage().contains("ON_PARSE_EXCEPTION"), e.getMessage());
+        }
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        assertEquals(PipesCodec.BINARY,
+                PipesCodec.load(BinaryPipesCodec.class.getName()).getName());
+        assertThrows(IllegalArgumentException.class,
+                () -> PipesCodec.load("no-such-codec"));
+        assertThrows(IllegalArgumentException.class,
+                () -> PipesCodec.load(String.class.getName()));
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.pipes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.pipes.emitter.EmitData;
+import org.apache.tika.pipes.emitter.EmitKey;
+import org.apache.tika.pipes.fetcher.FetchKey;
+import org.apache.tika.sax.BasicContentHandlerFactory;
+
+public class PipesDeduplicatorTest {
+
+    @Test
+    public void testReference() throws Exception {
+        PipesDeduplicator deduplicator = new PipesDeduplicator("SHA-256",
+                PipesDeduplicator.MODE.REFERENCE, null, 10, new JavaPipesCodec());
+        Metadata first = new Metadata();
+        String digest = digest(deduplicator, "hello world", first);
+        assertEquals("b94d27b9934d3e08a52e52d7da7dabfac484efe37a5380ee9088f7ace2efcde9", digest);
+        assertEquals(digest, first.get("X-TIKA:digest:SHA-256"));
+        assertNull(deduplicator.lookup(digest, HandlerConfig.DEFAULT_HANDLER_CONFIG, first));
+        deduplicator.store(digest, tuple("a.txt", ""), extract("some content"));
+
+        Metadata second = new Metadata();
+        second.set(TikaCoreProperties.RESOURCE_NAME_KEY, "b.txt");
+        List<Metadata> duplicate =
+                deduplicator.lookup(digest(deduplicator, "hello world", second),
+                        HandlerConfig.DEFAULT_HANDLER_CONFIG, second);
+        //the blank emit key of the first copy is its fetch key
+        assertEquals(1, duplicate.size());
+        assertEquals("a.txt", duplicate.get(0).get(PipesDeduplicator.DUPLICATE_OF));
+        assertEquals("b.txt", duplicate.get(0).get(TikaCoreProperties.RESOURCE_NAME_KEY));
+        assertNull(duplicate.get(0).get(TikaCoreProperties.TIKA_CONTENT));
+
+        assertNull(deduplicator.lookup(digest(deduplicator, "something else", new Metadata()),
+                HandlerConfig.DEFAULT_HANDLER_CONFIG, new Metadata()));
+        //the same bytes with another handler config have to be parsed again
+        HandlerConfig xml = new HandlerConfig(BasicContentHandlerFactory.HANDLER_TYPE.XML,
+                HandlerConfig.PARSE_MODE.RMETA, -1, -1, true);
+        assertNull(deduplicator.lookup(digest, xml, new Metadata()));
+        assertEquals(4, deduplicator.getLookupCount());
+        assertEquals(1, deduplicator.getHitCount());
+    }
+
+    @Test
+    public void testExtractInDirectory(@TempDir Path dir) throws Exception {
+        PipesDeduplicator deduplicator = new PipesDeduplicator("MD5",
+                PipesDeduplicator.MODE.EXTRACT, dir, 10, new JavaPipesCodec());
+        String digest = digest(deduplicator, "hello world", new Metadata());
+        deduplicator.store(digest, tuple("a.txt", "a.json"), extract("some content"));
+
+        //a second server or a later run only sees the directory
+        PipesDeduplicator other = new PipesDeduplicator("MD5",
+                PipesDeduplicator.MODE.EXTRACT, dir, 10, new JavaPipesCodec());
+        Metadata second = new Metadata();
+        second.set(TikaCoreProperties.RESOURCE_NAME_KEY, "b.txt");
+        List<Metadata> duplicate =
+                other.lookup(digest(other, "hello world", second),
+                        HandlerConfig.DEFAULT_HANDLER_CONFIG, second);
+        assertEquals(1, duplicate.size());
+        assertEquals("a.json", duplicate.get(0).get(PipesDeduplicator.DUPLICATE_OF));
+        assertEquals("some content", duplicate.get(0).get(TikaCoreProperties.TIKA_CONTENT));
+        assertEquals("b.txt", duplicate.get(0).get(TikaCoreProperties.RESOURCE_NAME_KEY));
+        assertEquals(1.0, other.getHitRate(), 0.0001);
+        assertTrue(PipesDeduplicator.isDuplicate(duplicate));
+        assertTrue(new PipesResult(new EmitData(new EmitKey("fs", "b.json"), duplicate))
+                .isDuplicate());
+    }
+
+    private static String digest(PipesDeduplicator deduplicator, String content,
+                                 Metadata metadata) throws Exception {
+        try (TikaInputStream tis = TikaInputStream.get(
+                content.getBytes(StandardCharsets.UTF_8))) {
+            return deduplicator.digest(tis, metadata);
+        }
+    }
+
+    private static FetchEmitTuple tuple(String fetchKey, String emitKey) {
+        return new FetchEmitTuple(fetchKey, new FetchKey("fs", fetchKey),
+                new EmitKey("fs", emitKey));
+    }
+
+    private static List<Metadata> extract(String content) {
+        Metadata metadata = new Metadata();
+        metadata.set(TikaCoreProperties.RESOURCE_NAME_KEY, "a.txt");
+        metadata.set(TikaCoreProperties.TIKA_CONTENT, content);
+        List<Metadata> metadataList = new ArrayList<>();
+        metadataList.add(metadata);
+        return metadataList;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.pipes.async;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.pipes.FetchEmitTuple;
+import org.apache.tika.pipes.PipesReporter;
+import org.apache.tika.pipes.PipesResult;
+import org.apache.tika.pipes.emitter.AbstractEmitter;
+import org.apache.tika.pipes.emitter.EmitData;
+import org.apache.tika.pipes.emitter.EmitKey;
+import org.apache.tika.pipes.emitter.EmitterManager;
+import org.apache.tika.pipes.emitter.PartialEmitException;
+import org.apache.tika.pipes.emitter.TikaEmitterException;
+import org.apache.tika.pipes.fetcher.FetchKey;
+
+public class AsyncEmitterTest {
+
+    @Test
+    public void testInFlightOrderedReports() throws Exception {
+        //earlier batches take longer, so they complete out of order
+        SlowEmitter emitter = new SlowEmitter();
+        List<String> reported = Collections.synchronizedList(new ArrayList<>());
+        List<PipesResult.STATUS> statuses = Collections.synchronizedList(new ArrayList<>());
+        AsyncConfig asyncConfig = new AsyncConfig();
+        //every emit data is a batch of its own
+        asyncConfig.setEmitMaxEstimatedBytes(1);
+        asyncConfig.setEmitMaxInFlight(3);
+        asyncConfig.setReportEmits(true);
+        asyncConfig.setPipesReporter(new PipesReporter() {
+            @Override
+            public void report(FetchEmitTuple t, PipesResult result, long elapsed) {
+                reported.add(t.getId());
+                statuses.add(result.getStatus());
+            }
+
+            @Override
+            public void error(Throwable t) {
+            }
+
+            @Override
+            public void error(String msg) {
+            }
+        });
+
+        ArrayBlockingQueue<EmitData> queue = new ArrayBlockingQueue<>(10);
+        List<String> ids = Arrays.asList("300", "200", "100", "bad", "npe", "0");
+        for (String id : ids) {
+            FetchEmitTuple t = new FetchEmitTuple(id, new FetchKey("f", id),
+                    new EmitKey("slow", id));
+            EmitData emitData = new EmitData(t.getEmitKey(),
+                    Collections.singletonList(new Metadata()), id.equals("0") ? "stack" : null);
+            queue.add(new AsyncEmitData(t, emitData, System.currentTimeMillis()));
+        }
+        queue.add(AsyncEmitter.EMIT_DATA_STOP_SEMAPHORE);
+
+        ConcurrentMap<String, EmitterStats> stats = new ConcurrentHashMap<>();
+        new AsyncEmitter(asyncConfig, queue,
+                new EmitterManager(Collections.singletonList(emitter)), stats).call();
+
+        assertEquals(ids, reported);
+        assertEquals(Arrays.asList(PipesResult.STATUS.EMIT_SUCCESS,
+                PipesResult.STATUS.EMIT_SUCCESS, PipesResult.STATUS.EMIT_SUCCESS,
+                PipesResult.STATUS.EMIT_EXCEPTION, PipesResult.STATUS.EMIT_EXCEPTION,
+                PipesResult.STATUS.EMIT_SUCCESS_PARSE_EXCEPTION), statuses);
+        assertTrue(emitter.maxInFlight.get() > 1, "max in flight: " + emitter.maxInFlight);
+        assertTrue(emitter.maxInFlight.get() <= 3, "max in flight: " + emitter.maxInFlight);
+        assertEquals(6, stats.get("slow").getBatchCount());
+        assertEquals(1, stats.get("slow").getFailedBatchCount());
+        assertEquals(1, stats.get("slow").getPartialBatchCount());
+        assertEquals(4, stats.get("slow").getEmitCount());
+        assertEquals(0, stats.get("slow").getPendingCount());
+    }
+
+    private static class SlowEmitter extends AbstractEmitter {
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+
+        SlowEmitter() {
+            setName("slow");
+        }
+
+        @Override
+        public void emit(String emitKey, List<Metadata> metadataList) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void emit(List<? extends EmitData> emitData)
+                throws IOException, TikaEmitterException {
+            int current = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(current, Math::max);
+            try {
+                String key = emitData.get(0).getEmitKey().getEmitKey();
+                if (key.equals("bad")) {
+                    throw new PartialEmitException("bad document",
+                            Collections.singleton(key));
+                } else if (key.equals("npe")) {
+                    throw new NullPointerException("emitter bug");
+                }
+                Thread.sleep(Long.parseLong(key));
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+}
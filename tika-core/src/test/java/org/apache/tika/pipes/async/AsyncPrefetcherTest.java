@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.pipes.async;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.pipes.FetchEmitTuple;
+import org.apache.tika.pipes.PipesReporter;
+import org.apache.tika.pipes.PipesResult;
+import org.apache.tika.pipes.emitter.EmitKey;
+import org.apache.tika.pipes.fetcher.FetchKey;
+import org.apache.tika.pipes.fetcher.FetcherManager;
+import org.apache.tika.pipes.pipesiterator.PipesIterator;
+
+public class AsyncPrefetcherTest {
+
+    @TempDir
+    private Path stagingDir;
+
+    @Test
+    public void testRuntimeException() throws Exception {
+        BlockingQueue<FetchEmitTuple> fetchEmitTuples = new ArrayBlockingQueue<>(10);
+        BlockingQueue<FetchEmitTuple> prefetched = new ArrayBlockingQueue<>(10);
+        Map<FetchEmitTuple, AsyncPrefetcher.Staged> staged =
+                Collections.synchronizedMap(new IdentityHashMap<>());
+        List<PipesResult> results = new ArrayList<>();
+        PipesReporter reporter = new PipesReporter() {
+            @Override
+            public void report(FetchEmitTuple t, PipesResult result, long elapsed) {
+                results.add(result);
+            }
+
+            @Override
+            public void error(Throwable t) {
+            }
+
+            @Override
+            public void error(String msg) {
+            }
+        };
+        AtomicLong totalProcessed = new AtomicLong();
+        FetcherManager fetcherManager =
+                new FetcherManager(Collections.singletonList(new MockFetcher() {
+                    @Override
+                    public InputStream fetch(String fetchKey, Metadata metadata)
+                            throws TikaException, IOException {
+                        if (fetchKey.startsWith("bad")) {
+                            throw new IllegalStateException("bad fetcher");
+                        }
+                        return super.fetch(fetchKey, metadata);
+                    }
+                }));
+        fetchEmitTuples.put(tuple("bad.xml"));
+        fetchEmitTuples.put(tuple("good.xml"));
+        fetchEmitTuples.put(PipesIterator.COMPLETED_SEMAPHORE);
+
+        AsyncPrefetcher prefetcher = new AsyncPrefetcher(fetchEmitTuples, prefetched, staged,
+                fetcherManager, "staging", stagingDir, reporter, totalProcessed);
+        //the thread survives the bad fetch and stages the next tuple
+        assertEquals(AsyncPrefetcher.PREFETCHER_FUTURE_CODE, prefetcher.call());
+
+        assertEquals(1, results.size());
+        assertEquals(PipesResult.STATUS.FETCH_EXCEPTION, results.get(0).getStatus());
+        assertTrue(results.get(0).getMessage().contains("bad fetcher"));
+        assertEquals(1, totalProcessed.get());
+        assertEquals(1, prefetched.size());
+        FetchEmitTuple t = prefetched.take();
+        assertEquals("staging", t.getFetchKey().getFetcherName());
+        assertEquals("good.xml", staged.get(t).getOriginal().getFetchKey().getFetchKey());
+    }
+
+    @Test
+    public void testFetchMetadata() throws Exception {
+        BlockingQueue<FetchEmitTuple> fetchEmitTuples = new ArrayBlockingQueue<>(10);
+        BlockingQueue<FetchEmitTuple> prefetched = new ArrayBlockingQueue<>(10);
+        FetcherManager fetcherManager =
+                new FetcherManager(Collections.singletonList(new MockFetcher() {
+                    @Override
+                    public InputStream fetch(String fetchKey, Metadata metadata)
+                            throws TikaException, IOException {
+                        metadata.set("fetched", "true");
+                        metadata.set("shared", "fetch");
+                        return super.fetch(fetchKey, metadata);
+                    }
+                }));
+        Metadata userMetadata = new Metadata();
+        userMetadata.set("shared", "user");
+        fetchEmitTuples.put(new FetchEmitTuple("good.xml", new FetchKey("mock", "good.xml"),
+                new EmitKey("mock", "good.xml"), userMetadata));
+        fetchEmitTuples.put(PipesIterator.COMPLETED_SEMAPHORE);
+
+        AsyncPrefetcher prefetcher = new AsyncPrefetcher(fetchEmitTuples, prefetched,
+                Collections.synchronizedMap(new IdentityHashMap<>()), fetcherManager,
+                "staging", stagingDir, null, new AtomicLong());
+        prefetcher.call();
+        //the fetch metadata seeds the parse, only the user metadata overwrites the results
+        FetchEmitTuple t = prefetched.take();
+        assertEquals(userMetadata, t.getMetadata());
+        assertEquals("true", t.getFetchMetadata().get("fetched"));
+        assertEquals("fetch", t.getFetchMetadata().get("shared"));
+    }
+
+    private static FetchEmitTuple tuple(String fetchKey) {
+        return new FetchEmitTuple(fetchKey, new FetchKey("mock", fetchKey),
+                new EmitKey("mock", fetchKey), new Metadata());
+    }
+}
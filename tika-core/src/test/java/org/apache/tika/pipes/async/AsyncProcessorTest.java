@@ -17,22 +17,30 @@
 package org.apache.tika.pipes.async;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Random;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
 import org.apache.tika.pipes.FetchEmitTuple;
+import org.apache.tika.pipes.PipesDeduplicator;
 import org.apache.tika.pipes.emitter.EmitData;
 import org.apache.tika.pipes.emitter.EmitKey;
 import org.apache.tika.pipes.fetcher.FetchKey;
@@ -58,6 +66,8 @@ public class AsyncProcessorTest {
             "<write element=\"p\">main_content</write>" +
             "<system_exit/>" + "</mock>";
 
+    private static final String POOL_PROPERTY = "tika.test.pool";
+
     private final int totalFiles = 100;
 
     private Path tikaConfigPath;
@@ -68,6 +78,12 @@ public class AsyncProcessorTest {
     @TempDir
     private Path configDir;
 
+    @TempDir
+    private Path stagingDir;
+
+    @TempDir
+    private Path dedupDir;
+
     private int ok = 0;
     private int oom = 0;
     private int timeouts = 0;
@@ -85,6 +101,10 @@ public class AsyncProcessorTest {
                 "    <fetcher class=\"org.apache.tika.pipes.fetcher.fs.FileSystemFetcher\">" +
                 "      <params><name>mock</name>\n" + "      <basePath>" +
                 ProcessUtils.escapeCommandLine(inputDir.toAbsolutePath().toString()) +
+                "</basePath></params>\n" + "    </fetcher>" +
+                "    <fetcher class=\"org.apache.tika.pipes.fetcher.fs.FileSystemFetcher\">" +
+                "      <params><name>staging</name>\n" + "      <basePath>" +
+                ProcessUtils.escapeCommandLine(stagingDir.toAbsolutePath().toString()) +
                 "</basePath></params>\n" + "    </fetcher>" + "  </fetchers>" +
                         "<async><params><tikaConfig>" +
                         ProcessUtils.escapeCommandLine(tikaConfigPath.toAbsolutePath().toString()) +
@@ -128,6 +148,203 @@ public class AsyncProcessorTest {
 
     @Test
     public void testBasic() throws Exception {
+        runAll();
+    }
+
+    @Test
+    public void testStandbyServers() throws Exception {
+        //crashes and timeouts should be handed standby servers; make sure there's a crash
+        replace(0, SYSTEM_EXIT);
+        String xml = new String(Files.readAllBytes(tikaConfigPath), StandardCharsets.UTF_8);
+        xml = xml.replace("<numClients>4</numClients>",
+                "<numClients>4</numClients><numStandbyServers>2</numStandbyServers>");
+        Files.write(tikaConfigPath, xml.getBytes(StandardCharsets.UTF_8));
+        AsyncProcessor processor = runAll();
+        assertTrue(processor.getNumStandbyServersPromoted() > 0);
+    }
+
+    @Test
+    public void testMultipleThreadsPerServer() throws Exception {
+        //an oom or a crash takes down every parse in flight on that server,
+        //so only check that timeouts are handled per document.
+        //the ok files wait for a second parse on the same server
+        String okConcurrent = OK.replace("</mock>",
+                "<await_parses count=\"2\" millis=\"2000\"/></mock>");
+        for (int i = 0; i < totalFiles; i++) {
+            String content = read(i);
+            if (!content.equals(TIMEOUT)) {
+                replace(i, okConcurrent);
+            }
+        }
+        //the servers are also recycled
+        String xml = new String(Files.readAllBytes(tikaConfigPath), StandardCharsets.UTF_8);
+        xml = xml.replace("<numClients>4</numClients>",
+                "<numClients>4</numClients><numThreadsPerServer>2</numThreadsPerServer>" +
+                        "<maxFilesProcessedPerProcess>20</maxFilesProcessedPerProcess>");
+        Files.write(tikaConfigPath, xml.getBytes(StandardCharsets.UTF_8));
+        runAll();
+        int maxAwaiting = 0;
+        for (EmitData d : MockEmitter.EMIT_DATA) {
+            maxAwaiting = Math.max(maxAwaiting, Integer.parseInt(
+                    d.getMetadataList().get(0).get("mock:awaitingParses")));
+        }
+        assertEquals(2, maxAwaiting);
+    }
+
+    @Test
+    public void testParserStats() throws Exception {
+        String xml = new String(Files.readAllBytes(tikaConfigPath), StandardCharsets.UTF_8);
+        xml = xml.replace("<numClients>4</numClients>",
+                "<numClients>4</numClients><parserStats>true</parserStats>");
+        Files.write(tikaConfigPath, xml.getBytes(StandardCharsets.UTF_8));
+        runAll();
+        for (EmitData d : MockEmitter.EMIT_DATA) {
+            Metadata metadata = d.getMetadataList().get(0);
+            assertNotNull(metadata.get(TikaCoreProperties.PARSER_WALL_TIME_MILLIS));
+            assertNotNull(metadata.get(TikaCoreProperties.PARSER_BYTES_READ));
+        }
+    }
+
+    @Test
+    public void testPrefetch() throws Exception {
+        String xml = new String(Files.readAllBytes(tikaConfigPath), StandardCharsets.UTF_8);
+        xml = xml.replace("<numClients>4</numClients>",
+                "<numClients>4</numClients><numPrefetchers>2</numPrefetchers>" +
+                        "<prefetchFetcherName>staging</prefetchFetcherName>");
+        Files.write(tikaConfigPath, xml.getBytes(StandardCharsets.UTF_8));
+        runAll();
+        //staged copies are removed once they've been parsed
+        try (Stream<Path> staged = Files.list(stagingDir)) {
+            assertFalse(staged.findAny().isPresent());
+        }
+    }
+
+    @Test
+    public void testDedup() throws Exception {
+        String xml = new String(Files.readAllBytes(tikaConfigPath), StandardCharsets.UTF_8);
+        xml = xml.replace("<numClients>4</numClients>",
+                "<numClients>4</numClients><dedupAlgorithm>MD5</dedupAlgorithm>" +
+                        "<dedupDirectory>" +
+                        ProcessUtils.escapeCommandLine(dedupDir.toAbsolutePath().toString()) +
+                        "</dedupDirectory>");
+        Files.write(tikaConfigPath, xml.getBytes(StandardCharsets.UTF_8));
+        runAll();
+        //all ok files have the same bytes, each server may parse one before it's stored
+        int duplicates = 0;
+        for (EmitData d : MockEmitter.EMIT_DATA) {
+            if (PipesDeduplicator.isDuplicate(d.getMetadataList())) {
+                duplicates++;
+            }
+        }
+        assertTrue(duplicates >= ok - 4, "duplicates: " + duplicates + " ok: " + ok);
+    }
+
+    @Test
+    public void testPools() throws Exception {
+        //the files that time out and every other ok file, padded to be as large,
+        //go to a pool with a shorter timeout.  the ok files record their pool
+        String okSmall = OK.replace("</mock>", "<system_property name=\"" + POOL_PROPERTY +
+                "\"/></mock>");
+        StringBuilder padding = new StringBuilder();
+        while (okSmall.length() + padding.length() < TIMEOUT.length()) {
+            padding.append(' ');
+        }
+        String okLarge = okSmall.replace("</mock>", padding + "</mock>");
+        assertTrue(okSmall.length() < TIMEOUT.length());
+        Set<String> expectLarge = new HashSet<>();
+        for (int i = 0; i < totalFiles; i++) {
+            if (read(i).equals(OK)) {
+                if (i % 2 == 0) {
+                    replace(i, okLarge);
+                    expectLarge.add("emit-" + i);
+                } else {
+                    replace(i, okSmall);
+                }
+            }
+        }
+        String xml = new String(Files.readAllBytes(tikaConfigPath), StandardCharsets.UTF_8);
+        xml = xml.replace("<arg>-Xmx512m</arg>", "<arg>-Xmx512m</arg><arg>-D" +
+                        POOL_PROPERTY + "=default</arg>");
+        xml = xml.replace("<numClients>4</numClients>",
+                "<numClients>2</numClients><numPrefetchers>2</numPrefetchers>" +
+                        "<prefetchFetcherName>staging</prefetchFetcherName>" +
+                        "<pools class=\"org.apache.tika.pipes.async.AsyncPool\"><pool><params>" +
+                        "<name>large</name><numClients>2</numClients>" +
+                        "<timeoutMillis>2000</timeoutMillis>" +
+                        "<minBytes>" + TIMEOUT.length() + "</minBytes>" +
+                        "<forkedJvmArgs><arg>-Xmx512m</arg><arg>-D" + POOL_PROPERTY +
+                        "=large</arg></forkedJvmArgs>" +
+                        "</params></pool></pools>");
+        Files.write(tikaConfigPath, xml.getBytes(StandardCharsets.UTF_8));
+        runAll();
+        for (EmitData d : MockEmitter.EMIT_DATA) {
+            String emitKey = d.getEmitKey().getEmitKey();
+            assertEquals(expectLarge.contains(emitKey) ? "large" : "default",
+                    d.getMetadataList().get(0).get(POOL_PROPERTY), emitKey);
+        }
+    }
+
+    @Test
+    public void testRoutes() throws Exception {
+        AsyncPool large = new AsyncPool();
+        large.setMinBytes(1000);
+        large.setExtensions(Collections.singletonList(".PST"));
+        AsyncPool images = new AsyncPool();
+        images.setMimeTypes(Arrays.asList("image/", "application/pdf"));
+        AsyncRouter router = new AsyncRouter(null, null, 1, Arrays.asList(large, images),
+                null, Collections.emptyMap());
+
+        Metadata metadata = new Metadata();
+        metadata.set(Metadata.CONTENT_LENGTH, "5000");
+        assertEquals(0, router.route(tuple("a.txt", metadata)));
+        assertEquals(0, router.route(tuple("a.pst", new Metadata())));
+        assertEquals(-1, router.route(new FetchEmitTuple("id", new FetchKey("mock", "a.txt", 0, 99),
+                new EmitKey(), new Metadata())));
+        //detected by name or declared
+        assertEquals(1, router.route(tuple("a.png", new Metadata())));
+        metadata = new Metadata();
+        metadata.set(Metadata.CONTENT_TYPE, "application/pdf; charset=UTF-8");
+        assertEquals(1, router.route(tuple("a", metadata)));
+        assertEquals(-1, router.route(tuple("a.txt", new Metadata())));
+    }
+
+    private static FetchEmitTuple tuple(String fetchKey, Metadata metadata) {
+        return new FetchEmitTuple("id", new FetchKey("mock", fetchKey), new EmitKey(), metadata);
+    }
+
+    private String read(int i) throws IOException {
+        return new String(Files.readAllBytes(inputDir.resolve(i + ".xml")),
+                StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Replaces the content of a file and keeps the expected counts right
+     */
+    private void replace(int i, String content) throws IOException {
+        String old = read(i);
+        if (old.equals(OOM)) {
+            oom--;
+        } else if (old.equals(TIMEOUT)) {
+            timeouts--;
+        } else if (old.equals(SYSTEM_EXIT)) {
+            crash--;
+        } else {
+            ok--;
+        }
+        if (content.equals(OOM)) {
+            oom++;
+        } else if (content.equals(TIMEOUT)) {
+            timeouts++;
+        } else if (content.equals(SYSTEM_EXIT)) {
+            crash++;
+        } else {
+            ok++;
+        }
+        Files.write(inputDir.resolve(i + ".xml"), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private AsyncProcessor runAll() throws Exception {
+        MockEmitter.EMIT_DATA.clear();
         AsyncProcessor processor = new AsyncProcessor(tikaConfigPath);
         for (int i = 0; i < totalFiles; i++) {
             FetchEmitTuple t = new FetchEmitTuple("myId",
@@ -142,11 +359,15 @@ public class AsyncProcessorTest {
         while (processor.checkActive()) {
             Thread.sleep(100);
         }
+        EmitterStats stats = processor.getEmitterStats().get("mock");
+        assertEquals(MockEmitter.EMIT_DATA.size(), stats.getEmitCount());
+        assertEquals(0, stats.getPendingCount());
         processor.close();
         Set<String> emitKeys = new HashSet<>();
         for (EmitData d : MockEmitter.EMIT_DATA) {
             emitKeys.add(d.getEmitKey().getEmitKey());
         }
         assertEquals(ok, emitKeys.size());
+        return processor;
     }
 }
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.pipes.async;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class EmitterStatsTest {
+
+    @Test
+    public void testFixedBatchSize() {
+        EmitterStats stats = new EmitterStats("e", 1000, 100000, -1);
+        stats.added();
+        stats.added();
+        stats.flushed(2, 0, 50000, 1000, false);
+        assertEquals(100000, stats.getBatchBytes());
+        assertEquals(1, stats.getBatchCount());
+        assertEquals(2, stats.getEmitCount());
+        assertEquals(0, stats.getPendingCount());
+        assertEquals(2.0, stats.getAverageBatchSize(), 0.0001);
+    }
+
+    @Test
+    public void testConvergesToTarget() {
+        //an emitter with 50 ms of overhead per batch and 100 bytes per ms:
+        //a flush of 45000 bytes takes the target of 500 ms
+        long overhead = 50;
+        long bytesPerMilli = 100;
+        EmitterStats stats = new EmitterStats("e", 1000, 1000000, 500);
+        for (int i = 0; i < 50; i++) {
+            long bytes = stats.getBatchBytes();
+            stats.flushed(1, 0, bytes, overhead + bytes / bytesPerMilli, false);
+        }
+        long batchBytes = stats.getBatchBytes();
+        assertTrue(batchBytes > 40000 && batchBytes < 50000, "batch bytes: " + batchBytes);
+
+        //the emitter gets faster
+        bytesPerMilli = 1000;
+        for (int i = 0; i < 50; i++) {
+            long bytes = stats.getBatchBytes();
+            stats.flushed(1, 0, bytes, overhead + bytes / bytesPerMilli, false);
+        }
+        batchBytes = stats.getBatchBytes();
+        assertTrue(batchBytes > 400000 && batchBytes < 500000, "batch bytes: " + batchBytes);
+    }
+
+    @Test
+    public void testBounds() {
+        EmitterStats stats = new EmitterStats("e", 1000, 100000, 500);
+        //very slow
+        for (int i = 0; i < 20; i++) {
+            stats.flushed(1, 0, stats.getBatchBytes(), 10000, false);
+        }
+        assertEquals(1000, stats.getBatchBytes());
+        //very fast
+        for (int i = 0; i < 20; i++) {
+            stats.flushed(1, 0, stats.getBatchBytes(), 0, false);
+        }
+        assertEquals(100000, stats.getBatchBytes());
+        stats.flushed(1, 0, 100000, 10, true);
+        assertEquals(50000, stats.getBatchBytes());
+        assertEquals(1, stats.getFailedBatchCount());
+        assertEquals(40, stats.getEmitCount());
+    }
+
+    @Test
+    public void testPartialFailure() {
+        EmitterStats stats = new EmitterStats("e", 1000, 100000, 500);
+        for (int i = 0; i < 4; i++) {
+            stats.added();
+        }
+        stats.flushed(4, 1, 40000, 10, false);
+        assertEquals(3, stats.getEmitCount());
+        assertEquals(30000, stats.getEmitBytes());
+        assertEquals(1, stats.getPartialBatchCount());
+        assertEquals(0, stats.getFailedBatchCount());
+        assertEquals(0, stats.getPendingCount());
+        assertEquals(50000, stats.getBatchBytes());
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.pipes.async;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.pipes.FetchEmitTuple;
+import org.apache.tika.pipes.emitter.EmitKey;
+import org.apache.tika.pipes.fetcher.FetchKey;
+import org.apache.tika.pipes.pipesiterator.PipesIterator;
+
+public class FetchEmitTupleQueueTest {
+
+    @Test
+    public void testWeights() throws Exception {
+        Map<String, Double> weights = new HashMap<>();
+        weights.put("interactive", 3.0);
+        FetchEmitTupleQueue queue = new FetchEmitTupleQueue(100, "tenant", weights,
+                Collections.emptyMap(), 1.0);
+        //the backfill is queued first
+        for (int i = 0; i < 40; i++) {
+            assertTrue(queue.offer(tuple("fs", "backfill")));
+        }
+        for (int i = 0; i < 40; i++) {
+            assertTrue(queue.offer(tuple("fs", "interactive")));
+        }
+        assertTrue(queue.offer(PipesIterator.COMPLETED_SEMAPHORE));
+
+        int interactive = 0;
+        for (int i = 0; i < 40; i++) {
+            if ("interactive".equals(queue.getClassName(queue.take()))) {
+                interactive++;
+            }
+        }
+        assertEquals(30, interactive);
+        for (int i = 0; i < 40; i++) {
+            assertFalse(queue.take() == PipesIterator.COMPLETED_SEMAPHORE);
+        }
+        assertSame(PipesIterator.COMPLETED_SEMAPHORE, queue.take());
+        assertNull(queue.poll());
+
+        QueueClassStats stats = queue.getStats().get("interactive");
+        assertEquals(3.0, stats.getWeight(), 0.0001);
+        assertEquals(40, stats.getDequeuedCount());
+        assertEquals(0, stats.getDepth());
+    }
+
+    @Test
+    public void testPrioritiesAndFetchers() throws Exception {
+        Map<String, Integer> priorities = new HashMap<>();
+        priorities.put("urgent", 1);
+        FetchEmitTupleQueue queue = new FetchEmitTupleQueue(100, "tenant",
+                Collections.emptyMap(), priorities, 1.0);
+        queue.put(tuple("s3", null));
+        queue.put(tuple("fs", null));
+        queue.put(tuple("s3", null));
+        queue.put(tuple("fs", "urgent"));
+
+        assertEquals("urgent", queue.getClassName(queue.poll()));
+        //without a tenant, tuples are classed by fetcher and take turns
+        assertEquals("s3", queue.getClassName(queue.poll()));
+        assertEquals("fs", queue.getClassName(queue.poll()));
+        assertEquals("s3", queue.getClassName(queue.poll()));
+        //least recently queued first
+        assertEquals(Arrays.asList("fs", "s3", "urgent"),
+                new ArrayList<>(queue.getStats().keySet()));
+    }
+
+    @Test
+    public void testEmptyLanesAreDropped() throws Exception {
+        FetchEmitTupleQueue queue = new FetchEmitTupleQueue(100, "tenant",
+                Collections.emptyMap(), Collections.emptyMap(), 1.0);
+        for (int i = 0; i < 10; i++) {
+            queue.put(tuple("fs", "bulk"));
+        }
+        assertEquals("bulk", queue.getClassName(queue.poll()));
+        //a one-off class per tuple
+        for (int i = 0; i < FetchEmitTupleQueue.MAX_CLASS_STATS + 10; i++) {
+            queue.put(tuple("fs", "request-" + i));
+            assertEquals(2, queue.getLaneCount());
+            assertEquals("request-" + i, queue.getClassName(queue.poll()));
+            assertEquals(1, queue.getLaneCount());
+        }
+        assertEquals(FetchEmitTupleQueue.MAX_CLASS_STATS, queue.getStats().size());
+        assertFalse(queue.getStats().containsKey("request-0"));
+        //the bulk class is still queued, so its stats are kept
+        assertEquals(9, queue.getStats().get("bulk").getDepth());
+
+        //bulk has had its turn, so a class that comes back goes next
+        queue.put(tuple("fs", "bulk"));
+        queue.put(tuple("fs", "request-0"));
+        assertEquals("request-0", queue.getClassName(queue.poll()));
+        assertEquals(1, queue.getLaneCount());
+        while (queue.poll() != null) {
+            //drain
+        }
+        assertEquals(0, queue.getLaneCount());
+        assertEquals(0, queue.getStats().get("bulk").getDepth());
+    }
+
+    @Test
+    public void testMaxClassShare() throws Exception {
+        FetchEmitTupleQueue queue = new FetchEmitTupleQueue(10, "tenant",
+                Collections.emptyMap(), Collections.emptyMap(), 0.5);
+        List<FetchEmitTuple> backfill = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            backfill.add(tuple("fs", "backfill"));
+        }
+        //all or nothing
+        assertFalse(queue.offerAll(backfill));
+        assertEquals(0, queue.size());
+        assertTrue(queue.offerAll(backfill.subList(0, 5)));
+        assertFalse(queue.offer(tuple("fs", "backfill")));
+        assertTrue(queue.offerAll(Arrays.asList(tuple("fs", "interactive"),
+                tuple("fs", "interactive"))));
+        assertEquals(3, queue.remainingCapacity());
+    }
+
+    private static FetchEmitTuple tuple(String fetcherName, String tenant) {
+        Metadata metadata = new Metadata();
+        if (tenant != null) {
+            metadata.set("tenant", tenant);
+        }
+        return new FetchEmitTuple("id", new FetchKey(fetcherName, "key"), new EmitKey(),
+                metadata);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.pipes.fetcher;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+
+public class RangeFetcherChannelTest {
+
+    private static final int SIZE = 10_000;
+
+    private final byte[] data = new byte[SIZE];
+
+    private final List<long[]> requests = new ArrayList<>();
+
+    private final RangeFetcher fetcher = new RangeFetcher() {
+        @Override
+        public InputStream fetch(String fetchKey, long startOffset, long endOffset,
+                                 Metadata metadata) {
+            requests.add(new long[]{startOffset, endOffset});
+            return new ByteArrayInputStream(data, (int) startOffset,
+                    (int) (endOffset - startOffset + 1));
+        }
+
+        @Override
+        public String getName() {
+            return "range";
+        }
+
+        @Override
+        public InputStream fetch(String fetchKey, Metadata metadata) {
+            throw new UnsupportedOperationException();
+        }
+    };
+
+    public RangeFetcherChannelTest() {
+        new Random(42).nextBytes(data);
+    }
+
+    @Test
+    public void testRandomAccess() throws Exception {
+        RangeFetcherChannel channel = new RangeFetcherChannel(fetcher, "key", SIZE, 1000, 3, 2);
+        assertEquals(SIZE, channel.size());
+
+        //the end of the file, then the start: only the blocks that are touched
+        ByteBuffer buffer = ByteBuffer.allocate(100);
+        channel.position(SIZE - 100);
+        assertEquals(100, channel.read(buffer));
+        assertArrayEquals(Arrays.copyOfRange(data, SIZE - 100, SIZE), buffer.array());
+        buffer.clear();
+        channel.position(0);
+        assertEquals(100, channel.read(buffer));
+        assertArrayEquals(Arrays.copyOfRange(data, 0, 100), buffer.array());
+        assertEquals(2, channel.getRangeRequests());
+        assertEquals(2000, channel.getBytesFetched());
+        assertEquals(-1, channel.position(SIZE).read(buffer));
+
+        //reading across a block boundary
+        buffer = ByteBuffer.allocate(1500);
+        channel.position(8800);
+        assertEquals(1200, channel.read(buffer));
+        assertArrayEquals(Arrays.copyOfRange(data, 8800, SIZE),
+                Arrays.copyOf(buffer.array(), 1200));
+        assertEquals(3, channel.getRangeRequests());
+        assertArrayEquals(new long[]{8000, 8999}, requests.get(2));
+
+        channel.close();
+        assertFalse(channel.isOpen());
+    }
+
+    @Test
+    public void testReadAhead() throws Exception {
+        RangeFetcherChannel channel = new RangeFetcherChannel(fetcher, "key", SIZE, 1000, 4, 2);
+        try (TikaInputStream tis = TikaInputStream.get(channel, new Metadata())) {
+            assertTrue(tis.hasSeekableByteChannel());
+            assertFalse(tis.hasFile());
+            assertEquals(SIZE, tis.getLength());
+            assertArrayEquals(data, IOUtils.toByteArray(tis));
+        }
+        //block 0 on its own, then three blocks per request
+        assertEquals(4, requests.size());
+        assertArrayEquals(new long[]{0, 999}, requests.get(0));
+        assertArrayEquals(new long[]{1000, 3999}, requests.get(1));
+        assertArrayEquals(new long[]{4000, 6999}, requests.get(2));
+        assertArrayEquals(new long[]{7000, 9999}, requests.get(3));
+        assertEquals(SIZE, channel.getBytesFetched());
+        assertFalse(channel.isOpen());
+    }
+
+    @Test
+    public void testSharedChannel() throws Exception {
+        RangeFetcherChannel channel = new RangeFetcherChannel(fetcher, "key", SIZE, 1000, 32, 0);
+        try (TikaInputStream tis = TikaInputStream.get(channel, new Metadata())) {
+            byte[] head = new byte[10];
+            tis.mark(100);
+            IOUtils.readFully(tis, head);
+            assertArrayEquals(Arrays.copyOf(data, 10), head);
+
+            //random access doesn't move the stream
+            SeekableByteChannel shared = tis.getSeekableByteChannel();
+            ByteBuffer tail = ByteBuffer.allocate(10);
+            shared.position(SIZE - 10).read(tail);
+            assertArrayEquals(Arrays.copyOfRange(data, SIZE - 10, SIZE), tail.array());
+            shared.close();
+            assertTrue(channel.isOpen());
+
+            tis.reset();
+            assertEquals(5000, tis.skip(5000));
+            byte[] middle = new byte[10];
+            IOUtils.readFully(tis, middle);
+            assertArrayEquals(Arrays.copyOfRange(data, 5000, 5010), middle);
+        }
+        assertFalse(channel.isOpen());
+
+        //spooling still works for parsers that need a file
+        try (TikaInputStream tis = TikaInputStream.get(
+                new RangeFetcherChannel(fetcher, "key", SIZE), new Metadata())) {
+            assertArrayEquals(data, Files.readAllBytes(tis.getPath()));
+            assertTrue(tis.hasFile());
+        }
+    }
+}
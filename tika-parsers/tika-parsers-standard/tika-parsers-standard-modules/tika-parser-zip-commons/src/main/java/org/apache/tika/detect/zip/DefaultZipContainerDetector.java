@@ -20,6 +20,7 @@ import java.io.BufferedInputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
@@ -179,10 +180,10 @@ public class DefaultZipContainerDetector implements Detector {
 
             if (TikaInputStream.isTikaInputStream(input)) {
                 TikaInputStream tis = TikaInputStream.cast(input);
-                if (markLimit < 0) {
+                if (markLimit < 0 && !tis.hasSeekableByteChannel()) {
                     tis.getFile();
                 }
-                if (tis.hasFile()) {
+                if (tis.hasFile() || tis.hasSeekableByteChannel()) {
                     return detectZipFormatOnFile(tis, metadata);
                 }
             }
@@ -195,7 +196,9 @@ public class DefaultZipContainerDetector implements Detector {
     }
 
     /**
-     * This will call TikaInputStream's getFile(). If there are no exceptions,
+     * This will call TikaInputStream's getFile(), or open the zip on TikaInputStream's
+     * SeekableByteChannel if it has one and isn't backed by a file, which only reads the
+     * central directory of remote files. If there are no exceptions,
      * it will place the ZipFile in TikaInputStream's openContainer and leave it
      * open.
      *
@@ -205,7 +208,11 @@ public class DefaultZipContainerDetector implements Detector {
     private MediaType detectZipFormatOnFile(TikaInputStream tis, Metadata metadata) {
         ZipFile zip = null;
         try {
-            zip = new ZipFile(tis.getFile()); // TODO: hasFile()?
+            if (!tis.hasFile() && tis.hasSeekableByteChannel()) {
+                zip = new ZipFile(tis.getSeekableByteChannel());
+            } else {
+                zip = new ZipFile(tis.getFile()); // TODO: hasFile()?
+            }
 
             for (ZipContainerDetector zipDetector : getDetectors()) {
                 MediaType type = zipDetector.detect(zip, tis);
@@ -241,7 +248,9 @@ public class DefaultZipContainerDetector implements Detector {
         }
         if (zip == null) {
             //problem opening zip file (truncated?)
-            try (InputStream is = new BufferedInputStream(Files.newInputStream(tis.getPath()))) {
+            try (InputStream is = new BufferedInputStream(tis.hasFile() ?
+                    Files.newInputStream(tis.getPath()) :
+                    Channels.newInputStream(tis.getSeekableByteChannel().position(0)))) {
                 return detectStreaming(is, metadata);
             } catch (IOException e) {
                 //swallow
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.detect.zip;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.junit.jupiter.api.Test;
+
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.pipes.fetcher.RangeFetcher;
+import org.apache.tika.pipes.fetcher.RangeFetcherChannel;
+
+public class DefaultZipContainerDetectorTest {
+
+    @Test
+    public void testDetectOnChannel() throws Exception {
+        byte[] big = new byte[1024 * 1024];
+        new Random(42).nextBytes(big);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(bos)) {
+            zos.putNextEntry(new ZipEntry("big.bin"));
+            zos.write(big);
+            zos.closeEntry();
+            zos.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+            zos.write("Manifest-Version: 1.0\n".getBytes(StandardCharsets.UTF_8));
+            zos.closeEntry();
+        }
+        byte[] zip = bos.toByteArray();
+
+        RangeFetcher fetcher = new RangeFetcher() {
+            @Override
+            public InputStream fetch(String fetchKey, long startOffset, long endOffset,
+                                     Metadata metadata) {
+                return new ByteArrayInputStream(zip, (int) startOffset,
+                        (int) (endOffset - startOffset + 1));
+            }
+
+            @Override
+            public InputStream fetch(String fetchKey, Metadata metadata) {
+                return new ByteArrayInputStream(zip);
+            }
+
+            @Override
+            public String getName() {
+                return "bytes";
+            }
+        };
+        RangeFetcherChannel channel =
+                new RangeFetcherChannel(fetcher, "test.jar", zip.length, 16 * 1024, 8, 0);
+        try (TikaInputStream tis = TikaInputStream.get(channel, new Metadata())) {
+            assertEquals(MediaType.application("java-archive"),
+                    new DefaultZipContainerDetector().detect(tis, new Metadata()));
+            assertTrue(tis.getOpenContainer() instanceof ZipFile);
+            assertEquals(0, tis.getPosition());
+        }
+        //only the start of the file and the central directory were read
+        assertTrue(channel.getBytesFetched() < zip.length / 10,
+                "fetched " + channel.getBytesFetched() + " of " + zip.length);
+    }
+}
@@ -28,12 +28,19 @@ import java.sql.Types;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.regex.Matcher;
@@ -56,8 +63,25 @@ import org.apache.tika.utils.StringUtils;
 /**
  * This is only an initial, basic implementation of an emitter for JDBC.
  * <p>
- * It is currently NOT thread safe because of the shared prepared statement,
- * and depending on the jdbc implementation because of the shared connection.
+ * Each emit borrows a connection from a small pool of at most
+ * {@link #setMaxConnections(int) maxConnections} connections, so this may be
+ * called from several threads. Each emit is run in one transaction. A
+ * connection that throws an exception is closed and replaced.
+ * {@link #close()} closes the idle connections and waits up to
+ * {@link #CLOSE_WAIT_MILLIS} for the borrowed ones to be returned.
+ * <p>
+ * If {@link #setMaxRowsPerStatement(int) maxRowsPerStatement} is greater than 1,
+ * the <code>values (?,...)</code> group of the insert statement is repeated to
+ * write several rows with one statement, e.g.
+ * <code>insert into t (a, b) values (?,?),(?,?)</code>. This also works for
+ * dialect specific upserts that follow the values, such as
+ * <code>... values (?,?) on conflict (a) do update set b=excluded.b</code> on
+ * PostgreSQL and SQLite or <code>merge into t key (a) values (?,?)</code> on H2.
+ * Keep maxRowsPerStatement times the number of columns below the driver's limit
+ * on parameters per statement (32766 for SQLite, 65535 for PostgreSQL).
+ * Because PostgreSQL refuses an upsert that affects the same row twice, rows
+ * with the same emit key (and attachment number) are de-duplicated before a
+ * multi-row insert; the last one wins.
  * <p>
  * As of the 2.5.0 release, this is ALPHA version.  There may be breaking changes
  * in the future.
@@ -66,6 +90,8 @@ public class JDBCEmitter extends AbstractEmitter implements Initializable, Close
 
     private static final Logger LOGGER = LoggerFactory.getLogger(JDBCEmitter.class);
 
+    static final long CLOSE_WAIT_MILLIS = 30000;
+
     public enum AttachmentStrategy {
         FIRST_ONLY, ALL
         //anything else?
@@ -87,13 +113,22 @@ public class JDBCEmitter extends AbstractEmitter implements Initializable, Close
     //This is necessary for testing and if someone specifies multiple
     //different jdbc emitters.
     private static Set<String> TABLES_CREATED = new HashSet<>();
+    //everything up to and including "values", the group of parameters and the rest
+    private static final Pattern MULTI_ROW_PATTERN =
+            Pattern.compile("(?is)(.*\\bvalues\\s*)(\\([\\s?,]*\\))(.*)");
     private String connectionString;
     private String insert;
     private String createTable;
     private String alterTable;
     private Map<String, String> keys;
-    private Connection connection;
-    private PreparedStatement insertStatement;
+    private int maxConnections = 1;
+    private int maxRowsPerStatement = 1;
+    //idle connections and permits for the connections that may be open
+    private ArrayBlockingQueue<PooledConnection> idleConnections;
+    private Semaphore connectionPermits;
+    //every connection that is open, idle or borrowed
+    private final Set<PooledConnection> openConnections = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed = false;
     private AttachmentStrategy attachmentStrategy = AttachmentStrategy.FIRST_ONLY;
 
     private MultivaluedFieldStrategy multivaluedFieldStrategy =
@@ -101,16 +136,7 @@ public class JDBCEmitter extends AbstractEmitter implements Initializable, Close
 
     private String multivaluedFieldDelimiter = ", ";
 
-    //emitters are run in a single thread.  If we ever start running them
-    //multithreaded, this will be a big problem.
-    private final DateFormat[] dateFormats;
-
     public JDBCEmitter() {
-        dateFormats = new DateFormat[TIKA_DATE_PATTERNS.length];
-        int i = 0;
-        for (String p : TIKA_DATE_PATTERNS) {
-            dateFormats[i++] = new SimpleDateFormat(p, Locale.US);
-        }
     }
     /**
      * This is called immediately after the table is created.
@@ -190,6 +216,27 @@ public class JDBCEmitter extends AbstractEmitter implements Initializable, Close
         this.keys = keys;
     }
 
+    /**
+     * Maximum number of connections to open. Default: 1
+     *
+     * @param maxConnections
+     */
+    @Field
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * Number of rows to write with one insert statement. Default: 1, each row
+     * is added to a jdbc batch of single row inserts.
+     *
+     * @param maxRowsPerStatement
+     */
+    @Field
+    public void setMaxRowsPerStatement(int maxRowsPerStatement) {
+        this.maxRowsPerStatement = maxRowsPerStatement;
+    }
+
     public void setAttachmentStrategy(AttachmentStrategy attachmentStrategy) {
         this.attachmentStrategy = attachmentStrategy;
     }
@@ -220,98 +267,155 @@ public class JDBCEmitter extends AbstractEmitter implements Initializable, Close
         if (metadataList == null || metadataList.size() < 1) {
             return;
         }
-        try {
-            if (attachmentStrategy == AttachmentStrategy.FIRST_ONLY) {
-                insertFirstOnly(emitKey, metadataList);
-                insertStatement.execute();
-            } else {
-                insertAll(emitKey, metadataList);
-                insertStatement.executeBatch();
-            }
-        } catch (SQLException e) {
-            try {
-                LOGGER.warn("problem during emit; going to try to reconnect", e);
-                //something went wrong
-                //try to reconnect
-                reconnect();
-            } catch (SQLException ex) {
-                throw new TikaEmitterException("Couldn't reconnect!", ex);
-            }
-            throw new TikaEmitterException("couldn't emit", e);
-        }
+        List<Row> rows = new ArrayList<>();
+        addRows(emitKey, metadataList, rows);
+        emitRows(rows);
     }
 
     @Override
     public void emit(List<? extends EmitData> emitData) throws IOException, TikaEmitterException {
-        try {
-            if (attachmentStrategy == AttachmentStrategy.FIRST_ONLY) {
-                for (EmitData d : emitData) {
-                    insertFirstOnly(d.getEmitKey().getEmitKey(), d.getMetadataList());
-                    insertStatement.addBatch();
-                }
-            } else {
-                for (EmitData d : emitData) {
-                    insertAll(d.getEmitKey().getEmitKey(), d.getMetadataList());
-                }
+        List<Row> rows = new ArrayList<>();
+        for (EmitData d : emitData) {
+            addRows(d.getEmitKey().getEmitKey(), d.getMetadataList(), rows);
+        }
+        emitRows(rows);
+    }
+
+    private void addRows(String emitKey, List<Metadata> metadataList, List<Row> rows) {
+        if (metadataList == null || metadataList.size() < 1) {
+            return;
+        }
+        if (attachmentStrategy == AttachmentStrategy.FIRST_ONLY) {
+            rows.add(new Row(emitKey, 0, metadataList));
+        } else {
+            for (int i = 0; i < metadataList.size(); i++) {
+                rows.add(new Row(emitKey, i, metadataList));
             }
-            insertStatement.executeBatch();
+        }
+    }
+
+    private void emitRows(List<Row> rows) throws TikaEmitterException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        if (maxRowsPerStatement > 1 && rows.size() > 1) {
+            rows = dedupe(rows);
+        }
+        PooledConnection pooledConnection = borrow();
+        boolean success = false;
+        try {
+            pooledConnection.insert(rows);
+            success = true;
         } catch (SQLException e) {
-            try {
-                LOGGER.warn("problem during emit; going to try to reconnect", e);
-                //something went wrong
-                //try to reconnect
-                reconnect();
-            } catch (SQLException ex) {
-                throw new TikaEmitterException("Couldn't reconnect!", ex);
-            }
+            LOGGER.warn("problem during emit; going to close the connection", e);
             throw new TikaEmitterException("couldn't emit", e);
+        } finally {
+            release(pooledConnection, success);
         }
     }
 
-    private void insertAll(String emitKey, List<Metadata> metadataList) throws SQLException {
-
-        for (int i = 0; i < metadataList.size(); i++) {
-            insertStatement.clearParameters();
-            int col = 0;
-            insertStatement.setString(++col, emitKey);
-            insertStatement.setInt(++col, i);
-            for (Map.Entry<String, String> e : keys.entrySet()) {
-                updateValue(insertStatement, ++col, e.getKey(), e.getValue(), i, metadataList);
-            }
-            insertStatement.addBatch();
+    /**
+     * @return the rows without duplicate keys, the last row of a key wins
+     */
+    private static List<Row> dedupe(List<Row> rows) {
+        Map<String, Row> byKey = new LinkedHashMap<>();
+        for (Row row : rows) {
+            String key = row.index + ":" + row.emitKey;
+            //remove first so that the row takes the position of the last duplicate
+            byKey.remove(key);
+            byKey.put(key, row);
+        }
+        if (byKey.size() == rows.size()) {
+            return rows;
         }
+        LOGGER.debug("removed {} rows with duplicate keys", rows.size() - byKey.size());
+        return new ArrayList<>(byKey.values());
     }
 
-    private void insertFirstOnly(String emitKey, List<Metadata> metadataList) throws SQLException {
-        insertStatement.clearParameters();
-        int i = 0;
-        DateFormat[] dateFormats = new DateFormat[TIKA_DATE_PATTERNS.length];
-        for (int j = 0; j < TIKA_DATE_PATTERNS.length; j++) {
-            dateFormats[i] = new SimpleDateFormat(TIKA_DATE_PATTERNS[j], Locale.US);
+    private PooledConnection borrow() throws TikaEmitterException {
+        try {
+            connectionPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TikaEmitterException("interrupted while waiting for a connection", e);
         }
-        insertStatement.setString(++i, emitKey);
-        for (Map.Entry<String, String> e : keys.entrySet()) {
-            updateValue(insertStatement, ++i, e.getKey(), e.getValue(), 0, metadataList);
+        if (closed) {
+            connectionPermits.release();
+            throw new TikaEmitterException("emitter is closed");
+        }
+        PooledConnection pooledConnection = idleConnections.poll();
+        if (pooledConnection != null) {
+            return pooledConnection;
+        }
+        try {
+            return connect();
+        } catch (SQLException e) {
+            connectionPermits.release();
+            throw new TikaEmitterException("Couldn't connect!", e);
+        }
+    }
+
+    private void release(PooledConnection pooledConnection, boolean success) {
+        if (!success) {
+            //something went wrong, the next emit gets a new connection
+            pooledConnection.closeQuietly();
+        } else if (closed) {
+            pooledConnection.closeQuietly();
+        } else {
+            idleConnections.offer(pooledConnection);
         }
+        connectionPermits.release();
     }
 
-    private void reconnect() throws SQLException {
+    private PooledConnection connect() throws SQLException {
         SQLException ex = null;
         for (int i = 0; i < 3; i++) {
             try {
-                connection = DriverManager.getConnection(connectionString);
-                insertStatement = connection.prepareStatement(insert);
-                return;
+                return new PooledConnection(DriverManager.getConnection(connectionString));
             } catch (SQLException e) {
-                LOGGER.warn("couldn't reconnect to db", e);
+                LOGGER.warn("couldn't connect to db", e);
                 ex = e;
             }
         }
         throw ex;
     }
 
+    /**
+     * Repeats the <code>values (?,...)</code> group of an insert statement.
+     *
+     * @return the statement or <code>null</code> if there's no values group
+     */
+    static String buildMultiRowInsert(String insert, int rows) {
+        Matcher m = MULTI_ROW_PATTERN.matcher(insert);
+        if (!m.matches()) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(m.group(1));
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sb.append(",");
+            }
+            sb.append(m.group(2));
+        }
+        return sb.append(m.group(3)).toString();
+    }
+
+    private int setRow(PreparedStatement statement, int col, Row row, DateFormat[] dateFormats)
+            throws SQLException {
+        statement.setString(++col, row.emitKey);
+        if (attachmentStrategy == AttachmentStrategy.ALL) {
+            statement.setInt(++col, row.index);
+        }
+        for (Map.Entry<String, String> e : keys.entrySet()) {
+            updateValue(statement, ++col, e.getKey(), e.getValue(), row.index, row.metadataList,
+                    dateFormats);
+        }
+        return col;
+    }
+
     private void updateValue(PreparedStatement insertStatement, int i, String key, String type,
-                             int metadataListIndex, List<Metadata> metadataList)
+                             int metadataListIndex, List<Metadata> metadataList,
+                             DateFormat[] dateFormats)
             throws SQLException {
         Metadata metadata = metadataList.get(metadataListIndex);
         String val = getVal(metadata, key, type);
@@ -478,9 +582,18 @@ public class JDBCEmitter extends AbstractEmitter implements Initializable, Close
 
     @Override
     public void initialize(Map<String, Param> params) throws TikaConfigException {
-
+        if (maxConnections < 1 || maxRowsPerStatement < 1) {
+            throw new TikaConfigException("maxConnections and maxRowsPerStatement must be > 0");
+        }
+        if (maxRowsPerStatement > 1 && buildMultiRowInsert(insert, 2) == null) {
+            throw new TikaConfigException("Couldn't find the 'values (?,...)' group in the " +
+                    "insert statement to repeat for maxRowsPerStatement: " + insert);
+        }
+        idleConnections = new ArrayBlockingQueue<>(maxConnections);
+        connectionPermits = new Semaphore(maxConnections);
+        PooledConnection pooledConnection;
         try {
-            connection = DriverManager.getConnection(connectionString);
+            pooledConnection = new PooledConnection(DriverManager.getConnection(connectionString));
         } catch (SQLException e) {
             throw new TikaConfigException("couldn't open connection: " + connectionString, e);
         }
@@ -490,13 +603,15 @@ public class JDBCEmitter extends AbstractEmitter implements Initializable, Close
             try {
                 String tableCreationString = connectionString + " " + createTable;
                 if (!TABLES_CREATED.contains(tableCreationString)) {
-                    try (Statement st = connection.createStatement()) {
+                    try (Statement st = pooledConnection.connection.createStatement()) {
                         st.execute(createTable);
                         if (!StringUtils.isBlank(alterTable)) {
                             st.execute(alterTable);
                         }
+                        pooledConnection.connection.commit();
                         TABLES_CREATED.add(tableCreationString);
                     } catch (SQLException e) {
+                        pooledConnection.closeQuietly();
                         throw new TikaConfigException("can't create table", e);
                     }
                 }
@@ -505,12 +620,12 @@ public class JDBCEmitter extends AbstractEmitter implements Initializable, Close
             }
         }
         try {
-            insertStatement = connection.prepareStatement(insert);
+            pooledConnection.getStatement(1);
         } catch (SQLException e) {
+            pooledConnection.closeQuietly();
             throw new TikaConfigException("can't create insert statement", e);
         }
-
-
+        idleConnections.offer(pooledConnection);
     }
 
     @Override
@@ -520,14 +635,153 @@ public class JDBCEmitter extends AbstractEmitter implements Initializable, Close
     }
 
     /**
+     * Closes all connections. This waits up to {@link #CLOSE_WAIT_MILLIS} for
+     * the emits that are running to return their connections, and then closes
+     * the connections that are still borrowed. Emits after this fail.
+     *
      * @throws IOException
      */
     @Override
     public void close() throws IOException {
+        if (connectionPermits == null) {
+            return;
+        }
+        closed = true;
+        //borrowed connections are closed when they're returned
+        boolean acquired = false;
+        try {
+            acquired = connectionPermits.tryAcquire(maxConnections, CLOSE_WAIT_MILLIS,
+                    TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!acquired) {
+            LOGGER.warn("closing {} connections that are still in use",
+                    openConnections.size() - idleConnections.size());
+        }
+        SQLException ex = null;
         try {
+            for (PooledConnection pooledConnection : openConnections) {
+                try {
+                    pooledConnection.close();
+                } catch (SQLException e) {
+                    ex = e;
+                }
+            }
+            idleConnections.clear();
+        } finally {
+            if (acquired) {
+                //emits that are waiting for a permit find the emitter closed
+                connectionPermits.release(maxConnections);
+            }
+        }
+        if (ex != null) {
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * A row to insert: the emit key and the index of the metadata object in the
+     * metadata list, this is also the attachment number.
+     */
+    private static class Row {
+        private final String emitKey;
+        private final int index;
+        private final List<Metadata> metadataList;
+
+        Row(String emitKey, int index, List<Metadata> metadataList) {
+            this.emitKey = emitKey;
+            this.index = index;
+            this.metadataList = metadataList;
+        }
+    }
+
+    /**
+     * A connection, its prepared statements by number of rows and the date formats
+     * that go with it. This is only used by one thread at a time.
+     */
+    private class PooledConnection {
+        private final Connection connection;
+        private final Map<Integer, PreparedStatement> statements = new HashMap<>();
+        private final DateFormat[] dateFormats = new DateFormat[TIKA_DATE_PATTERNS.length];
+
+        PooledConnection(Connection connection) throws SQLException {
+            this.connection = connection;
+            connection.setAutoCommit(false);
+            for (int i = 0; i < TIKA_DATE_PATTERNS.length; i++) {
+                dateFormats[i] = new SimpleDateFormat(TIKA_DATE_PATTERNS[i], Locale.US);
+            }
+            openConnections.add(this);
+        }
+
+        PreparedStatement getStatement(int rows) throws SQLException {
+            PreparedStatement statement = statements.get(rows);
+            if (statement == null) {
+                String sql = rows == 1 ? insert : buildMultiRowInsert(insert, rows);
+                statement = connection.prepareStatement(sql);
+                statements.put(rows, statement);
+            }
+            return statement;
+        }
+
+        void insert(List<Row> rows) throws SQLException {
+            try {
+                if (rows.size() == 1) {
+                    PreparedStatement statement = getStatement(1);
+                    statement.clearParameters();
+                    setRow(statement, 0, rows.get(0), dateFormats);
+                    statement.execute();
+                } else {
+                    insertBatch(rows);
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                try {
+                    connection.rollback();
+                } catch (SQLException ex) {
+                    LOGGER.warn("couldn't roll back", ex);
+                }
+                throw e;
+            }
+        }
+
+        private void insertBatch(List<Row> rows) throws SQLException {
+            //full statements go in one jdbc batch, the rest in its own statement
+            int full = rows.size() / maxRowsPerStatement * maxRowsPerStatement;
+            if (full > 0) {
+                PreparedStatement statement = getStatement(maxRowsPerStatement);
+                for (int start = 0; start < full; start += maxRowsPerStatement) {
+                    statement.clearParameters();
+                    int col = 0;
+                    for (int i = start; i < start + maxRowsPerStatement; i++) {
+                        col = setRow(statement, col, rows.get(i), dateFormats);
+                    }
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            if (full < rows.size()) {
+                PreparedStatement statement = getStatement(rows.size() - full);
+                statement.clearParameters();
+                int col = 0;
+                for (int i = full; i < rows.size(); i++) {
+                    col = setRow(statement, col, rows.get(i), dateFormats);
+                }
+                statement.execute();
+            }
+        }
+
+        void close() throws SQLException {
+            openConnections.remove(this);
             connection.close();
-        } catch (SQLException e) {
-            throw new IOException(e);
+        }
+
+        void closeQuietly() {
+            try {
+                close();
+            } catch (SQLException e) {
+                LOGGER.warn("couldn't close connection", e);
+            }
         }
     }
 
@@ -17,6 +17,8 @@
 package org.apache.tika.pipes.emitter.jdbc;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
@@ -30,17 +32,24 @@ import java.sql.Statement;
 import java.sql.Timestamp;
 import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.IOUtils;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import org.apache.tika.metadata.Metadata;
+import org.apache.tika.pipes.emitter.EmitData;
+import org.apache.tika.pipes.emitter.EmitKey;
 import org.apache.tika.pipes.emitter.Emitter;
 import org.apache.tika.pipes.emitter.EmitterManager;
+import org.apache.tika.pipes.emitter.TikaEmitterException;
 
 public class JDBCEmitterTest {
 
@@ -216,6 +225,93 @@ public class JDBCEmitterTest {
         assertEquals(1, rows);
     }
 
+    @Test
+    public void testMultiRowUpserts(@TempDir Path tmpDir) throws Exception {
+        Files.createDirectories(tmpDir.resolve("db"));
+        Path dbDir = tmpDir.resolve("db/h2");
+        Path config = tmpDir.resolve("tika-config.xml");
+        String connectionString = "jdbc:h2:file:" + dbDir.toAbsolutePath();
+
+        writeConfig("/configs/tika-config-jdbc-emitter-upsert.xml",
+                connectionString, config);
+
+        EmitterManager emitterManager = EmitterManager.load(config);
+        Emitter emitter = emitterManager.getEmitter();
+        //three threads, each emits 12 rows: two full statements and a remainder of 2
+        int numThreads = 3;
+        int rowsPerThread = 12;
+        ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < numThreads; t++) {
+                int thread = t;
+                futures.add(executorService.submit(() -> {
+                    List<EmitData> emitData = new ArrayList<>();
+                    for (int i = 0; i < rowsPerThread; i++) {
+                        int id = thread * rowsPerThread + i;
+                        emitData.add(new EmitData(new EmitKey("jdbc", "id" + id),
+                                Collections.singletonList(
+                                        m("k1", "true", "k2", "string" + id, "k3", "" + id))));
+                    }
+                    emitter.emit(emitData);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        //the same key again updates the row
+        emitter.emit("id0", Collections.singletonList(m("k1", "false", "k2", "updated")));
+        //a key that's twice in one statement is written once, the last row wins
+        int dup = numThreads * rowsPerThread;
+        emitter.emit(Arrays.asList(
+                new EmitData(new EmitKey("jdbc", "id" + dup),
+                        Collections.singletonList(m("k1", "true", "k2", "stale", "k3", "" + dup))),
+                new EmitData(new EmitKey("jdbc", "id" + (dup + 1)), Collections.singletonList(
+                        m("k1", "true", "k2", "string" + (dup + 1), "k3", "" + (dup + 1)))),
+                new EmitData(new EmitKey("jdbc", "id" + dup), Collections.singletonList(
+                        m("k1", "true", "k2", "string" + dup, "k3", "" + dup)))));
+
+        int rows = 0;
+        try (Connection connection = DriverManager.getConnection(connectionString)) {
+            try (Statement st = connection.createStatement()) {
+                try (ResultSet rs = st.executeQuery("select * from test order by k3")) {
+                    while (rs.next()) {
+                        if (rs.getString(1).equals("id0")) {
+                            assertEquals(false, rs.getBoolean(2));
+                            assertEquals("updated", rs.getString(3));
+                            assertNull(rs.getObject(4));
+                        } else {
+                            int id = rs.getInt(4);
+                            assertEquals("id" + id, rs.getString(1));
+                            assertEquals("string" + id, rs.getString(3));
+                        }
+                        rows++;
+                    }
+                }
+            }
+        }
+        assertEquals(numThreads * rowsPerThread + 2, rows);
+
+        ((JDBCEmitter) emitter).close();
+        assertThrows(TikaEmitterException.class, () -> emitter.emit("id0",
+                Collections.singletonList(m("k1", "false", "k2", "closed"))));
+    }
+
+    @Test
+    public void testBuildMultiRowInsert() throws Exception {
+        assertEquals("insert into test (a, b) values (?,?),(?,?),(?,?);",
+                JDBCEmitter.buildMultiRowInsert("insert into test (a, b) values (?,?);", 3));
+        assertEquals("insert into test (a, b) VALUES\n (?, ?),(?, ?) " +
+                        "on conflict (a) do update set b=excluded.b",
+                JDBCEmitter.buildMultiRowInsert("insert into test (a, b) VALUES\n (?, ?) " +
+                        "on conflict (a) do update set b=excluded.b", 2));
+        assertNull(JDBCEmitter.buildMultiRowInsert("insert into test (a, b) select ?, ?", 2));
+    }
+
     private void writeConfig(String srcConfig, String dbDir, Path config) throws IOException {
         String xml = IOUtils.resourceToString(srcConfig, StandardCharsets.UTF_8);
         xml = xml.replace("CONNECTION_STRING", dbDir);
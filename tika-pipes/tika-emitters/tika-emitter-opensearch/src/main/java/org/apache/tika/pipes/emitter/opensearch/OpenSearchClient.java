@@ -19,10 +19,14 @@ package org.apache.tika.pipes.emitter.opensearch;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.Reader;
 import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 import com.fasterxml.jackson.core.JsonFactory;
@@ -41,6 +45,7 @@ import org.slf4j.LoggerFactory;
 import org.apache.tika.client.TikaClientException;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.pipes.emitter.EmitData;
+import org.apache.tika.pipes.emitter.PartialEmitException;
 import org.apache.tika.utils.StringUtils;
 
 public class OpenSearchClient {
@@ -55,10 +60,31 @@ public class OpenSearchClient {
 
     private final MetadataToJsonWriter metadataToJsonWriter;
     private final String embeddedFileFieldName;
+    private final int maxRetries;
+    private final long retryBackoffMillis;
+
     protected OpenSearchClient(String openSearchUrl, HttpClient httpClient,
                                OpenSearchEmitter.AttachmentStrategy attachmentStrategy,
                                OpenSearchEmitter.UpdateStrategy updateStrategy,
                                String embeddedFileFieldName) {
+        this(openSearchUrl, httpClient, attachmentStrategy, updateStrategy, embeddedFileFieldName,
+                0, 0);
+    }
+
+    /**
+     * @param maxRetries         number of times to resend the documents of a bulk
+     *                           request that were rejected with a retryable status
+     *                           (429 or 5xx)
+     * @param retryBackoffMillis time to wait before the first retry, this doubles with
+     *                           every retry
+     */
+    protected OpenSearchClient(String openSearchUrl, HttpClient httpClient,
+                               OpenSearchEmitter.AttachmentStrategy attachmentStrategy,
+                               OpenSearchEmitter.UpdateStrategy updateStrategy,
+                               String embeddedFileFieldName, int maxRetries,
+                               long retryBackoffMillis) {
+        this.maxRetries = maxRetries;
+        this.retryBackoffMillis = retryBackoffMillis;
         this.openSearchUrl = openSearchUrl;
         this.httpClient = httpClient;
         this.attachmentStrategy = attachmentStrategy;
@@ -68,45 +94,121 @@ public class OpenSearchClient {
     }
 
 
-    public void emitDocuments(List<? extends EmitData> emitData) throws IOException, TikaClientException {
-        StringBuilder json = new StringBuilder();
+    /**
+     * Sends the documents in one bulk request. Documents that are rejected with
+     * a retryable status are resent up to maxRetries times.
+     *
+     * @throws PartialEmitException if some, but not all, of the documents could not be
+     *                              indexed
+     * @throws TikaClientException  if the request failed or none of the documents
+     *                              could be indexed
+     */
+    public void emitDocuments(List<? extends EmitData> emitData)
+            throws IOException, TikaClientException, PartialEmitException {
+        Bulk bulk = new Bulk();
         for (EmitData d : emitData) {
-            appendDoc(d.getEmitKey().getEmitKey(), d.getMetadataList(), json);
+            appendDoc(d.getEmitKey().getEmitKey(), d.getMetadataList(), bulk);
         }
-        emitJson(json);
+        emitBulk(bulk);
     }
 
-    private void emitJson(StringBuilder json) throws IOException, TikaClientException {
+    private void emitBulk(Bulk bulk)
+            throws IOException, TikaClientException, PartialEmitException {
         String requestUrl = openSearchUrl + "/_bulk";
-        JsonResponse response = postJson(requestUrl, json.toString());
-        if (response.getStatus() != 200) {
-            throw new TikaClientException(response.getMsg());
-        } else {
-            //if there's a single error, throw the full json.
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < bulk.actions.size(); i++) {
+            pending.add(i);
+        }
+        Set<String> failedEmitKeys = new HashSet<>();
+        String lastError = null;
+        long backoff = retryBackoffMillis;
+        for (int attempt = 0; ! pending.isEmpty(); attempt++) {
+            if (attempt > 0) {
+                LOG.debug("resending {} rejected documents, attempt {}", pending.size(), attempt);
+                sleep(backoff);
+                backoff *= 2;
+            }
+            StringBuilder json = new StringBuilder();
+            for (int i : pending) {
+                json.append(bulk.actions.get(i));
+            }
+            JsonResponse response = postJson(requestUrl, json.toString());
+            if (response.getStatus() != 200) {
+                throw new TikaClientException(response.getMsg());
+            }
             //this has not been thoroughly tested with versions of es < 7
             JsonNode errorNode = response.getJson().get("errors");
-            if (errorNode.asText().equals("true")) {
+            if (errorNode == null || ! errorNode.asText().equals("true")) {
+                break;
+            }
+            JsonNode items = response.getJson().get("items");
+            if (items == null || items.size() != pending.size()) {
+                //can't tell which documents failed, throw the full json.
                 throw new TikaClientException(response.getJson().toString());
             }
+            List<Integer> retry = new ArrayList<>();
+            for (int j = 0; j < items.size(); j++) {
+                //each item is {"index" : {...}} or {"update" : {...}}
+                JsonNode item = items.get(j).elements().next();
+                int status = item.path("status").asInt();
+                if (status >= 200 && status < 300) {
+                    continue;
+                }
+                if (attempt < maxRetries && isRetryable(status)) {
+                    retry.add(pending.get(j));
+                } else {
+                    failedEmitKeys.add(bulk.emitKeys.get(pending.get(j)));
+                    lastError = item.toString();
+                }
+            }
+            pending = retry;
+        }
+        if (failedEmitKeys.isEmpty()) {
+            return;
+        }
+        if (failedEmitKeys.containsAll(bulk.emitKeys)) {
+            throw new TikaClientException("failed to index all documents; last error: " +
+                    lastError);
         }
+        throw new PartialEmitException("failed to index " + failedEmitKeys.size() +
+                " documents; last error: " + lastError, failedEmitKeys);
     }
 
+    private static boolean isRetryable(int status) {
+        //too many requests or a problem on the cluster
+        return status == 429 || status >= 500;
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting to resend documents");
+        }
+    }
 
     public void emitDocument(String emitKey, List<Metadata> metadataList) throws IOException,
             TikaClientException {
 
-        StringBuilder json = new StringBuilder();
-        appendDoc(emitKey, metadataList, json);
-        emitJson(json);
+        Bulk bulk = new Bulk();
+        appendDoc(emitKey, metadataList, bulk);
+        try {
+            emitBulk(bulk);
+        } catch (PartialEmitException e) {
+            //can't happen, all actions have the same emit key
+            throw new TikaClientException(e.getMessage());
+        }
     }
 
-    private void appendDoc(String emitKey, List<Metadata> metadataList, StringBuilder json)
+    private void appendDoc(String emitKey, List<Metadata> metadataList, Bulk bulk)
             throws IOException {
         int i = 0;
         String routing = (attachmentStrategy == OpenSearchEmitter.AttachmentStrategy.PARENT_CHILD) ?
                 emitKey : null;
 
         for (Metadata metadata : metadataList) {
+            StringBuilder json = new StringBuilder();
             StringBuilder id = new StringBuilder(emitKey);
             if (i > 0) {
                 id.append("-").append(UUID.randomUUID());
@@ -120,10 +222,21 @@ public class OpenSearchClient {
                         embeddedFileFieldName));
             }
             json.append("\n");
+            bulk.actions.add(json.toString());
+            bulk.emitKeys.add(emitKey);
             i++;
         }
     }
 
+    /**
+     * The actions of a bulk request, one per metadata object, and the emit
+     * keys that they belong to.
+     */
+    private static class Bulk {
+        private final List<String> actions = new ArrayList<>();
+        private final List<String> emitKeys = new ArrayList<>();
+    }
+
     //Only here for testing. These may disappear without notice in the future.
     protected static String metadataToJsonContainerInsert(Metadata metadata,
                                                     OpenSearchEmitter.AttachmentStrategy attachmentStrategy)
@@ -64,6 +64,8 @@ public class OpenSearchEmitter extends AbstractEmitter implements Initializable
     private OpenSearchClient openSearchClient;
     private final HttpClientFactory httpClientFactory;
     private String embeddedFileFieldName = DEFAULT_EMBEDDED_FILE_FIELD_NAME;
+    private int maxRetries = 3;
+    private long retryBackoffMillis = 100;
 
     public OpenSearchEmitter() throws TikaConfigException {
         httpClientFactory = new HttpClientFactory();
@@ -204,6 +206,30 @@ public class OpenSearchEmitter extends AbstractEmitter implements Initializable
         }
     }
 
+    /**
+     * Number of times to resend documents that the cluster rejected with a
+     * retryable status (429 or 5xx) in a bulk request. Documents that still fail
+     * are reported with a {@link org.apache.tika.pipes.emitter.PartialEmitException}
+     * if the rest of the batch was indexed. Default: 3
+     *
+     * @param maxRetries
+     */
+    @Field
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Time to wait before the first resend, this doubles with every resend.
+     * Default: 100
+     *
+     * @param retryBackoffMillis
+     */
+    @Field
+    public void setRetryBackoffMillis(long retryBackoffMillis) {
+        this.retryBackoffMillis = retryBackoffMillis;
+    }
+
     /**
      * If using the {@link AttachmentStrategy#PARENT_CHILD}, this is the field name
      * used to store the child documents.  Note that we artificially flatten all embedded
@@ -226,7 +252,7 @@ public class OpenSearchEmitter extends AbstractEmitter implements Initializable
             openSearchClient =
                     new OpenSearchClient(openSearchUrl,
                             httpClientFactory.build(), attachmentStrategy, updateStrategy,
-                            embeddedFileFieldName);
+                            embeddedFileFieldName, maxRetries, retryBackoffMillis);
         }
     }
 
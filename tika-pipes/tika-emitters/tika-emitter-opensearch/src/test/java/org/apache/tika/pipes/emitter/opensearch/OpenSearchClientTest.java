@@ -16,10 +16,23 @@
  */
 package org.apache.tika.pipes.emitter.opensearch;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 
 import org.apache.tika.TikaTest;
+import org.apache.tika.client.TikaClientException;
 import org.apache.tika.metadata.Metadata;
+import org.apache.tika.pipes.emitter.EmitData;
+import org.apache.tika.pipes.emitter.EmitKey;
+import org.apache.tika.pipes.emitter.PartialEmitException;
 
 public class OpenSearchClientTest extends TikaTest {
 
@@ -49,4 +62,65 @@ public class OpenSearchClientTest extends TikaTest {
         }
 
     }
+
+    @Test
+    public void testPartialFailures() throws Exception {
+        //doc "b" is rejected once with a 429, doc "c" is rejected for good
+        List<String> responses = new ArrayList<>(Arrays.asList(
+                "{\"errors\":true,\"items\":[" + item(201) + "," + item(429) + "," +
+                        item(400) + "]}",
+                "{\"errors\":false,\"items\":[" + item(201) + "]}"));
+        List<String> requests = new ArrayList<>();
+        OpenSearchClient client = new MockOpenSearchClient(responses, requests);
+
+        PartialEmitException e = assertThrows(PartialEmitException.class,
+                () -> client.emitDocuments(Arrays.asList(emitData("a"), emitData("b"),
+                        emitData("c"))));
+        assertEquals(Collections.singleton("c"), e.getFailedEmitKeys());
+        assertEquals(2, requests.size());
+        //only "b" is resent
+        assertEquals(2, requests.get(1).split("\n").length);
+        assertContains("\"b\"", requests.get(1));
+
+        //nothing was indexed
+        responses.add("{\"errors\":true,\"items\":[" + item(400) + "]}");
+        assertThrows(TikaClientException.class,
+                () -> client.emitDocuments(Collections.singletonList(emitData("d"))));
+    }
+
+    private static String item(int status) {
+        return "{\"index\":{\"status\":" + status + "}}";
+    }
+
+    private static EmitData emitData(String emitKey) {
+        Metadata metadata = new Metadata();
+        metadata.set("title", emitKey);
+        return new EmitData(new EmitKey("opensearch", emitKey),
+                Collections.singletonList(metadata));
+    }
+
+    private static class MockOpenSearchClient extends OpenSearchClient {
+
+        private final List<String> responses;
+        private final List<String> requests;
+
+        MockOpenSearchClient(List<String> responses, List<String> requests) {
+            super("http://localhost:9200/index", null,
+                    OpenSearchEmitter.AttachmentStrategy.SEPARATE_DOCUMENTS,
+                    OpenSearchEmitter.UpdateStrategy.OVERWRITE,
+                    OpenSearchEmitter.DEFAULT_EMBEDDED_FILE_FIELD_NAME, 3, 1);
+            this.responses = responses;
+            this.requests = requests;
+        }
+
+        @Override
+        public JsonResponse postJson(String url, String json) {
+            requests.add(json);
+            try {
+                return new JsonResponse(200, new ObjectMapper().readTree(responses.remove(0)));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
 }
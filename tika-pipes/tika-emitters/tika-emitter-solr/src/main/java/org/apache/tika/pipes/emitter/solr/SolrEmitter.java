@@ -21,6 +21,7 @@ import static org.apache.tika.config.TikaConfig.mustNotBeEmpty;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -31,6 +32,7 @@ import org.apache.solr.client.solrj.impl.CloudSolrClient;
 import org.apache.solr.client.solrj.impl.LBHttpSolrClient;
 import org.apache.solr.client.solrj.request.UpdateRequest;
 import org.apache.solr.client.solrj.response.UpdateResponse;
+import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrInputDocument;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,6 +46,7 @@ import org.apache.tika.exception.TikaConfigException;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.pipes.emitter.AbstractEmitter;
 import org.apache.tika.pipes.emitter.EmitData;
+import org.apache.tika.pipes.emitter.PartialEmitException;
 import org.apache.tika.pipes.emitter.TikaEmitterException;
 
 
@@ -127,18 +130,69 @@ public class SolrEmitter extends AbstractEmitter implements Initializable {
         }
     }
 
+    /**
+     * Emits the batch with one update request. If Solr rejects the request
+     * as a bad request, the batch is split in halves and each half is retried,
+     * so that one bad document doesn't cost the rest of the batch. Other
+     * failures (connection problems, server errors) fail the whole batch.
+     *
+     * @throws PartialEmitException if some, but not all, of the documents were rejected
+     */
     @Override
     public void emit(List<? extends EmitData> batch) throws IOException, TikaEmitterException {
         if (batch == null || batch.size() == 0) {
             LOG.warn("batch is null or empty");
             return;
         }
+        //a list, not a set, so that documents with the same key are counted
+        List<String> failedEmitKeys = new ArrayList<>();
+        TikaEmitterException lastException = emitOrSplit(batch, failedEmitKeys);
+        if (lastException == null) {
+            return;
+        }
+        if (failedEmitKeys.size() == batch.size()) {
+            throw lastException;
+        }
+        throw new PartialEmitException("Solr rejected " + failedEmitKeys.size() +
+                " documents: " + lastException.getMessage(), new HashSet<>(failedEmitKeys));
+    }
+
+    /**
+     * @return the last exception if any of the documents were rejected, or
+     * <code>null</code> if all were added
+     */
+    private TikaEmitterException emitOrSplit(List<? extends EmitData> batch,
+                                             List<String> failedEmitKeys)
+            throws IOException, TikaEmitterException {
         List<SolrInputDocument> docsToUpdate = new ArrayList<>();
         for (EmitData d : batch) {
             addMetadataAsSolrInputDocuments(d.getEmitKey().getEmitKey(), d.getMetadataList(),
                     docsToUpdate);
         }
-        emitSolrBatch(docsToUpdate);
+        try {
+            emitSolrBatch(docsToUpdate);
+            return null;
+        } catch (TikaEmitterException e) {
+            if (! isBadRequest(e)) {
+                throw e;
+            }
+            if (batch.size() == 1) {
+                failedEmitKeys.add(batch.get(0).getEmitKey().getEmitKey());
+                return e;
+            }
+            int mid = batch.size() / 2;
+            LOG.debug("bad request for a batch of {}, retrying in halves", batch.size());
+            TikaEmitterException first = emitOrSplit(batch.subList(0, mid), failedEmitKeys);
+            TikaEmitterException second =
+                    emitOrSplit(batch.subList(mid, batch.size()), failedEmitKeys);
+            return second != null ? second : first;
+        }
+    }
+
+    private static boolean isBadRequest(TikaEmitterException e) {
+        Throwable cause = e.getCause();
+        return cause instanceof SolrException &&
+                ((SolrException) cause).code() == SolrException.ErrorCode.BAD_REQUEST.code;
     }
 
     private void emitSolrBatch(List<SolrInputDocument> docsToUpdate)
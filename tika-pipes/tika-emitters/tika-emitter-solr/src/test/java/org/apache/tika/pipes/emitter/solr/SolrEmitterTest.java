@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.pipes.emitter.solr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.util.NamedList;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.pipes.emitter.EmitData;
+import org.apache.tika.pipes.emitter.EmitKey;
+import org.apache.tika.pipes.emitter.PartialEmitException;
+import org.apache.tika.pipes.emitter.TikaEmitterException;
+
+public class SolrEmitterTest {
+
+    private final List<List<String>> requests = new ArrayList<>();
+    private final List<String> added = new ArrayList<>();
+    private SolrEmitter emitter;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        emitter = new SolrEmitter();
+        emitter.setSolrCollection("collection");
+        Field client = SolrEmitter.class.getDeclaredField("solrClient");
+        client.setAccessible(true);
+        client.set(emitter, new MockSolrClient());
+    }
+
+    @Test
+    public void testBadDocumentSplitsBatch() throws Exception {
+        List<EmitData> batch = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            batch.add(emitData(i == 5 ? "bad" : "doc" + i));
+        }
+        PartialEmitException e =
+                assertThrows(PartialEmitException.class, () -> emitter.emit(batch));
+        assertEquals(Collections.singleton("bad"), e.getFailedEmitKeys());
+        assertEquals(7, added.size());
+        //the whole batch, then halves down to the bad document:
+        //8 -> 4 + 4 -> 2 + 2 -> 1 + 1
+        assertEquals(7, requests.size());
+        assertEquals(8, requests.get(0).size());
+        assertTrue(requests.contains(Collections.singletonList("bad")));
+    }
+
+    @Test
+    public void testAllBad() throws Exception {
+        List<EmitData> batch = new ArrayList<>();
+        batch.add(emitData("bad"));
+        batch.add(emitData("bad"));
+        TikaEmitterException e = assertThrows(TikaEmitterException.class,
+                () -> emitter.emit(batch));
+        assertEquals(TikaEmitterException.class, e.getClass());
+        assertEquals(0, added.size());
+    }
+
+    @Test
+    public void testGoodBatch() throws Exception {
+        List<EmitData> batch = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            batch.add(emitData("doc" + i));
+        }
+        emitter.emit(batch);
+        assertEquals(1, requests.size());
+        assertEquals(4, added.size());
+    }
+
+    private static EmitData emitData(String emitKey) {
+        return new EmitData(new EmitKey("solr", emitKey),
+                Collections.singletonList(new Metadata()));
+    }
+
+    /**
+     * Rejects any update request with a document whose id is "bad",
+     * as Solr does for a document that doesn't match the schema.
+     */
+    private class MockSolrClient extends SolrClient {
+
+        @Override
+        public NamedList<Object> request(SolrRequest request, String collection) {
+            List<String> ids = new ArrayList<>();
+            for (SolrInputDocument doc : ((UpdateRequest) request).getDocuments()) {
+                ids.add((String) doc.getFieldValue("id"));
+            }
+            requests.add(ids);
+            if (ids.contains("bad")) {
+                throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "bad document");
+            }
+            added.addAll(ids);
+            return new NamedList<>();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
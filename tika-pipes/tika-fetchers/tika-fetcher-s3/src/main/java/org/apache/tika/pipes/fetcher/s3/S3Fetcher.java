@@ -37,6 +37,7 @@ import com.amazonaws.client.builder.AwsClientBuilder;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
 import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3Object;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -54,6 +55,7 @@ import org.apache.tika.io.TikaInputStream;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.pipes.fetcher.AbstractFetcher;
 import org.apache.tika.pipes.fetcher.RangeFetcher;
+import org.apache.tika.pipes.fetcher.RangeFetcherChannel;
 import org.apache.tika.utils.StringUtils;
 
 /**
@@ -82,15 +84,49 @@ public class S3Fetcher extends AbstractFetcher implements Initializable, RangeFe
     private long sleepBeforeRetryMillis = 30000;
     private long maxLength = -1;
     private boolean pathStyleAccessEnabled = false;
+    private boolean rangeBacked = false;
+    private int rangeBlockSize = RangeFetcherChannel.DEFAULT_BLOCK_SIZE;
+    private int rangeMaxBlocks = RangeFetcherChannel.DEFAULT_MAX_BLOCKS;
+    private int rangeReadAheadBlocks = RangeFetcherChannel.DEFAULT_READ_AHEAD_BLOCKS;
 
     @Override
     public InputStream fetch(String fetchKey, Metadata metadata) throws TikaException, IOException {
+        if (rangeBacked) {
+            return fetchRangeBacked(fetchKey, metadata);
+        }
         return fetch(fetchKey, -1, -1, metadata);
     }
 
+    /**
+     * Only reads the object's metadata and returns a TikaInputStream over a
+     * {@link RangeFetcherChannel} that fetches the blocks of the object
+     * as they are read.
+     */
+    private InputStream fetchRangeBacked(String fetchKey, Metadata metadata) throws IOException {
+        String theFetchKey = StringUtils.isBlank(prefix) ? fetchKey : prefix + fetchKey;
+        long start = System.currentTimeMillis();
+        ObjectMetadata objectMetadata;
+        try {
+            synchronized (clientLock) {
+                objectMetadata = s3Client.getObjectMetadata(bucket, theFetchKey);
+            }
+        } catch (AmazonClientException e) {
+            throw new IOException(e);
+        }
+        long length = updateMetadata(objectMetadata, metadata);
+        LOGGER.debug("took {} ms to fetch file's metadata", System.currentTimeMillis() - start);
+        return TikaInputStream.get(new RangeFetcherChannel(new BlockFetcher(), fetchKey, length,
+                rangeBlockSize, rangeMaxBlocks, rangeReadAheadBlocks), metadata);
+    }
+
     @Override
     public InputStream fetch(String fetchKey, long startRange, long endRange, Metadata metadata)
             throws TikaException, IOException {
+        return fetch(fetchKey, startRange, endRange, metadata, spoolToTemp);
+    }
+
+    private InputStream fetch(String fetchKey, long startRange, long endRange, Metadata metadata,
+                              boolean spool) throws TikaException, IOException {
         String theFetchKey = StringUtils.isBlank(prefix) ? fetchKey : prefix + fetchKey;
 
         if (LOGGER.isDebugEnabled()) {
@@ -118,7 +154,7 @@ public class S3Fetcher extends AbstractFetcher implements Initializable, RangeFe
             }
             try {
                 long start = System.currentTimeMillis();
-                InputStream is = _fetch(theFetchKey, metadata, startRange, endRange);
+                InputStream is = _fetch(theFetchKey, metadata, startRange, endRange, spool);
                 long elapsed = System.currentTimeMillis() - start;
                 LOGGER.debug("total to fetch {}", elapsed);
                 return is;
@@ -137,7 +173,8 @@ public class S3Fetcher extends AbstractFetcher implements Initializable, RangeFe
     }
 
     private InputStream _fetch(String fetchKey, Metadata metadata,
-                               Long startRange, Long endRange) throws IOException {
+                               Long startRange, Long endRange, boolean spool)
+            throws IOException {
         TemporaryResources tmp = null;
         try {
             long start = System.currentTimeMillis();
@@ -150,22 +187,10 @@ public class S3Fetcher extends AbstractFetcher implements Initializable, RangeFe
             synchronized (clientLock) {
                 s3Object = s3Client.getObject(objectRequest);
             }
-            long length = s3Object.getObjectMetadata().getContentLength();
-            metadata.set(Metadata.CONTENT_LENGTH, Long.toString(length));
-            if (maxLength > -1) {
-                if (length > maxLength) {
-                    throw new FileTooLongException(length, maxLength);
-                }
-            }
+            updateMetadata(s3Object.getObjectMetadata(), metadata);
             LOGGER.debug("took {} ms to fetch file's metadata", System.currentTimeMillis() - start);
 
-            if (extractUserMetadata) {
-                for (Map.Entry<String, String> e : s3Object.getObjectMetadata().getUserMetadata()
-                        .entrySet()) {
-                    metadata.add(PREFIX + ":" + e.getKey(), e.getValue());
-                }
-            }
-            if (!spoolToTemp) {
+            if (!spool) {
                 return TikaInputStream.get(s3Object.getObjectContent());
             } else {
                 start = System.currentTimeMillis();
@@ -185,11 +210,109 @@ public class S3Fetcher extends AbstractFetcher implements Initializable, RangeFe
         }
     }
 
+    /**
+     * Fetches the blocks of a {@link RangeFetcherChannel}. The blocks are
+     * buffered by the channel, so they're never spooled to temp, whatever
+     * {@link #setSpoolToTemp(boolean)} says.
+     */
+    private class BlockFetcher implements RangeFetcher {
+
+        @Override
+        public String getName() {
+            return S3Fetcher.this.getName();
+        }
+
+        @Override
+        public InputStream fetch(String fetchKey, Metadata metadata)
+                throws TikaException, IOException {
+            return S3Fetcher.this.fetch(fetchKey, -1, -1, metadata, false);
+        }
+
+        @Override
+        public InputStream fetch(String fetchKey, long startOffset, long endOffset,
+                                 Metadata metadata) throws TikaException, IOException {
+            return S3Fetcher.this.fetch(fetchKey, startOffset, endOffset, metadata, false);
+        }
+    }
+
+    /**
+     * @return the length of the object
+     */
+    private long updateMetadata(ObjectMetadata objectMetadata, Metadata metadata)
+            throws FileTooLongException {
+        long length = objectMetadata.getContentLength();
+        metadata.set(Metadata.CONTENT_LENGTH, Long.toString(length));
+        if (maxLength > -1) {
+            if (length > maxLength) {
+                throw new FileTooLongException(length, maxLength);
+            }
+        }
+        if (extractUserMetadata) {
+            for (Map.Entry<String, String> e : objectMetadata.getUserMetadata().entrySet()) {
+                metadata.add(PREFIX + ":" + e.getKey(), e.getValue());
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Whether to copy fetched objects, including explicit ranges, to a temp
+     * file before they're parsed. The blocks fetched for
+     * {@link #setRangeBacked(boolean)} are never spooled.
+     *
+     * @param spoolToTemp
+     */
     @Field
     public void setSpoolToTemp(boolean spoolToTemp) {
         this.spoolToTemp = spoolToTemp;
     }
 
+    /**
+     * If <code>true</code>, {@link #fetch(String, Metadata)} doesn't download
+     * the object up front. Instead, blocks of the object are fetched with range
+     * requests as the parser reads them, so that parsers that only need part of
+     * a large object (e.g. the central directory of a zip) download only that part.
+     * This takes precedence over {@link #setSpoolToTemp(boolean)}.
+     *
+     * @param rangeBacked
+     */
+    @Field
+    public void setRangeBacked(boolean rangeBacked) {
+        this.rangeBacked = rangeBacked;
+    }
+
+    /**
+     * Number of bytes per range request if {@link #setRangeBacked(boolean)} is used
+     *
+     * @param rangeBlockSize
+     */
+    @Field
+    public void setRangeBlockSize(int rangeBlockSize) {
+        this.rangeBlockSize = rangeBlockSize;
+    }
+
+    /**
+     * Maximum number of blocks per object to keep in memory if
+     * {@link #setRangeBacked(boolean)} is used
+     *
+     * @param rangeMaxBlocks
+     */
+    @Field
+    public void setRangeMaxBlocks(int rangeMaxBlocks) {
+        this.rangeMaxBlocks = rangeMaxBlocks;
+    }
+
+    /**
+     * Number of extra blocks to fetch with each range request when the
+     * object is being read sequentially, if {@link #setRangeBacked(boolean)} is used
+     *
+     * @param rangeReadAheadBlocks
+     */
+    @Field
+    public void setRangeReadAheadBlocks(int rangeReadAheadBlocks) {
+        this.rangeReadAheadBlocks = rangeReadAheadBlocks;
+    }
+
     @Field
     public void setRegion(String region) {
         this.region = region;
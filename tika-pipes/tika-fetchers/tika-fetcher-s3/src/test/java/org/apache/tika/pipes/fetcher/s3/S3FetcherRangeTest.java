@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.pipes.fetcher.s3;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+
+public class S3FetcherRangeTest {
+
+    private final byte[] bytes = new byte[100000];
+    private final List<long[]> requests = new ArrayList<>();
+    private S3Fetcher fetcher;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        fetcher = new S3Fetcher();
+        fetcher.setBucket("bucket");
+        Field client = S3Fetcher.class.getDeclaredField("s3Client");
+        client.setAccessible(true);
+        client.set(fetcher, new MockS3());
+    }
+
+    @Test
+    public void testRangeIsSpooled() throws Exception {
+        fetcher.setSpoolToTemp(true);
+        try (InputStream is = fetcher.fetch("key", 10, 19, new Metadata())) {
+            assertTrue(((TikaInputStream) is).hasFile());
+            assertArrayEquals(Arrays.copyOfRange(bytes, 10, 20), IOUtils.toByteArray(is));
+        }
+        fetcher.setSpoolToTemp(false);
+        try (InputStream is = fetcher.fetch("key", 10, 19, new Metadata())) {
+            assertFalse(((TikaInputStream) is).hasFile());
+            assertArrayEquals(Arrays.copyOfRange(bytes, 10, 20), IOUtils.toByteArray(is));
+        }
+    }
+
+    @Test
+    public void testRangeBacked() throws Exception {
+        fetcher.setSpoolToTemp(true);
+        fetcher.setRangeBacked(true);
+        fetcher.setRangeBlockSize(16384);
+        Metadata metadata = new Metadata();
+        try (TikaInputStream tis = (TikaInputStream) fetcher.fetch("key", metadata)) {
+            assertEquals(Integer.toString(bytes.length), metadata.get(Metadata.CONTENT_LENGTH));
+            assertNotNull(tis.getSeekableByteChannel());
+            //the blocks are buffered by the channel, not spooled
+            assertFalse(tis.hasFile());
+            assertArrayEquals(bytes, IOUtils.toByteArray(tis));
+        }
+        assertFalse(requests.isEmpty());
+        for (long[] range : requests) {
+            assertNotNull(range);
+        }
+    }
+
+    private class MockS3 extends AbstractAmazonS3 {
+
+        @Override
+        public ObjectMetadata getObjectMetadata(String bucketName, String key) {
+            ObjectMetadata objectMetadata = new ObjectMetadata();
+            objectMetadata.setContentLength(bytes.length);
+            return objectMetadata;
+        }
+
+        @Override
+        public S3Object getObject(GetObjectRequest getObjectRequest) {
+            long[] range = getObjectRequest.getRange();
+            requests.add(range);
+            int start = range == null ? 0 : (int) range[0];
+            int end = range == null ? bytes.length : (int) Math.min(bytes.length, range[1] + 1);
+            ObjectMetadata objectMetadata = new ObjectMetadata();
+            objectMetadata.setContentLength(end - start);
+            S3Object s3Object = new S3Object();
+            s3Object.setObjectMetadata(objectMetadata);
+            s3Object.setObjectContent(new ByteArrayInputStream(bytes, start, end - start));
+            return s3Object;
+        }
+    }
+}
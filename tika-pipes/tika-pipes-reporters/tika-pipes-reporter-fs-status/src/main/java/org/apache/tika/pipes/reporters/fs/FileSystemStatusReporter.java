@@ -72,6 +72,7 @@ public class FileSystemStatusReporter extends PipesReporter
 
     Thread reporterThread;
     private ConcurrentHashMap<PipesResult.STATUS, LongAdder> counts = new ConcurrentHashMap<>();
+    private final LongAdder duplicates = new LongAdder();
     private AsyncStatus asyncStatus = new AsyncStatus();
 
     private TotalCountResult totalCountResult = new TotalCountResult(0,
@@ -113,7 +114,7 @@ public class FileSystemStatusReporter extends PipesReporter
     private synchronized void report(AsyncStatus.ASYNC_STATUS status) {
         Map<PipesResult.STATUS, Long> localCounts = new HashMap<>();
         counts.entrySet().forEach( e -> localCounts.put(e.getKey(), e.getValue().longValue()));
-        asyncStatus.update(localCounts, totalCountResult, status);
+        asyncStatus.update(localCounts, duplicates.longValue(), totalCountResult, status);
         try (Writer writer = Files.newBufferedWriter(statusFile, StandardCharsets.UTF_8)) {
             objectMapper.writeValue(writer, asyncStatus);
         } catch (IOException e) {
@@ -181,6 +182,9 @@ public class FileSystemStatusReporter extends PipesReporter
     public void report(FetchEmitTuple t, PipesResult result, long elapsed) {
         counts.computeIfAbsent(result.getStatus(),
                 k -> new LongAdder()).increment();
+        if (result.isDuplicate()) {
+            duplicates.increment();
+        }
     }
 
     @Override
@@ -84,6 +84,9 @@ public class TestFileSystemStatusReporter {
         readerThread.start();
 
         Map<PipesResult.STATUS, Long> total = runBatch(reporter, 10, 200);
+        reporter.report(PipesIterator.COMPLETED_SEMAPHORE, PipesResult.EMIT_SUCCESS_DUPLICATE,
+                10);
+        total.merge(PipesResult.STATUS.EMIT_SUCCESS, 1L, Long::sum);
 
 
         readerThread.interrupt();
@@ -97,6 +100,7 @@ public class TestFileSystemStatusReporter {
             assertTrue(map.containsKey(e.getKey()), e.getKey().toString());
             assertEquals(e.getValue(), map.get(e.getKey()), e.getKey().toString());
         }
+        assertEquals(1, asyncStatus.getDuplicateCount());
         assertEquals(AsyncStatus.ASYNC_STATUS.COMPLETED, asyncStatus.getAsyncStatus());
         assertEquals(30000, asyncStatus.getTotalCountResult().getTotalCount());
         assertEquals(TotalCountResult.STATUS.COMPLETED, asyncStatus.getTotalCountResult().getStatus());
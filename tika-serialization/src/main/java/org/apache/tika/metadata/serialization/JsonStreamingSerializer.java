@@ -38,18 +38,33 @@ public class JsonStreamingSerializer implements AutoCloseable {
     }
 
     public void add(Metadata metadata) throws IOException {
+        startArray();
+        String[] names = metadata.names();
+        Arrays.sort(names);
+        JsonMetadata.writeMetadataObject(metadata, jsonGenerator, false);
+    }
+
+    /**
+     * Flushes the objects added so far to the underlying writer, e.g. so that
+     * a client can read them while the rest are still being parsed.
+     */
+    public void flush() throws IOException {
+        startArray();
+        jsonGenerator.flush();
+    }
+
+    private void startArray() throws IOException {
         if (!hasStartedArray) {
             jsonGenerator = new JsonFactory().createGenerator(writer);
             jsonGenerator.writeStartArray();
             hasStartedArray = true;
         }
-        String[] names = metadata.names();
-        Arrays.sort(names);
-        JsonMetadata.writeMetadataObject(metadata, jsonGenerator, false);
     }
 
     @Override
     public void close() throws IOException {
+        //write an empty array if nothing was added
+        startArray();
         jsonGenerator.writeEndArray();
         jsonGenerator.flush();
         jsonGenerator.close();
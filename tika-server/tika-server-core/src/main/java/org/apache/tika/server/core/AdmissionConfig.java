@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.server.core;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.tika.config.Initializable;
+import org.apache.tika.config.InitializableProblemHandler;
+import org.apache.tika.config.Param;
+import org.apache.tika.exception.TikaConfigException;
+
+/**
+ * Limits on the requests that the server accepts at the same time. A request
+ * that is over a limit is refused with a 503 and a Retry-After header, before
+ * its body is read, rather than risking an OOM that restarts the forked
+ * process and drops every request in flight. All limits are off by default.
+ * <p>
+ * The cost of a request is its Content-Length, or
+ * {@link #getUnknownLengthBytes()} if it has none, times the factor of its
+ * Content-Type in {@link #getCostFactors()}.
+ */
+public class AdmissionConfig implements Initializable {
+
+    public static final long DEFAULT_UNKNOWN_LENGTH_BYTES = 1024 * 1024;
+
+    private long maxInFlightBytes = -1;
+    private double minFreeHeapRatio = -1;
+    private int maxRequestsPerClient = -1;
+    private String clientHeader = null;
+    private int retryAfterSeconds = 5;
+    private long unknownLengthBytes = DEFAULT_UNKNOWN_LENGTH_BYTES;
+    private Map<String, Double> costFactors = Collections.emptyMap();
+
+    /**
+     * @return whether any limit is set
+     */
+    public boolean isActive() {
+        return maxInFlightBytes > 0 || minFreeHeapRatio > 0 || maxRequestsPerClient > 0;
+    }
+
+    public long getMaxInFlightBytes() {
+        return maxInFlightBytes;
+    }
+
+    /**
+     * Maximum total cost of the requests in flight. A request is always
+     * accepted if no other request is in flight. Default: -1, no limit
+     *
+     * @param maxInFlightBytes
+     */
+    public void setMaxInFlightBytes(long maxInFlightBytes) {
+        this.maxInFlightBytes = maxInFlightBytes;
+    }
+
+    public double getMinFreeHeapRatio() {
+        return minFreeHeapRatio;
+    }
+
+    /**
+     * Share of the max heap, e.g. 0.2, that must still be free after the
+     * costs of the requests in flight and of the new request are subtracted
+     * from the free heap. Like {@link #setMaxInFlightBytes(long)}, this
+     * doesn't apply if no other request is in flight. It doesn't apply either
+     * if the JVM doesn't report a max heap. Default: -1, no limit
+     *
+     * @param minFreeHeapRatio
+     */
+    public void setMinFreeHeapRatio(double minFreeHeapRatio) {
+        this.minFreeHeapRatio = minFreeHeapRatio;
+    }
+
+    public int getMaxRequestsPerClient() {
+        return maxRequestsPerClient;
+    }
+
+    /**
+     * Maximum number of requests in flight from one client. Default: -1, no
+     * limit
+     *
+     * @param maxRequestsPerClient
+     */
+    public void setMaxRequestsPerClient(int maxRequestsPerClient) {
+        this.maxRequestsPerClient = maxRequestsPerClient;
+    }
+
+    public String getClientHeader() {
+        return clientHeader;
+    }
+
+    /**
+     * Header that identifies the client, e.g. <code>X-Forwarded-For</code>
+     * behind a proxy. Only set this if the proxy overwrites the header; the
+     * clients could otherwise pick their own quotas. Default: none, the
+     * remote address
+     *
+     * @param clientHeader
+     */
+    public void setClientHeader(String clientHeader) {
+        this.clientHeader = clientHeader;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public void setRetryAfterSeconds(int retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getUnknownLengthBytes() {
+        return unknownLengthBytes;
+    }
+
+    /**
+     * Estimated length of a request without a Content-Length, e.g. a chunked
+     * upload. Default: 1MB
+     *
+     * @param unknownLengthBytes
+     */
+    public void setUnknownLengthBytes(long unknownLengthBytes) {
+        this.unknownLengthBytes = unknownLengthBytes;
+    }
+
+    public Map<String, Double> getCostFactors() {
+        return costFactors;
+    }
+
+    /**
+     * Factors by which the length of a request is multiplied by its media
+     * type, e.g. <code>application/pdf</code>, or by a prefix that ends in a
+     * slash, e.g. <code>image/</code>. The first match wins. Default factor: 1
+     *
+     * @param costFactors
+     */
+    public void setCostFactors(Map<String, String> costFactors) throws TikaConfigException {
+        Map<String, Double> factors = new LinkedHashMap<>();
+        for (Map.Entry<String, String> e : costFactors.entrySet()) {
+            try {
+                factors.put(e.getKey().trim().toLowerCase(Locale.US),
+                        Double.parseDouble(e.getValue().trim()));
+            } catch (NumberFormatException ex) {
+                throw new TikaConfigException("bad cost factor for " + e.getKey(), ex);
+            }
+        }
+        this.costFactors = Collections.unmodifiableMap(factors);
+    }
+
+    /**
+     * @param mediaType lower case base media type or <code>null</code>
+     * @return the cost factor of the media type
+     */
+    public double getCostFactor(String mediaType) {
+        if (mediaType != null) {
+            for (Map.Entry<String, Double> e : costFactors.entrySet()) {
+                String key = e.getKey();
+                if (key.endsWith("/") ? mediaType.startsWith(key) : mediaType.equals(key)) {
+                    return e.getValue();
+                }
+            }
+        }
+        return 1;
+    }
+
+    @Override
+    public void initialize(Map<String, Param> params) throws TikaConfigException {
+
+    }
+
+    @Override
+    public void checkInitialization(InitializableProblemHandler problemHandler)
+            throws TikaConfigException {
+        if (minFreeHeapRatio >= 1) {
+            throw new TikaConfigException("minFreeHeapRatio must be less than 1");
+        }
+        if (retryAfterSeconds < 0) {
+            throw new TikaConfigException("retryAfterSeconds must be >= 0");
+        }
+    }
+}
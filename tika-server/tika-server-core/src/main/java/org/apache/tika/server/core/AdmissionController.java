@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.server.core;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.tika.mime.MediaType;
+
+/**
+ * Decides whether the server accepts a request under the limits of the
+ * {@link AdmissionConfig}. Every accepted request holds a {@link Ticket}
+ * until its response is written.
+ */
+public class AdmissionController {
+
+    public static final String IN_FLIGHT_BYTES = "in_flight_bytes";
+    public static final String HEAP = "heap";
+    public static final String CLIENT = "client";
+
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    private final AdmissionConfig config;
+    private final ServerMetrics metrics;
+    private final AtomicLong inFlightBytes = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final ConcurrentMap<String, Integer> clients = new ConcurrentHashMap<>();
+
+    public AdmissionController(AdmissionConfig config, ServerMetrics metrics) {
+        this.config = config;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param client        client id, e.g. its address
+     * @param contentLength Content-Length of the request or -1
+     * @param contentType   Content-Type of the request or <code>null</code>
+     * @return the ticket of the request or <code>null</code> if it's refused
+     */
+    public Ticket admit(String client, long contentLength, String contentType) {
+        long cost = getCost(contentLength, contentType);
+        if (!acquireClient(client)) {
+            metrics.recordRejection(CLIENT);
+            return null;
+        }
+        String rejection = acquireBytes(cost);
+        if (rejection != null) {
+            releaseClient(client);
+            metrics.recordRejection(rejection);
+            return null;
+        }
+        return new Ticket(client, cost);
+    }
+
+    public long getInFlightBytes() {
+        return inFlightBytes.get();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    long getCost(long contentLength, String contentType) {
+        long length = contentLength < 0 ? config.getUnknownLengthBytes() : contentLength;
+        MediaType mediaType = MediaType.parse(contentType);
+        String baseType = mediaType == null ? null : mediaType.getBaseType().toString();
+        return (long) (length * config.getCostFactor(baseType));
+    }
+
+    long getFreeHeap() {
+        MemoryUsage heap = MEMORY.getHeapMemoryUsage();
+        return heap.getMax() - heap.getUsed();
+    }
+
+    long getMaxHeap() {
+        return MEMORY.getHeapMemoryUsage().getMax();
+    }
+
+    private boolean acquireClient(String client) {
+        int max = config.getMaxRequestsPerClient();
+        if (max <= 0) {
+            return true;
+        }
+        boolean[] acquired = new boolean[1];
+        clients.compute(client, (k, n) -> {
+            int current = n == null ? 0 : n;
+            if (current >= max) {
+                return n;
+            }
+            acquired[0] = true;
+            return current + 1;
+        });
+        return acquired[0];
+    }
+
+    private void releaseClient(String client) {
+        if (config.getMaxRequestsPerClient() > 0) {
+            clients.computeIfPresent(client, (k, n) -> n <= 1 ? null : n - 1);
+        }
+    }
+
+    /**
+     * @return <code>null</code> if the request is accepted, otherwise the
+     * reason why it's refused
+     */
+    private synchronized String acquireBytes(long cost) {
+        //a single request is always accepted, or it could never be parsed
+        if (inFlight.get() > 0) {
+            long max = config.getMaxInFlightBytes();
+            if (max > 0 && inFlightBytes.get() + cost > max) {
+                return IN_FLIGHT_BYTES;
+            }
+            double ratio = config.getMinFreeHeapRatio();
+            if (ratio > 0) {
+                //the requests in flight may not have allocated their share yet
+                long maxHeap = getMaxHeap();
+                //an undefined max heap disables the check
+                if (maxHeap > 0 &&
+                        getFreeHeap() - inFlightBytes.get() - cost < ratio * maxHeap) {
+                    return HEAP;
+                }
+            }
+        }
+        inFlight.incrementAndGet();
+        inFlightBytes.addAndGet(cost);
+        return null;
+    }
+
+    private synchronized void releaseBytes(long cost) {
+        inFlight.decrementAndGet();
+        inFlightBytes.addAndGet(-cost);
+    }
+
+    /**
+     * An accepted request; {@link #release()} it once the response is written.
+     */
+    public class Ticket {
+        private final String client;
+        private final long cost;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Ticket(String client, long cost) {
+            this.client = client;
+            this.cost = cost;
+        }
+
+        public long getCost() {
+            return cost;
+        }
+
+        /**
+         * Releases the ticket; calls after the first are ignored.
+         */
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                releaseBytes(cost);
+                releaseClient(client);
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.server.core;
+
+import java.io.IOException;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.tika.utils.StringUtils;
+
+/**
+ * Refuses PUT and POST requests with a 503 and a Retry-After header if the
+ * {@link AdmissionController} doesn't accept them. GET requests, e.g. for
+ * <code>/status</code> or <code>/metrics</code>, are always accepted. The
+ * ticket of an accepted request is released once its response body, which
+ * may run the parse, has been written.
+ */
+@Provider
+public class AdmissionFilter implements ContainerRequestFilter, ContainerResponseFilter,
+        WriterInterceptor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdmissionFilter.class);
+
+    private static final String TICKET = AdmissionFilter.class.getName() + ".ticket";
+
+    private final AdmissionController controller;
+    private final AdmissionConfig config;
+
+    @Context
+    private HttpServletRequest httpServletRequest;
+
+    public AdmissionFilter(AdmissionController controller, AdmissionConfig config) {
+        this.controller = controller;
+        this.config = config;
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) throws IOException {
+        String method = requestContext.getMethod();
+        if (!HttpMethod.PUT.equals(method) && !HttpMethod.POST.equals(method)) {
+            return;
+        }
+        String client = getClient(requestContext);
+        MediaType mediaType = requestContext.getMediaType();
+        AdmissionController.Ticket ticket = controller.admit(client,
+                getContentLength(requestContext),
+                mediaType == null ? null : mediaType.toString());
+        if (ticket == null) {
+            LOG.debug("refusing a request from {}", client);
+            requestContext.abortWith(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, config.getRetryAfterSeconds())
+                    .type(MediaType.TEXT_PLAIN_TYPE).entity("Server is over capacity").build());
+            return;
+        }
+        requestContext.setProperty(TICKET, ticket);
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext,
+                       ContainerResponseContext responseContext) throws IOException {
+        if (!responseContext.hasEntity()) {
+            release(requestContext.getProperty(TICKET));
+        }
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context)
+            throws IOException, WebApplicationException {
+        try {
+            context.proceed();
+        } finally {
+            release(context.getProperty(TICKET));
+        }
+    }
+
+    private String getClient(ContainerRequestContext requestContext) {
+        if (!StringUtils.isBlank(config.getClientHeader())) {
+            String client = requestContext.getHeaderString(config.getClientHeader());
+            if (!StringUtils.isBlank(client)) {
+                //the first address of X-Forwarded-For is the original client
+                int i = client.indexOf(',');
+                return (i < 0 ? client : client.substring(0, i)).trim();
+            }
+        }
+        String address = httpServletRequest == null ? null : httpServletRequest.getRemoteAddr();
+        return address == null ? "unknown" : address;
+    }
+
+    private static long getContentLength(ContainerRequestContext requestContext) {
+        //getLength() is an int, so read the header for files over 2GB
+        String header = requestContext.getHeaderString(HttpHeaders.CONTENT_LENGTH);
+        if (StringUtils.isBlank(header)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(header.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void release(Object ticket) {
+        if (ticket != null) {
+            ((AdmissionController.Ticket) ticket).release();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.server.core;
+
+import java.io.IOException;
+import java.util.List;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.PathSegment;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.ReaderInterceptor;
+import javax.ws.rs.ext.ReaderInterceptorContext;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import org.apache.commons.io.input.ProxyInputStream;
+import org.apache.commons.io.output.CountingOutputStream;
+
+/**
+ * Records the requests, latencies and body sizes by endpoint in the
+ * {@link ServerMetrics}. If there's a response body, e.g. the
+ * {@link javax.ws.rs.core.StreamingOutput} that runs the parse, the
+ * request is recorded once the body has been written.
+ */
+@Provider
+public class MetricsFilter implements ContainerRequestFilter, ContainerResponseFilter,
+        ReaderInterceptor, WriterInterceptor {
+
+    private static final String STARTED = MetricsFilter.class.getName() + ".started";
+    private static final String ENDPOINT = MetricsFilter.class.getName() + ".endpoint";
+    private static final String STATUS = MetricsFilter.class.getName() + ".status";
+
+    private final ServerMetrics metrics;
+
+    public MetricsFilter(ServerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) throws IOException {
+        requestContext.setProperty(STARTED, System.nanoTime());
+        requestContext.setProperty(ENDPOINT, getEndpoint(requestContext));
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext,
+                       ContainerResponseContext responseContext) throws IOException {
+        Long started = (Long) requestContext.getProperty(STARTED);
+        if (started == null) {
+            return;
+        }
+        if (responseContext.hasEntity()) {
+            requestContext.setProperty(STATUS, responseContext.getStatus());
+        } else {
+            metrics.recordRequest((String) requestContext.getProperty(ENDPOINT),
+                    responseContext.getStatus(), System.nanoTime() - started);
+        }
+    }
+
+    @Override
+    public Object aroundReadFrom(ReaderInterceptorContext context)
+            throws IOException, WebApplicationException {
+        String endpoint = (String) context.getProperty(ENDPOINT);
+        if (endpoint != null) {
+            context.setInputStream(new ProxyInputStream(context.getInputStream()) {
+                @Override
+                protected void afterRead(int n) {
+                    if (n > 0) {
+                        metrics.recordRequestBytes(endpoint, n);
+                    }
+                }
+            });
+        }
+        return context.proceed();
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context)
+            throws IOException, WebApplicationException {
+        Long started = (Long) context.getProperty(STARTED);
+        if (started == null) {
+            context.proceed();
+            return;
+        }
+        String endpoint = (String) context.getProperty(ENDPOINT);
+        Integer status = (Integer) context.getProperty(STATUS);
+        CountingOutputStream os = new CountingOutputStream(context.getOutputStream());
+        context.setOutputStream(os);
+        boolean written = false;
+        try {
+            context.proceed();
+            written = true;
+        } finally {
+            metrics.recordResponseBytes(endpoint, os.getByteCount());
+            //if the body is incomplete, record an error even though the
+            //status has already been sent
+            metrics.recordRequest(endpoint, !written ? 500 : status == null ? 200 : status,
+                    System.nanoTime() - started);
+        }
+    }
+
+    private static String getEndpoint(ContainerRequestContext requestContext) {
+        List<PathSegment> segments = requestContext.getUriInfo().getPathSegments();
+        for (PathSegment segment : segments) {
+            if (!segment.getPath().isEmpty()) {
+                return segment.getPath();
+            }
+        }
+        return "/";
+    }
+}
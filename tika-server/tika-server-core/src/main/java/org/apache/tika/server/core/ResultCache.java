@@ -0,0 +1,402 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.server.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.input.UnsynchronizedByteArrayInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.serialization.JsonMetadataList;
+
+/**
+ * Cache of parse results keyed by a digest of the bytes and of everything
+ * else that goes into a parse: the endpoint, the handler and the request
+ * headers, which configure the metadata and the ParseContext.
+ * <p>
+ * Results are held as json in memory up to <code>maxBytes</code>, the least
+ * recently used are evicted first. If a directory is configured, results are
+ * also written there, so that they outlive the forked process. The directory is
+ * bounded by <code>maxDirectoryBytes</code>: files are evicted least recently
+ * used first. A file's modified time is set when it is read, so that the order
+ * survives restarts, when the index is rebuilt from the modified times.
+ */
+public class ResultCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ResultCache.class);
+
+    //headers that don't change the result of a parse
+    private static final Set<String> IGNORED_HEADERS = new HashSet<>();
+
+    static {
+        Collections.addAll(IGNORED_HEADERS, "accept", "accept-encoding", "accept-language",
+                "authorization", "cache-control", "connection", "cookie", "date", "expect",
+                "host", "keep-alive", "origin", "pragma", "referer", "transfer-encoding",
+                "user-agent");
+    }
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final long maxBytes;
+    private final Path directory;
+    private final long maxDirectoryBytes;
+    private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    //file name -> length of the files in the directory, least recently used first
+    private final LinkedHashMap<String, Long> files = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long bytes = 0;
+    private long hits = 0;
+    private long diskHits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long directoryBytes = 0;
+    private long directoryEvictions = 0;
+
+    /**
+     * @param maxBytes          maximum number of bytes of json to keep in memory
+     * @param directory         directory for the on-disk tier, may be <code>null</code>
+     * @param maxDirectoryBytes maximum number of bytes to keep in the directory,
+     *                          <code>-1</code> for no limit
+     */
+    public ResultCache(long maxBytes, Path directory, long maxDirectoryBytes) {
+        this.maxBytes = maxBytes;
+        this.directory = directory;
+        this.maxDirectoryBytes = maxDirectoryBytes;
+        if (directory != null && Files.isDirectory(directory)) {
+            loadDirectory();
+        }
+    }
+
+    /**
+     * @return the cache that the server config asks for or <code>null</code>
+     */
+    public static ResultCache build(TikaServerConfig tikaServerConfig) {
+        if (tikaServerConfig.getResultCacheMaxBytes() <= 0) {
+            return null;
+        }
+        return new ResultCache(tikaServerConfig.getResultCacheMaxBytes(),
+                tikaServerConfig.getResultCacheDirectory(),
+                tikaServerConfig.getResultCacheDirectoryMaxBytes());
+    }
+
+    /**
+     * Digests the request. The stream is spooled to a temporary file, its position
+     * doesn't change.
+     *
+     * @param endpoint endpoint and handler type
+     * @param tis      the bytes to parse
+     * @param headers  request headers
+     * @return the cache key
+     */
+    public String getKey(String endpoint, TikaInputStream tis,
+                         Map<String, List<String>> headers) throws IOException {
+        MessageDigest digest = newDigest();
+        update(digest, endpoint);
+        Map<String, List<String>> sorted = new TreeMap<>();
+        for (Map.Entry<String, List<String>> e : headers.entrySet()) {
+            String name = e.getKey().toLowerCase(Locale.US);
+            if (!IGNORED_HEADERS.contains(name)) {
+                sorted.put(name, e.getValue());
+            }
+        }
+        for (Map.Entry<String, List<String>> e : sorted.entrySet()) {
+            update(digest, e.getKey());
+            for (String v : e.getValue()) {
+                update(digest, v);
+            }
+        }
+        try (InputStream is = Files.newInputStream(tis.getPath())) {
+            byte[] buffer = new byte[8192];
+            int read = is.read(buffer);
+            while (read != -1) {
+                digest.update(buffer, 0, read);
+                read = is.read(buffer);
+            }
+        }
+        return hex(digest.digest());
+    }
+
+    /**
+     * @return a copy of the cached result or <code>null</code>
+     */
+    public List<Metadata> get(String key) {
+        byte[] json;
+        boolean fromDisk = false;
+        synchronized (this) {
+            json = entries.get(key);
+        }
+        if (json == null && directory != null) {
+            Path file = directory.resolve(key);
+            try {
+                json = Files.readAllBytes(file);
+                fromDisk = true;
+                Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            } catch (NoSuchFileException e) {
+                //not cached, or evicted
+                synchronized (this) {
+                    removeFile(key);
+                }
+            } catch (IOException e) {
+                LOG.warn("couldn't read cached result {}", key, e);
+            }
+        }
+        if (json == null) {
+            synchronized (this) {
+                misses++;
+            }
+            return null;
+        }
+        List<Metadata> metadataList;
+        try (Reader reader = new InputStreamReader(new UnsynchronizedByteArrayInputStream(json),
+                StandardCharsets.UTF_8)) {
+            metadataList = JsonMetadataList.fromJson(reader);
+        } catch (IOException e) {
+            LOG.warn("couldn't deserialize cached result {}", key, e);
+            return null;
+        }
+        synchronized (this) {
+            hits++;
+            //mark as recently used
+            files.get(key);
+            if (fromDisk) {
+                diskHits++;
+                putInMemory(key, json);
+            }
+        }
+        return metadataList;
+    }
+
+    public void put(String key, List<Metadata> metadataList) {
+        byte[] json;
+        try {
+            StringWriter writer = new StringWriter();
+            JsonMetadataList.toJson(metadataList, writer);
+            json = writer.toString().getBytes(StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            LOG.warn("couldn't serialize result {}", key, e);
+            return;
+        }
+        synchronized (this) {
+            putInMemory(key, json);
+        }
+        if (directory == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            Path tmp = Files.createTempFile(directory, key, ".tmp");
+            Files.write(tmp, json);
+            Files.move(tmp, directory.resolve(key), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warn("couldn't write cached result {}", key, e);
+            return;
+        }
+        List<String> evicted;
+        synchronized (this) {
+            addFile(key, json.length);
+            evicted = evictFiles();
+        }
+        deleteFiles(evicted);
+    }
+
+    private void loadDirectory() {
+        List<Path> paths = new ArrayList<>();
+        try (Stream<Path> stream = Files.list(directory)) {
+            stream.forEach(paths::add);
+        } catch (IOException e) {
+            LOG.warn("couldn't list result cache directory {}", directory, e);
+            return;
+        }
+        Map<Path, Long> modified = new HashMap<>();
+        for (Path p : paths) {
+            try {
+                if (!Files.isRegularFile(p)) {
+                    continue;
+                }
+                if (p.getFileName().toString().endsWith(".tmp")) {
+                    //left over by a crash during a write
+                    Files.delete(p);
+                } else {
+                    modified.put(p, Files.getLastModifiedTime(p).toMillis());
+                }
+            } catch (IOException e) {
+                LOG.warn("couldn't read result cache file {}", p, e);
+            }
+        }
+        paths.retainAll(modified.keySet());
+        paths.sort((a, b) -> Long.compare(modified.get(a), modified.get(b)));
+        List<String> evicted;
+        synchronized (this) {
+            for (Path p : paths) {
+                try {
+                    addFile(p.getFileName().toString(), Files.size(p));
+                } catch (IOException e) {
+                    LOG.warn("couldn't read result cache file {}", p, e);
+                }
+            }
+            evicted = evictFiles();
+        }
+        deleteFiles(evicted);
+    }
+
+    private void addFile(String key, long length) {
+        removeFile(key);
+        files.put(key, length);
+        directoryBytes += length;
+    }
+
+    private void removeFile(String key) {
+        Long old = files.remove(key);
+        if (old != null) {
+            directoryBytes -= old;
+        }
+    }
+
+    /**
+     * Removes the least recently used files from the index until the
+     * directory is back under its limit.
+     *
+     * @return the names of the files to delete
+     */
+    private List<String> evictFiles() {
+        if (maxDirectoryBytes < 0) {
+            return Collections.emptyList();
+        }
+        List<String> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, Long>> it = files.entrySet().iterator();
+        while (directoryBytes > maxDirectoryBytes && it.hasNext()) {
+            Map.Entry<String, Long> e = it.next();
+            directoryBytes -= e.getValue();
+            evicted.add(e.getKey());
+            it.remove();
+            directoryEvictions++;
+        }
+        return evicted;
+    }
+
+    //outside of the lock, so that readers don't wait for the file system
+    private void deleteFiles(List<String> keys) {
+        for (String key : keys) {
+            try {
+                Files.deleteIfExists(directory.resolve(key));
+            } catch (IOException e) {
+                LOG.warn("couldn't delete cached result {}", key, e);
+            }
+        }
+    }
+
+    private void putInMemory(String key, byte[] json) {
+        if (json.length > maxBytes) {
+            return;
+        }
+        byte[] old = entries.put(key, json);
+        if (old != null) {
+            bytes -= old.length;
+        }
+        bytes += json.length;
+        Iterator<byte[]> it = entries.values().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes -= it.next().length;
+            it.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * @return statistics for the status endpoint
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", entries.size());
+        stats.put("bytes", bytes);
+        stats.put("max_bytes", maxBytes);
+        stats.put("hits", hits);
+        stats.put("disk_hits", diskHits);
+        stats.put("misses", misses);
+        stats.put("evictions", evictions);
+        if (directory != null) {
+            stats.put("directory_entries", files.size());
+            stats.put("directory_bytes", directoryBytes);
+            stats.put("directory_max_bytes", maxDirectoryBytes);
+            stats.put("directory_evictions", directoryEvictions);
+        }
+        long lookups = hits + misses;
+        stats.put("hit_rate", lookups == 0 ? 0.0 : (double) hits / lookups);
+        return stats;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String s) {
+        digest.update(s.getBytes(StandardCharsets.UTF_8));
+        //separator, so that ("ab", "c") and ("a", "bc") differ
+        digest.update((byte) 0);
+    }
+
+    private static String hex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+
+    //visible for tests
+    synchronized List<String> getKeys() {
+        return new ArrayList<>(entries.keySet());
+    }
+
+    //visible for tests
+    synchronized List<String> getFileKeys() {
+        return new ArrayList<>(files.keySet());
+    }
+}
@@ -0,0 +1,376 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.server.core;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.parser.ParserStats;
+import org.apache.tika.parser.ParserStatsListener;
+
+/**
+ * Counters and latency histograms for the <code>/metrics</code> endpoint,
+ * written in the Prometheus text format.
+ * <p>
+ * Recording is lock free (a {@link LongAdder} per bucket), so it adds
+ * little to a request. Histograms have fixed buckets from 1ms to 10 minutes.
+ * The number of distinct label values per metric is capped at
+ * {@link #MAX_LABEL_VALUES}; any more are recorded as <code>other</code>.
+ */
+public class ServerMetrics implements ParserStatsListener {
+
+    public static final int MAX_LABEL_VALUES = 200;
+
+    static final String OTHER = "other";
+
+    private static final double[] BUCKETS = new double[]{0.001, 0.005, 0.01, 0.025, 0.05, 0.1,
+            0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 120, 300, 600};
+
+    private final ConcurrentMap<String, LongAdder> requests = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Histogram> requestLatencies = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> requestBytes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> responseBytes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Histogram> mimeLatencies = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Histogram> parserLatencies = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Histogram> parserSelfLatencies = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> parserCpuNanos = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> parserAllocatedBytes =
+            new ConcurrentHashMap<>();
+    private final Map<ServerStatus.TASK, LongAdder> exceptions =
+            new EnumMap<>(ServerStatus.TASK.class);
+    private final LongAdder writeLimitsReached = new LongAdder();
+    private final ConcurrentMap<String, LongAdder> rejections = new ConcurrentHashMap<>();
+    private Map<String, Integer> restarts = Collections.emptyMap();
+
+    public ServerMetrics() {
+        for (ServerStatus.TASK task : ServerStatus.TASK.values()) {
+            exceptions.put(task, new LongAdder());
+        }
+    }
+
+    /**
+     * @param endpoint first segment of the request path, e.g. <code>rmeta</code>
+     * @param status   http status of the response
+     * @param nanos    time from the request to the end of the response
+     */
+    public void recordRequest(String endpoint, int status, long nanos) {
+        get(requests, endpoint + '\t' + status, LongAdder::new).increment();
+        get(requestLatencies, endpoint, Histogram::new).record(nanos);
+    }
+
+    public void recordRequestBytes(String endpoint, long bytes) {
+        get(requestBytes, endpoint, LongAdder::new).add(bytes);
+    }
+
+    public void recordResponseBytes(String endpoint, long bytes) {
+        get(responseBytes, endpoint, LongAdder::new).add(bytes);
+    }
+
+    /**
+     * Records the latency of a parse by the detected media type and by the
+     * parser that parsed the main document.
+     *
+     * @param metadata metadata of the main document after the parse
+     */
+    public void recordParse(Metadata metadata, long nanos, boolean exception) {
+        MediaType mediaType = MediaType.parse(metadata.get(Metadata.CONTENT_TYPE));
+        String mimeType = mediaType == null ? "unknown" : mediaType.getBaseType().toString();
+        get(mimeLatencies, mimeType, Histogram::new).record(nanos);
+        //the last parser is the one that did the work, the others delegated to it
+        String[] parsedBy = metadata.getValues(TikaCoreProperties.TIKA_PARSED_BY);
+        String parser = parsedBy.length == 0 ? "unknown" : parsedBy[parsedBy.length - 1];
+        get(parserLatencies, parser, Histogram::new).record(nanos);
+        if (exception) {
+            exceptions.get(ServerStatus.TASK.PARSE).increment();
+        }
+        if ("true".equals(metadata.get(TikaCoreProperties.WRITE_LIMIT_REACHED))) {
+            writeLimitsReached.increment();
+        }
+    }
+
+    /**
+     * Records the stats of every parser call, including those of embedded
+     * documents, if {@link TikaServerConfig#isParserStats()}.
+     */
+    @Override
+    public void onParse(ParserStats stats) {
+        String parser = stats.getParserClass();
+        get(parserSelfLatencies, parser, Histogram::new).record(stats.getWallNanos());
+        if (stats.getCpuNanos() >= 0) {
+            get(parserCpuNanos, parser, LongAdder::new).add(stats.getCpuNanos());
+        }
+        if (stats.getAllocatedBytes() >= 0) {
+            get(parserAllocatedBytes, parser, LongAdder::new).add(stats.getAllocatedBytes());
+        }
+    }
+
+    public void recordException(ServerStatus.TASK task) {
+        exceptions.get(task).increment();
+    }
+
+    public void recordWriteLimitReached() {
+        writeLimitsReached.increment();
+    }
+
+    /**
+     * @param reason why the {@link AdmissionController} refused a request
+     */
+    public void recordRejection(String reason) {
+        get(rejections, reason, LongAdder::new).increment();
+    }
+
+    /**
+     * @param restarts number of restarts of the forked process by the status
+     *                 that the previous processes exited with
+     */
+    public void setRestarts(Map<String, Integer> restarts) {
+        this.restarts = Collections.unmodifiableMap(new TreeMap<>(restarts));
+    }
+
+    /**
+     * Writes the metrics and the jvm's memory, gc and thread stats in the
+     * Prometheus text format (version 0.0.4).
+     */
+    public void write(ServerStatus serverStatus, Writer writer) throws IOException {
+        counter(writer, "tika_server_requests_total", "Requests by endpoint and http status",
+                labelled(requests, "endpoint", "status"));
+        histograms(writer, "tika_server_request_duration_seconds",
+                "Time from the request to the end of the response", "endpoint",
+                requestLatencies);
+        counter(writer, "tika_server_request_bytes_total", "Bytes read from request bodies",
+                labelled(requestBytes, "endpoint"));
+        counter(writer, "tika_server_response_bytes_total", "Bytes written to response bodies",
+                labelled(responseBytes, "endpoint"));
+        histograms(writer, "tika_server_parse_duration_seconds",
+                "Parse time by detected media type", "mime_type", mimeLatencies);
+        histograms(writer, "tika_server_parser_duration_seconds",
+                "Parse time by the parser of the main document", "parser", parserLatencies);
+        histograms(writer, "tika_server_parser_self_duration_seconds",
+                "Time of each parser call without its embedded documents", "parser",
+                parserSelfLatencies);
+        Map<String, Number> cpuSeconds = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> e : parserCpuNanos.entrySet()) {
+            cpuSeconds.put(labels("parser", e.getKey()), e.getValue().sum() / 1_000_000_000.0);
+        }
+        counter(writer, "tika_server_parser_cpu_seconds_total",
+                "Cpu time of the parsers without their embedded documents", cpuSeconds);
+        counter(writer, "tika_server_parser_allocated_bytes_total",
+                "Bytes allocated by the parsers without their embedded documents",
+                labelled(parserAllocatedBytes, "parser"));
+
+        Map<String, Number> values = new LinkedHashMap<>();
+        for (Map.Entry<ServerStatus.TASK, LongAdder> e : exceptions.entrySet()) {
+            values.put(labels("task", e.getKey().name().toLowerCase(Locale.US)),
+                    e.getValue().sum());
+        }
+        counter(writer, "tika_server_exceptions_total", "Tasks that ended in an exception",
+                values);
+        counter(writer, "tika_server_write_limit_reached_total",
+                "Parses that hit the write limit",
+                Collections.singletonMap("", writeLimitsReached.sum()));
+        counter(writer, "tika_server_requests_rejected_total",
+                "Requests refused by admission control by reason",
+                labelled(rejections, "reason"));
+
+        Map<ServerStatus.TASK, Integer> inFlight = new EnumMap<>(ServerStatus.TASK.class);
+        for (ServerStatus.TASK task : ServerStatus.TASK.values()) {
+            inFlight.put(task, 0);
+        }
+        for (TaskStatus status : serverStatus.getTasks().values()) {
+            inFlight.merge(status.task, 1, Integer::sum);
+        }
+        values = new LinkedHashMap<>();
+        for (Map.Entry<ServerStatus.TASK, Integer> e : inFlight.entrySet()) {
+            values.put(labels("task", e.getKey().name().toLowerCase(Locale.US)),
+                    e.getValue());
+        }
+        gauge(writer, "tika_server_tasks_in_flight", "Tasks that are running", values);
+        counter(writer, "tika_server_tasks_total", "Tasks started by this process",
+                Collections.singletonMap("", serverStatus.getFilesProcessed()));
+        gauge(writer, "tika_server_operating", "Whether the server accepts requests",
+                Collections.singletonMap("", serverStatus.isOperating() ? 1 : 0));
+
+        values = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> e : restarts.entrySet()) {
+            values.put(labels("reason", e.getKey()), e.getValue());
+        }
+        counter(writer, "tika_server_restarts_total",
+                "Restarts of the forked process by the status that it exited with", values);
+
+        writeJvm(writer);
+        writer.flush();
+    }
+
+    private static void writeJvm(Writer writer) throws IOException {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        MemoryUsage nonHeap = ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage();
+        Map<String, Number> values = new LinkedHashMap<>();
+        values.put(labels("area", "heap"), heap.getUsed());
+        values.put(labels("area", "nonheap"), nonHeap.getUsed());
+        gauge(writer, "jvm_memory_bytes_used", "Used bytes of a memory area", values);
+        values = new LinkedHashMap<>();
+        values.put(labels("area", "heap"), heap.getCommitted());
+        values.put(labels("area", "nonheap"), nonHeap.getCommitted());
+        gauge(writer, "jvm_memory_bytes_committed", "Committed bytes of a memory area", values);
+        gauge(writer, "jvm_memory_bytes_max", "Max bytes of the heap",
+                Collections.singletonMap(labels("area", "heap"), heap.getMax()));
+
+        Map<String, Number> counts = new LinkedHashMap<>();
+        Map<String, Number> seconds = new LinkedHashMap<>();
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            String labels = labels("gc", gc.getName());
+            counts.put(labels, Math.max(0, gc.getCollectionCount()));
+            seconds.put(labels, Math.max(0, gc.getCollectionTime()) / 1000.0);
+        }
+        counter(writer, "jvm_gc_collections_total", "Garbage collections", counts);
+        counter(writer, "jvm_gc_collection_seconds_total", "Time spent in garbage collection",
+                seconds);
+        gauge(writer, "jvm_threads_current", "Live threads",
+                Collections.singletonMap("", ManagementFactory.getThreadMXBean().getThreadCount()));
+        gauge(writer, "process_uptime_seconds", "Uptime of this process",
+                Collections.singletonMap("",
+                        ManagementFactory.getRuntimeMXBean().getUptime() / 1000.0));
+    }
+
+    private static <T> T get(ConcurrentMap<String, T> map, String key,
+                             Supplier<T> supplier) {
+        T t = map.get(key);
+        if (t != null) {
+            return t;
+        }
+        if (map.size() >= MAX_LABEL_VALUES) {
+            key = OTHER;
+        }
+        return map.computeIfAbsent(key, k -> supplier.get());
+    }
+
+    private static Map<String, Number> labelled(Map<String, LongAdder> map, String... names) {
+        Map<String, Number> values = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> e : map.entrySet()) {
+            String[] parts = e.getKey().split("\t", names.length);
+            String[] pairs = new String[names.length * 2];
+            for (int i = 0; i < names.length; i++) {
+                pairs[i * 2] = names[i];
+                pairs[i * 2 + 1] = i < parts.length ? parts[i] : OTHER;
+            }
+            values.put(labels(pairs), e.getValue().sum());
+        }
+        return values;
+    }
+
+    private static String labels(String... pairs) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < pairs.length; i += 2) {
+            sb.append(i == 0 ? "{" : ",").append(pairs[i]).append("=\"")
+                    .append(escape(pairs[i + 1])).append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static void counter(Writer writer, String name, String help,
+                                Map<String, ? extends Number> values) throws IOException {
+        metric(writer, name, help, "counter", values);
+    }
+
+    private static void gauge(Writer writer, String name, String help,
+                              Map<String, ? extends Number> values) throws IOException {
+        metric(writer, name, help, "gauge", values);
+    }
+
+    private static void metric(Writer writer, String name, String help, String type,
+                               Map<String, ? extends Number> values) throws IOException {
+        writer.write("# HELP " + name + " " + help + "\n");
+        writer.write("# TYPE " + name + " " + type + "\n");
+        for (Map.Entry<String, ? extends Number> e : values.entrySet()) {
+            writer.write(name + e.getKey() + " " + e.getValue() + "\n");
+        }
+    }
+
+    private static void histograms(Writer writer, String name, String help, String label,
+                                   Map<String, Histogram> histograms) throws IOException {
+        writer.write("# HELP " + name + " " + help + "\n");
+        writer.write("# TYPE " + name + " histogram\n");
+        for (Map.Entry<String, Histogram> e : new TreeMap<>(histograms).entrySet()) {
+            String prefix = label + "=\"" + escape(e.getKey()) + "\"";
+            long[] counts = e.getValue().getCounts();
+            long cumulative = 0;
+            for (int i = 0; i < counts.length; i++) {
+                cumulative += counts[i];
+                String le = i < BUCKETS.length ? Double.toString(BUCKETS[i]) : "+Inf";
+                writer.write(name + "_bucket{" + prefix + ",le=\"" + le + "\"} " + cumulative +
+                        "\n");
+            }
+            writer.write(name + "_sum{" + prefix + "} " + e.getValue().getSumSeconds() + "\n");
+            writer.write(name + "_count{" + prefix + "} " + cumulative + "\n");
+        }
+    }
+
+    /**
+     * Counts by bucket; the last bucket is for everything above the
+     * largest bound.
+     */
+    static class Histogram {
+        private final LongAdder[] counts = new LongAdder[BUCKETS.length + 1];
+        private final LongAdder sumNanos = new LongAdder();
+
+        Histogram() {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            int i = Arrays.binarySearch(BUCKETS, nanos / 1_000_000_000.0);
+            //on a miss, binarySearch returns -(the first bucket above) - 1
+            counts[i >= 0 ? i : -i - 1].increment();
+            sumNanos.add(nanos);
+        }
+
+        long[] getCounts() {
+            long[] snapshot = new long[counts.length];
+            for (int i = 0; i < counts.length; i++) {
+                snapshot[i] = counts[i].sum();
+            }
+            return snapshot;
+        }
+
+        double getSumSeconds() {
+            return sumNanos.sum() / 1_000_000_000.0;
+        }
+    }
+}
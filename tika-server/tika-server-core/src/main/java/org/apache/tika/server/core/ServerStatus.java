@@ -35,6 +35,7 @@ public class ServerStatus {
     private Map<Long, TaskStatus> tasks = new HashMap<>();
     private STATUS status = STATUS.OPERATING;
     private volatile long lastStarted = Instant.now().toEpochMilli();
+    private final ServerMetrics metrics = new ServerMetrics();
 
     public ServerStatus(String serverId, int numRestarts) {
         this(serverId, numRestarts, false);
@@ -105,6 +106,10 @@ public class ServerStatus {
         return numRestarts;
     }
 
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
     enum DIRECTIVES {
         PING((byte) 0), PING_ACTIVE_SERVER_TASKS((byte) 1), SHUTDOWN((byte) 2);
 
@@ -23,8 +23,11 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.regex.Matcher;
@@ -78,6 +81,7 @@ public class TikaServerConfig extends ConfigBase {
     //used in fork mode -- restart after processing this many files
     private static final long DEFAULT_MAX_FILES = 100000;
     private static final int DEFAULT_DIGEST_MARK_LIMIT = 20 * 1024 * 1024;
+    private static final long DEFAULT_RESULT_CACHE_DIRECTORY_MAX_BYTES = 1024L * 1024 * 1024;
     private static final String UNSECURE_WARNING =
             "WARNING: You have chosen to run tika-server with unsecure features enabled.\n" +
                     "Whoever has access to your service now has the same read permissions\n" +
@@ -89,7 +93,7 @@ public class TikaServerConfig extends ConfigBase {
                     "Please make sure you know what you are doing.";
     private static final List<String> ONLY_IN_FORK_MODE = Arrays.asList(
             new String[]{"taskTimeoutMillis", "taskPulseMillis",
-                    "maxFiles", "javaPath", "maxRestarts", "numRestarts",
+                    "maxFiles", "javaPath", "maxRestarts", "numRestarts", "restartReasons",
                     "forkedStatusFile", "maxForkedStartupMillis", "tmpFilePrefix"});
 
         /*
@@ -126,6 +130,12 @@ public class TikaServerConfig extends ConfigBase {
     private String host = DEFAULT_HOST;
     private int digestMarkLimit = DEFAULT_DIGEST_MARK_LIMIT;
     private String digest = "";
+    private long resultCacheMaxBytes = -1;
+    private Path resultCacheDirectory;
+    private long resultCacheDirectoryMaxBytes = DEFAULT_RESULT_CACHE_DIRECTORY_MAX_BYTES;
+    private boolean parserStats = false;
+    private boolean virtualThreads = false;
+    private int maxConcurrentParses = -1;
     private String javaPath = "java";
     //debug or info only
     private String logLevel = "";
@@ -135,10 +145,12 @@ public class TikaServerConfig extends ConfigBase {
     //and they are automatically set by the forking process
     private String forkedStatusFile;
     private int numRestarts = 0;
+    private Map<String, Integer> restartReasons = Collections.emptyMap();
 
     private boolean preventStopMethod = false;
 
     private TlsConfig tlsConfig = new TlsConfig();
+    private AdmissionConfig admissionConfig = new AdmissionConfig();
     /**
      * Config with only the defaults
      */
@@ -184,6 +196,11 @@ public class TikaServerConfig extends ConfigBase {
             settings.add("numRestarts");
         }
 
+        if (commandLine.hasOption("restartReasons")) {
+            config.setRestartReasons(commandLine.getOptionValue("restartReasons"));
+            settings.add("restartReasons");
+        }
+
         if (commandLine.hasOption("forkedStatusFile")) {
             config.setForkedStatusFile(commandLine.getOptionValue("forkedStatusFile"));
             settings.add("forkedStatusFile");
@@ -515,6 +532,93 @@ public class TikaServerConfig extends ConfigBase {
         this.digest = digest;
     }
 
+    /**
+     * Maximum number of bytes of parse results to cache in memory.
+     * The cache is off by default (-1). See {@link ResultCache}.
+     *
+     * @return
+     */
+    public long getResultCacheMaxBytes() {
+        return resultCacheMaxBytes;
+    }
+
+    public void setResultCacheMaxBytes(long resultCacheMaxBytes) {
+        this.resultCacheMaxBytes = resultCacheMaxBytes;
+    }
+
+    /**
+     * Optional directory for cached parse results, so that they outlive
+     * restarts of the forked process.
+     *
+     * @return
+     */
+    public Path getResultCacheDirectory() {
+        return resultCacheDirectory;
+    }
+
+    public void setResultCacheDirectory(String resultCacheDirectory) {
+        this.resultCacheDirectory = Paths.get(resultCacheDirectory);
+    }
+
+    /**
+     * Maximum number of bytes of parse results to keep in the
+     * {@link #getResultCacheDirectory()}, 1GB by default; -1 for no limit.
+     * The least recently used results are deleted first.
+     *
+     * @return
+     */
+    public long getResultCacheDirectoryMaxBytes() {
+        return resultCacheDirectoryMaxBytes;
+    }
+
+    public void setResultCacheDirectoryMaxBytes(long resultCacheDirectoryMaxBytes) {
+        this.resultCacheDirectoryMaxBytes = resultCacheDirectoryMaxBytes;
+    }
+
+    /**
+     * Whether to measure the time, cpu time and allocations of each parser,
+     * including those of embedded documents, for <code>/metrics</code> and
+     * the parse results. Off by default.
+     *
+     * @return
+     */
+    public boolean isParserStats() {
+        return parserStats;
+    }
+
+    public void setParserStats(boolean parserStats) {
+        this.parserStats = parserStats;
+    }
+
+    /**
+     * Whether to run each request on a virtual thread rather than on a
+     * worker of jetty's thread pool. This requires java 21 or later. Off by
+     * default.
+     *
+     * @return
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * Maximum number of parses that may run at the same time; other
+     * requests wait until a parse completes. Default: -1, no limit.
+     *
+     * @return
+     */
+    public int getMaxConcurrentParses() {
+        return maxConcurrentParses;
+    }
+
+    public void setMaxConcurrentParses(int maxConcurrentParses) {
+        this.maxConcurrentParses = maxConcurrentParses;
+    }
+
     /**
      * maximum number of files before the forked server restarts.
      * This is useful for avoiding any slow-building memory leaks/bloat.
@@ -543,6 +647,14 @@ public class TikaServerConfig extends ConfigBase {
     public TlsConfig getTlsConfig() {
         return tlsConfig;
     }
+
+    public void setAdmissionConfig(AdmissionConfig admissionConfig) {
+        this.admissionConfig = admissionConfig;
+    }
+
+    public AdmissionConfig getAdmissionConfig() {
+        return admissionConfig;
+    }
     public List<String> getEndpoints() {
         return endpoints;
     }
@@ -581,6 +693,26 @@ public class TikaServerConfig extends ConfigBase {
         this.numRestarts = numRestarts;
     }
 
+    /**
+     * @return number of restarts of the forked process by the status that
+     * the previous processes exited with
+     */
+    public Map<String, Integer> getRestartReasons() {
+        return restartReasons;
+    }
+
+    private void setRestartReasons(String restartReasons) {
+        Map<String, Integer> map = new LinkedHashMap<>();
+        for (String reason : restartReasons.split(",")) {
+            int i = reason.indexOf('=');
+            if (i > 0) {
+                map.put(reason.substring(0, i).trim(),
+                        Integer.parseInt(reason.substring(i + 1).trim()));
+            }
+        }
+        this.restartReasons = map;
+    }
+
     public String getForkedStatusFile() {
         return forkedStatusFile;
     }
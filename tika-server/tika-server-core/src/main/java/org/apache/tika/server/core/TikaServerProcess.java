@@ -70,6 +70,7 @@ import org.apache.tika.server.core.resource.AsyncResource;
 import org.apache.tika.server.core.resource.DetectorResource;
 import org.apache.tika.server.core.resource.LanguageResource;
 import org.apache.tika.server.core.resource.MetadataResource;
+import org.apache.tika.server.core.resource.MetricsResource;
 import org.apache.tika.server.core.resource.PipesResource;
 import org.apache.tika.server.core.resource.RecursiveMetadataResource;
 import org.apache.tika.server.core.resource.TikaDetectors;
@@ -119,6 +120,9 @@ public class TikaServerProcess {
         options.addOption("numRestarts", true,
                 "Not allowed in -noFork: number of times that " +
                         "the forked server has had to be restarted.");
+        options.addOption("restartReasons", true,
+                "Not allowed in -noFork: number of restarts of the forked server " +
+                        "by exit status, e.g. timeout=2,error=1");
         return options;
     }
 
@@ -237,6 +241,7 @@ public class TikaServerProcess {
             serverStatus = new ServerStatus(serverId, 0, true);
         } else {
             serverStatus = new ServerStatus(serverId, tikaServerConfig.getNumRestarts(), false);
+            serverStatus.getMetrics().setRestarts(tikaServerConfig.getRestartReasons());
             System.setOut(System.err);
         }
         TikaResource.init(tika, tikaServerConfig, digester, inputStreamFactory, serverStatus);
@@ -275,6 +280,9 @@ public class TikaServerProcess {
             factory.setBus(sf.getBus());
             manager.registerBindingFactory(JAXRSBindingFactory.JAXRS_BINDING_ID, factory);
         }
+        if (tikaServerConfig.isVirtualThreads()) {
+            setVirtualThreadPool(sf, host, port, protocol);
+        }
         ServerDetails details = new ServerDetails();
         details.sf = sf;
         details.url = url;
@@ -283,6 +291,25 @@ public class TikaServerProcess {
         return details;
     }
 
+    private static void setVirtualThreadPool(JAXRSServerFactoryBean sf, String host, int port,
+                                             String protocol)
+            throws GeneralSecurityException, IOException {
+        if (!VirtualThreadPool.isSupported()) {
+            LOG.warn("Virtual threads require java 21 or later. " +
+                    "Requests will run on jetty's thread pool.");
+            return;
+        }
+        JettyHTTPServerEngineFactory factory =
+                sf.getBus().getExtension(JettyHTTPServerEngineFactory.class);
+        if (factory == null) {
+            factory = new JettyHTTPServerEngineFactory();
+            factory.setBus(sf.getBus());
+        }
+        factory.createJettyHTTPServerEngine(host, port, protocol)
+                .setThreadPool(new VirtualThreadPool());
+        LOG.info("Requests will run on virtual threads");
+    }
+
     private static TLSServerParameters getTlsParams(TlsConfig tlsConfig)
             throws GeneralSecurityException, IOException {
         KeyStoreType keyStore = new KeyStoreType();
@@ -333,6 +360,13 @@ public class TikaServerProcess {
         writers.addAll(loadWriterServices());
         writers.add(new TikaServerParseExceptionMapper(tikaServerConfig.isReturnStackTrace()));
         writers.add(new JSONObjWriter());
+        writers.add(new MetricsFilter(serverStatus.getMetrics()));
+        AdmissionConfig admissionConfig = tikaServerConfig.getAdmissionConfig();
+        if (admissionConfig.isActive()) {
+            writers.add(new AdmissionFilter(
+                    new AdmissionController(admissionConfig, serverStatus.getMetrics()),
+                    admissionConfig));
+        }
 
         TikaLoggingFilter logFilter = null;
         if (!StringUtils.isBlank(tikaServerConfig.getLogLevel())) {
@@ -392,6 +426,8 @@ public class TikaServerProcess {
                 }
                 resourceProviders
                         .add(new SingletonResourceProvider(new TikaServerStatus(serverStatus)));
+                resourceProviders
+                        .add(new SingletonResourceProvider(new MetricsResource(serverStatus)));
             }
         } else {
             for (String endPoint : tikaServerConfig.getEndpoints()) {
@@ -424,6 +460,8 @@ public class TikaServerProcess {
                     addAsyncResource = true;
                 } else if ("status".equals(endPoint)) {
                     resourceProviders.add(new SingletonResourceProvider(new TikaServerStatus(serverStatus)));
+                } else if ("metrics".equals(endPoint)) {
+                    resourceProviders.add(new SingletonResourceProvider(new MetricsResource(serverStatus)));
                 }
             }
         }
@@ -39,7 +39,10 @@ import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
@@ -63,6 +66,8 @@ public class TikaServerWatchDog implements Callable<WatchDogResult> {
     private volatile Instant lastPing = null;
     private ForkedProcess forkedProcess = null;
     private int restarts = 0;
+    //restarts by the reason that the previous process ended
+    private final Map<String, Integer> restartReasons = new TreeMap<>();
     private volatile boolean shutDown = false;
 
 
@@ -157,18 +162,23 @@ public class TikaServerWatchDog implements Callable<WatchDogResult> {
                     if (exited) {
                         LOG.info("forked process exited with exit value {}",
                                 forkedProcess.process.exitValue());
+                        addRestartReason(getExitReason(forkedProcess.process.exitValue()));
                         closeForkedProcess(forkedProcess);
                         mustRestart = true;
                     } else {
                         ForkedStatus status = forkedProcess.readStatus();
                         if (status.status == FORKED_STATUS.FAILED_COMMUNICATION.ordinal()) {
                             LOG.info("failed to read from status file. Restarting now.");
+                            addRestartReason("failed_communication");
                             closeForkedProcess(forkedProcess);
                             mustRestart = true;
                         } else if (status.status == FORKED_STATUS.SHUTTING_DOWN.ordinal()) {
                             LOG.info("Forked process is in shutting down mode.  Will wait a bit");
-                            forkedProcess.process.waitFor(tikaServerConfig.getTaskTimeoutMillis(),
-                                    TimeUnit.MILLISECONDS);
+                            boolean ended = forkedProcess.process.waitFor(
+                                    tikaServerConfig.getTaskTimeoutMillis(), TimeUnit.MILLISECONDS);
+                            addRestartReason(ended ?
+                                    getExitReason(forkedProcess.process.exitValue()) :
+                                    "shutting_down");
                             closeForkedProcess(forkedProcess);
                             mustRestart = true;
                         } else {
@@ -179,6 +189,7 @@ public class TikaServerWatchDog implements Callable<WatchDogResult> {
                                         "{} ms have elapsed since forked process " +
                                                 "last updated status. " +
                                                 "Shutting down and restarting.", elapsed);
+                                addRestartReason("unresponsive");
                                 closeForkedProcess(forkedProcess);
                                 mustRestart = true;
                             }
@@ -198,6 +209,18 @@ public class TikaServerWatchDog implements Callable<WatchDogResult> {
         }
     }
 
+    private synchronized void addRestartReason(String reason) {
+        restartReasons.merge(reason, 1, Integer::sum);
+    }
+
+    private static String getExitReason(int exitValue) {
+        try {
+            return ServerStatus.STATUS.lookup(exitValue).name().toLowerCase(Locale.US);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            return "unknown";
+        }
+    }
+
     public synchronized void close() throws DoNotRestartException, InterruptedException {
         setForkedStatus(FORKED_STATUS.SHUTTING_DOWN);
         LOG.debug("received 'close()'; about to shutdown");
@@ -414,6 +437,17 @@ public class TikaServerWatchDog implements Callable<WatchDogResult> {
 
             argList.add("-numRestarts");
             argList.add(Integer.toString(numRestarts));
+            synchronized (TikaServerWatchDog.this) {
+                if (!restartReasons.isEmpty()) {
+                    StringBuilder sb = new StringBuilder();
+                    for (Map.Entry<String, Integer> e : restartReasons.entrySet()) {
+                        sb.append(sb.length() == 0 ? "" : ",").append(e.getKey()).append('=')
+                                .append(e.getValue());
+                    }
+                    argList.add("-restartReasons");
+                    argList.add(sb.toString());
+                }
+            }
             LOG.debug("forked process commandline: " + argList.toString());
             builder.command(argList);
             //now overwrite with the specific server id
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.server.core;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.ThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Jetty thread pool that runs each task, including each request, on a new
+ * virtual thread. A request that waits on a fetcher or on an external process
+ * then doesn't hold a platform thread, so the number of concurrent slow
+ * requests isn't limited by the size of a worker pool. Cpu heavy parses
+ * should be limited with {@link TikaServerConfig#getMaxConcurrentParses()}.
+ * <p>
+ * Virtual threads need java 21 or later; they're looked up by reflection
+ * because tika-server is compiled for java 8.
+ */
+public class VirtualThreadPool extends AbstractLifeCycle implements ThreadPool {
+
+    private static final Logger LOG = LoggerFactory.getLogger(VirtualThreadPool.class);
+
+    private static final Method NEW_EXECUTOR = getNewExecutorMethod();
+
+    private final AtomicInteger threads = new AtomicInteger();
+    private volatile ExecutorService executorService;
+
+    /**
+     * @return whether this jvm supports virtual threads
+     */
+    public static boolean isSupported() {
+        return NEW_EXECUTOR != null;
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        if (NEW_EXECUTOR == null) {
+            throw new IllegalStateException("virtual threads require java 21 or later");
+        }
+        executorService = (ExecutorService) NEW_EXECUTOR.invoke(null);
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        super.doStop();
+        ExecutorService es = executorService;
+        if (es != null) {
+            es.shutdown();
+            if (!es.awaitTermination(getStopTimeout(), TimeUnit.MILLISECONDS)) {
+                es.shutdownNow();
+            }
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        ExecutorService es = executorService;
+        if (es == null) {
+            throw new RejectedExecutionException("thread pool isn't started");
+        }
+        es.execute(() -> {
+            threads.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                threads.decrementAndGet();
+            }
+        });
+    }
+
+    @Override
+    public void join() throws InterruptedException {
+        ExecutorService es = executorService;
+        if (es != null) {
+            while (!es.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOG.trace("waiting for virtual threads");
+            }
+        }
+    }
+
+    @Override
+    public int getThreads() {
+        return threads.get();
+    }
+
+    @Override
+    public int getIdleThreads() {
+        //a virtual thread is started for each task
+        return 0;
+    }
+
+    @Override
+    public boolean isLowOnThreads() {
+        return false;
+    }
+
+    private static Method getNewExecutorMethod() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -24,10 +24,12 @@ import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import javax.ws.rs.BadRequestException;
+import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
@@ -45,6 +47,7 @@ import org.apache.tika.metadata.TikaCoreProperties;
 import org.apache.tika.metadata.serialization.JsonFetchEmitTupleList;
 import org.apache.tika.pipes.FetchEmitTuple;
 import org.apache.tika.pipes.async.AsyncProcessor;
+import org.apache.tika.pipes.async.QueueClassStats;
 import org.apache.tika.pipes.emitter.EmitData;
 import org.apache.tika.pipes.emitter.EmitKey;
 import org.apache.tika.pipes.emitter.EmitterManager;
@@ -120,6 +123,29 @@ public class AsyncResource {
         }
     }
 
+    /**
+     * @return depth and wait times of the queue by class
+     */
+    @GET
+    @Produces("application/json")
+    public Map<String, Object> getQueueStats() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (Map.Entry<String, QueueClassStats> e : asyncProcessor.getQueueStats().entrySet()) {
+            QueueClassStats stats = e.getValue();
+            Map<String, Object> classMap = new LinkedHashMap<>();
+            classMap.put("priority", stats.getPriority());
+            classMap.put("weight", stats.getWeight());
+            classMap.put("depth", stats.getDepth());
+            classMap.put("enqueued", stats.getEnqueuedCount());
+            classMap.put("dequeued", stats.getDequeuedCount());
+            classMap.put("avg_wait_millis", stats.getAverageWaitMillis());
+            classMap.put("max_wait_millis", stats.getMaxWaitMillis());
+            classMap.put("last_wait_millis", stats.getLastWaitMillis());
+            map.put(e.getKey(), classMap);
+        }
+        return map;
+    }
+
     private Map<String, Object> ok(int size) {
         Map<String, Object> map = new HashMap<>();
         map.put("status", "ok");
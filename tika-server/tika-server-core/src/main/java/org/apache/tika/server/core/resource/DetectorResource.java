@@ -68,6 +68,7 @@ public class DetectorResource {
         } catch (IOException e) {
             LOG.warn("Unable to detect MIME type for file. Reason: {} ({})", e.getMessage(),
                     filename, e);
+            serverStatus.getMetrics().recordException(ServerStatus.TASK.DETECT);
             return MediaType.OCTET_STREAM.toString();
         } catch (OutOfMemoryError e) {
             LOG.error("OOM while detecting: ({})", filename, e);
@@ -75,6 +76,7 @@ public class DetectorResource {
             throw e;
         } catch (Throwable e) {
             LOG.error("Exception while detecting: ({})", filename, e);
+            serverStatus.getMetrics().recordException(ServerStatus.TASK.DETECT);
             throw e;
         } finally {
             serverStatus.complete(taskId);
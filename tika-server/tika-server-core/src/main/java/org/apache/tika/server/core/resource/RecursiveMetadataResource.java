@@ -17,10 +17,13 @@
 
 package org.apache.tika.server.core.resource;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.apache.tika.server.core.resource.TikaResource.fillMetadata;
 import static org.apache.tika.server.core.resource.TikaResource.fillParseContext;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStreamWriter;
 import java.util.List;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
@@ -33,25 +36,45 @@ import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
 import org.apache.cxf.jaxrs.ext.multipart.Attachment;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
 
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.io.TikaInputStream;
 import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.Property;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.metadata.filter.MetadataFilter;
+import org.apache.tika.metadata.serialization.JsonStreamingSerializer;
 import org.apache.tika.parser.ParseContext;
 import org.apache.tika.parser.Parser;
 import org.apache.tika.parser.RecursiveParserWrapper;
 import org.apache.tika.pipes.HandlerConfig;
+import org.apache.tika.sax.AbstractRecursiveParserWrapperHandler;
 import org.apache.tika.sax.BasicContentHandlerFactory;
+import org.apache.tika.sax.ContentHandlerFactory;
 import org.apache.tika.sax.RecursiveParserWrapperHandler;
 import org.apache.tika.server.core.MetadataList;
+import org.apache.tika.server.core.ResultCache;
 import org.apache.tika.server.core.TikaServerParseException;
 
 @Path("/rmeta")
 public class RecursiveMetadataResource {
 
+    /**
+     * Set to true on the main document in the responses of
+     * {@link #getMetadataStreaming(InputStream, HttpHeaders, UriInfo, String)}
+     */
+    public static final Property STREAM_CONTAINER =
+            Property.internalBoolean(TikaCoreProperties.TIKA_META_PREFIX + "stream_container");
+
     protected static final String HANDLER_TYPE_PARAM = "handler";
     protected static final BasicContentHandlerFactory.HANDLER_TYPE DEFAULT_HANDLER_TYPE =
             BasicContentHandlerFactory.HANDLER_TYPE.XML;
@@ -74,8 +97,31 @@ public class RecursiveMetadataResource {
                 new BasicContentHandlerFactory(type, handlerConfig.getWriteLimit()),
                 handlerConfig.getMaxEmbeddedResources(),
                 TikaResource.getConfig().getMetadataFilter());
+
+        ResultCache resultCache = TikaResource.getResultCache();
+        String cacheKey = null;
+        if (resultCache != null) {
+            TikaResource.checkIsOperating();
+            TikaInputStream tis = TikaInputStream.get(is);
+            is = tis;
+            try {
+                cacheKey = resultCache.getKey("/rmeta/" + type + "/" +
+                        handlerConfig.getParseMode(), tis, httpHeaders);
+            } catch (IOException e) {
+                tis.close();
+                throw e;
+            }
+            List<Metadata> cached = resultCache.get(cacheKey);
+            if (cached != null) {
+                tis.close();
+                return cached;
+            }
+        }
+        //only cache the results of clean parses
+        boolean failed = true;
         try {
             TikaResource.parse(wrapper, LOG, "/rmeta", is, handler, metadata, context);
+            failed = false;
         } catch (TikaServerParseException e) {
             //do nothing
             LOG.debug("server parse exception", e);
@@ -84,8 +130,11 @@ public class RecursiveMetadataResource {
         } catch (Exception e) {
             //we shouldn't get here?
             LOG.error("something went seriously wrong", e);
+            return handler.getMetadataList();
+        }
+        if (cacheKey != null && !failed) {
+            resultCache.put(cacheKey, handler.getMetadataList());
         }
-
         return handler.getMetadataList();
     }
 
@@ -183,10 +232,136 @@ public class RecursiveMetadataResource {
                         HandlerConfig.PARSE_MODE.RMETA))).build();
     }
 
+    /**
+     * Same as {@link #getMetadata(InputStream, HttpHeaders, UriInfo, String)}
+     * except that the metadata of each document is written to the response as
+     * soon as that document has been parsed instead of after the whole parse,
+     * so that the server doesn't hold the content of every attachment in
+     * memory and the client can start reading early.
+     * <p>
+     * The response is the same json array, but the documents are in the order
+     * in which they finish: embedded documents before their containers and
+     * the main document last, because its metadata is only complete once the
+     * whole file has been parsed. The main document is marked with
+     * {@link #STREAM_CONTAINER}, so that clients needn't rely on the order.
+     * The result cache isn't used.
+     * <p>
+     * /rmeta/stream (default: xml)<br/>
+     * /rmeta/streamtext (store the content as text)<br/>
+     *
+     * @param info            uri info
+     * @param handlerTypeName which type of handler to use
+     * @return StreamingOutput of a json array of {@link Metadata} objects
+     * @throws Exception
+     */
+    @PUT
+    @Produces("application/json")
+    @Path("stream{" + HANDLER_TYPE_PARAM + " : (\\w+)?}")
+    public StreamingOutput getMetadataStreaming(InputStream is, @Context HttpHeaders httpHeaders,
+                                                @Context UriInfo info,
+                                                @PathParam(HANDLER_TYPE_PARAM)
+                                                        String handlerTypeName)
+            throws Exception {
+        Metadata metadata = new Metadata();
+        MultivaluedMap<String, String> requestHeaders = httpHeaders.getRequestHeaders();
+        InputStream tis = TikaResource.getInputStream(is, metadata, httpHeaders, info);
+        HandlerConfig handlerConfig = buildHandlerConfig(requestHeaders, handlerTypeName,
+                HandlerConfig.PARSE_MODE.RMETA);
+        final ParseContext context = new ParseContext();
+        Parser parser = TikaResource.createParser();
+        RecursiveParserWrapper wrapper = new RecursiveParserWrapper(parser);
+        fillMetadata(parser, metadata, requestHeaders);
+        fillParseContext(requestHeaders, metadata, context);
+        TikaResource.logRequest(LOG, "/rmeta/stream", metadata);
+        //fail before the 200 is sent
+        TikaResource.checkIsOperating();
+
+        return outputStream -> {
+            JsonStreamingSerializer serializer =
+                    new JsonStreamingSerializer(new OutputStreamWriter(outputStream, UTF_8));
+            StreamingHandler handler = new StreamingHandler(
+                    new BasicContentHandlerFactory(handlerConfig.getType(),
+                            handlerConfig.getWriteLimit()),
+                    handlerConfig.getMaxEmbeddedResources(),
+                    TikaResource.getConfig().getMetadataFilter(), serializer);
+            try {
+                TikaResource.parse(wrapper, LOG, "/rmeta/stream", tis, handler, metadata, context);
+            } catch (TikaServerParseException e) {
+                //the exception is in the main document's metadata
+                LOG.debug("server parse exception", e);
+            } finally {
+                serializer.close();
+            }
+        };
+    }
+
     private MetadataList parseMetadataToMetadataList(InputStream is, Metadata metadata,
                                                      MultivaluedMap<String, String> httpHeaders,
                                                      UriInfo info, HandlerConfig handlerConfig)
             throws Exception {
         return new MetadataList(parseMetadata(is, metadata, httpHeaders, info, handlerConfig));
     }
+
+    /**
+     * Writes the metadata of each document as soon as it ends. Like the
+     * {@link RecursiveParserWrapperHandler}, it adds the content and applies
+     * the metadata filter. The main document ends last, it is marked with
+     * {@link #STREAM_CONTAINER}.
+     */
+    private static class StreamingHandler extends AbstractRecursiveParserWrapperHandler {
+
+        private final MetadataFilter metadataFilter;
+        private final JsonStreamingSerializer serializer;
+
+        StreamingHandler(ContentHandlerFactory contentHandlerFactory, int maxEmbeddedResources,
+                         MetadataFilter metadataFilter, JsonStreamingSerializer serializer) {
+            super(contentHandlerFactory, maxEmbeddedResources);
+            this.metadataFilter = metadataFilter;
+            this.serializer = serializer;
+        }
+
+        @Override
+        public void endEmbeddedDocument(ContentHandler contentHandler, Metadata metadata)
+                throws SAXException {
+            super.endEmbeddedDocument(contentHandler, metadata);
+            write(contentHandler, metadata, false);
+        }
+
+        @Override
+        public void endDocument(ContentHandler contentHandler, Metadata metadata)
+                throws SAXException {
+            super.endDocument(contentHandler, metadata);
+            write(contentHandler, metadata, true);
+        }
+
+        private void write(ContentHandler contentHandler, Metadata metadata, boolean container)
+                throws SAXException {
+            //see RecursiveParserWrapperHandler#addContent
+            if (!contentHandler.getClass().equals(DefaultHandler.class)) {
+                String content = contentHandler.toString();
+                if (content != null && content.trim().length() > 0) {
+                    metadata.add(TikaCoreProperties.TIKA_CONTENT, content);
+                    metadata.add(TikaCoreProperties.TIKA_CONTENT_HANDLER,
+                            contentHandler.getClass().getSimpleName());
+                }
+            }
+            try {
+                metadataFilter.filter(metadata);
+            } catch (TikaException e) {
+                throw new SAXException(e);
+            }
+            if (container) {
+                //after the filter, so that it can't be removed
+                metadata.set(STREAM_CONTAINER, true);
+            } else if (metadata.size() == 0) {
+                return;
+            }
+            try {
+                serializer.add(metadata);
+                serializer.flush();
+            } catch (IOException e) {
+                throw new SAXException(e);
+            }
+        }
+    }
 }
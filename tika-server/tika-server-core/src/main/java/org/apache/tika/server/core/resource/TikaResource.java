@@ -27,9 +27,11 @@ import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Semaphore;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.ws.rs.Consumes;
@@ -67,12 +69,14 @@ import org.apache.tika.config.TikaTaskTimeout;
 import org.apache.tika.exception.EncryptedDocumentException;
 import org.apache.tika.exception.TikaException;
 import org.apache.tika.exception.WriteLimitReachedException;
+import org.apache.tika.io.TikaInputStream;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.metadata.TikaCoreProperties;
 import org.apache.tika.parser.AutoDetectParser;
 import org.apache.tika.parser.DigestingParser;
 import org.apache.tika.parser.ParseContext;
 import org.apache.tika.parser.Parser;
+import org.apache.tika.parser.ParserStatsListener;
 import org.apache.tika.pipes.HandlerConfig;
 import org.apache.tika.sax.BasicContentHandlerFactory;
 import org.apache.tika.sax.BodyContentHandler;
@@ -82,6 +86,7 @@ import org.apache.tika.sax.boilerpipe.BoilerpipeContentHandler;
 import org.apache.tika.server.core.CompositeParseContextConfig;
 import org.apache.tika.server.core.InputStreamFactory;
 import org.apache.tika.server.core.ParseContextConfig;
+import org.apache.tika.server.core.ResultCache;
 import org.apache.tika.server.core.ServerStatus;
 import org.apache.tika.server.core.TikaServerConfig;
 import org.apache.tika.server.core.TikaServerParseException;
@@ -100,6 +105,9 @@ public class TikaResource {
     private static DigestingParser.Digester DIGESTER = null;
     private static InputStreamFactory INPUTSTREAM_FACTORY = null;
     private static ServerStatus SERVER_STATUS = null;
+    private static ResultCache RESULT_CACHE = null;
+    //null if the number of concurrent parses isn't limited
+    private static Semaphore PARSE_PERMITS = null;
 
     private static ParseContextConfig PARSE_CONTEXT_CONFIG = new CompositeParseContextConfig();
 
@@ -112,6 +120,9 @@ public class TikaResource {
         DIGESTER = digester;
         INPUTSTREAM_FACTORY = inputStreamFactory;
         SERVER_STATUS = serverStatus;
+        RESULT_CACHE = ResultCache.build(tikaServerConfg);
+        PARSE_PERMITS = tikaServerConfg.getMaxConcurrentParses() > 0 ?
+                new Semaphore(tikaServerConfg.getMaxConcurrentParses(), true) : null;
     }
 
 
@@ -129,6 +140,13 @@ public class TikaResource {
         return TIKA_CONFIG;
     }
 
+    /**
+     * @return the cache for parse results or <code>null</code> if it isn't enabled
+     */
+    public static ResultCache getResultCache() {
+        return RESULT_CACHE;
+    }
+
     public static String detectFilename(MultivaluedMap<String, String> httpHeaders) {
 
         String disposition = httpHeaders.getFirst("Content-Disposition");
@@ -151,6 +169,9 @@ public class TikaResource {
     public static void fillParseContext(MultivaluedMap<String, String> httpHeaders,
                                         Metadata metadata, ParseContext parseContext) {
         PARSE_CONTEXT_CONFIG.configure(httpHeaders, metadata, parseContext);
+        if (TIKA_SERVER_CONFIG.isParserStats()) {
+            parseContext.set(ParserStatsListener.class, SERVER_STATUS.getMetrics());
+        }
     }
 
     public static InputStream getInputStream(InputStream is, Metadata metadata,
@@ -346,10 +367,14 @@ public class TikaResource {
         checkIsOperating();
         String fileName = metadata.get(TikaCoreProperties.RESOURCE_NAME_KEY);
         long timeoutMillis = getTaskTimeout(parseContext);
+        acquireParsePermit(inputStream);
 
         long taskId = SERVER_STATUS.start(ServerStatus.TASK.PARSE, fileName, timeoutMillis);
+        long started = System.nanoTime();
+        boolean exception = true;
         try {
             parser.parse(inputStream, handler, metadata, parseContext);
+            exception = false;
         } catch (SAXException e) {
             throw new TikaServerParseException(e);
         } catch (EncryptedDocumentException e) {
@@ -358,6 +383,9 @@ public class TikaResource {
         } catch (Exception e) {
             if (! WriteLimitReachedException.isWriteLimitReached(e)) {
                 logger.warn("{}: Text extraction failed ({})", path, fileName, e);
+            } else {
+                exception = false;
+                SERVER_STATUS.getMetrics().recordWriteLimitReached();
             }
             throw new TikaServerParseException(e);
         } catch (OutOfMemoryError e) {
@@ -365,11 +393,30 @@ public class TikaResource {
             SERVER_STATUS.setStatus(ServerStatus.STATUS.ERROR);
             throw e;
         } finally {
+            SERVER_STATUS.getMetrics().recordParse(metadata, System.nanoTime() - started,
+                    exception);
             SERVER_STATUS.complete(taskId);
+            if (PARSE_PERMITS != null) {
+                PARSE_PERMITS.release();
+            }
             inputStream.close();
         }
     }
 
+    //the wait for a permit doesn't count against the task timeout
+    private static void acquireParsePermit(InputStream inputStream) throws IOException {
+        if (PARSE_PERMITS == null) {
+            return;
+        }
+        try {
+            PARSE_PERMITS.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            inputStream.close();
+            throw new TikaServerParseException(e);
+        }
+    }
+
     protected static long getTaskTimeout(ParseContext parseContext) {
 
         TikaTaskTimeout tikaTaskTimeout = parseContext.get(TikaTaskTimeout.class);
@@ -602,8 +649,36 @@ public class TikaResource {
                 throwOnWriteLimitReached, context);
         ContentHandler contentHandler = fact.getNewContentHandler();
 
+        String cacheKey = null;
+        if (RESULT_CACHE != null) {
+            checkIsOperating();
+            TikaInputStream tis = TikaInputStream.get(inputStream);
+            inputStream = tis;
+            try {
+                cacheKey = RESULT_CACHE.getKey("/tika/" + type, tis, httpHeaders);
+            } catch (IOException e) {
+                tis.close();
+                throw e;
+            }
+            List<Metadata> cached = RESULT_CACHE.get(cacheKey);
+            if (cached != null) {
+                tis.close();
+                Metadata cachedMetadata = cached.get(0);
+                for (String n : cachedMetadata.names()) {
+                    metadata.remove(n);
+                    for (String v : cachedMetadata.getValues(n)) {
+                        metadata.add(n, v);
+                    }
+                }
+                return;
+            }
+        }
+
+        //only cache the results of clean parses
+        boolean failed = true;
         try {
             parse(parser, LOG, info.getPath(), inputStream, contentHandler, metadata, context);
+            failed = false;
         } catch (TikaServerParseException e) {
             Throwable cause = e.getCause();
             boolean writeLimitReached = false;
@@ -632,6 +707,9 @@ public class TikaResource {
         } finally {
             metadata.add(TikaCoreProperties.TIKA_CONTENT, contentHandler.toString());
         }
+        if (cacheKey != null && ! failed) {
+            RESULT_CACHE.put(cacheKey, Collections.singletonList(metadata));
+        }
     }
 
     public static boolean getThrowOnWriteLimitReached(MultivaluedMap<String, String> httpHeaders) {
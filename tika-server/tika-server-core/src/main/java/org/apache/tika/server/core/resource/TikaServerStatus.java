@@ -22,6 +22,7 @@ import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 
+import org.apache.tika.server.core.ResultCache;
 import org.apache.tika.server.core.ServerStatus;
 
 @Path("/status")
@@ -41,6 +42,10 @@ public class TikaServerStatus {
         map.put("millis_since_last_parse_started", serverStatus.getMillisSinceLastParseStarted());
         map.put("files_processed", serverStatus.getFilesProcessed());
         map.put("num_restarts", serverStatus.getNumRestarts());
+        ResultCache resultCache = TikaResource.getResultCache();
+        if (resultCache != null) {
+            map.put("result_cache", resultCache.getStats());
+        }
         return map;
     }
 }
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.server.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringWriter;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+
+public class AdmissionControllerTest {
+
+    @Test
+    public void testInFlightBytes() throws Exception {
+        AdmissionConfig config = new AdmissionConfig();
+        config.setMaxInFlightBytes(1000);
+        config.setCostFactors(Collections.singletonMap("application/pdf", "4"));
+        ServerStatus serverStatus = new ServerStatus("id", 0);
+        AdmissionController controller =
+                new AdmissionController(config, serverStatus.getMetrics());
+
+        //a single request is accepted even if it's over the limit
+        AdmissionController.Ticket big = controller.admit("a", 5000, "text/plain");
+        assertNotNull(big);
+        assertNull(controller.admit("b", 10, "text/plain"));
+        big.release();
+        big.release();
+        assertEquals(0, controller.getInFlight());
+        assertEquals(0, controller.getInFlightBytes());
+
+        AdmissionController.Ticket pdf = controller.admit("a", 200, "application/pdf");
+        assertEquals(800, pdf.getCost());
+        //a pdf costs four times its length
+        assertNull(controller.admit("b", 100, "application/pdf; charset=UTF-8"));
+        AdmissionController.Ticket text = controller.admit("b", 100, "text/plain");
+        assertNotNull(text);
+        assertNull(controller.admit("c", -1, null));
+        pdf.release();
+        text.release();
+        assertEquals(0, controller.getInFlightBytes());
+
+        StringWriter writer = new StringWriter();
+        serverStatus.getMetrics().write(serverStatus, writer);
+        assertTrue(writer.toString()
+                .contains("tika_server_requests_rejected_total{reason=\"in_flight_bytes\"} 3"));
+    }
+
+    @Test
+    public void testHeap() throws Exception {
+        AdmissionConfig config = new AdmissionConfig();
+        config.setMinFreeHeapRatio(0.2);
+        AdmissionController controller =
+                new AdmissionController(config, new ServerMetrics()) {
+                    @Override
+                    long getFreeHeap() {
+                        return 900;
+                    }
+
+                    @Override
+                    long getMaxHeap() {
+                        return 1000;
+                    }
+                };
+        AdmissionController.Ticket ticket = controller.admit("a", 500, null);
+        assertNotNull(ticket);
+        //the bytes in flight count against the free heap, too
+        assertNotNull(controller.admit("b", 200, null));
+        assertNull(controller.admit("c", 1, null));
+        ticket.release();
+        assertNotNull(controller.admit("c", 1, null));
+    }
+
+    @Test
+    public void testUndefinedMaxHeap() throws Exception {
+        AdmissionConfig config = new AdmissionConfig();
+        config.setMinFreeHeapRatio(0.2);
+        AdmissionController controller =
+                new AdmissionController(config, new ServerMetrics()) {
+                    @Override
+                    long getFreeHeap() {
+                        return -1 - 500;
+                    }
+
+                    @Override
+                    long getMaxHeap() {
+                        return -1;
+                    }
+                };
+        assertNotNull(controller.admit("a", 500, null));
+        assertNotNull(controller.admit("b", 500, null));
+    }
+
+    @Test
+    public void testClients() throws Exception {
+        AdmissionConfig config = new AdmissionConfig();
+        config.setMaxRequestsPerClient(2);
+        AdmissionController controller = new AdmissionController(config, new ServerMetrics());
+        AdmissionController.Ticket a1 = controller.admit("a", 1, null);
+        assertNotNull(a1);
+        assertNotNull(controller.admit("a", 1, null));
+        assertNull(controller.admit("a", 1, null));
+        assertNotNull(controller.admit("b", 1, null));
+        a1.release();
+        assertNotNull(controller.admit("a", 1, null));
+        assertEquals(3, controller.getInFlight());
+    }
+}
@@ -19,6 +19,8 @@ package org.apache.tika.server.core;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -27,6 +29,9 @@ import java.util.ArrayList;
 import java.util.List;
 import javax.ws.rs.core.Response;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import org.apache.cxf.jaxrs.JAXRSServerFactoryBean;
 import org.apache.cxf.jaxrs.client.WebClient;
 import org.apache.cxf.jaxrs.lifecycle.SingletonResourceProvider;
@@ -34,6 +39,7 @@ import org.junit.jupiter.api.Test;
 
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.metadata.serialization.JsonMetadata;
 import org.apache.tika.metadata.serialization.JsonMetadataList;
 import org.apache.tika.server.core.resource.RecursiveMetadataResource;
 import org.apache.tika.server.core.writer.MetadataListMessageBodyWriter;
@@ -43,6 +49,8 @@ public class RecursiveMetadataResourceTest extends CXFTestBase {
     private static final String META_PATH = "/rmeta";
 
     public static final String TEST_NULL_POINTER = "test-documents/mock/null_pointer.xml";
+    public static final String TEST_EMBEDDED_THEN_HANG =
+            "test-documents/mock/embedded_then_hang.xml";
 
     @Override
     protected void setUpResources(JAXRSServerFactoryBean sf) {
@@ -73,6 +81,67 @@ public class RecursiveMetadataResourceTest extends CXFTestBase {
                 metadata.get(TikaCoreProperties.CONTAINER_EXCEPTION));
 
     }
+
+    @Test
+    public void testStreaming() throws Exception {
+        Response response = WebClient.create(endPoint + META_PATH + "/streamtext")
+                .accept("application/json")
+                .put(ClassLoader.getSystemResourceAsStream(TEST_NULL_POINTER));
+        assertEquals(200, response.getStatus());
+
+        Reader reader = new InputStreamReader((InputStream) response.getEntity(), UTF_8);
+        List<Metadata> metadataList = JsonMetadataList.fromJson(reader);
+        assertEquals(1, metadataList.size());
+        Metadata metadata = metadataList.get(0);
+        assertEquals("Nikolai Lobachevsky", metadata.get("author"));
+        assertContains("some content", metadata.get(TikaCoreProperties.TIKA_CONTENT));
+        assertEquals("ToTextContentHandler",
+                metadata.get(TikaCoreProperties.TIKA_CONTENT_HANDLER));
+        assertContains("null pointer message",
+                metadata.get(TikaCoreProperties.CONTAINER_EXCEPTION));
+    }
+
+    @Test
+    public void testStreamingEmbedded() throws Exception {
+        Response response = WebClient.create(endPoint + META_PATH + "/streamtext")
+                .accept("application/json")
+                .put(ClassLoader.getSystemResourceAsStream(TEST_EMBEDDED_THEN_HANG));
+        assertEquals(200, response.getStatus());
+
+        List<Metadata> metadataList = new ArrayList<>();
+        long firstRead = -1;
+        Reader reader = new InputStreamReader((InputStream) response.getEntity(), UTF_8);
+        try (JsonParser jParser = new JsonFactory().createParser(reader)) {
+            assertEquals(JsonToken.START_ARRAY, jParser.nextToken());
+            while (jParser.nextToken() != JsonToken.END_ARRAY) {
+                metadataList.add(JsonMetadata.readMetadataObject(jParser));
+                if (firstRead < 0) {
+                    firstRead = System.currentTimeMillis();
+                }
+            }
+        }
+        //the embedded documents were flushed before the main document's hang
+        assertTrue(System.currentTimeMillis() - firstRead >= 2000);
+
+        //embedded documents first, in the order in which they end
+        assertEquals(3, metadataList.size());
+        assertEquals("/embed1.xml",
+                metadataList.get(0).get(TikaCoreProperties.EMBEDDED_RESOURCE_PATH));
+        assertContains("embedded_content_1",
+                metadataList.get(0).get(TikaCoreProperties.TIKA_CONTENT));
+        assertEquals("/embed2.xml",
+                metadataList.get(1).get(TikaCoreProperties.EMBEDDED_RESOURCE_PATH));
+        assertNull(metadataList.get(0).get(RecursiveMetadataResource.STREAM_CONTAINER));
+        assertNull(metadataList.get(1).get(RecursiveMetadataResource.STREAM_CONTAINER));
+
+        //the main document last, with the marker
+        Metadata container = metadataList.get(2);
+        assertEquals("true", container.get(RecursiveMetadataResource.STREAM_CONTAINER));
+        assertNull(container.get(TikaCoreProperties.EMBEDDED_RESOURCE_PATH));
+        assertEquals("Nikolai Lobachevsky", container.get("author"));
+        assertContains("main_content", container.get(TikaCoreProperties.TIKA_CONTENT));
+    }
+
     /*
     @Test
     public void testWriteLimitInAll() throws Exception {
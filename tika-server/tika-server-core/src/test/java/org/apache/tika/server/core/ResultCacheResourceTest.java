@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.server.core;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import javax.ws.rs.core.Response;
+
+import org.apache.cxf.jaxrs.JAXRSServerFactoryBean;
+import org.apache.cxf.jaxrs.client.WebClient;
+import org.apache.cxf.jaxrs.lifecycle.SingletonResourceProvider;
+import org.junit.jupiter.api.Test;
+
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.metadata.serialization.JsonMetadata;
+import org.apache.tika.metadata.serialization.JsonMetadataList;
+import org.apache.tika.server.core.resource.RecursiveMetadataResource;
+import org.apache.tika.server.core.resource.TikaResource;
+import org.apache.tika.server.core.writer.JSONMessageBodyWriter;
+import org.apache.tika.server.core.writer.MetadataListMessageBodyWriter;
+
+public class ResultCacheResourceTest extends CXFTestBase {
+
+    private static final String TEST_HELLO_WORLD = "test-documents/mock/hello_world.xml";
+    private static final String TEST_NULL_POINTER = "test-documents/mock/null_pointer.xml";
+
+    @Override
+    protected TikaServerConfig getTikaServerConfig() {
+        TikaServerConfig tikaServerConfig = super.getTikaServerConfig();
+        tikaServerConfig.setResultCacheMaxBytes(1024 * 1024);
+        return tikaServerConfig;
+    }
+
+    @Override
+    protected void setUpResources(JAXRSServerFactoryBean sf) {
+        sf.setResourceClasses(TikaResource.class, RecursiveMetadataResource.class);
+        sf.setResourceProvider(TikaResource.class,
+                new SingletonResourceProvider(new TikaResource()));
+        sf.setResourceProvider(RecursiveMetadataResource.class,
+                new SingletonResourceProvider(new RecursiveMetadataResource()));
+    }
+
+    @Override
+    protected void setUpProviders(JAXRSServerFactoryBean sf) {
+        List<Object> providers = new ArrayList<>();
+        providers.add(new TikaServerParseExceptionMapper(true));
+        providers.add(new JSONMessageBodyWriter());
+        providers.add(new MetadataListMessageBodyWriter());
+        sf.setProviders(providers);
+    }
+
+    @Test
+    public void testFailedParseIsNotCached() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            Metadata metadata = tika(TEST_NULL_POINTER);
+            assertContains("null pointer message",
+                    metadata.get(TikaCoreProperties.CONTAINER_EXCEPTION));
+            metadata = rmeta(TEST_NULL_POINTER).get(0);
+            assertContains("null pointer message",
+                    metadata.get(TikaCoreProperties.CONTAINER_EXCEPTION));
+        }
+        Map<String, Object> stats = TikaResource.getResultCache().getStats();
+        assertEquals(0, stats.get("entries"));
+        assertEquals(0L, stats.get("hits"));
+        assertEquals(4L, stats.get("misses"));
+
+        //a clean parse is served from the cache the second time
+        for (int i = 0; i < 2; i++) {
+            assertContains("hello world", tika(TEST_HELLO_WORLD)
+                    .get(TikaCoreProperties.TIKA_CONTENT));
+            assertContains("hello world", rmeta(TEST_HELLO_WORLD).get(0)
+                    .get(TikaCoreProperties.TIKA_CONTENT));
+        }
+        stats = TikaResource.getResultCache().getStats();
+        assertEquals(2, stats.get("entries"));
+        assertEquals(2L, stats.get("hits"));
+    }
+
+    private Metadata tika(String path) throws Exception {
+        Response response = WebClient.create(endPoint + "/tika").accept("application/json")
+                .put(ClassLoader.getSystemResourceAsStream(path));
+        assertEquals(200, response.getStatus());
+        return JsonMetadata.fromJson(
+                new InputStreamReader((InputStream) response.getEntity(), UTF_8));
+    }
+
+    private List<Metadata> rmeta(String path) throws Exception {
+        Response response = WebClient.create(endPoint + "/rmeta").accept("application/json")
+                .put(ClassLoader.getSystemResourceAsStream(path));
+        assertEquals(200, response.getStatus());
+        return JsonMetadataList.fromJson(
+                new InputStreamReader((InputStream) response.getEntity(), UTF_8));
+    }
+}
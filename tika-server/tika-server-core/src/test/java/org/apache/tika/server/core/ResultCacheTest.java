@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.server.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+
+public class ResultCacheTest {
+
+    @Test
+    public void testKeys() throws Exception {
+        ResultCache cache = new ResultCache(1000, null, -1);
+        Map<String, List<String>> headers = new HashMap<>();
+        headers.put("Content-Type", Collections.singletonList("text/plain"));
+        String key = key(cache, "/rmeta/XML", "hello world", headers);
+
+        //headers that don't change the result are ignored
+        headers.put("User-Agent", Collections.singletonList("curl"));
+        assertEquals(key, key(cache, "/rmeta/XML", "hello world", headers));
+
+        assertNotEquals(key, key(cache, "/rmeta/TEXT", "hello world", headers));
+        assertNotEquals(key, key(cache, "/rmeta/XML", "hello world!", headers));
+        headers.put("X-Tika-OCRLanguage", Collections.singletonList("eng"));
+        assertNotEquals(key, key(cache, "/rmeta/XML", "hello world", headers));
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        ResultCache sizer = new ResultCache(1000, null, -1);
+        sizer.put("a", result("aaaaaaaaaa"));
+        long entryBytes = (long) sizer.getStats().get("bytes");
+
+        //room for two
+        ResultCache cache = new ResultCache(2 * entryBytes, null, -1);
+        cache.put("a", result("aaaaaaaaaa"));
+        cache.put("b", result("bbbbbbbbbb"));
+        assertEquals("aaaaaaaaaa", cache.get("a").get(0).get(TikaCoreProperties.TIKA_CONTENT));
+        //b is the least recently used
+        cache.put("c", result("cccccccccc"));
+        assertNull(cache.get("b"));
+        assertEquals(Arrays.asList("a", "c"), cache.getKeys());
+        assertEquals(1L, cache.getStats().get("evictions"));
+    }
+
+    @Test
+    public void testDirectory(@TempDir Path dir) throws Exception {
+        new ResultCache(1000, dir, -1).put("a", result("some content"));
+
+        //a restarted server only sees the directory
+        ResultCache cache = new ResultCache(1000, dir, -1);
+        assertEquals("some content", cache.get("a").get(0).get(TikaCoreProperties.TIKA_CONTENT));
+        assertNull(cache.get("b"));
+        Map<String, Object> stats = cache.getStats();
+        assertEquals(1, stats.get("entries"));
+        assertEquals(1L, stats.get("disk_hits"));
+        assertEquals(0.5, (double) stats.get("hit_rate"), 0.0001);
+        assertEquals(1, stats.get("directory_entries"));
+    }
+
+    @Test
+    public void testDirectoryEviction(@TempDir Path tmp) throws Exception {
+        ResultCache sizer = new ResultCache(1000, tmp.resolve("sizer"), -1);
+        sizer.put("a", result("aaaaaaaaaa"));
+        long entryBytes = (long) sizer.getStats().get("directory_bytes");
+
+        Path dir = tmp.resolve("cache");
+        //room for two files, and nothing in memory
+        ResultCache cache = new ResultCache(1, dir, 2 * entryBytes);
+        cache.put("a", result("aaaaaaaaaa"));
+        cache.put("b", result("bbbbbbbbbb"));
+        assertEquals("aaaaaaaaaa", cache.get("a").get(0).get(TikaCoreProperties.TIKA_CONTENT));
+        //b is the least recently used
+        cache.put("c", result("cccccccccc"));
+        assertFalse(Files.exists(dir.resolve("b")));
+        assertNull(cache.get("b"));
+        assertEquals(Arrays.asList("a", "c"), cache.getFileKeys());
+        Map<String, Object> stats = cache.getStats();
+        assertEquals(2 * entryBytes, stats.get("directory_bytes"));
+        assertEquals(2 * entryBytes, stats.get("directory_max_bytes"));
+        assertEquals(1L, stats.get("directory_evictions"));
+
+        //a restart rebuilds the order from the modified times
+        Files.setLastModifiedTime(dir.resolve("a"), FileTime.fromMillis(1000));
+        Files.setLastModifiedTime(dir.resolve("c"), FileTime.fromMillis(2000));
+        Files.write(dir.resolve("d123.tmp"), new byte[10]);
+        cache = new ResultCache(1, dir, 2 * entryBytes);
+        assertEquals(Arrays.asList("a", "c"), cache.getFileKeys());
+        assertFalse(Files.exists(dir.resolve("d123.tmp")));
+        cache.put("d", result("dddddddddd"));
+        assertFalse(Files.exists(dir.resolve("a")));
+        assertEquals(Arrays.asList("c", "d"), cache.getFileKeys());
+
+        //a smaller limit evicts on startup
+        cache = new ResultCache(1, dir, entryBytes);
+        assertEquals(Collections.singletonList("d"), cache.getFileKeys());
+        assertFalse(Files.exists(dir.resolve("c")));
+    }
+
+    private static String key(ResultCache cache, String endpoint, String content,
+                              Map<String, List<String>> headers) throws Exception {
+        try (TikaInputStream tis = TikaInputStream.get(
+                content.getBytes(StandardCharsets.UTF_8))) {
+            return cache.getKey(endpoint, tis, headers);
+        }
+    }
+
+    private static List<Metadata> result(String content) {
+        Metadata metadata = new Metadata();
+        metadata.set(TikaCoreProperties.TIKA_CONTENT, content);
+        return Collections.singletonList(metadata);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.server.core;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.parser.ParserStats;
+
+public class ServerMetricsTest {
+
+    @Test
+    public void testWrite() throws Exception {
+        ServerStatus serverStatus = new ServerStatus("id", 2);
+        ServerMetrics metrics = serverStatus.getMetrics();
+        metrics.recordRequest("rmeta", 200, TimeUnit.MILLISECONDS.toNanos(20));
+        metrics.recordRequest("rmeta", 200, TimeUnit.SECONDS.toNanos(2));
+        metrics.recordRequest("rmeta", 422, TimeUnit.SECONDS.toNanos(1000));
+        metrics.recordResponseBytes("rmeta", 100);
+
+        Metadata metadata = new Metadata();
+        metadata.set(Metadata.CONTENT_TYPE, "application/pdf; charset=UTF-8");
+        metadata.add(TikaCoreProperties.TIKA_PARSED_BY, "org.apache.tika.parser.DefaultParser");
+        metadata.add(TikaCoreProperties.TIKA_PARSED_BY, "org.apache.tika.parser.pdf.PDFParser");
+        metadata.set(TikaCoreProperties.WRITE_LIMIT_REACHED, "true");
+        metrics.recordParse(metadata, TimeUnit.MILLISECONDS.toNanos(5), false);
+        metrics.onParse(new ParserStats("org.apache.tika.parser.pdf.PDFParser", 1,
+                TimeUnit.MILLISECONDS.toNanos(3), TimeUnit.SECONDS.toNanos(1), 1000, 10, 10, false));
+        metrics.setRestarts(Collections.singletonMap("timeout", 2));
+        serverStatus.start(ServerStatus.TASK.PARSE, "file", 1000);
+
+        StringWriter writer = new StringWriter();
+        metrics.write(serverStatus, writer);
+        String text = writer.toString();
+        assertContains("tika_server_requests_total{endpoint=\"rmeta\",status=\"200\"} 2", text);
+        assertContains("tika_server_requests_total{endpoint=\"rmeta\",status=\"422\"} 1", text);
+        assertContains("# TYPE tika_server_request_duration_seconds histogram", text);
+        assertContains("tika_server_request_duration_seconds_bucket{endpoint=\"rmeta\"," +
+                "le=\"0.025\"} 1", text);
+        assertContains("tika_server_request_duration_seconds_bucket{endpoint=\"rmeta\"," +
+                "le=\"2.5\"} 2", text);
+        assertContains("tika_server_request_duration_seconds_bucket{endpoint=\"rmeta\"," +
+                "le=\"+Inf\"} 3", text);
+        assertContains("tika_server_request_duration_seconds_count{endpoint=\"rmeta\"} 3", text);
+        assertContains("tika_server_response_bytes_total{endpoint=\"rmeta\"} 100", text);
+        assertContains("tika_server_parse_duration_seconds_count{mime_type=\"application/pdf\"} 1",
+                text);
+        assertContains("tika_server_parser_duration_seconds_count{" +
+                "parser=\"org.apache.tika.parser.pdf.PDFParser\"} 1", text);
+        assertContains("tika_server_parser_self_duration_seconds_bucket{" +
+                "parser=\"org.apache.tika.parser.pdf.PDFParser\",le=\"0.005\"} 1", text);
+        assertContains("tika_server_parser_cpu_seconds_total{" +
+                "parser=\"org.apache.tika.parser.pdf.PDFParser\"} 1.0", text);
+        assertContains("tika_server_parser_allocated_bytes_total{" +
+                "parser=\"org.apache.tika.parser.pdf.PDFParser\"} 1000", text);
+        assertContains("tika_server_write_limit_reached_total 1", text);
+        assertContains("tika_server_tasks_in_flight{task=\"parse\"} 1", text);
+        assertContains("tika_server_restarts_total{reason=\"timeout\"} 2", text);
+        assertContains("jvm_memory_bytes_used{area=\"heap\"}", text);
+    }
+
+    @Test
+    public void testMaxLabelValues() throws Exception {
+        ServerStatus serverStatus = new ServerStatus("id", 0);
+        ServerMetrics metrics = serverStatus.getMetrics();
+        for (int i = 0; i < ServerMetrics.MAX_LABEL_VALUES + 10; i++) {
+            metrics.recordResponseBytes("endpoint" + i, 1);
+        }
+        StringWriter writer = new StringWriter();
+        metrics.write(serverStatus, writer);
+        assertContains("tika_server_response_bytes_total{endpoint=\"other\"} 10",
+                writer.toString());
+    }
+
+    private static void assertContains(String needle, String haystack) {
+        assertTrue(haystack.contains(needle), needle + " not found in:\n" + haystack);
+    }
+}
@@ -125,6 +125,30 @@ public class TikaServerConfigTest {
         assertEquals("/something/or/other2", tlsConfig.getTrustStoreFile());
     }
 
+    @Test
+    public void testAdmissionConfig() throws Exception {
+        Set<String> settings = new HashSet<>();
+        CommandLineParser parser = new DefaultParser();
+        CommandLine emptyCommandLine = parser.parse(new Options(), new String[]{});
+        Path path = Paths.get(TikaConfigTest.class.getResource(
+                "/configs/tika-config-server-admission.xml").toURI());
+        TikaServerConfig config = TikaServerConfig
+                .load(path,
+                        emptyCommandLine,
+                        settings);
+        AdmissionConfig admissionConfig = config.getAdmissionConfig();
+        assertTrue(admissionConfig.isActive());
+        assertEquals(1000000, admissionConfig.getMaxInFlightBytes());
+        assertEquals(0.1, admissionConfig.getMinFreeHeapRatio(), 0.0001);
+        assertEquals(4, admissionConfig.getMaxRequestsPerClient());
+        assertEquals("X-Forwarded-For", admissionConfig.getClientHeader());
+        assertEquals(10, admissionConfig.getRetryAfterSeconds());
+        assertEquals(3.0, admissionConfig.getCostFactor("application/pdf"), 0.0001);
+        assertEquals(0.5, admissionConfig.getCostFactor("image/png"), 0.0001);
+        assertEquals(1.0, admissionConfig.getCostFactor("text/plain"), 0.0001);
+        assertFalse(TikaServerConfig.load().getAdmissionConfig().isActive());
+    }
+
     @Test
     public void testInterpolation() throws Exception {
         List<String> input = new ArrayList<>();
@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.server.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class VirtualThreadPoolTest {
+
+    @Test
+    public void testExecute() throws Exception {
+        VirtualThreadPool pool = new VirtualThreadPool();
+        if (!VirtualThreadPool.isSupported()) {
+            assertThrows(IllegalStateException.class, pool::start);
+            return;
+        }
+        pool.start();
+        //many more blocked tasks than there are cpus
+        int numTasks = 1000;
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(numTasks);
+        for (int i = 0; i < numTasks; i++) {
+            pool.execute(() -> {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            });
+        }
+        assertEquals(0, pool.getIdleThreads());
+        blocked.countDown();
+        assertTrue(done.await(1, TimeUnit.MINUTES));
+        pool.stop();
+        assertThrows(RejectedExecutionException.class, () -> pool.execute(() -> {
+        }));
+    }
+}